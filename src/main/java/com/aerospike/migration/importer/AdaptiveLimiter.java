@@ -0,0 +1,157 @@
+package com.aerospike.migration.importer;
+
+import java.util.Arrays;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.ResultCode;
+
+/**
+ * Limits the number of entries being imported at once, adjusting the limit as it goes in the way TCP
+ * adjusts its congestion window: additive increase, multiplicative decrease. The latency of each entry
+ * and whether it failed because the server was overloaded are collected over a window of about as many
+ * entries as the limit. At the end of the window the limit is:
+ * <ul>
+ * <li>cut to half if any write was rejected for overload, such as DEVICE_OVERLOAD, KEY_BUSY or a timeout,</li>
+ * <li>cut by a fifth if the 90th percentile latency has grown to more than the tolerance times the
+ * latency seen without load, as the writes are then queueing on the server,</li>
+ * <li>otherwise raised by one.</li>
+ * </ul>
+ * The latency without load is the lowest median latency of any window, which is let drift up slowly so
+ * it follows changes in the cluster.
+ */
+class AdaptiveLimiter {
+    private static final int MAX_SAMPLES = 1024;
+    private static final double BASELINE_DRIFT = 1.001;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final long[] samples = new long[MAX_SAMPLES];
+    private double limit;
+    private int inFlight = 0;
+    private int windowCount = 0;
+    private int windowOverloads = 0;
+    private long baselineNanos = Long.MAX_VALUE;
+    private long lastP90Nanos = 0;
+    private long increases = 0;
+    private long decreases = 0;
+
+    /**
+     * @param initialLimit - the number of entries to allow at first
+     * @param maxLimit - the most the limit can be raised to
+     * @param latencyTolerance - how many times the latency without load the latency can grow to before the limit is cut
+     */
+    AdaptiveLimiter(int initialLimit, int maxLimit, double latencyTolerance) {
+        this.minLimit = 1;
+        this.maxLimit = Math.max(minLimit, maxLimit);
+        this.limit = Math.max(minLimit, Math.min(this.maxLimit, initialLimit));
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    /**
+     * Whether a failure means the cluster is overloaded, rather than that something is wrong with the record.
+     */
+    static boolean isOverload(Throwable failure) {
+        if (!(failure instanceof AerospikeException)) {
+            return false;
+        }
+        switch (((AerospikeException)failure).getResultCode()) {
+        case ResultCode.DEVICE_OVERLOAD:
+        case ResultCode.KEY_BUSY:
+        case ResultCode.TIMEOUT:
+        case ResultCode.NO_MORE_CONNECTIONS:
+        case ResultCode.MAX_ERROR_RATE:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Wait until the entry can be imported without going over the limit.
+     */
+    synchronized void acquire() throws InterruptedException {
+        while (inFlight >= (int)limit) {
+            wait();
+        }
+        inFlight++;
+    }
+
+    /**
+     * An entry which did not write anything has finished, so there is no latency to count.
+     */
+    synchronized void release() {
+        inFlight--;
+        notifyAll();
+    }
+
+    /**
+     * An entry has been imported.
+     * @param latencyNanos - how long it took from acquiring to completing
+     * @param overloaded - whether it failed because the server was overloaded
+     */
+    synchronized void release(long latencyNanos, boolean overloaded) {
+        inFlight--;
+        if (windowCount < MAX_SAMPLES) {
+            samples[windowCount] = latencyNanos;
+        }
+        windowCount++;
+        if (overloaded) {
+            windowOverloads++;
+        }
+        if (windowCount >= Math.max(10, (int)limit)) {
+            endWindow();
+        }
+        notifyAll();
+    }
+
+    private void endWindow() {
+        int count = Math.min(windowCount, MAX_SAMPLES);
+        Arrays.sort(samples, 0, count);
+        long p50 = samples[count / 2];
+        long p90 = samples[Math.min(count - 1, count * 9 / 10)];
+        baselineNanos = Math.min(p50, baselineNanos == Long.MAX_VALUE ? p50 : (long)(baselineNanos * BASELINE_DRIFT) + 1);
+        lastP90Nanos = p90;
+        if (windowOverloads > 0) {
+            limit = Math.max(minLimit, limit / 2);
+            decreases++;
+        }
+        else if (p90 > baselineNanos * latencyTolerance) {
+            limit = Math.max(minLimit, limit * 0.8);
+            decreases++;
+        }
+        else if (limit < maxLimit) {
+            limit = Math.min(maxLimit, limit + 1);
+            increases++;
+        }
+        windowCount = 0;
+        windowOverloads = 0;
+    }
+
+    synchronized int getLimit() {
+        return (int)limit;
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * The 90th percentile latency of the last window.
+     */
+    synchronized long getP90Nanos() {
+        return lastP90Nanos;
+    }
+
+    synchronized long getBaselineNanos() {
+        return baselineNanos == Long.MAX_VALUE ? 0 : baselineNanos;
+    }
+
+    synchronized long getIncreases() {
+        return increases;
+    }
+
+    synchronized long getDecreases() {
+        return decreases;
+    }
+}
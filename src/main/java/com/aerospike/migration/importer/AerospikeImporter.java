@@ -2,65 +2,168 @@ package com.aerospike.migration.importer;
 
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileWriter;
+import java.io.InputStream;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.aerospike.client.AerospikeClient;
 import com.aerospike.client.Bin;
 import com.aerospike.client.Host;
 import com.aerospike.client.IAerospikeClient;
+import com.aerospike.client.Key;
 import com.aerospike.client.Operation;
+import com.aerospike.client.Value;
+import com.aerospike.client.async.EventLoops;
+import com.aerospike.client.async.EventPolicy;
+import com.aerospike.client.async.NioEventLoops;
 import com.aerospike.client.policy.ClientPolicy;
+import com.aerospike.client.policy.RecordExistsAction;
 import com.aerospike.client.policy.WritePolicy;
-
-import net.whitbeck.rdbparser.Entry;
-import net.whitbeck.rdbparser.Eof;
-import net.whitbeck.rdbparser.KeyValuePair;
-import net.whitbeck.rdbparser.RdbParser;
-import net.whitbeck.rdbparser.SelectDb;
+import com.aerospike.migration.importer.aof.AofCommand;
+import com.aerospike.migration.importer.aof.KeyCommands;
+import com.aerospike.migration.importer.json.JsonLinesReader;
+import com.aerospike.migration.importer.rdb.ByteSlice;
+import com.aerospike.migration.importer.rdb.Compression;
+import com.aerospike.migration.importer.rdb.Entry;
+import com.aerospike.migration.importer.rdb.EntryFilter;
+import com.aerospike.migration.importer.rdb.EntryType;
+import com.aerospike.migration.importer.rdb.Eof;
+import com.aerospike.migration.importer.rdb.KeyValuePair;
+import com.aerospike.migration.importer.rdb.MappedFile;
+import com.aerospike.migration.importer.rdb.RdbIndex;
+import com.aerospike.migration.importer.rdb.RdbInput;
+import com.aerospike.migration.importer.rdb.RdbReader;
+import com.aerospike.migration.importer.rdb.SelectDb;
 
 public class AerospikeImporter {
+    private static final long JSON_RANGE_SIZE = 16 << 20;
     private final MappingSpecs specs;
     private final IAerospikeClient client;
-    private final ArrayBlockingQueue<Entry> queue;
+    private final EntryQueue queue;
     private final AerospikeImporterOptions options;
     private final int threadsToUse;
+    private final int chunkSize;
+    private final EntryFilter filter;
+    private final List<FileProgress> inputFiles = new ArrayList<>();
+    private volatile RedisSource redisSource;
+    private volatile AofSource aofSource;
     private Thread producer;
     private File errorFile = null;
     private PrintWriter errorWriter = null;
-    private volatile boolean done = false;
     private final AtomicLong success = new AtomicLong(0);
     private final AtomicLong failed = new AtomicLong(0);
     private final AtomicLong ignored = new AtomicLong(0);
+    private final AtomicLong completed = new AtomicLong(0);
+    private final AtomicLong unchanged = new AtomicLong(0);
+    private final AtomicLong deleted = new AtomicLong(0);
+    private volatile FingerprintTable fingerprints = null;
+    private volatile List<HotFirstSorter> sorters = null;
+    private volatile long totalWeight = 0;
+    private volatile int currentBucket = 0;
+    private final AtomicLong weightDone = new AtomicLong(0);
+    private final DryRunReport dryRun;
+    private final RecordWriter writer;
     private final AtomicInteger activeThreads = new AtomicInteger(0);
+    private final LongAdder translateNanos = new LongAdder();
+    private final AdaptiveLimiter limiter;
     private final ExecutorService executor;
     
     public AerospikeImporter(AerospikeImporterOptions options) throws Exception {
         this.options = options;
         this.specs = options.getMappingSpecs();
         this.threadsToUse = options.getThreads() <= 0 ? Runtime.getRuntime().availableProcessors() : options.getThreads();
-        this.client = this.connect();
+        this.chunkSize = options.getChunkSize();
+        this.filter = options.getEntryFilter();
+        this.dryRun = options.isDryRun() ? new DryRunReport(options.getSampleRate()) : null;
+        RecordWriter recordWriter;
+        if (options.isDryRun()) {
+            this.client = null;
+            recordWriter = new DryRunWriter(dryRun);
+        }
+        else if (options.isAsync()) {
+            EventPolicy eventPolicy = new EventPolicy();
+            EventLoops eventLoops = new NioEventLoops(eventPolicy, options.getEventLoops() <= 0 ? Runtime.getRuntime().availableProcessors() : options.getEventLoops());
+            this.client = this.connect(eventLoops);
+            recordWriter = new AsyncRecordWriter(client, eventLoops, options.getMaxInFlight());
+        }
+        else if (options.getWriteThreads() > 0) {
+            this.client = this.connect(null);
+            recordWriter = new WriteStage("writer", client, options.getWriteThreads(), options.getMaxQueueDepth(),
+                    options.getBatchSize(), options.getBatchLingerMicros());
+        }
+        else if (options.isPartitionAware()) {
+            this.client = this.connect(null);
+            recordWriter = new NodeRoutedWriter(client, options.getNodeThreads(), options.getMaxQueueDepth(),
+                    options.getBatchSize(), options.getBatchLingerMicros());
+        }
+        else if (options.getBatchSize() > 1) {
+            this.client = this.connect(null);
+            recordWriter = new BatchRecordWriter(client, options.getBatchSize(), options.getBatchLingerMicros());
+        }
+        else {
+            this.client = this.connect(null);
+            recordWriter = new SyncRecordWriter(client);
+        }
+        boolean blockingWrites = recordWriter instanceof SyncRecordWriter;
+        if (!options.isDryRun() && (options.getRecordsPerSecond() > 0 || options.getBytesPerSecond() > 0 || !specs.getRateLimits().isEmpty())) {
+            // Under the coalescer, so it is the merged writes which are counted
+            recordWriter = new RateLimitingWriter(recordWriter, options.getRecordsPerSecond(), options.getBytesPerSecond(), specs.getRateLimits());
+        }
+        if (options.getRetries() > 0 && !options.isDryRun()) {
+            // Above the rate limiter, so retries count against the caps too
+            recordWriter = new RetryingWriter(recordWriter, options.getRetries(), options.getRetryBackoffMillis(), options.getRetryBackoffMaxMillis(),
+                    RetryingWriter.DEFAULT_THREADS);
+        }
+        if (options.getCoalesceMillis() > 0 && !options.isDryRun()) {
+            recordWriter = new CoalescingWriter(recordWriter, options.getCoalesceMillis(), options.getCoalesceMaxOps(),
+                    options.getCoalesceMaxMemoryMb() << 20);
+        }
+        this.writer = recordWriter;
+        if (options.isAdaptiveConcurrency()) {
+            // Writes which block the worker thread can never have more in flight than there are threads
+            int maxLimit = options.getAdaptiveMax();
+            if (options.isVirtualThreads()) {
+                maxLimit = Math.min(maxLimit, options.getMaxInFlight());
+            }
+            else if (blockingWrites) {
+                maxLimit = Math.min(maxLimit, threadsToUse);
+            }
+            this.limiter = new AdaptiveLimiter(options.getAdaptiveInitial(), maxLimit, options.getAdaptiveLatencyTolerance());
+        }
+        else {
+            this.limiter = null;
+        }
         if (options.getErrorFileName() != null) {
             this.errorFile = new File(options.getErrorFileName());
             this.errorWriter = new PrintWriter(new BufferedWriter(new FileWriter(this.errorFile)));
         }
-        this.queue = new ArrayBlockingQueue<>(options.getMaxQueueDepth());
-        this.executor = Executors.newFixedThreadPool(threadsToUse);
+        for (File file : options.getInputFiles()) {
+            this.inputFiles.add(new FileProgress(file, Compression.detect(file) != Compression.NONE));
+        }
+        this.queue = new EntryQueue(options.getMaxQueueDepth(), options.getWaitStrategy(), options.getQueueMemory());
+        this.executor = options.isVirtualThreads() ? VirtualThreads.newExecutor("worker-") : Executors.newFixedThreadPool(threadsToUse);
     }
     
-    private IAerospikeClient connect() {
+    private IAerospikeClient connect(EventLoops eventLoops) {
         ClientPolicy clientPolicy = new ClientPolicy();
         ClusterConfig config = this.options.getCluster();
         
@@ -71,6 +174,14 @@ public class AerospikeImporter {
         clientPolicy.clusterName = config.getClusterName();
         clientPolicy.useServicesAlternate = config.isUseServicesAlternate();
         clientPolicy.minConnsPerNode = this.threadsToUse;
+        if (eventLoops != null) {
+            clientPolicy.eventLoops = eventLoops;
+            // Each write in flight to a node needs its own connection
+            clientPolicy.asyncMaxConnsPerNode = Math.max(clientPolicy.asyncMaxConnsPerNode, options.getMaxInFlight());
+        }
+        if (options.isVirtualThreads()) {
+            clientPolicy.maxConnsPerNode = Math.max(clientPolicy.maxConnsPerNode, options.getMaxInFlight());
+        }
 
         WritePolicy defaultWritePolicy = new WritePolicy();
         defaultWritePolicy.recordExistsAction = this.options.getRecordExistsAction();
@@ -108,47 +219,40 @@ public class AerospikeImporter {
     
     public void start() {
         this.producer = new Thread(()-> {
-            try {
-                parseRdbFile(new File(options.getInputFileName()));
-                this.done = true;
+            if (options.getRedisUris() != null) {
+                readFromRedis();
             }
-            catch (Exception e) {
-                logError(e);
-                this.done = true;
+            else if (options.getAofFileName() != null) {
+                replayAof();
             }
+            else {
+                parseFiles();
+            }
+            this.queue.close();
         }, "producer");
         this.producer.setDaemon(true);
         this.producer.start();
         
+        if (options.isVirtualThreads()) {
+            startVirtualThreads();
+            return;
+        }
         for (int i = 0; i < this.threadsToUse; i++) {
             executor.execute(() -> {
                 this.activeThreads.incrementAndGet();
                 
+                List<Entry> batch = new ArrayList<>(options.getWorkerBatch());
                 try {
-                    while (!done || !queue.isEmpty()) {
-                        try {
-                            Entry item = queue.poll(1, TimeUnit.SECONDS);
-                            if (item != null) {
-                                if (processRecord(item)) {
-                                    success.incrementAndGet();
-                                }
-                                // Otherwise it's a non-record in the file, just ignore it.
-                            }
-                        } catch (InterruptedException ignored) {
-                        } catch (NoTranslatorException nte) {
-                            if (this.options.isIgnoreMissing()) {
-                                ignored.incrementAndGet();
-                            }
-                            else {
-                                failed.incrementAndGet();
-                                logError(nte);
-                            }
-                        } catch (Exception ex) {
-                            failed.incrementAndGet();
-                            logError(ex);
+                    // Entries are taken a few at a time, until the producer has closed the queue and it is empty
+                    while (queue.takeBatch(batch, options.getWorkerBatch()) >= 0) {
+                        for (Entry item : batch) {
+                            processEntry(item);
                         }
+                        batch.clear();
                     }
                 }
+                catch (InterruptedException ignored) {
+                }
                 finally {
                     this.activeThreads.decrementAndGet();
                 }
@@ -157,13 +261,105 @@ public class AerospikeImporter {
         executor.shutdown();
     }
     
+    /**
+     * Run each entry on its own virtual thread, with a semaphore rather than the number of threads limiting
+     * how many are in flight at once. The active thread count is then the number of entries in flight.
+     */
+    private void startVirtualThreads() {
+        Semaphore permits = new Semaphore(options.getMaxInFlight());
+        this.activeThreads.incrementAndGet();
+        Thread dispatcher = new Thread(() -> {
+            List<Entry> batch = new ArrayList<>(options.getWorkerBatch());
+            try {
+                while (queue.takeBatch(batch, options.getWorkerBatch()) >= 0) {
+                    for (Entry item : batch) {
+                        permits.acquire();
+                        this.activeThreads.incrementAndGet();
+                        executor.execute(() -> {
+                            try {
+                                processEntry(item);
+                            }
+                            catch (InterruptedException ignored) {
+                            }
+                            finally {
+                                this.activeThreads.decrementAndGet();
+                                permits.release();
+                            }
+                        });
+                    }
+                    batch.clear();
+                }
+            }
+            catch (InterruptedException ignored) {
+            }
+            finally {
+                executor.shutdown();
+                this.activeThreads.decrementAndGet();
+            }
+        }, "dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    private void processEntry(Entry item) throws InterruptedException {
+        if (limiter != null) {
+            limiter.acquire();
+        }
+        WriteRequest request = new WriteRequest(item, this::requestCompleted);
+        long start = System.nanoTime();
+        try {
+            // Otherwise it's a non-record in the file, just ignore it.
+            request.setWritten(processRecord(item, request));
+        }
+        catch (Exception ex) {
+            request.fail(ex);
+        }
+        finally {
+            translateNanos.add(System.nanoTime() - start);
+            request.finish();
+        }
+    }
+    
+    /**
+     * Count an entry once all its writes have completed, which for asynchronous writes is on an event loop thread.
+     */
+    private void requestCompleted(WriteRequest request) {
+        Entry item = request.getEntry();
+        Throwable failure = request.getFailure();
+        if (failure == null) {
+            if (request.isWritten()) {
+                success.incrementAndGet();
+            }
+        }
+        else if (failure instanceof NoTranslatorException && this.options.isIgnoreMissing()) {
+            ignored.incrementAndGet();
+        }
+        else {
+            failed.incrementAndGet();
+            logError(failure instanceof Exception ? (Exception)failure : new RuntimeException(failure));
+        }
+        if (dryRun != null) {
+            dryRun.recordDone(System.nanoTime() - request.getStartNanos());
+        }
+        if (limiter != null && (failure != null || request.isWritten())) {
+            limiter.release(System.nanoTime() - request.getStartNanos(), AdaptiveLimiter.isOverload(failure));
+        }
+        else if (limiter != null) {
+            limiter.release();
+        }
+        item.completed();
+        queue.release(item);
+        completed.incrementAndGet();
+        keyDone(item);
+    }
+
     /**
      * Process a single entry from the database.
      * @param e - the entry to process
      * @return true if a record has been processed and inserted into the database, false otherwise
      * @throws Exception
      */
-    private boolean processRecord(Entry e) throws Exception {
+    private boolean processRecord(Entry e, WriteRequest request) throws Exception {
         switch (e.getType()) {
 
         case SELECT_DB:
@@ -184,18 +380,28 @@ public class AerospikeImporter {
             }
             break;
 
+        case COMMANDS:
+            return replayCommands((KeyCommands)e, request);
+
         case KEY_VALUE_PAIR:
             KeyValuePair kvp = (KeyValuePair)e;
-            String key = new String(kvp.getKey(), "ASCII");
+            String key = kvp.getKey().toString(StandardCharsets.US_ASCII);
             
             // Strip out the hash key from the key if present
             key = key.replaceAll("[{}]", "");
+            if (dryRun != null && !specs.hasMappingFor(key)) {
+                dryRun.unmatched(key);
+            }
             RecordTranslator translator = specs.getTranslatorFromString(key, options.isDebug());
+            Key asKey = translator.getKey();
 
+            if (dryRun != null) {
+                dryRun.record(key, kvp, translator);
+            }
             if (options.isVerbose()) {
                 System.out.println("Key value pair");
                 System.out.println("Key: " + key);
-                System.out.printf("Aerospike key: %s\n", translator.getKey());
+                System.out.printf("Aerospike key: %s\n", asKey);
             }
             WritePolicy wp = null;
             
@@ -204,7 +410,7 @@ public class AerospikeImporter {
                 // Convert expireTime into seconds from now
                 long now = new Date().getTime();
                 if (now < expireTime) {
-                    wp = client.copyWritePolicyDefault();
+                    wp = newWritePolicy();
                     wp.expiration = (int)((expireTime - now) / 1000);
                     if (options.isVerbose()) {
                         System.out.printf("Expire time (ms): %d mapped to expiry time of %s seconds\n", expireTime, wp.expiration);
@@ -220,7 +426,7 @@ public class AerospikeImporter {
             }
             if (translator.sendKey() != null) {
                 if (wp == null) {
-                    wp = client.copyWritePolicyDefault();
+                    wp = newWritePolicy();
                 }
                 wp.sendKey = translator.sendKey();
             }
@@ -236,31 +442,39 @@ public class AerospikeImporter {
             case HASHMAP_WITH_METADATA:
             case HASHMAP_WITH_METADATA_PRE_GA:
             case ZIPMAP:
-                List<byte[]> values = kvp.getValues();
-                
-                int length = values.size();
-                Map<String, String> map = new HashMap<>();
-                for (int i = 0; i < length; i+= 2) {
-                    String binName = new String(values.get(i), "ASCII");
-                    String binValue = new String(values.get(i+1), "ASCII");
-                    map.put(binName, binValue);
-                }
-                List<Operation> ops = translator.getOperationsFor(map);
-                if (options.isVerbose()) {
-                    System.out.print("Values: ");
-                    for (byte[] val : values) {
-                        System.out.print("'" + new String(val, "ASCII") + "' ");
+                Iterator<ByteSlice> hashValues = kvp.valueIterator();
+                int chunk = 0;
+                do {
+                    Map<String, String> map = new HashMap<>();
+                    while (hashValues.hasNext() && map.size() < chunkSize) {
+                        String binName = hashValues.next().toString(StandardCharsets.US_ASCII);
+                        String binValue = hashValues.next().toString(StandardCharsets.US_ASCII);
+                        map.put(binName, binValue);
                     }
-                    System.out.println();
-                    System.out.println("------------");
-                }
-                client.operate(wp, translator.getKey(), ops.toArray(new Operation[0]));
+                    if (options.isVerbose()) {
+                        System.out.printf("Values (chunk %d): ", chunk);
+                        for (Map.Entry<String, String> entry : map.entrySet()) {
+                            System.out.print("'" + entry.getKey() + "' '" + entry.getValue() + "' ");
+                        }
+                        System.out.println();
+                        System.out.println("------------");
+                    }
+                    if (chunk == 0) {
+                        List<Operation> ops = translator.getOperationsFor(map);
+                        write(request, wp, asKey, ops);
+                    }
+                    else {
+                        List<Operation> ops = translator.getAppendOperationsFor(map);
+                        write(request, updatePolicy(wp), asKey, ops);
+                    }
+                    chunk++;
+                } while (hashValues.hasNext());
                 return true;
                 
             case VALUE:
-                String value = new String(kvp.getValues().get(0), "ASCII");
+                String value = kvp.getValues().get(0).toString(StandardCharsets.US_ASCII);
                 List<Operation> op = translator.getOperationsFor(null, value);
-                client.operate(wp, translator.getKey(), op.toArray(new Operation[0]));
+                write(request, wp, asKey, op);
                 return true;
                 
                 // For now, add sets in as lists
@@ -270,24 +484,33 @@ public class AerospikeImporter {
                 
             case QUICKLIST:
             case QUICKLIST2:
-            case LISTPACK:
             case ZIPLIST:
             case LIST:
-                List<String> thisValueList = new ArrayList<>();
-                for (byte[] val : kvp.getValues()) {
-                    String thisValue = new String(val, "ASCII");
-                    thisValueList.add(thisValue);
-                }
-                List<Operation> listOps = translator.getOperationsFor(thisValueList);
-                client.operate(wp, translator.getKey(), listOps.toArray(new Operation[0]));
+                Iterator<ByteSlice> listValues = kvp.valueIterator();
+                int index = 0;
+                do {
+                    List<String> thisValueList = new ArrayList<>();
+                    while (listValues.hasNext() && thisValueList.size() < chunkSize) {
+                        thisValueList.add(listValues.next().toString(StandardCharsets.US_ASCII));
+                    }
+                    if (index == 0) {
+                        List<Operation> listOps = translator.getOperationsFor(thisValueList);
+                        write(request, wp, asKey, listOps);
+                    }
+                    else {
+                        List<Operation> listOps = translator.getAppendOperationsFor(thisValueList, index);
+                        write(request, updatePolicy(wp), asKey, listOps);
+                    }
+                    index += thisValueList.size();
+                } while (listValues.hasNext());
                 return true;
                 
             default:
                 if (options.isVerbose()) {
                     System.out.println("----- Unsupported type -----");
                     System.out.print("Values: ");
-                    for (byte[] val : kvp.getValues()) {
-                        System.out.print("'" + new String(val, "ASCII") + "' ");
+                    for (ByteSlice val : kvp.getValues()) {
+                        System.out.print("'" + val.toString(StandardCharsets.US_ASCII) + "' ");
                     }
                     System.out.println();
                     System.out.println("------------");
@@ -298,22 +521,682 @@ public class AerospikeImporter {
         return false;
     }
 
-    private void parseRdbFile(File file) throws Exception {
-        try (RdbParser parser = new RdbParser(file)) {
-            Entry e;
-            while ((e = parser.readNext()) != null) {
-                queue.put(e);
+    /**
+     * Apply the commands replayed from an AOF file for one key, in order.
+     */
+    private boolean replayCommands(KeyCommands commands, WriteRequest request) throws Exception {
+        String key = commands.getKey().toString(StandardCharsets.US_ASCII);
+        key = key.replaceAll("[{}]", "");
+        RecordTranslator translator = specs.getTranslatorFromString(key, options.isDebug());
+        Key asKey = translator.getKey();
+        for (AofCommand command : commands.getCommands()) {
+            if (options.isVerbose()) {
+                System.out.printf("Replaying %s from db %d on Aerospike key %s\n", command, commands.getDb(), asKey);
+            }
+            WritePolicy wp = newWritePolicy();
+            wp.recordExistsAction = RecordExistsAction.UPDATE;
+            // Most commands leave the time to live of the key as it is
+            wp.expiration = -2;
+            if (translator.sendKey() != null) {
+                wp.sendKey = translator.sendKey();
+            }
+            List<Operation> ops;
+            try {
+                ops = getReplayOperations(translator, command, wp);
+            }
+            catch (RuntimeException e) {
+                logError("Command %s on key %s could not be replayed: %s", command.getName(), key, e.getMessage());
+                failed.incrementAndGet();
+                continue;
+            }
+            if (ops == null) {
+                // Skip just this command, the later ones for the key still apply
+                logError("Command %s on key %s cannot be replayed", command.getName(), key);
+                failed.incrementAndGet();
+                continue;
+            }
+            // Deleting or setting the expiry of a record which is not there does nothing, as in Redis
+            writer.write(request, new WriteRequest.Part(wp, asKey, ops, true));
+        }
+        return true;
+    }
+
+    /**
+     * The operations which have the same effect as a replayed command, or {@code null} if the command has
+     * no equivalent.
+     */
+    private List<Operation> getReplayOperations(RecordTranslator translator, AofCommand command, WritePolicy wp) {
+        long now = System.currentTimeMillis();
+        Long expireTime = null;
+        switch (command.getName()) {
+        case "SET":
+            wp.expiration = 0;
+            for (int i = 2; i < command.getArgCount(); i++) {
+                switch (command.getString(i).toUpperCase()) {
+                case "EX":
+                    expireTime = now + command.getLong(++i) * 1000;
+                    break;
+                case "PX":
+                    expireTime = now + command.getLong(++i);
+                    break;
+                case "EXAT":
+                    expireTime = command.getLong(++i) * 1000;
+                    break;
+                case "PXAT":
+                    expireTime = command.getLong(++i);
+                    break;
+                case "KEEPTTL":
+                    wp.expiration = -2;
+                    break;
+                default:
+                    // NX, XX and GET do not change what is written, as only commands which succeeded are in the file
+                    break;
+                }
+            }
+            if (expireTime != null && !setExpiration(wp, expireTime, now)) {
+                return translator.getDeleteOperations();
+            }
+            return translator.getOperationsFor(null, command.getString(1));
+
+        case "SETEX":
+        case "PSETEX":
+            expireTime = now + command.getLong(1) * ("SETEX".equals(command.getName()) ? 1000 : 1);
+            if (!setExpiration(wp, expireTime, now)) {
+                return translator.getDeleteOperations();
+            }
+            return translator.getOperationsFor(null, command.getString(2));
+
+        case "GETSET":
+        case "SETNX":
+            wp.expiration = 0;
+            return translator.getOperationsFor(null, command.getString(1));
+
+        case "APPEND":
+            return translator.getStringAppendOperationsFor(command.getString(1));
+
+        case "INCR":
+            return translator.getIncrementOperationsFor(null, Value.get(1L));
+
+        case "DECR":
+            return translator.getIncrementOperationsFor(null, Value.get(-1L));
+
+        case "INCRBY":
+            return translator.getIncrementOperationsFor(null, Value.get(command.getLong(1)));
+
+        case "DECRBY":
+            return translator.getIncrementOperationsFor(null, Value.get(-command.getLong(1)));
+
+        case "INCRBYFLOAT":
+            return translator.getIncrementOperationsFor(null, Value.get(command.getDouble(1)));
+
+        case "DEL":
+        case "GETDEL":
+            return translator.getDeleteOperations();
+
+        case "HSET":
+        case "HMSET":
+        case "HSETNX":
+            Map<String, String> map = new HashMap<>();
+            for (int i = 1; i + 1 < command.getArgCount(); i += 2) {
+                map.put(command.getString(i), command.getString(i + 1));
+            }
+            return translator.getAppendOperationsFor(map);
+
+        case "HDEL":
+            return translator.getRemoveOperationsFor(command.getStrings(1));
+
+        case "HINCRBY":
+            return translator.getIncrementOperationsFor(command.getString(1), Value.get(command.getLong(2)));
+
+        case "HINCRBYFLOAT":
+            return translator.getIncrementOperationsFor(command.getString(1), Value.get(command.getDouble(2)));
+
+        case "RPUSH":
+            return translator.getAppendOperationsFor(command.getStrings(1), 0);
+
+        case "LPUSH":
+            return translator.getPrependOperationsFor(command.getStrings(1));
+
+        case "LPOP":
+        case "RPOP":
+            int count = command.getArgCount() > 1 ? (int)command.getLong(1) : 1;
+            return translator.getPopOperationsFor(count, "LPOP".equals(command.getName()));
+
+        case "LSET":
+            return translator.getListSetOperationsFor((int)command.getLong(1), command.getString(2));
+
+        case "LREM":
+            if (command.getLong(1) != 0) {
+                // Removing only the first or last occurrences of a value has no list operation
+                return null;
+            }
+            return translator.getRemoveValuesOperationsFor(List.of(command.getString(2)));
+
+        case "SADD":
+            return translator.getAddUniqueOperationsFor(command.getStrings(1));
+
+        case "SREM":
+            return translator.getRemoveValuesOperationsFor(command.getStrings(1));
+
+        case "EXPIRE":
+        case "PEXPIRE":
+        case "EXPIREAT":
+        case "PEXPIREAT":
+            long time = command.getLong(1);
+            switch (command.getName()) {
+            case "EXPIRE":
+                expireTime = now + time * 1000;
+                break;
+            case "PEXPIRE":
+                expireTime = now + time;
+                break;
+            case "EXPIREAT":
+                expireTime = time * 1000;
+                break;
+            default:
+                expireTime = time;
+            }
+            if (!setExpiration(wp, expireTime, now)) {
+                return translator.getDeleteOperations();
+            }
+            return List.of(Operation.touch());
+
+        case "PERSIST":
+            wp.expiration = -1;
+            return List.of(Operation.touch());
+
+        default:
+            // Including the sorted set commands, as sorted sets are not imported
+            return null;
+        }
+    }
+
+    /**
+     * Set the expiration of the policy to expire at the passed time, returning false if this has already passed.
+     */
+    private boolean setExpiration(WritePolicy wp, long expireTime, long now) {
+        if (expireTime <= now) {
+            return false;
+        }
+        wp.expiration = (int)Math.max(1, (expireTime - now) / 1000);
+        return true;
+    }
+
+    /**
+     * A copy of the client's default write policy, for an entry or a replayed command to adjust.
+     */
+    private WritePolicy newWritePolicy() {
+        return client == null ? new WritePolicy() : client.copyWritePolicyDefault();
+    }
+
+    private void write(WriteRequest request, WritePolicy wp, Key key, List<Operation> ops) throws Exception {
+        writer.write(request, new WriteRequest.Part(wp, key, ops, false));
+    }
+
+    /**
+     * The policy to write the second and later chunks of a large collection. These add to the record written
+     * by the first chunk, so must update it irrespective of the record exists action used for the first chunk.
+     */
+    private WritePolicy updatePolicy(WritePolicy wp) {
+        WritePolicy updatePolicy = wp == null ? newWritePolicy() : new WritePolicy(wp);
+        updatePolicy.recordExistsAction = RecordExistsAction.UPDATE;
+        return updatePolicy;
+    }
+
+    private void parseFiles() {
+        if (!options.getPreviousFiles().isEmpty() && !loadFingerprints()) {
+            return;
+        }
+        if (options.isHotFirst()) {
+            importHotFirst();
+        }
+        else {
+            parseFiles(inputFiles);
+        }
+        if (fingerprints != null) {
+            deleteRemovedKeys();
+        }
+    }
+
+    private void parseFiles(List<FileProgress> files) {
+        // Each file is parsed by its own thread, feeding the shared queue and workers
+        ExecutorService filePool = Executors.newFixedThreadPool(Math.min(options.getParallelFiles(), files.size()));
+        for (FileProgress progress : files) {
+            filePool.execute(() -> parseFile(progress));
+        }
+        filePool.shutdown();
+        try {
+            filePool.awaitTermination(7, TimeUnit.DAYS);
+        }
+        catch (InterruptedException ignored) {
+        }
+    }
+
+    private interface PairHandler {
+        void accept(long db, KeyValuePair kvp) throws Exception;
+    }
+
+    /**
+     * Pass every key value pair of an RDB file which the filter accepts to the handler, on several threads
+     * if the file can be split. The values are not decoded.
+     */
+    private void readPairs(File file, EntryFilter pairFilter, PairHandler handler) throws Exception {
+        if (options.getParsers() == 1 || Compression.detect(file) != Compression.NONE) {
+            try (RdbReader reader = new RdbReader(RdbInput.open(file, options.getParsers()), true)) {
+                reader.setFilter(pairFilter);
+                readPairs(reader, handler);
+            }
+            return;
+        }
+        try (MappedFile mappedFile = new MappedFile(file)) {
+            RdbIndex index = RdbIndex.loadOrBuild(mappedFile, RdbIndex.DEFAULT_INTERVAL);
+            ExecutorService parserPool = Executors.newFixedThreadPool(Math.min(options.getParsers(), index.getRanges().size()));
+            List<Future<?>> results = new ArrayList<>();
+            for (RdbIndex.Range range : index.getRanges()) {
+                results.add(parserPool.submit(() -> {
+                    try (RdbReader reader = new RdbReader(mappedFile, range, index.getVersion())) {
+                        reader.setFilter(pairFilter);
+                        readPairs(reader, handler);
+                    }
+                    return null;
+                }));
+            }
+            parserPool.shutdown();
+            try {
+                for (Future<?> result : results) {
+                    result.get();
+                }
+            }
+            catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception)e.getCause() : e;
+            }
+            finally {
+                parserPool.shutdownNow();
+            }
+        }
+    }
+
+    private static void readPairs(RdbReader reader, PairHandler handler) throws Exception {
+        Entry e;
+        while ((e = reader.readNext()) != null) {
+            if (e.getType() == EntryType.KEY_VALUE_PAIR) {
+                handler.accept(reader.getCurrentDb(), (KeyValuePair)e);
+                e.completed();
             }
         }
     }
+
+    /**
+     * Pass every key value pair of the previous snapshot to the handler.
+     */
+    private void readPreviousFiles(PairHandler handler) throws Exception {
+        for (File file : options.getPreviousFiles()) {
+            readPairs(file, options.getEntryFilter(), handler);
+        }
+    }
+
+    /**
+     * Sort the keys of every input file into buckets by how hot they are and when they expire, then import
+     * the buckets in order, hottest first. The buckets of all the files are imported together.
+     */
+    private void importHotFirst() {
+        long startTime = System.currentTimeMillis();
+        List<HotFirstSorter> fileSorters = new ArrayList<>();
+        ExecutorService filePool = Executors.newFixedThreadPool(Math.min(options.getParallelFiles(), inputFiles.size()));
+        for (FileProgress progress : inputFiles) {
+            File file = progress.getFile();
+            int version;
+            try (RdbReader reader = new RdbReader(file)) {
+                version = reader.getVersion();
+            }
+            catch (Exception e) {
+                logError("Error reading %s: %s", file, e.getMessage());
+                continue;
+            }
+            HotFirstSorter sorter = new HotFirstSorter(file, version, options.getHotFirstExpiring());
+            fileSorters.add(sorter);
+            filePool.execute(() -> {
+                progress.started();
+                try {
+                    readPairs(file, filter, (db, kvp) -> {
+                        progress.keyRead();
+                        sorter.add(db, kvp);
+                    });
+                    sorter.finish();
+                    progress.addBytesParsed(file.length());
+                }
+                catch (Exception e) {
+                    logError("Error sorting %s: %s", file, e.getMessage());
+                }
+                finally {
+                    progress.finished();
+                }
+            });
+        }
+        filePool.shutdown();
+        try {
+            filePool.awaitTermination(7, TimeUnit.DAYS);
+            long weight = 0;
+            for (HotFirstSorter sorter : fileSorters) {
+                for (int bucket = 0; bucket < HotFirstSorter.BUCKETS; bucket++) {
+                    weight += sorter.getWeight(bucket);
+                }
+            }
+            this.totalWeight = weight;
+            this.sorters = fileSorters;
+            if (!options.isSilent()) {
+                System.out.printf("Keys sorted by priority in %,dms\n", System.currentTimeMillis() - startTime);
+            }
+            for (int bucket = 0; bucket < HotFirstSorter.BUCKETS; bucket++) {
+                List<FileProgress> bucketFiles = new ArrayList<>();
+                long keys = 0;
+                for (HotFirstSorter sorter : fileSorters) {
+                    if (sorter.getBucketFile(bucket) != null) {
+                        bucketFiles.add(new FileProgress(sorter.getBucketFile(bucket), false));
+                        keys += sorter.getKeys(bucket);
+                    }
+                }
+                if (bucketFiles.isEmpty()) {
+                    continue;
+                }
+                this.currentBucket = bucket;
+                if (options.isVerbose()) {
+                    System.out.printf("Importing priority bucket %d: %,d keys\n", bucket, keys);
+                }
+                parseFiles(bucketFiles);
+            }
+        }
+        catch (InterruptedException ignored) {
+        }
+        finally {
+            for (HotFirstSorter sorter : fileSorters) {
+                sorter.close();
+            }
+        }
+    }
+
+    /**
+     * Count a key as done towards the share of the traffic which has been imported.
+     */
+    private void keyDone(Entry e) {
+        if (sorters != null && e.getType() == EntryType.KEY_VALUE_PAIR) {
+            weightDone.addAndGet(HotFirstSorter.weightOf((KeyValuePair)e));
+        }
+    }
+
+    /**
+     * Fill the table of fingerprints from the previous snapshot, so that only the keys which have changed
+     * since are imported.
+     */
+    private boolean loadFingerprints() {
+        long startTime = System.currentTimeMillis();
+        long previousSize = 0;
+        for (File file : options.getPreviousFiles()) {
+            previousSize += file.length();
+        }
+        try {
+            // Assume an average of 64 bytes per key to size the table; it grows if this is too few
+            FingerprintTable table = new FingerprintTable(previousSize / 64, null);
+            this.fingerprints = table;
+            readPreviousFiles((db, kvp) -> table.put(kvp.keyHash(db), kvp.fingerprint()));
+        }
+        catch (Exception e) {
+            logError("Error reading previous snapshot %s: %s", options.getPreviousFiles(), e.getMessage());
+            return false;
+        }
+        if (!options.isSilent()) {
+            System.out.printf("Fingerprints of %,d keys of the previous snapshot loaded in %,dms\n", fingerprints.size(), System.currentTimeMillis() - startTime);
+        }
+        return true;
+    }
+
+    /**
+     * Delete the keys of the previous snapshot which are not in the new one. These are replayed like a DEL
+     * command from an AOF file.
+     */
+    private void deleteRemovedKeys() {
+        try {
+            readPreviousFiles((db, kvp) -> {
+                if (fingerprints.removedFromNew(kvp.keyHash(db))) {
+                    byte[] key = kvp.getKey().toByteArray();
+                    queue.put(new KeyCommands(db, ByteSlice.wrap(key), List.of(new AofCommand("DEL", List.of(key))), null));
+                    deleted.incrementAndGet();
+                }
+            });
+        }
+        catch (Exception e) {
+            logError("Error deleting keys removed since the previous snapshot %s: %s", options.getPreviousFiles(), e.getMessage());
+        }
+        finally {
+            fingerprints.close();
+        }
+    }
+
+    /**
+     * Whether to leave out a key when sampling. Keys left out are skipped before their values are decoded.
+     */
+    private boolean isSampledOut() {
+        return options.getSampleRate() < 1 && ThreadLocalRandom.current().nextDouble() >= options.getSampleRate();
+    }
+
+    /**
+     * Whether a key value pair is the same as in the previous snapshot, so need not be imported again.
+     */
+    private boolean isUnchanged(long db, KeyValuePair kvp) {
+        if (fingerprints == null || fingerprints.markSeen(kvp.keyHash(db), kvp.fingerprint()) != FingerprintTable.Change.UNCHANGED) {
+            return false;
+        }
+        unchanged.incrementAndGet();
+        keyDone(kvp);
+        return true;
+    }
+
+    private void readFromRedis() {
+        try (RedisSource source = new RedisSource(RedisSource.parseUris(options.getRedisUris()), options.isRedisCluster(),
+                options.getRedisScanCount(), options.getRedisWindow(), options.getRedisFetchMode(), queue, message -> logError("%s", message))) {
+            source.setFilter(filter);
+            this.redisSource = source;
+            source.run();
+        }
+        catch (Exception e) {
+            logError("Error reading from Redis %s: %s", options.getRedisUris(), e.getMessage());
+        }
+    }
+
+    private void replayAof() {
+        AofSource source = new AofSource(new File(options.getAofFileName()), options.getAofOffset(), options.isAofFollow(),
+                options.getAofCoalesceMillis(), queue, completed::get, message -> logError("%s", message));
+        source.setFilter(filter);
+        this.aofSource = source;
+        try {
+            source.run();
+        }
+        catch (InterruptedException ignored) {
+        }
+        catch (Exception e) {
+            logError("Error replaying %s: %s", options.getAofFileName(), e.getMessage());
+        }
+    }
+
+    private void parseFile(FileProgress progress) {
+        File inputFile = progress.getFile();
+        progress.started();
+        try {
+            if (JsonLinesReader.isJsonFile(inputFile)) {
+                parseJsonFile(progress, options.getParsers());
+            }
+            else if (options.getParsers() > 1 && !progress.isCompressed()) {
+                parseRdbFileInParallel(progress, options.getParsers());
+            }
+            else {
+                if (options.isVerbose() && progress.isCompressed()) {
+                    System.out.printf("Input file %s is %s compressed and will be decompressed as it is read\n", inputFile, Compression.detect(inputFile));
+                }
+                parseRdbFile(progress, options.getParsers());
+            }
+        }
+        catch (Exception e) {
+            logError("Error parsing %s: %s", inputFile, e.getMessage());
+        }
+        finally {
+            progress.finished();
+            if (!options.isSilent() && inputFiles.size() > 1 && inputFiles.contains(progress)) {
+                System.out.printf("Finished parsing %s in %,dms: %,d keys\n", inputFile, progress.getElapsedMillis(), progress.getKeys());
+            }
+        }
+    }
+
+    /**
+     * Parse the file on this thread. A compressed file cannot be split into ranges, but the passed number of
+     * parsers is used to decompress it if its format allows this to be done in parallel.
+     */
+    private void parseRdbFile(FileProgress progress, int parsers) throws Exception {
+        try (RdbReader reader = new RdbReader(RdbInput.open(progress.getFile(), parsers), true)) {
+            reader.setFilter(filter);
+            readEntries(reader, 0, progress);
+        }
+    }
+
+    private void readEntries(RdbReader reader, long startPosition, FileProgress progress) throws Exception {
+        long lastPosition = startPosition;
+        Entry e;
+        while ((e = reader.readNext()) != null) {
+            if (e.getType() == EntryType.KEY_VALUE_PAIR) {
+                progress.keyRead();
+            }
+            long position = reader.getPosition();
+            progress.addBytesParsed(position - lastPosition);
+            lastPosition = position;
+            if (e.getType() == EntryType.KEY_VALUE_PAIR && (isSampledOut() || isUnchanged(reader.getCurrentDb(), (KeyValuePair)e))) {
+                e.completed();
+                continue;
+            }
+            queue.put(e);
+        }
+    }
+
+    /**
+     * Parse the file with multiple parser threads, each reading a different byte range of the file. The ranges
+     * are much smaller than the file divided by the number of parsers, so the work balances across the parsers
+     * even if some parts of the file are more expensive to decode than others.
+     */
+    private void parseRdbFileInParallel(FileProgress progress, int parsers) throws Exception {
+        File file = progress.getFile();
+        try (MappedFile mappedFile = new MappedFile(file)) {
+            long startTime = System.currentTimeMillis();
+            RdbIndex index = RdbIndex.loadOrBuild(mappedFile, RdbIndex.DEFAULT_INTERVAL);
+            List<RdbIndex.Range> ranges = index.getRanges();
+            if (options.isVerbose()) {
+                System.out.printf("Index of %s loaded in %,dms: %,d ranges parsed by %d parsers\n",
+                        file, System.currentTimeMillis() - startTime, ranges.size(), parsers);
+            }
+            ExecutorService parserPool = Executors.newFixedThreadPool(Math.min(parsers, ranges.size()));
+            for (RdbIndex.Range range : ranges) {
+                parserPool.execute(() -> {
+                    try (RdbReader reader = new RdbReader(mappedFile, range, index.getVersion())) {
+                        reader.setFilter(filter);
+                        readEntries(reader, range.getStart(), progress);
+                    }
+                    catch (Exception e) {
+                        logError("Error parsing range %s of %s: %s", range, file, e.getMessage());
+                    }
+                });
+            }
+            parserPool.shutdown();
+            parserPool.awaitTermination(7, TimeUnit.DAYS);
+        }
+    }
     
+    /**
+     * Parse a file of newline delimited JSON. An uncompressed file is split into byte ranges on line
+     * boundaries which are parsed in parallel, like the ranges of an RDB file.
+     */
+    private void parseJsonFile(FileProgress progress, int parsers) throws Exception {
+        File file = progress.getFile();
+        if (progress.isCompressed() || parsers == 1) {
+            InputStream in = Compression.detect(file).decompress(new FileInputStream(file));
+            try (JsonLinesReader reader = new JsonLinesReader(in, file.getPath())) {
+                readJsonEntries(reader, progress);
+            }
+            return;
+        }
+        List<long[]> ranges = JsonLinesReader.split(file, JSON_RANGE_SIZE);
+        ExecutorService parserPool = Executors.newFixedThreadPool(Math.min(parsers, ranges.size()));
+        for (long[] range : ranges) {
+            parserPool.execute(() -> {
+                try (JsonLinesReader reader = JsonLinesReader.open(file, range[0], range[1])) {
+                    readJsonEntries(reader, progress);
+                }
+                catch (Exception e) {
+                    logError("Error parsing range [%,d-%,d) of %s: %s", range[0], range[1], file, e.getMessage());
+                }
+            });
+        }
+        parserPool.shutdown();
+        parserPool.awaitTermination(7, TimeUnit.DAYS);
+    }
+
+    private void readJsonEntries(JsonLinesReader reader, FileProgress progress) throws Exception {
+        reader.setFilter(filter);
+        long lastPosition = reader.getPosition();
+        long db = 0;
+        Entry e;
+        while ((e = reader.readNext()) != null) {
+            if (e.getType() == EntryType.KEY_VALUE_PAIR) {
+                progress.keyRead();
+            }
+            else if (e.getType() == EntryType.SELECT_DB) {
+                db = ((SelectDb)e).getId();
+            }
+            long position = reader.getPosition();
+            progress.addBytesParsed(position - lastPosition);
+            lastPosition = position;
+            if (e.getType() == EntryType.KEY_VALUE_PAIR && (isSampledOut() || isUnchanged(db, (KeyValuePair)e))) {
+                e.completed();
+                continue;
+            }
+            queue.put(e);
+        }
+        progress.addBytesParsed(reader.getPosition() - lastPosition);
+    }
+
     private void monitorProgress() throws InterruptedException {
         if (!options.isSilent()) {
-            System.out.printf("Import started from file: %s using %d threads.\n", options.getInputFileName(), this.threadsToUse);
+            if (options.getRedisUris() != null) {
+                System.out.printf("Import started from Redis %s using %d threads, reading values with %s.\n", options.getRedisUris(), this.threadsToUse, options.getRedisFetchMode());
+            }
+            else if (options.getAofFileName() != null) {
+                System.out.printf("Replay started from AOF %s at offset %,d using %d threads%s.\n", options.getAofFileName(), options.getAofOffset(),
+                        this.threadsToUse, options.isAofFollow() ? ", following new commands" : "");
+            }
+            else if (inputFiles.size() == 1) {
+                System.out.printf("Import started from file: %s using %d threads and %d parsers.\n", inputFiles.get(0).getFile(), this.threadsToUse, options.getParsers());
+            }
+            else {
+                System.out.printf("Import started from %d files, parsing up to %d at once, using %d threads and %d parsers per file.\n",
+                        inputFiles.size(), Math.min(inputFiles.size(), options.getParallelFiles()), this.threadsToUse, options.getParsers());
+            }
         }
         long startTime = System.currentTimeMillis();
         long lastTotalCount = 0;
         long totalCurrentRecords = 0;
+        RecordWriter innerWriter = writer instanceof CoalescingWriter ? ((CoalescingWriter)writer).getWriter() : writer;
+        RetryingWriter retrier = innerWriter instanceof RetryingWriter ? (RetryingWriter)innerWriter : null;
+        if (retrier != null) {
+            innerWriter = retrier.getWriter();
+        }
+        RateLimitingWriter rateLimiter = innerWriter instanceof RateLimitingWriter ? (RateLimitingWriter)innerWriter : null;
+        if (rateLimiter != null) {
+            innerWriter = rateLimiter.getWriter();
+        }
+        long lastRateRecords = 0;
+        long lastRateBytes = 0;
+        long lastRateWaitNanos = 0;
+        long lastMemoryWaitNanos = 0;
+        long lastTime = startTime;
+        long lastTranslateNanos = 0;
+        long lastWaitNanos = 0;
+        long lastBusyNanos = 0;
         while (activeThreads.get() > 0) {
             Thread.sleep(1000);
             long success = this.success.get();
@@ -327,14 +1210,127 @@ public class AerospikeImporter {
                 System.out.printf("%,dms: active threads: %d, queue %,d, records processed: %,d (%,d/%,d/%,d), throughput: {last second: %,d rps, overall: %,d rps}\n", 
                         elapsedMilliseconds, this.activeThreads.get(), this.queue.size(), totalCurrentRecords, success, ignored, failure,
                         recordsThisSecond, (totalCurrentRecords)*1000/elapsedMilliseconds);
+                // The estimated memory of the entries read and not yet written, which includes those past the queue
+                MemoryBudget budget = queue.getBudget();
+                long memoryWaited = budget.getWaitNanos();
+                System.out.printf("   entries in memory: %,dKB of %,dKB, reading waited %,dms\n", budget.getUsed() >> 10,
+                        budget.getLimit() >> 10, TimeUnit.NANOSECONDS.toMillis(memoryWaited - lastMemoryWaitNanos));
+                lastMemoryWaitNanos = memoryWaited;
+                if (filter.getFiltered() > 0) {
+                    System.out.printf("   keys filtered out: %,d\n", filter.getFiltered());
+                }
+                if (redisSource != null) {
+                    System.out.printf("   keys scanned: %,d\n", redisSource.getKeysScanned());
+                }
+                if (limiter != null) {
+                    System.out.printf("   adaptive concurrency: limit %,d, in flight %,d, p90 latency %.2fms (%.2fms without load)\n", limiter.getLimit(),
+                            limiter.getInFlight(), limiter.getP90Nanos() / 1e6, limiter.getBaselineNanos() / 1e6);
+                }
+                if (retrier != null && retrier.getRetries() > 0) {
+                    System.out.printf("   write retries: %,d (%,d succeeded, %,d gave up), waiting to retry: %,d\n", retrier.getRetries(),
+                            retrier.getRecovered(), retrier.getExhausted(), retrier.getWaiting());
+                }
+                if (rateLimiter != null) {
+                    // How close the last second came to the global caps, and how long the writing threads slept to keep under them
+                    long intervalMillis = Math.max(1, now - lastTime);
+                    long records = rateLimiter.getRecords();
+                    long bytes = rateLimiter.getBytes();
+                    long waited = rateLimiter.getWaitNanos();
+                    StringBuilder rates = new StringBuilder(String.format("%,d writes/s", (records - lastRateRecords) * 1000 / intervalMillis));
+                    if (rateLimiter.getRecordsPerSecondCap() > 0) {
+                        rates.append(String.format(" (%d%% of cap)", (records - lastRateRecords) * 1000 * 100 / intervalMillis / rateLimiter.getRecordsPerSecondCap()));
+                    }
+                    rates.append(String.format(", %,d bytes/s", (bytes - lastRateBytes) * 1000 / intervalMillis));
+                    if (rateLimiter.getBytesPerSecondCap() > 0) {
+                        rates.append(String.format(" (%d%% of cap)", (bytes - lastRateBytes) * 1000 * 100 / intervalMillis / rateLimiter.getBytesPerSecondCap()));
+                    }
+                    System.out.printf("   rate limit: %s, threads waited %,dms\n", rates, TimeUnit.NANOSECONDS.toMillis(waited - lastRateWaitNanos));
+                    lastRateRecords = records;
+                    lastRateBytes = bytes;
+                    lastRateWaitNanos = waited;
+                }
+                if (writer instanceof CoalescingWriter) {
+                    CoalescingWriter coalescer = (CoalescingWriter)writer;
+                    System.out.printf("   coalesced %,d parts into %,d writes, records held: %,d\n", coalescer.getPartsWritten(),
+                            coalescer.getWrites(), coalescer.getRecordsHeld());
+                }
+                if (innerWriter instanceof AsyncRecordWriter) {
+                    System.out.printf("   writes in flight: %,d\n", ((AsyncRecordWriter)innerWriter).getInFlight());
+                }
+                if (innerWriter instanceof BatchRecordWriter) {
+                    BatchRecordWriter batchWriter = (BatchRecordWriter)innerWriter;
+                    System.out.printf("   batches: %,d, average records per batch: %.1f\n", batchWriter.getBatches(),
+                            (double)batchWriter.getRecords() / Math.max(1, batchWriter.getBatches()));
+                }
+                if (innerWriter instanceof WriteStage) {
+                    // The share of each stage's thread time spent working, not counting translating threads waiting for the write queue
+                    WriteStage stage = (WriteStage)innerWriter;
+                    long intervalNanos = Math.max(1, TimeUnit.MILLISECONDS.toNanos(now - lastTime));
+                    long translating = translateNanos.sum();
+                    long waiting = stage.getWaitNanos();
+                    long busy = stage.getBusyNanos();
+                    System.out.printf("   stages: translate %d%% busy (%d threads), write queue %,d, write %d%% busy (%d threads)\n",
+                            Math.max(0, (translating - lastTranslateNanos) - (waiting - lastWaitNanos)) * 100 / (intervalNanos * threadsToUse),
+                            threadsToUse, stage.getQueueDepth(), (busy - lastBusyNanos) * 100 / (intervalNanos * stage.getThreads()), stage.getThreads());
+                    lastTranslateNanos = translating;
+                    lastWaitNanos = waiting;
+                    lastBusyNanos = busy;
+                }
+                if (innerWriter instanceof NodeRoutedWriter) {
+                    StringBuilder depths = new StringBuilder();
+                    for (Map.Entry<String, Integer> depth : ((NodeRoutedWriter)innerWriter).getQueueDepths().entrySet()) {
+                        depths.append(depths.length() == 0 ? "" : ", ").append(String.format("%s: %,d", depth.getKey(), depth.getValue()));
+                    }
+                    System.out.printf("   node queues: {%s}\n", depths);
+                }
+                if (sorters != null && totalWeight > 0) {
+                    System.out.printf("   priority bucket %d of %d, traffic-weighted keyspace imported: %d%%\n", currentBucket + 1, HotFirstSorter.BUCKETS,
+                            Math.min(100, weightDone.get() * 100 / totalWeight));
+                }
+                if (fingerprints != null) {
+                    System.out.printf("   keys unchanged since the previous snapshot: %,d, deleted: %,d\n", unchanged.get(), deleted.get());
+                }
+                if (aofSource != null) {
+                    System.out.printf("   AOF commands read: %,d, offset: %,d\n", aofSource.getCommandsRead(), aofSource.getPosition());
+                }
+                if (inputFiles.size() > 1) {
+                    for (FileProgress progress : inputFiles) {
+                        if (progress.isActive()) {
+                            System.out.printf("   %s\n", progress);
+                        }
+                    }
+                }
             }
             lastTotalCount = totalCurrentRecords;
+            lastTime = now;
         }
         this.executor.awaitTermination(7, TimeUnit.DAYS);
+        // Wait for any writes still in flight
+        this.writer.close();
         
         if (!options.isSilent()) {
-            System.out.printf("\nExecution completed in %,dms. %,d records imported successfully, %,d records failed.\n",
-                    (System.currentTimeMillis()-startTime), success.get(), failed.get());
+            System.out.printf("\nExecution completed in %,dms. %,d records imported successfully, %,d records failed, %,d keys filtered out.\n",
+                    (System.currentTimeMillis()-startTime), success.get(), failed.get(), filter.getFiltered());
+            if (sorters != null && totalWeight > 0) {
+                System.out.printf("Keys were imported hottest first, %d%% of the traffic-weighted keyspace was imported.\n", Math.min(100, weightDone.get() * 100 / totalWeight));
+            }
+            if (fingerprints != null) {
+                System.out.printf("%,d keys unchanged since the previous snapshot were skipped and %,d keys no longer in it were deleted.\n", unchanged.get(), deleted.get());
+            }
+            if (retrier != null && retrier.getRetries() > 0) {
+                System.out.printf("Writes were retried %,d times: %,d writes succeeded on a retry and %,d still failed after %d retries.\n",
+                        retrier.getRetries(), retrier.getRecovered(), retrier.getExhausted(), options.getRetries());
+            }
+            if (limiter != null) {
+                System.out.printf("Adaptive concurrency settled at a limit of %,d entries in flight, after %,d increases and %,d decreases. "
+                        + "Pass --adaptiveInitial %d to start from there.\n", limiter.getLimit(), limiter.getIncreases(), limiter.getDecreases(), limiter.getLimit());
+            }
+            if (aofSource != null) {
+                System.out.printf("AOF replayed up to offset %,d. Pass --aofOffset %d to carry on from here.\n", aofSource.getPosition(), aofSource.getPosition());
+            }
+            if (dryRun != null) {
+                dryRun.print(System.out, System.currentTimeMillis() - startTime);
+            }
             if (this.errorFile != null && failed.get() > 0) {
                 System.out.printf("Errors appear in %s\n", errorFile.getAbsolutePath());
             }
@@ -3,6 +3,15 @@ package com.aerospike.migration.importer;
 import java.io.File;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -13,17 +22,64 @@ import org.apache.commons.cli.UnrecognizedOptionException;
 
 import com.aerospike.client.policy.AuthMode;
 import com.aerospike.client.policy.RecordExistsAction;
+import com.aerospike.migration.importer.json.JsonLinesReader;
+import com.aerospike.migration.importer.rdb.EntryFilter;
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
 
 public class AerospikeImporterOptions {
+    private static final Set<String> VALUE_TYPE_NAMES = Set.of("string", "list", "set", "zset", "hash", "stream");
     private ClusterConfig cluster = null;
     private boolean silent = false;
     private int threads = 1;
     private String mappingFileName;
     private String errorFileName;
     private String inputFileName;
+    private List<File> inputFiles;
+    private String previousFileName;
+    private List<File> previousFiles;
+    private String redisUris;
+    private boolean redisCluster;
+    private int redisScanCount;
+    private int redisWindow;
+    private RedisSource.FetchMode redisFetchMode;
+    private String aofFileName;
+    private long aofOffset;
+    private boolean aofFollow;
+    private long aofCoalesceMillis;
+    private String includeKeys;
+    private String excludeKeys;
+    private Set<Long> databases;
+    private Set<String> valueTypes;
+    private long skipExpiringWithin;
+    private boolean hotFirst;
+    private boolean dryRun;
+    private boolean async;
+    private int eventLoops;
+    private int maxInFlight;
+    private int batchSize;
+    private boolean partitionAware;
+    private boolean adaptiveConcurrency;
+    private int adaptiveInitial;
+    private int adaptiveMax;
+    private double adaptiveLatencyTolerance;
+    private int writeThreads;
+    private boolean virtualThreads;
+    private RingBuffer.WaitStrategy waitStrategy;
+    private int workerBatch;
+    private long coalesceMillis;
+    private int coalesceMaxOps;
+    private long coalesceMaxMemoryMb;
+    private long recordsPerSecond;
+    private long bytesPerSecond;
+    private int retries;
+    private long retryBackoffMillis;
+    private long retryBackoffMaxMillis;
+    private int nodeThreads;
+    private long batchLingerMicros;
+    private double sampleRate;
+    private long hotFirstExpiring;
     private String clusterName;
     private String host;
     private String userName;
@@ -42,6 +98,10 @@ public class AerospikeImporterOptions {
     private boolean ignoreMissing = false;
     
     private int maxQueueDepth;
+    private long queueMemoryMb;
+    private int parsers;
+    private int parallelFiles;
+    private int chunkSize;
     
     static class ParseException extends RuntimeException {
         private static final long serialVersionUID = 5652947902453765251L;
@@ -136,7 +196,13 @@ public class AerospikeImporterOptions {
         options.addOption("m", "mappingFile", true, "YAML file with mappings in it. Every string key in Redis must be mapped to a (namespace, set, id) tuple in Aerospike. This file specifies "
                 + "these mappings using regular expressions. This file is required");
         options.addOption("t", "threads", true, "Number of threads to use. Use 0 to use 1 thread per core. (Default: 0)");
-        options.addOption("i", "inputFile", true, "Path to a RDB file to import. ");
+        options.addOption("i", "inputFile", true, "Path to a RDB file to import. The file may be compressed with gzip, zstd or lz4, in which case it is decompressed "
+                + "as it is read. To import several files, such as the dumps of each shard of a Redis cluster, pass a comma separated list of files, "
+                + "a directory (all files in it are imported) or a glob such as 'dumps/*.rdb'. Files named *.json, *.jsonl or *.ndjson are read as newline "
+                + "delimited JSON with one object per key, as written by redis-dump.");
+        options.addOption("pv", "previousFile", true, "Path to the RDB file, or files, of an earlier snapshot which has already been imported, given in the same "
+                + "way as --inputFile. Only keys which were added or changed since that snapshot are imported, and keys which have gone are deleted "
+                + "from Aerospike. Keys are compared by a fingerprint of their type, encoded value and expiry time.");
         options.addOption("ef", "errorFile", true, "Name of file to write errors to, in addtion to stdout");
         options.addOption("rea", "recordExistsAction", true, "Action to take if the record already exists in Aerospike. Values include:\n"
                 + "* UPDATE (default) - records are upserted, merging in with existing records.\n"
@@ -169,6 +235,95 @@ public class AerospikeImporterOptions {
         options.addOption("V", "verbose", false, "Turn on verbose logging, especially for cluster details and TLS connections");
         options.addOption("D", "debug", false, "Turn on debug mode. This will output a lot of information and automatically turn on verbose mode and turn silent mode off");
         options.addOption("qd", "queueDepth", true, "Specify the maximum queue depth to process from file. (Default: 5000)");
+        options.addOption("qm", "queueMemory", true, "The most memory in MB the entries which have been read but not yet written can take, "
+                + "estimated from their size. Reading waits when it is reached, but an entry bigger than this is still imported on its own. "
+                + "Use 0 for a quarter of the maximum heap. (Default: 0)");
+        options.addOption("ws", "waitStrategy", true, "How threads wait for the queue of entries between the parsers and the workers: "
+                + "SPIN, YIELD or PARK. SPIN is fastest but keeps a core busy for each waiting thread. (Default: PARK)");
+        options.addOption("wb", "workerBatch", true, "The most entries a worker thread takes from the queue at once. (Default: 16)");
+        options.addOption("p", "parsers", true, "Number of threads used to parse the RDB file. If more than 1, the file is split into byte ranges "
+                + "which are parsed in parallel. Entry boundaries are found with a fast pre-scan of the file, which is saved next to the file as "
+                + "<inputFile>.idx and reused on later runs. A compressed file cannot be split, but a zstd file made of multiple frames "
+                + "is decompressed with this many threads. (Default: 1)");
+        options.addOption("r", "redis", true, "Read the data from live Redis servers instead of an RDB file. A comma separated list of Redis URIs, "
+                + "for example redis://[:password@]host[:port][/database], or just host:port. The keys of each server are scanned in parallel.");
+        options.addOption("rc", "redisCluster", false, "The --redis servers are seed nodes of a Redis cluster. Every master in the cluster is scanned in parallel.");
+        options.addOption("rsc", "redisScanCount", true, "The COUNT hint passed to each Redis SCAN. (Default: 1000)");
+        options.addOption("rw", "redisWindow", true, "The maximum number of keys per Redis node whose values are being read at once. The reads are pipelined "
+                + "on one connection per node. (Default: 1000)");
+        options.addOption("rf", "redisFetch", true, "How values are read from Redis. Values include:\n"
+                + "* DUMP (default) - read each value in RDB format with one DUMP command.\n"
+                + "* TYPE - read the type of each key then the value with the command for that type, for servers where DUMP is disabled.");
+        options.addOption("aof", "aofFile", true, "Replay the commands in a Redis append only file, to catch up with the changes made since an RDB file was "
+                + "imported. Either an AOF file or the directory of a multi-part AOF (appenddirname) can be passed. Any RDB preamble or base file "
+                + "is imported first, unless --aofOffset is set. The offset reached is printed at the end, so a later run can carry on from it.");
+        options.addOption("ao", "aofOffset", true, "The byte offset to start replaying the --aofFile from, skipping any RDB preamble or base file. "
+                + "For a multi-part AOF the offset counts through the incremental files in order. (Default: 0)");
+        options.addOption("af", "aofFollow", false, "Keep replaying commands as they are appended to the --aofFile, rather than stopping at the end of it.");
+        options.addOption("acw", "aofCoalesceWindow", true, "How long in milliseconds to hold replayed commands before writing them, so later commands "
+                + "for the same key can be merged with them. (Default: 50)");
+        options.addOption("pf", "parallelFiles", true, "When importing several files, the maximum number of files to parse at once. Each file is parsed "
+                + "with --parsers threads. (Default: 4)");
+        options.addOption("cs", "chunkSize", true, "Maximum number of elements of a list or set, or fields of a hash, to write to Aerospike in one operation. "
+                + "Larger collections are decoded incrementally and written in several operations, each appending to the record. (Default: 10000)");
+        options.addOption("ik", "includeKeys", true, "Only import keys which match this regular expression in full. Keys are checked as soon as they "
+                + "are read, and the values of keys which are filtered out are skipped without being decoded.");
+        options.addOption("ek", "excludeKeys", true, "Do not import keys which match this regular expression in full, such as session or cache keys.");
+        options.addOption("db", "databases", true, "Comma separated list of the Redis databases to import. (Default: all)");
+        options.addOption("vt", "valueTypes", true, "Comma separated list of the Redis types to import, from string, list, set, zset, hash and stream. (Default: all)");
+        options.addOption("se", "skipExpiringWithin", true, "Do not import keys which expire within this many seconds. Keys which have already expired "
+                + "are never imported. (Default: 0)");
+        options.addOption("hf", "hotFirst", false, "Import the keys most likely to be read first, using the LFU or LRU information in the RDB file, "
+                + "followed by keys which expire soon and then the remaining keys. The keys are first sorted into temporary RDB files by priority, "
+                + "which need as much space in the temporary directory as the input files.");
+        options.addOption("hfe", "hotFirstExpiring", true, "With --hotFirst, keys which expire within this many seconds are imported before keys "
+                + "which are not hot. (Default: 3600)");
+        options.addOption("as", "async", false, "Write to Aerospike with asynchronous commands on the client's event loops rather than with one "
+                + "blocking command per thread. The --threads then only translate the entries, so a few threads can keep many writes in flight.");
+        options.addOption("el", "eventLoops", true, "With --async, the number of event loops. Use 0 for 1 per core. (Default: 0)");
+        options.addOption("mif", "maxInFlight", true, "With --async, the maximum number of writes in flight at once. Threads wait for writes to "
+                + "complete when this is reached. With --virtualThreads, the maximum number of entries being imported at once. (Default: 1000)");
+        options.addOption("vth", "virtualThreads", false, "Import each entry on its own virtual thread, up to --maxInFlight at once, rather than "
+                + "with a pool of --threads platform threads. Needs Java 21 or later. Cannot be used with --async.");
+        options.addOption("bs", "batchSize", true, "Write records in batches of up to this many records with one batch command, rather than "
+                + "one command per record. Best for many small records. Cannot be used with --async. (Default: 1, no batching)");
+        options.addOption("bl", "batchLinger", true, "With --batchSize, the longest in microseconds a record waits for its batch to fill "
+                + "before the batch is sent anyway. (Default: 1000)");
+        options.addOption("wt", "writeThreads", true, "Write to Aerospike on this many threads of their own, fed by a queue of up to --queueDepth "
+                + "writes, so the --threads only translate entries. The progress shows how busy each stage is. Use 0 for the --threads to "
+                + "write the entries they translate. Cannot be used with --async or --partitionAware. (Default: 0)");
+        options.addOption("pa", "partitionAware", false, "Queue the writes for each Aerospike node separately, with threads dedicated to each "
+                + "node, so a slow node does not hold up the others and batches only go to one node. Cannot be used with --async.");
+        options.addOption("nt", "nodeThreads", true, "With --partitionAware, the number of threads writing to each node. (Default: 4)");
+        options.addOption("cw", "coalesceWindow", true, "How long in milliseconds to hold the writes for an Aerospike record, so the writes of "
+                + "other Redis keys which map to the same record are merged into one. Use 0 to write each key on its own. (Default: 0)");
+        options.addOption("cmo", "coalesceMaxOps", true, "With --coalesceWindow, the number of operations for a record which has it written "
+                + "without waiting for the window. (Default: 100)");
+        options.addOption("cmm", "coalesceMaxMemory", true, "With --coalesceWindow, the most memory in MB the held writes can take before "
+                + "the oldest are written. (Default: 64)");
+        options.addOption("rps", "recordsPerSecond", true, "The most writes per second to make to Aerospike, to protect a cluster serving "
+                + "other traffic. Each write counts, including each chunk of a large collection. Caps for namespaces and sets can be given "
+                + "in the mapping file. Use 0 for no cap. (Default: 0)");
+        options.addOption("bps", "bytesPerSecond", true, "The most bytes of bin names and values per second to write to Aerospike. "
+                + "Use 0 for no cap. (Default: 0)");
+        options.addOption("rt", "retries", true, "The most times to retry a write which failed for a reason which is likely to pass, such as "
+                + "a timeout, KEY_BUSY, DEVICE_OVERLOAD or partitions being unavailable while the cluster changes. Retries wait on a delay "
+                + "queue without holding up the thread which hit the error. Use 0 to fail the record straight away. (Default: 3)");
+        options.addOption("rb", "retryBackoff", true, "The longest wait in milliseconds before the first retry of a write, doubling for "
+                + "each retry after it. Each wait is a random time up to this. (Default: 10)");
+        options.addOption("rbm", "retryBackoffMax", true, "The longest wait in milliseconds before any retry of a write. (Default: 1000)");
+        options.addOption("ac", "adaptiveConcurrency", false, "Adjust the number of entries being imported at once while importing: cut it when "
+                + "the server reports overload or write latency grows, and raise it slowly otherwise. It can never be more than --threads with "
+                + "blocking writes, or --maxInFlight with --virtualThreads, so raise those to give it room. The limit settled on is reported.");
+        options.addOption("aci", "adaptiveInitial", true, "With --adaptiveConcurrency, the number of entries in flight to start with. (Default: 16)");
+        options.addOption("acm", "adaptiveMax", true, "With --adaptiveConcurrency, the most entries in flight to allow. (Default: 1000)");
+        options.addOption("act", "adaptiveLatencyTolerance", true, "With --adaptiveConcurrency, how many times the latency without load "
+                + "the 90th percentile latency can grow to before the number in flight is cut. (Default: 2.0)");
+        options.addOption("dr", "dryRun", false, "Parse and translate the keys without connecting to Aerospike or writing anything, then report the keys "
+                + "matched by each mapping, the keys with no mapping, the mix of Redis types, the number and estimated size of the records in each "
+                + "namespace and set, the largest records and the translation throughput.");
+        options.addOption("sm", "sample", true, "With --dryRun, translate only this fraction of the keys, chosen at random, such as 0.01 for 1%. "
+                + "The keys left out are skipped without decoding their values. (Default: 1)");
         options.addOption("im", "ignoreMissing", false, "If a record in Redis has a key which does not match any of the mapping specs, silently ignore this record instead of flagging an error.");
         return options;
     }
@@ -197,6 +352,60 @@ public class AerospikeImporterOptions {
         }
     }
     
+    /**
+     * Turn the inputFile option into the list of files to import. Each comma separated item can be a file,
+     * a directory whose files are all imported, or a glob matching file names in a directory. Index
+     * sidecar files are never imported.
+     */
+    private List<File> resolveInputFiles(String inputFileName) {
+        List<File> files = new ArrayList<>();
+        if (inputFileName == null) {
+            return files;
+        }
+        for (String item : inputFileName.split(",")) {
+            item = item.trim();
+            if (item.isEmpty()) {
+                continue;
+            }
+            File file = new File(item);
+            File[] matches;
+            if (file.isDirectory()) {
+                matches = file.listFiles(File::isFile);
+            }
+            else if (item.matches(".*[*?\\[{].*")) {
+                File dir = file.getParentFile() == null ? new File(".") : file.getParentFile();
+                PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + file.getName());
+                matches = dir.listFiles(candidate -> candidate.isFile() && matcher.matches(Paths.get(candidate.getName())));
+            }
+            else {
+                files.add(file);
+                continue;
+            }
+            if (matches != null) {
+                Arrays.sort(matches);
+                for (File match : matches) {
+                    if (!match.getName().endsWith(".idx")) {
+                        files.add(match);
+                    }
+                }
+            }
+        }
+        return files;
+    }
+    
+    private static <T> Set<T> parseList(String value, Function<String, T> parser) {
+        if (value == null) {
+            return null;
+        }
+        Set<T> result = new HashSet<>();
+        for (String item : value.split(",")) {
+            if (!item.isBlank()) {
+                result.add(parser.apply(item.trim()));
+            }
+        }
+        return result;
+    }
+    
     private boolean isValidFile(String name) {
         File file = new File(name);
         return file.isFile() && file.canRead();
@@ -213,16 +422,109 @@ public class AerospikeImporterOptions {
         cluster.setUserName(getUserName());
         cluster.setUseServicesAlternate(isServicesAlternate());
         cluster.setTls(getTlsOptions());
-        if (cluster.getHostName() != null && !cluster.getHostName().isEmpty()) {
+        if ((cluster.getHostName() != null && !cluster.getHostName().isEmpty()) || this.dryRun) {
             this.cluster = cluster;
             if (this.threads < 0) {
                 System.out.println("threads must be >= 0, not " + this.threads);
             }
+            else if (this.parsers < 1) {
+                System.out.println("parsers must be >= 1, not " + this.parsers);
+            }
+            else if (this.queueMemoryMb < 0) {
+                System.out.println("queueMemory must be >= 0, not " + this.queueMemoryMb);
+            }
+            else if (this.chunkSize < 1) {
+                System.out.println("chunkSize must be >= 1, not " + this.chunkSize);
+            }
             else if (this.mappingFileName == null ) {
                 System.out.println("Mapping file must be provided");
             }
-            else if (!isValidFile(this.inputFileName)) {
-                System.out.println("Input file (*.rdb) must exist and be readable");
+            else if (this.parallelFiles < 1) {
+                System.out.println("parallelFiles must be >= 1, not " + this.parallelFiles);
+            }
+            else if ((this.redisUris != null ? 1 : 0) + (this.inputFileName != null ? 1 : 0) + (this.aofFileName != null ? 1 : 0) > 1) {
+                System.out.println("Only one of an input file, a Redis server and an AOF file can be specified");
+            }
+            else if (this.redisUris != null && (this.redisScanCount < 1 || this.redisWindow < 1)) {
+                System.out.println("redisScanCount and redisWindow must be >= 1");
+            }
+            else if (this.skipExpiringWithin < 0) {
+                System.out.println("skipExpiringWithin must be >= 0, not " + this.skipExpiringWithin);
+            }
+            else if (this.valueTypes != null && !VALUE_TYPE_NAMES.containsAll(this.valueTypes)) {
+                System.out.println("valueTypes must be from " + VALUE_TYPE_NAMES + ", not " + this.valueTypes);
+            }
+            else if (this.aofFileName != null && !new File(this.aofFileName).exists()) {
+                System.out.println("AOF file or directory " + this.aofFileName + " does not exist");
+            }
+            else if (this.aofFileName != null && (this.aofOffset < 0 || this.aofCoalesceMillis < 0)) {
+                System.out.println("aofOffset and aofCoalesceWindow must be >= 0");
+            }
+            else if (this.redisUris == null && this.aofFileName == null && this.inputFiles.isEmpty()) {
+                System.out.println("Input file (*.rdb), Redis server or AOF file must be specified and match at least one file");
+            }
+            else if (!this.inputFiles.stream().allMatch(file -> isValidFile(file.getPath()))) {
+                System.out.println("Input files (*.rdb) must exist and be readable");
+            }
+            else if (this.hotFirst && (this.inputFiles.isEmpty() || this.inputFiles.stream().anyMatch(JsonLinesReader::isJsonFile))) {
+                System.out.println("hotFirst can only be used with RDB input files");
+            }
+            else if (this.eventLoops < 0 || this.maxInFlight < 1) {
+                System.out.println("eventLoops must be >= 0 and maxInFlight >= 1");
+            }
+            else if (this.batchSize < 1 || this.batchLingerMicros < 0) {
+                System.out.println("batchSize must be >= 1 and batchLinger >= 0");
+            }
+            else if (this.batchSize > 1 && this.async) {
+                System.out.println("batchSize cannot be used with async");
+            }
+            else if (this.virtualThreads && !VirtualThreads.isSupported()) {
+                System.out.println("virtualThreads needs Java 21 or later");
+            }
+            else if (this.virtualThreads && this.async) {
+                System.out.println("virtualThreads cannot be used with async");
+            }
+            else if (this.adaptiveInitial < 1 || this.adaptiveMax < this.adaptiveInitial || this.adaptiveLatencyTolerance <= 1) {
+                System.out.println("adaptiveInitial must be >= 1, adaptiveMax >= adaptiveInitial and adaptiveLatencyTolerance > 1");
+            }
+            else if (this.writeThreads < 0) {
+                System.out.println("writeThreads must be >= 0");
+            }
+            else if (this.writeThreads > 0 && (this.async || this.partitionAware)) {
+                System.out.println("writeThreads cannot be used with async or partitionAware");
+            }
+            else if (this.partitionAware && this.async) {
+                System.out.println("partitionAware cannot be used with async");
+            }
+            else if (this.workerBatch < 1) {
+                System.out.println("workerBatch must be >= 1");
+            }
+            else if (this.nodeThreads < 1) {
+                System.out.println("nodeThreads must be >= 1");
+            }
+            else if (this.coalesceMillis < 0 || this.coalesceMaxOps < 1 || this.coalesceMaxMemoryMb < 1) {
+                System.out.println("coalesceWindow must be >= 0, and coalesceMaxOps and coalesceMaxMemory >= 1");
+            }
+            else if (this.recordsPerSecond < 0 || this.bytesPerSecond < 0) {
+                System.out.println("recordsPerSecond and bytesPerSecond must be >= 0");
+            }
+            else if (this.retries < 0 || this.retryBackoffMillis < 0 || this.retryBackoffMaxMillis < this.retryBackoffMillis) {
+                System.out.println("retries and retryBackoff must be >= 0, and retryBackoffMax >= retryBackoff");
+            }
+            else if (this.sampleRate <= 0 || this.sampleRate > 1) {
+                System.out.println("sample must be > 0 and <= 1, not " + this.sampleRate);
+            }
+            else if (this.sampleRate < 1 && !this.dryRun) {
+                System.out.println("sample can only be used with dryRun");
+            }
+            else if (this.hotFirstExpiring < 0) {
+                System.out.println("hotFirstExpiring must be >= 0, not " + this.hotFirstExpiring);
+            }
+            else if (this.previousFileName != null && (this.inputFiles.isEmpty() || this.previousFiles.isEmpty())) {
+                System.out.println("previousFile must match at least one file and can only be used with an input file");
+            }
+            else if (!this.previousFiles.stream().allMatch(file -> isValidFile(file.getPath()) && !JsonLinesReader.isJsonFile(file))) {
+                System.out.println("Previous files (*.rdb) must exist and be readable RDB files");
             }
             else {
                 valid = validateMappingFile();
@@ -255,6 +557,50 @@ public class AerospikeImporterOptions {
         this.silent = cl.hasOption("quiet");
         this.threads = Integer.valueOf(cl.getOptionValue("threads", "0"));
         this.inputFileName = cl.getOptionValue("inputFile");
+        this.inputFiles = resolveInputFiles(this.inputFileName);
+        this.previousFileName = cl.getOptionValue("previousFile");
+        this.previousFiles = resolveInputFiles(this.previousFileName);
+        this.redisUris = cl.getOptionValue("redis");
+        this.redisCluster = cl.hasOption("redisCluster");
+        this.redisScanCount = Integer.valueOf(cl.getOptionValue("redisScanCount", "1000"));
+        this.redisWindow = Integer.valueOf(cl.getOptionValue("redisWindow", "1000"));
+        this.redisFetchMode = RedisSource.FetchMode.valueOf(cl.getOptionValue("redisFetch", "DUMP").toUpperCase());
+        this.aofFileName = cl.getOptionValue("aofFile");
+        this.aofOffset = Long.valueOf(cl.getOptionValue("aofOffset", "0"));
+        this.aofFollow = cl.hasOption("aofFollow");
+        this.aofCoalesceMillis = Long.valueOf(cl.getOptionValue("aofCoalesceWindow", "50"));
+        this.includeKeys = cl.getOptionValue("includeKeys");
+        this.excludeKeys = cl.getOptionValue("excludeKeys");
+        this.databases = parseList(cl.getOptionValue("databases"), Long::valueOf);
+        this.valueTypes = parseList(cl.getOptionValue("valueTypes"), String::toLowerCase);
+        this.skipExpiringWithin = Long.valueOf(cl.getOptionValue("skipExpiringWithin", "0"));
+        this.hotFirst = cl.hasOption("hotFirst");
+        this.dryRun = cl.hasOption("dryRun");
+        this.async = cl.hasOption("async");
+        this.eventLoops = Integer.valueOf(cl.getOptionValue("eventLoops", "0"));
+        this.maxInFlight = Integer.valueOf(cl.getOptionValue("maxInFlight", "1000"));
+        this.virtualThreads = cl.hasOption("virtualThreads");
+        this.batchSize = Integer.valueOf(cl.getOptionValue("batchSize", "1"));
+        this.batchLingerMicros = Long.valueOf(cl.getOptionValue("batchLinger", "1000"));
+        this.partitionAware = cl.hasOption("partitionAware");
+        this.adaptiveConcurrency = cl.hasOption("adaptiveConcurrency");
+        this.adaptiveInitial = Integer.valueOf(cl.getOptionValue("adaptiveInitial", "16"));
+        this.adaptiveMax = Integer.valueOf(cl.getOptionValue("adaptiveMax", "1000"));
+        this.adaptiveLatencyTolerance = Double.valueOf(cl.getOptionValue("adaptiveLatencyTolerance", "2.0"));
+        this.writeThreads = Integer.valueOf(cl.getOptionValue("writeThreads", "0"));
+        this.nodeThreads = Integer.valueOf(cl.getOptionValue("nodeThreads", "4"));
+        this.waitStrategy = RingBuffer.WaitStrategy.valueOf(cl.getOptionValue("waitStrategy", "PARK").toUpperCase());
+        this.workerBatch = Integer.valueOf(cl.getOptionValue("workerBatch", "16"));
+        this.coalesceMillis = Long.valueOf(cl.getOptionValue("coalesceWindow", "0"));
+        this.coalesceMaxOps = Integer.valueOf(cl.getOptionValue("coalesceMaxOps", "100"));
+        this.coalesceMaxMemoryMb = Long.valueOf(cl.getOptionValue("coalesceMaxMemory", "64"));
+        this.recordsPerSecond = Long.valueOf(cl.getOptionValue("recordsPerSecond", "0"));
+        this.bytesPerSecond = Long.valueOf(cl.getOptionValue("bytesPerSecond", "0"));
+        this.retries = Integer.valueOf(cl.getOptionValue("retries", "3"));
+        this.retryBackoffMillis = Long.valueOf(cl.getOptionValue("retryBackoff", "10"));
+        this.retryBackoffMaxMillis = Long.valueOf(cl.getOptionValue("retryBackoffMax", "1000"));
+        this.sampleRate = Double.valueOf(cl.getOptionValue("sample", "1"));
+        this.hotFirstExpiring = Long.valueOf(cl.getOptionValue("hotFirstExpiring", "3600"));
         this.mappingFileName = cl.getOptionValue("mappingFile");
         this.errorFileName = cl.getOptionValue("errorFile");
         this.host = cl.getOptionValue("host");
@@ -278,6 +624,10 @@ public class AerospikeImporterOptions {
             this.verbose = false;
         }
         this.maxQueueDepth = Integer.valueOf(cl.getOptionValue("queueDepth", "5000"));
+        this.queueMemoryMb = Long.valueOf(cl.getOptionValue("queueMemory", "0"));
+        this.parsers = Integer.valueOf(cl.getOptionValue("parsers", "1"));
+        this.parallelFiles = Integer.valueOf(cl.getOptionValue("parallelFiles", "4"));
+        this.chunkSize = Integer.valueOf(cl.getOptionValue("chunkSize", "10000"));
         this.validate(options, cl);
     }
 
@@ -305,6 +655,175 @@ public class AerospikeImporterOptions {
         return inputFileName;
     }
 
+    public List<File> getInputFiles() {
+        return inputFiles;
+    }
+
+    public List<File> getPreviousFiles() {
+        return previousFiles;
+    }
+
+    public String getRedisUris() {
+        return redisUris;
+    }
+
+    public boolean isRedisCluster() {
+        return redisCluster;
+    }
+
+    public int getRedisScanCount() {
+        return redisScanCount;
+    }
+
+    public int getRedisWindow() {
+        return redisWindow;
+    }
+
+    public RedisSource.FetchMode getRedisFetchMode() {
+        return redisFetchMode;
+    }
+
+    public String getAofFileName() {
+        return aofFileName;
+    }
+
+    public long getAofOffset() {
+        return aofOffset;
+    }
+
+    public boolean isAofFollow() {
+        return aofFollow;
+    }
+
+    public long getAofCoalesceMillis() {
+        return aofCoalesceMillis;
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public int getEventLoops() {
+        return eventLoops;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public long getBatchLingerMicros() {
+        return batchLingerMicros;
+    }
+
+    public int getWriteThreads() {
+        return writeThreads;
+    }
+
+    public boolean isAdaptiveConcurrency() {
+        return adaptiveConcurrency;
+    }
+
+    public int getAdaptiveInitial() {
+        return adaptiveInitial;
+    }
+
+    public int getAdaptiveMax() {
+        return adaptiveMax;
+    }
+
+    public double getAdaptiveLatencyTolerance() {
+        return adaptiveLatencyTolerance;
+    }
+
+    public boolean isPartitionAware() {
+        return partitionAware;
+    }
+
+    public int getNodeThreads() {
+        return nodeThreads;
+    }
+
+    public long getCoalesceMillis() {
+        return coalesceMillis;
+    }
+
+    public int getCoalesceMaxOps() {
+        return coalesceMaxOps;
+    }
+
+    public long getCoalesceMaxMemoryMb() {
+        return coalesceMaxMemoryMb;
+    }
+
+    public long getRecordsPerSecond() {
+        return recordsPerSecond;
+    }
+
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    public long getRetryBackoffMillis() {
+        return retryBackoffMillis;
+    }
+
+    public long getRetryBackoffMaxMillis() {
+        return retryBackoffMaxMillis;
+    }
+
+    public RingBuffer.WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    public int getWorkerBatch() {
+        return workerBatch;
+    }
+
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public boolean isHotFirst() {
+        return hotFirst;
+    }
+
+    public long getHotFirstExpiring() {
+        return hotFirstExpiring;
+    }
+
+    /**
+     * The filter for the entries to import, built from the filtering options. Keys without a mapping are
+     * filtered out too if they are to be ignored.
+     */
+    public EntryFilter getEntryFilter() {
+        EntryFilter filter = new EntryFilter()
+                .include(includeKeys)
+                .exclude(excludeKeys)
+                .databases(databases)
+                .typeNames(valueTypes)
+                .expiringWithin(skipExpiringWithin);
+        if (ignoreMissing) {
+            filter.keyPredicate(key -> mappingSpecs.hasMappingFor(key.replaceAll("[{}]", "")));
+        }
+        return filter;
+    }
+
     public String getClusterName() {
         return clusterName;
     }
@@ -360,6 +879,25 @@ public class AerospikeImporterOptions {
     public int getMaxQueueDepth() {
         return maxQueueDepth;
     }
+
+    /**
+     * The most memory in bytes the entries read but not yet written can take.
+     */
+    public long getQueueMemory() {
+        return queueMemoryMb > 0 ? queueMemoryMb << 20 : Runtime.getRuntime().maxMemory() / 4;
+    }
+    
+    public int getParsers() {
+        return parsers;
+    }
+    
+    public int getParallelFiles() {
+        return parallelFiles;
+    }
+    
+    public int getChunkSize() {
+        return chunkSize;
+    }
     
     public boolean isIgnoreMissing() {
         return ignoreMissing;
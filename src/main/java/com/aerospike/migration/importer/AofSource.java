@@ -0,0 +1,431 @@
+package com.aerospike.migration.importer;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import com.aerospike.migration.importer.aof.AofCommand;
+import com.aerospike.migration.importer.aof.AofManifest;
+import com.aerospike.migration.importer.aof.AofReader;
+import com.aerospike.migration.importer.aof.KeyCommands;
+import com.aerospike.migration.importer.rdb.ByteSlice;
+import com.aerospike.migration.importer.rdb.Entry;
+import com.aerospike.migration.importer.rdb.EntryFilter;
+import com.aerospike.migration.importer.rdb.RdbReader;
+import com.aerospike.migration.importer.rdb.ValueType;
+
+/**
+ * Replays the commands in a Redis append only file, to catch up with the changes made since an RDB file
+ * was imported. Either a single AOF file or the directory of a multi-part AOF (Redis 7 and later) can be
+ * read. An RDB preamble or RDB base file is imported first, unless replay starts part way through.
+ * <p>
+ * Commands are held for a short window before being sent, so repeated writes to the same key are coalesced:
+ * a {@code SET} or {@code DEL} replaces the commands before it, and consecutive {@code HSET}s, pushes and so on
+ * are merged into one. Commands for a key are put onto the queue together, and the next commands for that key
+ * are held back until they have been applied, so the commands for a key are always applied in order. A key
+ * is told apart by its database as well as its name, and the commands carry the database selected when they
+ * were read, as they can be applied after commands read later for other keys.
+ * <p>
+ * When following, the file is polled for new commands once the end is reached, and a multi-part AOF moves on
+ * to the next incremental file once Redis has started writing to it.
+ */
+public class AofSource {
+    private static final long FOLLOW_INTERVAL_MS = 100;
+    private static final int MAX_PENDING_KEYS = 100_000;
+
+    private final File path;
+    private final long startOffset;
+    private final boolean follow;
+    private final long coalesceMillis;
+    private final BlockingQueue<Entry> queue;
+    private final LongSupplier entriesCompleted;
+    private final Consumer<String> errorHandler;
+    private final LinkedHashMap<String, Pending> pending = new LinkedHashMap<>();
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final AtomicLong commandsRead = new AtomicLong();
+    private volatile long position;
+    private long entriesQueued = 0;
+    private long db = 0;
+    private EntryFilter filter;
+
+    private static class Pending {
+        private final long db;
+        private final byte[] key;
+        private final long firstSeen;
+        private final List<AofCommand> commands = new ArrayList<>();
+
+        Pending(long db, byte[] key, long firstSeen) {
+            this.db = db;
+            this.key = key;
+            this.firstSeen = firstSeen;
+        }
+    }
+
+    /**
+     * @param path - the AOF file, or the directory holding a multi-part AOF
+     * @param startOffset - the offset to start replaying from. For a multi-part AOF this counts through the
+     * incremental files in order. When this is 0 any RDB preamble or base file is imported first.
+     * @param follow - whether to keep reading commands as they are appended, rather than stopping at the end
+     * @param coalesceMillis - how long to hold commands so later commands for the same key can be merged with them
+     * @param queue - the queue to put the entries onto
+     * @param entriesCompleted - the number of entries the workers have finished with, used to wait for the base
+     * data to be written before replaying the commands which follow it
+     * @param errorHandler - called with a message for each command which cannot be replayed
+     */
+    public AofSource(File path, long startOffset, boolean follow, long coalesceMillis, BlockingQueue<Entry> queue,
+            LongSupplier entriesCompleted, Consumer<String> errorHandler) {
+        this.path = path;
+        this.startOffset = startOffset;
+        this.follow = follow;
+        this.coalesceMillis = coalesceMillis;
+        this.queue = queue;
+        this.entriesCompleted = entriesCompleted;
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Skip the commands for keys the filter rejects, and the entries of an RDB preamble or base file it rejects.
+     */
+    public void setFilter(EntryFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * The offset reached, which can be passed as the start offset of a later run to carry on from here.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    public long getCommandsRead() {
+        return commandsRead.get();
+    }
+
+    public void run() throws Exception {
+        if (path.isDirectory()) {
+            replayMultiPart();
+        }
+        else {
+            long offset = startOffset;
+            if (offset == 0 && AofReader.startsWithRdb(path)) {
+                offset = importRdb(path);
+            }
+            replay(path, offset, 0, () -> false);
+        }
+        while (!pending.isEmpty()) {
+            flush(true);
+            if (!pending.isEmpty()) {
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    private void replayMultiPart() throws Exception {
+        AofManifest manifest = AofManifest.read(path);
+        if (startOffset == 0 && manifest.getBase() != null) {
+            File base = manifest.getBase();
+            if (AofReader.startsWithRdb(base)) {
+                long end = importRdb(base);
+                if (end < base.length()) {
+                    replay(base, end, 0, () -> false);
+                }
+            }
+            else {
+                replay(base, 0, 0, () -> false);
+            }
+            position = 0;
+        }
+        Set<String> replayed = new HashSet<>();
+        long skip = startOffset;
+        long replayedBytes = 0;
+        while (true) {
+            File next = nextIncrement(manifest, replayed);
+            if (next == null) {
+                if (!follow) {
+                    return;
+                }
+                flush(false);
+                Thread.sleep(FOLLOW_INTERVAL_MS);
+                manifest = AofManifest.read(path);
+                continue;
+            }
+            replayed.add(next.getName());
+            long size = next.length();
+            if (skip >= size && nextIncrement(manifest, replayed) != null) {
+                skip -= size;
+                replayedBytes += size;
+                continue;
+            }
+            long end = replay(next, skip, replayedBytes, () -> {
+                try {
+                    return nextIncrement(AofManifest.read(path), replayed) != null;
+                }
+                catch (Exception e) {
+                    return false;
+                }
+            });
+            replayedBytes += end;
+            skip = 0;
+            manifest = AofManifest.read(path);
+        }
+    }
+
+    /**
+     * The first incremental file in the manifest not yet replayed. After a rewrite the file being replayed is
+     * no longer listed, and the incremental files listed are the ones written since the rewrite started.
+     */
+    private static File nextIncrement(AofManifest manifest, Set<String> replayed) {
+        for (File increment : manifest.getIncrements()) {
+            if (!replayed.contains(increment.getName())) {
+                return increment;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Import an RDB preamble or base file, then wait for it to be written so the commands after it are
+     * applied on top of it. Returns the offset of the end of the RDB data.
+     */
+    private long importRdb(File file) throws Exception {
+        try (RdbReader reader = new RdbReader(file)) {
+            reader.setFilter(filter);
+            Entry entry;
+            while ((entry = reader.readNext()) != null) {
+                queue.put(entry);
+                entriesQueued++;
+            }
+            while (entriesCompleted.getAsLong() < entriesQueued) {
+                Thread.sleep(10);
+            }
+            return reader.getPosition();
+        }
+    }
+
+    /**
+     * Replay the commands in the file from the passed offset, returning the offset reached.
+     * @param finished - when following, whether the file will not be written to any more
+     */
+    private long replay(File file, long offset, long replayedBytes, BooleanSupplier finished) throws Exception {
+        try (AofReader reader = new AofReader(file, offset)) {
+            while (true) {
+                AofCommand command = reader.next();
+                if (command != null) {
+                    add(command);
+                    position = replayedBytes + reader.getPosition();
+                    flush(false);
+                    continue;
+                }
+                flush(false);
+                if (!follow || finished.getAsBoolean()) {
+                    return reader.getPosition();
+                }
+                if (file.length() < reader.getPosition()) {
+                    throw new IllegalStateException(String.format("%s has been truncated or rewritten at offset %,d", file, reader.getPosition()));
+                }
+                Thread.sleep(FOLLOW_INTERVAL_MS);
+            }
+        }
+    }
+
+    private void add(AofCommand command) {
+        switch (command.getName()) {
+        case "SELECT":
+            db = command.getLong(0);
+            return;
+
+        case "MULTI":
+        case "EXEC":
+        case "DISCARD":
+        case "PING":
+            // Transactions are applied command by command
+            return;
+
+        case "MSET":
+        case "MSETNX":
+            for (int i = 0; i + 1 < command.getArgCount(); i += 2) {
+                buffer(command.getArg(i), new AofCommand("SET", List.of(command.getArg(i), command.getArg(i + 1))));
+            }
+            return;
+
+        case "DEL":
+        case "UNLINK":
+            for (int i = 0; i < command.getArgCount(); i++) {
+                buffer(command.getArg(i), new AofCommand("DEL", List.of(command.getArg(i))));
+            }
+            return;
+
+        default:
+            if (command.getArgCount() == 0) {
+                errorHandler.accept(String.format("Command %s cannot be replayed", command.getName()));
+                return;
+            }
+            buffer(command.getArg(0), command);
+        }
+    }
+
+    private void buffer(byte[] key, AofCommand command) {
+        commandsRead.incrementAndGet();
+        if (filter != null && (!filter.accepts(db, typeOf(command), null)
+                || (filter.needsKey() && !filter.acceptsKey(new String(key, StandardCharsets.US_ASCII))))) {
+            return;
+        }
+        String id = db + ":" + new String(key, StandardCharsets.ISO_8859_1);
+        Pending keyPending = pending.get(id);
+        if (keyPending == null) {
+            keyPending = new Pending(db, key, System.currentTimeMillis());
+            pending.put(id, keyPending);
+        }
+        coalesce(keyPending.commands, command);
+    }
+
+    /**
+     * The type of value a command writes to, or null for commands such as {@code DEL} which apply to any type.
+     */
+    private static ValueType typeOf(AofCommand command) {
+        switch (command.getName()) {
+        case "SET":
+        case "SETEX":
+        case "PSETEX":
+        case "SETNX":
+        case "GETSET":
+        case "GETDEL":
+        case "APPEND":
+        case "INCR":
+        case "INCRBY":
+        case "INCRBYFLOAT":
+        case "DECR":
+        case "DECRBY":
+            return ValueType.VALUE;
+        case "HSET":
+        case "HMSET":
+        case "HSETNX":
+        case "HDEL":
+        case "HINCRBY":
+        case "HINCRBYFLOAT":
+            return ValueType.HASH;
+        case "RPUSH":
+        case "LPUSH":
+        case "LPOP":
+        case "RPOP":
+        case "LSET":
+        case "LREM":
+            return ValueType.LIST;
+        case "SADD":
+        case "SREM":
+            return ValueType.SET;
+        case "ZADD":
+        case "ZREM":
+        case "ZINCRBY":
+            return ValueType.SORTED_SET2;
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Add a command to the commands pending for a key, merging it with those already there where the
+     * result of applying them is the same.
+     */
+    static void coalesce(List<AofCommand> commands, AofCommand command) {
+        AofCommand last = commands.isEmpty() ? null : commands.get(commands.size() - 1);
+        switch (command.getName()) {
+        case "SET":
+            if (!command.getStrings(2).stream().anyMatch("KEEPTTL"::equalsIgnoreCase)) {
+                commands.clear();
+            }
+            break;
+
+        case "SETEX":
+        case "PSETEX":
+        case "SETNX":
+        case "GETSET":
+        case "DEL":
+        case "GETDEL":
+            commands.clear();
+            break;
+
+        case "EXPIRE":
+        case "PEXPIRE":
+        case "EXPIREAT":
+        case "PEXPIREAT":
+        case "PERSIST":
+            commands.removeIf(AofSource::isExpire);
+            break;
+
+        case "HSET":
+        case "HMSET":
+        case "HDEL":
+        case "RPUSH":
+        case "LPUSH":
+        case "SADD":
+            if (last != null && sameWrite(last.getName(), command.getName())) {
+                List<byte[]> args = command.getArgs();
+                commands.set(commands.size() - 1, last.append(args.subList(1, args.size())));
+                return;
+            }
+            break;
+
+        default:
+            break;
+        }
+        commands.add(command);
+    }
+
+    private static boolean isExpire(AofCommand command) {
+        switch (command.getName()) {
+        case "EXPIRE":
+        case "PEXPIRE":
+        case "EXPIREAT":
+        case "PEXPIREAT":
+        case "PERSIST":
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private static boolean sameWrite(String name, String other) {
+        return name.equals(other) || (isHashSet(name) && isHashSet(other));
+    }
+
+    private static boolean isHashSet(String name) {
+        return "HSET".equals(name) || "HMSET".equals(name);
+    }
+
+    /**
+     * Put the commands for keys which have waited for the coalescing window onto the queue, or all of them
+     * if {@code all} is set. Keys whose earlier commands are still being applied are left until they have been.
+     */
+    private void flush(boolean all) throws InterruptedException {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Pending>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Pending> entry = iterator.next();
+            Pending keyPending = entry.getValue();
+            if (!all && now - keyPending.firstSeen < coalesceMillis && pending.size() <= MAX_PENDING_KEYS) {
+                // Keys are in the order they were first seen, so the rest are newer still
+                return;
+            }
+            String id = entry.getKey();
+            if (inFlight.contains(id)) {
+                continue;
+            }
+            iterator.remove();
+            inFlight.add(id);
+            queue.put(new KeyCommands(keyPending.db, ByteSlice.wrap(keyPending.key), keyPending.commands, () -> inFlight.remove(id)));
+        }
+    }
+}
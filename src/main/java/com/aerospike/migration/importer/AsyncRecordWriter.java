@@ -0,0 +1,96 @@
+package com.aerospike.migration.importer;
+
+import java.util.concurrent.Semaphore;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.IAerospikeClient;
+import com.aerospike.client.Key;
+import com.aerospike.client.Record;
+import com.aerospike.client.ResultCode;
+import com.aerospike.client.async.EventLoops;
+import com.aerospike.client.listener.RecordListener;
+
+/**
+ * Writes each part with an asynchronous operate call on the client's event loops, so a few threads can
+ * keep many writes in flight. A semaphore limits the number of parts in flight or queued behind another
+ * part of the same request, which blocks the threads producing writes when the server falls behind.
+ */
+class AsyncRecordWriter implements RecordWriter {
+    private final IAerospikeClient client;
+    private final EventLoops eventLoops;
+    private final int maxInFlight;
+    private final Semaphore permits;
+
+    /**
+     * @param client - a client created with the passed event loops
+     * @param maxInFlight - the maximum number of parts being written at once
+     */
+    AsyncRecordWriter(IAerospikeClient client, EventLoops eventLoops, int maxInFlight) {
+        this.client = client;
+        this.eventLoops = eventLoops;
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight);
+    }
+
+    public int getInFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    @Override
+    public void write(WriteRequest request, WriteRequest.Part part) throws InterruptedException {
+        permits.acquire();
+        switch (request.start(part)) {
+        case NOW:
+            send(request, part);
+            break;
+        case DROPPED:
+            permits.release();
+            break;
+        default:
+            // Sent once the part before it completes
+        }
+    }
+
+    private void send(WriteRequest request, WriteRequest.Part part) {
+        try {
+            client.operate(eventLoops.next(), new RecordListener() {
+                @Override
+                public void onSuccess(Key key, Record record) {
+                    completed(request);
+                }
+
+                @Override
+                public void onFailure(AerospikeException ae) {
+                    if (part.isIgnoreNotFound() && ae.getResultCode() == ResultCode.KEY_NOT_FOUND_ERROR) {
+                        completed(request);
+                    }
+                    else {
+                        failed(request, ae);
+                    }
+                }
+            }, part.getPolicy(), part.getKey(), part.getOps());
+        }
+        catch (AerospikeException ae) {
+            failed(request, ae);
+        }
+    }
+
+    private void completed(WriteRequest request) {
+        permits.release();
+        WriteRequest.Part next = request.partCompleted();
+        if (next != null) {
+            send(request, next);
+        }
+    }
+
+    private void failed(WriteRequest request, AerospikeException ae) {
+        permits.release(1 + request.fail(ae).size());
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        permits.acquire(maxInFlight);
+        permits.release(maxInFlight);
+        eventLoops.close();
+    }
+}
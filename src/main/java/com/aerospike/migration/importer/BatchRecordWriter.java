@@ -0,0 +1,200 @@
+package com.aerospike.migration.importer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.BatchRecord;
+import com.aerospike.client.BatchWrite;
+import com.aerospike.client.IAerospikeClient;
+import com.aerospike.client.ResultCode;
+import com.aerospike.client.policy.BatchPolicy;
+import com.aerospike.client.policy.BatchWritePolicy;
+import com.aerospike.client.policy.WritePolicy;
+
+/**
+ * Collects parts into batches which are written with a single batch operate call, so small records do not
+ * each pay for a round trip to the server. A batch is sent by the thread which fills it, or by a linger
+ * thread once its first part has waited for the linger time. Each record of a batch succeeds or fails on
+ * its own, and its result is passed back to its request.
+ * <p>
+ * A part which follows another part of the same request is held back until that part has completed, so
+ * it goes in a later batch and the parts are still applied in order.
+ */
+class BatchRecordWriter implements RecordWriter {
+    private static class Pending {
+        private final WriteRequest request;
+        private final WriteRequest.Part part;
+
+        Pending(WriteRequest request, WriteRequest.Part part) {
+            this.request = request;
+            this.part = part;
+        }
+    }
+
+    private final IAerospikeClient client;
+    private final BatchPolicy batchPolicy;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final Thread lingerThread;
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong records = new AtomicLong();
+    private List<Pending> batch = new ArrayList<>();
+    private long batchStartNanos;
+    private volatile boolean closed = false;
+
+    /**
+     * @param batchSize - the maximum number of records in a batch
+     * @param lingerMicros - how long a part can wait for its batch to fill before the batch is sent
+     */
+    BatchRecordWriter(IAerospikeClient client, int batchSize, long lingerMicros) {
+        this.client = client;
+        this.batchPolicy = client.copyBatchParentPolicyWriteDefault();
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MICROSECONDS.toNanos(lingerMicros);
+        this.lingerThread = new Thread(this::linger, "batch-linger");
+        this.lingerThread.setDaemon(true);
+        this.lingerThread.start();
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    public long getRecords() {
+        return records.get();
+    }
+
+    @Override
+    public void write(WriteRequest request, WriteRequest.Part part) {
+        if (request.start(part) == WriteRequest.Start.NOW) {
+            writeStarted(request, part);
+        }
+    }
+
+    /**
+     * Write a part which has already been started on its request.
+     */
+    void writeStarted(WriteRequest request, WriteRequest.Part part) {
+        add(new Pending(request, part), true);
+    }
+
+    /**
+     * Add a part to the current batch, sending the batch if it is full and the caller can wait for it.
+     */
+    private void add(Pending pending, boolean sendIfFull) {
+        List<Pending> full = null;
+        synchronized (this) {
+            if (batch.isEmpty()) {
+                batchStartNanos = System.nanoTime();
+            }
+            batch.add(pending);
+            if (sendIfFull && batch.size() >= batchSize) {
+                full = take();
+            }
+        }
+        if (full != null) {
+            send(full);
+        }
+    }
+
+    private synchronized List<Pending> take() {
+        List<Pending> result = batch;
+        batch = new ArrayList<>(batchSize);
+        return result;
+    }
+
+    private void linger() {
+        long pause = Math.max(TimeUnit.MICROSECONDS.toNanos(50), lingerNanos / 4);
+        while (!closed) {
+            LockSupport.parkNanos(pause);
+            List<Pending> due = null;
+            synchronized (this) {
+                if (!batch.isEmpty() && System.nanoTime() - batchStartNanos >= lingerNanos) {
+                    due = take();
+                }
+            }
+            if (due != null) {
+                send(due);
+            }
+        }
+    }
+
+    private static BatchWritePolicy toBatchWritePolicy(WritePolicy wp) {
+        BatchWritePolicy policy = new BatchWritePolicy();
+        policy.recordExistsAction = wp.recordExistsAction;
+        policy.expiration = wp.expiration;
+        policy.sendKey = wp.sendKey;
+        policy.durableDelete = wp.durableDelete;
+        policy.commitLevel = wp.commitLevel;
+        policy.generationPolicy = wp.generationPolicy;
+        policy.generation = wp.generation;
+        policy.filterExp = wp.filterExp;
+        return policy;
+    }
+
+    private void send(List<Pending> pendings) {
+        // Send in pieces no bigger than a batch, as parts released by completions can overfill a batch
+        for (int start = 0; start < pendings.size(); start += batchSize) {
+            sendBatch(pendings.subList(start, Math.min(pendings.size(), start + batchSize)));
+        }
+    }
+
+    private void sendBatch(List<Pending> pendings) {
+        List<BatchRecord> batchRecords = new ArrayList<>(pendings.size());
+        BatchWritePolicy defaultPolicy = toBatchWritePolicy(client.getWritePolicyDefault());
+        for (Pending pending : pendings) {
+            WriteRequest.Part part = pending.part;
+            BatchWritePolicy policy = part.getPolicy() == null ? defaultPolicy : toBatchWritePolicy(part.getPolicy());
+            batchRecords.add(new BatchWrite(policy, part.getKey(), part.getOps()));
+        }
+        AerospikeException batchFailure = null;
+        try {
+            client.operate(batchPolicy, batchRecords);
+        }
+        catch (AerospikeException ae) {
+            // Records the server did not get to are left with an error code
+            batchFailure = ae;
+        }
+        catch (RuntimeException e) {
+            // Not from the server, so no record has a result to go by
+            batches.incrementAndGet();
+            records.addAndGet(pendings.size());
+            for (Pending pending : pendings) {
+                pending.request.fail(e);
+            }
+            return;
+        }
+        batches.incrementAndGet();
+        records.addAndGet(pendings.size());
+        for (int i = 0; i < pendings.size(); i++) {
+            Pending pending = pendings.get(i);
+            int resultCode = batchRecords.get(i).resultCode;
+            if (resultCode == ResultCode.OK || (resultCode == ResultCode.KEY_NOT_FOUND_ERROR && pending.part.isIgnoreNotFound())) {
+                WriteRequest.Part next = pending.request.partCompleted();
+                if (next != null) {
+                    add(new Pending(pending.request, next), false);
+                }
+            }
+            else {
+                pending.request.fail(batchFailure != null && resultCode == ResultCode.NO_RESPONSE ? batchFailure
+                        : new AerospikeException(resultCode, "Batch write of " + pending.part.getKey() + " failed"));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        closed = true;
+        LockSupport.unpark(lingerThread);
+        lingerThread.join();
+        // Completions may release more parts of multi-part requests
+        List<Pending> remaining;
+        while (!(remaining = take()).isEmpty()) {
+            send(remaining);
+        }
+    }
+}
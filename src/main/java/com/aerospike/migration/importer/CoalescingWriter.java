@@ -0,0 +1,297 @@
+package com.aerospike.migration.importer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.aerospike.client.Key;
+import com.aerospike.client.Operation;
+import com.aerospike.client.policy.WritePolicy;
+
+/**
+ * Merges the parts for the same Aerospike record into one write. When a mapping builds one record from
+ * many Redis keys, such as a string key per field of a customer, each key is otherwise a round trip of
+ * its own. Parts are held for up to the window, then the operations for each record are written with a
+ * single part to the writer this wraps.
+ * <p>
+ * A record's operations are written early once there are the maximum number of them, or once the parts
+ * held take more than the maximum memory, oldest first. Parts are only merged when they have the same
+ * write policy and write different bins; otherwise the record's earlier parts are written first. Parts
+ * which do not write bins, or which ignore the record not being found, are never merged.
+ * <p>
+ * If a merged write fails, every Redis key in it fails, as there is no telling which caused it.
+ */
+class CoalescingWriter implements RecordWriter {
+    /**
+     * The parts held for one record, from one or more requests.
+     */
+    private static class Group {
+        private final Key key;
+        private final WritePolicy policy;
+        private final boolean ignoreNotFound;
+        private final List<Operation> ops = new ArrayList<>();
+        private final Set<String> bins = new HashSet<>();
+        private final List<WriteRequest> requests = new ArrayList<>();
+        private final long startNanos = System.nanoTime();
+        private long bytes = 0;
+
+        Group(WriteRequest.Part part) {
+            this.key = part.getKey();
+            this.policy = part.getPolicy();
+            this.ignoreNotFound = part.isIgnoreNotFound();
+        }
+
+        boolean accepts(WriteRequest.Part part) {
+            if (!samePolicy(policy, part.getPolicy())) {
+                return false;
+            }
+            for (Operation op : part.getOps()) {
+                if (bins.contains(op.binName)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void add(WriteRequest request, WriteRequest.Part part) {
+            requests.add(request);
+            for (Operation op : part.getOps()) {
+                ops.add(op);
+                if (op.binName != null) {
+                    bins.add(op.binName);
+                    bytes += op.binName.length();
+                }
+                if (op.value != null) {
+                    bytes += op.value.estimateSize();
+                }
+            }
+        }
+
+        WriteRequest.Part toPart() {
+            return new WriteRequest.Part(policy, key, ops, ignoreNotFound);
+        }
+    }
+
+    private final RecordWriter writer;
+    private final long windowNanos;
+    private final int maxOps;
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Group> groups = new LinkedHashMap<>();
+    private final ArrayDeque<Group> ready = new ArrayDeque<>();
+    private final Thread flusher;
+    private final AtomicLong partsWritten = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private long bytesHeld = 0;
+    private int writesInProgress = 0;
+    private volatile boolean closed = false;
+
+    /**
+     * @param writer - the writer to write the merged parts with
+     * @param windowMillis - the longest a part is held waiting for other parts for its record
+     * @param maxOps - the number of operations which makes a record be written without waiting
+     * @param maxBytes - the most memory the operations held can take before the oldest records are written
+     */
+    CoalescingWriter(RecordWriter writer, long windowMillis, int maxOps, long maxBytes) {
+        this.writer = writer;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxOps = maxOps;
+        this.maxBytes = maxBytes;
+        this.flusher = new Thread(this::flushExpired, "coalesce-flush");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    RecordWriter getWriter() {
+        return writer;
+    }
+
+    /**
+     * The number of parts written, which is more than the number of writes when parts are merged.
+     */
+    public long getPartsWritten() {
+        return partsWritten.get();
+    }
+
+    public long getWrites() {
+        return writes.get();
+    }
+
+    public synchronized int getRecordsHeld() {
+        return groups.size();
+    }
+
+    private static boolean samePolicy(WritePolicy a, WritePolicy b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return a.recordExistsAction == b.recordExistsAction && a.expiration == b.expiration && a.sendKey == b.sendKey
+                && a.generationPolicy == b.generationPolicy && a.generation == b.generation && a.durableDelete == b.durableDelete
+                && a.commitLevel == b.commitLevel && Objects.equals(a.filterExp, b.filterExp);
+    }
+
+    private static boolean canMerge(WriteRequest.Part part) {
+        if (part.isIgnoreNotFound()) {
+            return false;
+        }
+        for (Operation op : part.getOps()) {
+            if (op.binName == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void write(WriteRequest request, WriteRequest.Part part) throws InterruptedException {
+        if (request.start(part) == WriteRequest.Start.NOW) {
+            add(request, part);
+            // The writing threads write the records whose window has passed as well, so the flusher is only
+            // needed when writes stop arriving
+            flush(takeReady(true));
+        }
+    }
+
+    /**
+     * Hold a started part. Records which are ready to be written are moved to the ready queue, for the
+     * next thread which flushes to write.
+     */
+    private synchronized void add(WriteRequest request, WriteRequest.Part part) {
+        Key key = part.getKey();
+        Group group = groups.get(key);
+        if (group != null && (!canMerge(part) || !group.accepts(part))) {
+            release(key);
+            group = null;
+        }
+        if (group == null) {
+            group = new Group(part);
+            groups.put(key, group);
+        }
+        bytesHeld -= group.bytes;
+        group.add(request, part);
+        bytesHeld += group.bytes;
+        if (!canMerge(part) || group.ops.size() >= maxOps) {
+            release(key);
+        }
+        Iterator<Group> oldest = groups.values().iterator();
+        while (bytesHeld > maxBytes && oldest.hasNext()) {
+            Group eldest = oldest.next();
+            oldest.remove();
+            bytesHeld -= eldest.bytes;
+            ready.add(eldest);
+        }
+    }
+
+    private void release(Key key) {
+        Group group = groups.remove(key);
+        bytesHeld -= group.bytes;
+        ready.add(group);
+    }
+
+    /**
+     * Take the records which are ready to write, and those held for the window if expired is set or everything if closed.
+     */
+    private synchronized List<Group> takeReady(boolean expired) {
+        List<Group> result = new ArrayList<>(ready);
+        ready.clear();
+        long now = System.nanoTime();
+        Iterator<Group> oldest = groups.values().iterator();
+        while (oldest.hasNext()) {
+            Group group = oldest.next();
+            if (!closed && (!expired || now - group.startNanos < windowNanos)) {
+                break;
+            }
+            oldest.remove();
+            bytesHeld -= group.bytes;
+            result.add(group);
+        }
+        if (!result.isEmpty()) {
+            writesInProgress += result.size();
+        }
+        return result;
+    }
+
+    private void flush(List<Group> groups) throws InterruptedException {
+        for (Group group : groups) {
+            WriteRequest merged = new WriteRequest(null, request -> completed(group, request));
+            try {
+                writer.write(merged, group.toPart());
+            }
+            catch (InterruptedException e) {
+                merged.fail(e);
+                throw e;
+            }
+            catch (Exception e) {
+                merged.fail(e);
+            }
+            finally {
+                merged.finish();
+            }
+            partsWritten.addAndGet(group.requests.size());
+            writes.incrementAndGet();
+        }
+    }
+
+    /**
+     * Pass the result of a merged write to each of its requests. This may be on a thread of the wrapped
+     * writer, so the next parts of the requests are held for a flushing thread to write rather than written here.
+     */
+    private void completed(Group group, WriteRequest merged) {
+        Throwable failure = merged.getFailure();
+        for (WriteRequest request : group.requests) {
+            if (failure != null) {
+                request.fail(failure);
+            }
+            else {
+                WriteRequest.Part next = request.partCompleted();
+                if (next != null) {
+                    add(request, next);
+                }
+            }
+        }
+        synchronized (this) {
+            writesInProgress--;
+            notifyAll();
+        }
+    }
+
+    private void flushExpired() {
+        long pause = Math.max(TimeUnit.MILLISECONDS.toNanos(1), windowNanos / 4);
+        try {
+            while (!closed) {
+                LockSupport.parkNanos(pause);
+                flush(takeReady(true));
+            }
+        }
+        catch (InterruptedException ignored) {
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        closed = true;
+        // Wake the flusher rather than wait out its pause
+        LockSupport.unpark(flusher);
+        flusher.join();
+        // Completed writes may hold the next parts of their requests
+        while (true) {
+            flush(takeReady(true));
+            synchronized (this) {
+                if (ready.isEmpty() && groups.isEmpty()) {
+                    if (writesInProgress == 0) {
+                        break;
+                    }
+                    wait(100);
+                }
+            }
+        }
+        writer.close();
+    }
+}
@@ -0,0 +1,195 @@
+package com.aerospike.migration.importer;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.aerospike.client.Key;
+import com.aerospike.client.Operation;
+import com.aerospike.migration.importer.rdb.KeyValuePair;
+
+/**
+ * Collects what an import would do without writing anything to Aerospike: how many keys each mapping
+ * matches, the keys no mapping matches, the mix of Redis types, the number and size of the records per
+ * namespace and set, the largest records and how fast the keys are translated.
+ * <p>
+ * Record sizes are estimated from the operations which would be sent to the server: the length of each
+ * bin name plus the serialized size of its value. The storage overhead per record depends on the server
+ * version and configuration, so it is not included; each record also takes 64 bytes of primary index.
+ */
+class DryRunReport {
+    private static final int PRIMARY_INDEX_BYTES = 64;
+    private static final int LARGEST_KEYS = 10;
+    private static final int UNMATCHED_EXAMPLES = 10;
+
+    private static class Counter {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder bins = new LongAdder();
+        private volatile long maxBytes = 0;
+
+        void add(long recordBytes, int recordBins) {
+            count.increment();
+            bytes.add(recordBytes);
+            bins.add(recordBins);
+            if (recordBytes > maxBytes) {
+                synchronized (this) {
+                    maxBytes = Math.max(maxBytes, recordBytes);
+                }
+            }
+        }
+    }
+
+    /**
+     * The record being translated on a worker thread, built up from the operations for each chunk of its value.
+     */
+    private static class Record implements Comparable<Record> {
+        private String redisKey;
+        private Key key;
+        private final Set<String> bins = new HashSet<>();
+        private long bytes = 0;
+
+        @Override
+        public int compareTo(Record other) {
+            return Long.compare(bytes, other.bytes);
+        }
+    }
+
+    private final Map<String, LongAdder> mappingHits = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> valueTypes = new ConcurrentHashMap<>();
+    private final Map<String, Counter> sets = new ConcurrentHashMap<>();
+    private final LongAdder unmatched = new LongAdder();
+    private final List<String> unmatchedExamples = new ArrayList<>();
+    private final PriorityQueue<Record> largest = new PriorityQueue<>();
+    private final LongAdder translated = new LongAdder();
+    private final LongAdder translateNanos = new LongAdder();
+    private final ThreadLocal<Record> current = new ThreadLocal<>();
+    private final double sampleRate;
+
+    /**
+     * @param sampleRate - the fraction of the keys being translated, used to scale the counts up to the whole input
+     */
+    DryRunReport(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Start a record for a key value pair which has been matched to a mapping.
+     */
+    void record(String redisKey, KeyValuePair kvp, RecordTranslator translator) {
+        mappingHits.computeIfAbsent(translator.getMappingSpec().getKey(), k -> new LongAdder()).increment();
+        valueTypes.computeIfAbsent(kvp.getValueType().getTypeName(), k -> new LongAdder()).increment();
+        Record record = new Record();
+        record.redisKey = redisKey;
+        current.set(record);
+    }
+
+    /**
+     * Count the operations which would have been sent for the current record.
+     */
+    void operations(Key key, List<Operation> ops) {
+        Record record = current.get();
+        if (record == null) {
+            // Replayed commands are not part of a key value pair
+            record = new Record();
+            record.redisKey = key.userKey == null ? key.toString() : key.userKey.toString();
+            current.set(record);
+        }
+        record.key = key;
+        for (Operation op : ops) {
+            if (op.binName != null && record.bins.add(op.binName)) {
+                record.bytes += op.binName.length();
+            }
+            if (op.value != null) {
+                record.bytes += op.value.estimateSize();
+            }
+        }
+    }
+
+    void unmatched(String redisKey) {
+        unmatched.increment();
+        synchronized (unmatchedExamples) {
+            if (unmatchedExamples.size() < UNMATCHED_EXAMPLES) {
+                unmatchedExamples.add(redisKey);
+            }
+        }
+    }
+
+    /**
+     * Finish the current record, which took the passed time to translate.
+     */
+    void recordDone(long nanos) {
+        translated.increment();
+        translateNanos.add(nanos);
+        Record record = current.get();
+        current.remove();
+        if (record == null || record.key == null) {
+            // Expired, unmatched or not a key
+            return;
+        }
+        sets.computeIfAbsent(record.key.namespace + "." + record.key.setName, k -> new Counter()).add(record.bytes, record.bins.size());
+        synchronized (largest) {
+            if (largest.size() < LARGEST_KEYS) {
+                largest.add(record);
+            }
+            else if (largest.peek().bytes < record.bytes) {
+                largest.poll();
+                largest.add(record);
+            }
+        }
+    }
+
+    void print(PrintStream out, long elapsedMillis) {
+        out.println("\nDry run: nothing was written to Aerospike.");
+        if (sampleRate < 1) {
+            out.printf("Only %.2f%% of the keys were sampled. Multiply the counts and sizes by %,.1f to estimate the whole input.\n", sampleRate * 100, 1 / sampleRate);
+        }
+        out.println("\nKeys per mapping:");
+        for (Map.Entry<String, LongAdder> hit : new TreeMap<>(mappingHits).entrySet()) {
+            out.printf("   %-40s %,d\n", hit.getKey(), hit.getValue().sum());
+        }
+        out.printf("   %-40s %,d\n", "(no mapping)", unmatched.sum());
+        synchronized (unmatchedExamples) {
+            for (String example : unmatchedExamples) {
+                out.printf("      e.g. %s\n", example);
+            }
+        }
+
+        out.println("\nRedis types:");
+        for (Map.Entry<String, LongAdder> type : new TreeMap<>(valueTypes).entrySet()) {
+            out.printf("   %-10s %,d\n", type.getKey(), type.getValue().sum());
+        }
+
+        out.println("\nRecords per namespace.set (sizes are bin names and values, without storage overhead):");
+        out.printf("   %-30s %15s %15s %12s %12s %10s %15s\n", "namespace.set", "records", "data bytes", "avg bytes", "max bytes", "avg bins", "index bytes");
+        for (Map.Entry<String, Counter> set : new TreeMap<>(sets).entrySet()) {
+            Counter counter = set.getValue();
+            long count = counter.count.sum();
+            out.printf("   %-30s %,15d %,15d %,12d %,12d %10.1f %,15d\n", set.getKey(), count, counter.bytes.sum(),
+                    counter.bytes.sum() / Math.max(1, count), counter.maxBytes, (double)counter.bins.sum() / Math.max(1, count),
+                    count * PRIMARY_INDEX_BYTES);
+        }
+
+        out.println("\nLargest records:");
+        List<Record> records;
+        synchronized (largest) {
+            records = new ArrayList<>(largest);
+        }
+        records.sort((a, b) -> Long.compare(b.bytes, a.bytes));
+        for (Record record : records) {
+            out.printf("   %-40s %,12d bytes, %,d bins -> %s\n", record.redisKey, record.bytes, record.bins.size(), record.key);
+        }
+
+        long count = translated.sum();
+        double seconds = translateNanos.sum() / 1e9;
+        out.printf("\nTranslated %,d keys in %,dms: %,.0f keys/s per thread", count, elapsedMillis, seconds == 0 ? 0 : count / seconds);
+        out.printf(", %,.0f keys/s overall\n", elapsedMillis == 0 ? 0 : count * 1000.0 / elapsedMillis);
+    }
+}
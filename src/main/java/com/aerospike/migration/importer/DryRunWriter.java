@@ -0,0 +1,23 @@
+package com.aerospike.migration.importer;
+
+import java.util.Arrays;
+
+/**
+ * Counts the writes in a {@link DryRunReport} instead of sending them to Aerospike.
+ */
+class DryRunWriter implements RecordWriter {
+    private final DryRunReport report;
+
+    DryRunWriter(DryRunReport report) {
+        this.report = report;
+    }
+
+    @Override
+    public void write(WriteRequest request, WriteRequest.Part part) {
+        report.operations(part.getKey(), Arrays.asList(part.getOps()));
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,47 @@
+package com.aerospike.migration.importer;
+
+import com.aerospike.migration.importer.rdb.Entry;
+
+/**
+ * The queue of entries between the readers and the workers, bounded by the estimated memory of the
+ * entries as well as by their number. An entry's memory is held from when it is put until it has been
+ * processed and {@link #release(Entry)} is called, so it also covers entries the workers have taken and
+ * whose writes are still queued or in flight further on.
+ * <p>
+ * Readers must add entries with {@link #put(Entry)}, which waits for the memory.
+ */
+class EntryQueue extends RingBuffer<Entry> {
+    private final MemoryBudget budget;
+
+    /**
+     * @param capacity - the most entries the queue holds
+     * @param memoryLimit - the most bytes the entries which have been put and not released can take
+     */
+    EntryQueue(int capacity, WaitStrategy waitStrategy, long memoryLimit) {
+        super(capacity, waitStrategy);
+        this.budget = new MemoryBudget(memoryLimit);
+    }
+
+    @Override
+    public void put(Entry e) throws InterruptedException {
+        budget.acquire(e.estimateSize());
+        try {
+            super.put(e);
+        }
+        catch (InterruptedException ie) {
+            budget.release(e.estimateSize());
+            throw ie;
+        }
+    }
+
+    /**
+     * An entry has been processed, so the memory it held can be used by others.
+     */
+    public void release(Entry e) {
+        budget.release(e.estimateSize());
+    }
+
+    public MemoryBudget getBudget() {
+        return budget;
+    }
+}
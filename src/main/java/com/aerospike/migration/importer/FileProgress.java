@@ -0,0 +1,72 @@
+package com.aerospike.migration.importer;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks how far through one input file the parsers have got. For a compressed file the position is
+ * in the decompressed data, so its size is not known and only the bytes parsed are reported.
+ */
+class FileProgress {
+    private final File file;
+    private final boolean compressed;
+    private final long size;
+    private final AtomicLong bytesParsed = new AtomicLong();
+    private final AtomicLong keys = new AtomicLong();
+    private volatile long startTime = 0;
+    private volatile long endTime = 0;
+
+    FileProgress(File file, boolean compressed) {
+        this.file = file;
+        this.compressed = compressed;
+        this.size = file.length();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    public void started() {
+        this.startTime = System.currentTimeMillis();
+    }
+
+    public void finished() {
+        this.endTime = System.currentTimeMillis();
+    }
+
+    public boolean isActive() {
+        return startTime > 0 && endTime == 0;
+    }
+
+    public long getElapsedMillis() {
+        return (endTime == 0 ? System.currentTimeMillis() : endTime) - startTime;
+    }
+
+    public void addBytesParsed(long bytes) {
+        bytesParsed.addAndGet(bytes);
+    }
+
+    public void keyRead() {
+        keys.incrementAndGet();
+    }
+
+    public long getKeys() {
+        return keys.get();
+    }
+
+    @Override
+    public String toString() {
+        String position;
+        if (compressed) {
+            position = String.format("%,dMB decompressed", bytesParsed.get() >> 20);
+        }
+        else {
+            position = String.format("%d%%", size == 0 ? 100 : Math.min(100, bytesParsed.get() * 100 / size));
+        }
+        return String.format("%s: %s, %,d keys", file.getName(), position, keys.get());
+    }
+}
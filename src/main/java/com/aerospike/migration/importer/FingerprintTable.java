@@ -0,0 +1,169 @@
+package com.aerospike.migration.importer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A table of the fingerprints of the keys in a snapshot, used to find what has changed in the next one.
+ * It is an open addressing hash table of 16 byte slots held in a memory mapped temporary file rather than
+ * on the heap, so it can hold hundreds of millions of keys: each slot holds the 64 bit hash of a key and
+ * the fingerprint of its value, with the top bit of the fingerprint marking keys seen in the new snapshot.
+ * <p>
+ * Keys are identified by their hash alone. Two keys with the same 64 bit hash are so unlikely that this
+ * is not worth the cost of storing the keys.
+ */
+class FingerprintTable implements Closeable {
+    enum Change {
+        NEW,
+        CHANGED,
+        UNCHANGED
+    }
+
+    private static final int SLOT_SIZE = 16;
+    private static final int SEGMENT_SHIFT = 26;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+    private static final long SEEN = 1L << 63;
+    private static final double MAX_LOAD = 0.7;
+    private static final int MIN_CAPACITY = 1 << 16;
+
+    private final File directory;
+    private File file;
+    private MappedByteBuffer[] segments;
+    private long capacity;
+    private long size = 0;
+
+    /**
+     * @param expectedKeys - the number of keys expected, used to size the table. It grows if there are more.
+     * @param directory - where to create the file holding the table, or null for the temporary directory
+     */
+    FingerprintTable(long expectedKeys, File directory) throws IOException {
+        this.directory = directory;
+        allocate(Math.max(MIN_CAPACITY, Long.highestOneBit((long)(expectedKeys / MAX_LOAD)) << 1));
+    }
+
+    private void allocate(long newCapacity) throws IOException {
+        this.file = File.createTempFile("fingerprints", ".tbl", directory);
+        this.file.deleteOnExit();
+        this.capacity = newCapacity;
+        long segmentSlots = Math.min(capacity, 1L << SEGMENT_SHIFT);
+        this.segments = new MappedByteBuffer[(int)(capacity / segmentSlots)];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // The file is sparse, so only the pages holding keys use any disk
+            raf.setLength(capacity * SLOT_SIZE);
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, i * segmentSlots * SLOT_SIZE, segmentSlots * SLOT_SIZE);
+            }
+        }
+    }
+
+    private long keyAt(long slot) {
+        return segments[(int)(slot >>> SEGMENT_SHIFT)].getLong((int)((slot & SEGMENT_MASK) * SLOT_SIZE));
+    }
+
+    private long fingerprintAt(long slot) {
+        return segments[(int)(slot >>> SEGMENT_SHIFT)].getLong((int)((slot & SEGMENT_MASK) * SLOT_SIZE + 8));
+    }
+
+    private void set(long slot, long keyHash, long fingerprint) {
+        MappedByteBuffer segment = segments[(int)(slot >>> SEGMENT_SHIFT)];
+        int offset = (int)((slot & SEGMENT_MASK) * SLOT_SIZE);
+        segment.putLong(offset, keyHash);
+        segment.putLong(offset + 8, fingerprint);
+    }
+
+    /**
+     * The slot holding the key, or the empty slot where it would go.
+     */
+    private long find(long keyHash) {
+        long mask = capacity - 1;
+        long slot = (keyHash ^ (keyHash >>> 32)) & mask;
+        while (true) {
+            long key = keyAt(slot);
+            if (key == 0 || key == keyHash) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * 0 marks an empty slot, so it is not used as a key hash.
+     */
+    private static long normalize(long keyHash) {
+        return keyHash == 0 ? 1 : keyHash;
+    }
+
+    synchronized void put(long keyHash, long fingerprint) throws IOException {
+        keyHash = normalize(keyHash);
+        if (size + 1 > capacity * MAX_LOAD) {
+            grow();
+        }
+        long slot = find(keyHash);
+        if (keyAt(slot) == 0) {
+            size++;
+        }
+        set(slot, keyHash, fingerprint & ~SEEN);
+    }
+
+    /**
+     * Record that a key is in the new snapshot, and whether it has changed since the old one.
+     */
+    synchronized Change markSeen(long keyHash, long fingerprint) {
+        keyHash = normalize(keyHash);
+        long slot = find(keyHash);
+        if (keyAt(slot) == 0) {
+            return Change.NEW;
+        }
+        long old = fingerprintAt(slot);
+        set(slot, keyHash, old | SEEN);
+        return (old & ~SEEN) == (fingerprint & ~SEEN) ? Change.UNCHANGED : Change.CHANGED;
+    }
+
+    /**
+     * Whether a key of the old snapshot has disappeared from the new one. Each such key is only reported
+     * once, as it is marked as seen.
+     */
+    synchronized boolean removedFromNew(long keyHash) {
+        keyHash = normalize(keyHash);
+        long slot = find(keyHash);
+        if (keyAt(slot) == 0) {
+            return false;
+        }
+        long fingerprint = fingerprintAt(slot);
+        if ((fingerprint & SEEN) != 0) {
+            return false;
+        }
+        set(slot, keyHash, fingerprint | SEEN);
+        return true;
+    }
+
+    synchronized long size() {
+        return size;
+    }
+
+    private void grow() throws IOException {
+        MappedByteBuffer[] oldSegments = segments;
+        long oldCapacity = capacity;
+        File oldFile = file;
+        allocate(capacity * 2);
+        for (long slot = 0; slot < oldCapacity; slot++) {
+            MappedByteBuffer segment = oldSegments[(int)(slot >>> SEGMENT_SHIFT)];
+            int offset = (int)((slot & SEGMENT_MASK) * SLOT_SIZE);
+            long keyHash = segment.getLong(offset);
+            if (keyHash != 0) {
+                set(find(keyHash), keyHash, segment.getLong(offset + 8));
+            }
+        }
+        oldFile.delete();
+    }
+
+    @Override
+    public synchronized void close() {
+        segments = null;
+        file.delete();
+    }
+}
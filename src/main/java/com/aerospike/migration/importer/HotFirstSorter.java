@@ -0,0 +1,137 @@
+package com.aerospike.migration.importer;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.aerospike.migration.importer.rdb.KeyValuePair;
+import com.aerospike.migration.importer.rdb.RdbWriter;
+
+/**
+ * Sorts the keys of an RDB file into buckets by priority, so the keys most likely to be read are
+ * imported first. Each bucket is a temporary RDB file the keys are copied to in their encoded form,
+ * which is then imported like any other file. In order, the buckets hold:
+ * <ol>
+ * <li>Hot keys, hottest first, by their LFU counter or LRU idle time.</li>
+ * <li>Keys which are not hot but expire soon, soonest first, so they are written before they expire.</li>
+ * <li>The remaining keys, hottest first, with keys which have no LRU or LFU information among the coldest.</li>
+ * </ol>
+ * Both the LFU counter and the LRU idle time are logarithmic in the access rate once mapped to a
+ * level, so a key one level hotter than another is counted as having twice its traffic.
+ */
+class HotFirstSorter implements AutoCloseable {
+    private static final int LEVELS = 16;
+    private static final int HOT_LEVELS = 8;
+    private static final int EXPIRING_BUCKETS = 8;
+    static final int BUCKETS = HOT_LEVELS + EXPIRING_BUCKETS + (LEVELS - HOT_LEVELS);
+
+    private final File file;
+    private final int version;
+    private final long expiringMillis;
+    private final long now = System.currentTimeMillis();
+    private final RdbWriter[] writers = new RdbWriter[BUCKETS];
+    private final long[] weights = new long[BUCKETS];
+    private boolean finished = false;
+
+    /**
+     * @param file - the file being sorted
+     * @param version - the RDB version of the file, which the buckets are written with
+     * @param expiringSeconds - keys which expire within this many seconds are imported before cold keys
+     */
+    HotFirstSorter(File file, int version, long expiringSeconds) {
+        this.file = file;
+        this.version = version;
+        this.expiringMillis = expiringSeconds * 1000;
+    }
+
+    /**
+     * How hot a key is, from 0 for the hottest to {@code LEVELS - 1}, or -1 if this is not known.
+     */
+    private static int levelOf(KeyValuePair kvp) {
+        if (kvp.getFreq() != null) {
+            return (255 - kvp.getFreq()) * LEVELS / 256;
+        }
+        if (kvp.getIdle() != null) {
+            // 0 seconds idle is level 0, 1 second level 1, 2-3 seconds level 2 and so on
+            return Math.min(LEVELS - 1, 64 - Long.numberOfLeadingZeros(kvp.getIdle()));
+        }
+        return -1;
+    }
+
+    /**
+     * The share of the traffic of a key, relative to the other keys.
+     */
+    static long weightOf(KeyValuePair kvp) {
+        int level = levelOf(kvp);
+        return level < 0 ? 1 : 1L << (LEVELS - 1 - level);
+    }
+
+    int bucketOf(KeyValuePair kvp) {
+        int level = levelOf(kvp);
+        if (level >= 0 && level < HOT_LEVELS) {
+            return level;
+        }
+        Long expireTime = kvp.getExpireTime();
+        if (expireTime != null && expireTime - now < expiringMillis) {
+            long remainingSeconds = Math.max(0, expireTime - now) / 1000;
+            // Logarithmic, so the buckets cover the first few hours with the soonest split most finely
+            int expiring = Math.min(EXPIRING_BUCKETS - 1, (64 - Long.numberOfLeadingZeros(remainingSeconds)) / 2);
+            return HOT_LEVELS + expiring;
+        }
+        return level < 0 ? BUCKETS - 1 : HOT_LEVELS + EXPIRING_BUCKETS + level - HOT_LEVELS;
+    }
+
+    synchronized void add(long db, KeyValuePair kvp) throws IOException {
+        int bucket = bucketOf(kvp);
+        if (writers[bucket] == null) {
+            File bucketFile = File.createTempFile(file.getName() + ".bucket" + bucket + "-", ".rdb");
+            bucketFile.deleteOnExit();
+            writers[bucket] = new RdbWriter(bucketFile, version);
+        }
+        writers[bucket].write(db, kvp);
+        weights[bucket] += weightOf(kvp);
+    }
+
+    /**
+     * Finish writing the buckets, so they can be read.
+     */
+    synchronized void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        for (RdbWriter writer : writers) {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    /**
+     * The file holding the keys of a bucket, or null if there are none.
+     */
+    File getBucketFile(int bucket) {
+        return writers[bucket] == null ? null : writers[bucket].getFile();
+    }
+
+    long getKeys(int bucket) {
+        return writers[bucket] == null ? 0 : writers[bucket].getPairs();
+    }
+
+    long getWeight(int bucket) {
+        return weights[bucket];
+    }
+
+    @Override
+    public void close() {
+        try {
+            finish();
+        }
+        catch (IOException ignored) {
+        }
+        for (RdbWriter writer : writers) {
+            if (writer != null) {
+                writer.getFile().delete();
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.aerospike.migration.importer;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Matcher;
 
@@ -8,6 +9,7 @@ import lombok.Data;
 @Data
 public class MappingSpecs {
     private List<MappingSpec> mappings;
+    private List<RateLimitSpec> rateLimits = new ArrayList<>();
     
     public RecordTranslator getTranslatorFromString(String redisKey, boolean debug) {
         for (MappingSpec spec : mappings) {
@@ -19,7 +21,22 @@ public class MappingSpecs {
         throw new NoTranslatorException("No translator available for key %s, cannot map to Aerospike", redisKey);
     }
     
+    /**
+     * Whether any of the mappings matches the key, so {@link #getTranslatorFromString} would succeed.
+     */
+    public boolean hasMappingFor(String redisKey) {
+        for (MappingSpec spec : mappings) {
+            if (spec.matches(redisKey) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
     public void validate() {
+        for (RateLimitSpec rateLimit : rateLimits) {
+            rateLimit.validate();
+        }
 //        for (MappingSpec thisSpec : mappings) {
 //            thisSpec.validate();
 //        }
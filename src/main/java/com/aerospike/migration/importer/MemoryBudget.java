@@ -0,0 +1,86 @@
+package com.aerospike.migration.importer;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A limit on the memory held by entries which have been read but not yet written, so the readers wait
+ * rather than run out of heap when the entries are large. Readers are let in the order they ask. A
+ * reader waits until its entry fits in what is left, or, for an entry bigger than the whole budget,
+ * until nothing else is held, so the entry is processed on its own rather than never.
+ */
+class MemoryBudget {
+    private final long limit;
+    private long used = 0;
+    private long nextTicket = 0;
+    private long serving = 0;
+    private long waitNanos = 0;
+    // Tickets of readers which were interrupted while waiting
+    private final Set<Long> abandoned = new HashSet<>();
+
+    /**
+     * @param limit - the most bytes to hold at once
+     */
+    MemoryBudget(long limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Wait until the bytes can be held without going over the limit, then hold them.
+     */
+    synchronized void acquire(long bytes) throws InterruptedException {
+        long ticket = nextTicket++;
+        if (ticket != serving || !fits(bytes)) {
+            long start = System.nanoTime();
+            try {
+                while (ticket != serving || !fits(bytes)) {
+                    wait();
+                }
+            }
+            catch (InterruptedException e) {
+                // Let the readers behind this one go on
+                abandoned.add(ticket);
+                advance();
+                notifyAll();
+                throw e;
+            }
+            finally {
+                waitNanos += System.nanoTime() - start;
+            }
+        }
+        used += bytes;
+        serving++;
+        advance();
+        notifyAll();
+    }
+
+    private void advance() {
+        while (abandoned.remove(serving)) {
+            serving++;
+        }
+    }
+
+    private boolean fits(long bytes) {
+        return used == 0 || used + bytes <= limit;
+    }
+
+    synchronized void release(long bytes) {
+        used -= bytes;
+        notifyAll();
+    }
+
+    long getLimit() {
+        return limit;
+    }
+
+    synchronized long getUsed() {
+        return used;
+    }
+
+    /**
+     * The total time readers have waited for memory.
+     */
+    synchronized long getWaitNanos() {
+        return waitNanos;
+    }
+}
@@ -0,0 +1,70 @@
+package com.aerospike.migration.importer;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.aerospike.client.IAerospikeClient;
+import com.aerospike.client.cluster.Cluster;
+import com.aerospike.client.cluster.Node;
+import com.aerospike.client.cluster.Partition;
+
+/**
+ * Routes each part to a queue for the node which masters the partition of its key, where it is written by
+ * threads dedicated to that node. Each node has its own bounded queue, so a slow node only holds up the
+ * threads translating records for it, and the other nodes carry on being written. With batching, each node
+ * has its own batches, so every batch goes to a single node.
+ * <p>
+ * The node is worked out from the key's digest when the part is written. If partitions have moved since,
+ * the server forwards the write to the new master.
+ */
+class NodeRoutedWriter implements RecordWriter {
+    private final IAerospikeClient client;
+    private final Cluster cluster;
+    private final int threadsPerNode;
+    private final int queueDepth;
+    private final int batchSize;
+    private final long lingerMicros;
+    private final Map<String, WriteStage> lanes = new ConcurrentHashMap<>();
+
+    /**
+     * @param threadsPerNode - the number of threads writing to each node
+     * @param queueDepth - the maximum number of parts waiting for each node
+     * @param batchSize - the maximum number of records in a batch, or 1 to write each record on its own
+     * @param lingerMicros - how long a part can wait for its batch to fill before the batch is sent
+     */
+    NodeRoutedWriter(IAerospikeClient client, int threadsPerNode, int queueDepth, int batchSize, long lingerMicros) {
+        this.client = client;
+        this.cluster = client.getCluster();
+        this.threadsPerNode = threadsPerNode;
+        this.queueDepth = queueDepth;
+        this.batchSize = batchSize;
+        this.lingerMicros = lingerMicros;
+    }
+
+    /**
+     * The number of parts waiting for each node, by node name.
+     */
+    public Map<String, Integer> getQueueDepths() {
+        Map<String, Integer> depths = new TreeMap<>();
+        for (Map.Entry<String, WriteStage> lane : lanes.entrySet()) {
+            depths.put(lane.getKey(), lane.getValue().getQueueDepth());
+        }
+        return depths;
+    }
+
+    @Override
+    public void write(WriteRequest request, WriteRequest.Part part) throws InterruptedException {
+        // Find the node first, so a key which cannot be routed fails the request before the part is started
+        Node node = Partition.write(cluster, client.getWritePolicyDefault(), part.getKey()).getNodeWrite(cluster);
+        lanes.computeIfAbsent(node.getName(), name -> new WriteStage("node-" + name, client, threadsPerNode, queueDepth, batchSize, lingerMicros))
+                .write(request, part);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        for (WriteStage lane : lanes.values()) {
+            lane.close();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.aerospike.migration.importer;
+
+import lombok.Data;
+
+/**
+ * A cap on the rate of writes to a namespace, or to one set in it, from the mapping file.
+ */
+@Data
+public class RateLimitSpec {
+    private String namespace;
+    private String set;
+    private Long recordsPerSecond;
+    private Long bytesPerSecond;
+
+    /**
+     * The name the limit applies to: the namespace, or the namespace and set separated by a dot.
+     */
+    public String getTarget() {
+        return set == null ? namespace : namespace + "." + set;
+    }
+
+    public void validate() {
+        if (namespace == null) {
+            throw new InvalidConfigurationException("A rate limit must have a namespace");
+        }
+        if ((recordsPerSecond == null || recordsPerSecond <= 0) && (bytesPerSecond == null || bytesPerSecond <= 0)) {
+            throw new InvalidConfigurationException("The rate limit for %s must have a recordsPerSecond or bytesPerSecond greater than 0", getTarget());
+        }
+    }
+}
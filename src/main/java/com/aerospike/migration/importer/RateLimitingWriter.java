@@ -0,0 +1,133 @@
+package com.aerospike.migration.importer;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.aerospike.client.Key;
+import com.aerospike.client.Operation;
+
+/**
+ * Caps the rate of writes, and of the bytes written, to protect a cluster which is serving other traffic.
+ * There are caps for the whole import, from the command line, and for namespaces or sets, from the mapping
+ * file. Each part counts as a record, so the chunks of a large collection each count, and its bytes are
+ * the sizes of its bin names and values. The thread writing a part sleeps until every cap it comes under
+ * allows it, then passes it to the writer this wraps.
+ */
+class RateLimitingWriter implements RecordWriter {
+    /**
+     * The caps for the import as a whole, or for a namespace or set. Either may be null.
+     */
+    private static class Limit {
+        private final TokenBucket records;
+        private final TokenBucket bytes;
+
+        Limit(Long recordsPerSecond, Long bytesPerSecond) {
+            this.records = recordsPerSecond == null || recordsPerSecond <= 0 ? null : new TokenBucket(recordsPerSecond);
+            this.bytes = bytesPerSecond == null || bytesPerSecond <= 0 ? null : new TokenBucket(bytesPerSecond);
+        }
+
+        long reserve(long partBytes, long now) {
+            long waitNanos = 0;
+            if (records != null) {
+                waitNanos = records.reserve(1, now);
+            }
+            if (bytes != null) {
+                waitNanos = Math.max(waitNanos, bytes.reserve(partBytes, now));
+            }
+            return waitNanos;
+        }
+    }
+
+    private final RecordWriter writer;
+    private final Limit global;
+    private final Map<String, Limit> targets = new HashMap<>();
+    private final LongAdder records = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    /**
+     * @param recordsPerSecond - the cap on the writes for the whole import, or 0 for none
+     * @param bytesPerSecond - the cap on the bytes written for the whole import, or 0 for none
+     * @param rateLimits - the caps for namespaces and sets
+     */
+    RateLimitingWriter(RecordWriter writer, long recordsPerSecond, long bytesPerSecond, List<RateLimitSpec> rateLimits) {
+        this.writer = writer;
+        this.global = new Limit(recordsPerSecond, bytesPerSecond);
+        for (RateLimitSpec spec : rateLimits) {
+            targets.put(spec.getTarget(), new Limit(spec.getRecordsPerSecond(), spec.getBytesPerSecond()));
+        }
+    }
+
+    RecordWriter getWriter() {
+        return writer;
+    }
+
+    public long getRecordsPerSecondCap() {
+        return global.records == null ? 0 : global.records.getPermitsPerSecond();
+    }
+
+    public long getBytesPerSecondCap() {
+        return global.bytes == null ? 0 : global.bytes.getPermitsPerSecond();
+    }
+
+    public long getRecords() {
+        return records.sum();
+    }
+
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    /**
+     * The total time threads have slept waiting for the caps.
+     */
+    public long getWaitNanos() {
+        return waitNanos.sum();
+    }
+
+    static long sizeOf(WriteRequest.Part part) {
+        long size = 0;
+        for (Operation op : part.getOps()) {
+            if (op.binName != null) {
+                size += op.binName.length();
+            }
+            if (op.value != null) {
+                size += op.value.estimateSize();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void write(WriteRequest request, WriteRequest.Part part) throws Exception {
+        long partBytes = sizeOf(part);
+        long now = System.nanoTime();
+        long wait = global.reserve(partBytes, now);
+        if (!targets.isEmpty()) {
+            Key key = part.getKey();
+            Limit set = targets.get(key.namespace + "." + key.setName);
+            if (set != null) {
+                wait = Math.max(wait, set.reserve(partBytes, now));
+            }
+            Limit namespace = targets.get(key.namespace);
+            if (namespace != null) {
+                wait = Math.max(wait, namespace.reserve(partBytes, now));
+            }
+        }
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+            waitNanos.add(wait);
+        }
+        records.increment();
+        bytes.add(partBytes);
+        writer.write(request, part);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        writer.close();
+    }
+}
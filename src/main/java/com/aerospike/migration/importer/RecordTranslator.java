@@ -2,6 +2,7 @@ package com.aerospike.migration.importer;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
@@ -16,10 +17,12 @@ import com.aerospike.client.cdt.CTX;
 import com.aerospike.client.cdt.ListOperation;
 import com.aerospike.client.cdt.ListOrder;
 import com.aerospike.client.cdt.ListPolicy;
+import com.aerospike.client.cdt.ListReturnType;
 import com.aerospike.client.cdt.ListWriteFlags;
 import com.aerospike.client.cdt.MapOperation;
 import com.aerospike.client.cdt.MapOrder;
 import com.aerospike.client.cdt.MapPolicy;
+import com.aerospike.client.cdt.MapReturnType;
 import com.aerospike.client.cdt.MapWriteFlags;
 import com.aerospike.migration.importer.MappingSpec.KeyType;
 import com.aerospike.migration.importer.TranslateSpec.Type;
@@ -47,6 +50,10 @@ public class RecordTranslator {
         return this.mappingSpec.sendKey();
     }
     
+    public MappingSpec getMappingSpec() {
+        return this.mappingSpec;
+    }
+    
     public Key getKey() {
         String namespace = matcher.replaceAll(mappingSpec.getNamespace());
         String set = matcher.replaceAll(mappingSpec.getSet());
@@ -165,11 +172,11 @@ public class RecordTranslator {
         currentPath.pop();
     }
     
-    private List<Object> translateList(List<String> values, Deque<Object> currentPath) {
+    private List<Object> translateList(List<String> values, int startIndex, Deque<Object> currentPath) {
         List<Object> newList = new ArrayList<>();
         for (int i = 0; i < values.size(); i++) {
             String thisValue = values.get(i);
-            currentPath.push((long)i);
+            currentPath.push((long)(startIndex + i));
             TranslateSpec listSpec = this.mappingSpec.findMatchingSpec(currentPath);
             newList.add(applyTranslateSpecToValueAsObject(listSpec, thisValue));
             currentPath.pop();
@@ -231,6 +238,69 @@ public class RecordTranslator {
         }
     }
 
+    private List<Value> toValues(List<Object> list) {
+        List<Value> values = new ArrayList<>(list.size());
+        for (Object item : list) {
+            values.add(Value.get(item));
+        }
+        return values;
+    }
+
+    /**
+     * The context of the element a collection was put into by {@link #createFinalOperation}, so later
+     * chunks of the collection can be added to it.
+     */
+    private CTX[] createAppendContext(Object lastOp, List<CTX> ctxs, List<String> ctxStrings) {
+        List<CTX> appendCtxs = new ArrayList<>(ctxs);
+        if (lastOp instanceof String) {
+            appendCtxs.add(CTX.mapKey(Value.get(lastOp)));
+            if (debug) {
+                ctxStrings.add(String.format("mapKey(Value.get(\"%s\"))", lastOp));
+            }
+        }
+        else {
+            appendCtxs.add(CTX.listIndex((int)(long)lastOp));
+            if (debug) {
+                ctxStrings.add(String.format("listIndex(%d)", lastOp));
+            }
+        }
+        return appendCtxs.toArray(CTX_TYPE);
+    }
+
+    /**
+     * Where a mapping path puts the data of a key: the bin, the element of the bin the data goes in, and
+     * the operations and contexts for the maps and lists enclosing that element.
+     */
+    private static class PathTarget {
+        private final Deque<Object> currentPath = new ArrayDeque<>();
+        private final List<CTX> ctxs = new ArrayList<>();
+        private final List<String> ctxStrings = new ArrayList<>();
+        private List<Object> path;
+        private String binName;
+        private List<Operation> nestedOps;
+
+        boolean isWholeBin() {
+            return path.size() == 1;
+        }
+
+        Object lastItem() {
+            return path.get(path.size() - 1);
+        }
+    }
+
+    private PathTarget resolvePath(String pathToUse) {
+        PathTarget target = new PathTarget();
+        PathParser parser = new PathParser(getTranslatedPath(pathToUse), false);
+        target.path = parser.parsePath();
+        validatePath(target.path);
+        target.currentPath.push(target.path.get(0));
+
+        TranslateSpec spec = this.mappingSpec.findMatchingSpec(target.currentPath);
+        target.binName = (String)applyTranslateSpecToPathItem(spec, target.path.get(0));
+        target.nestedOps = createNestedOperations(target.binName, target.path, target.currentPath, target.ctxs, target.ctxStrings);
+        return target;
+    }
+
     public List<Operation> getOperationsFor(List<String> values) {
         if (debug) {
             System.out.printf("Getting operations for list: %s on key '%s'\n"
@@ -254,7 +324,7 @@ public class RecordTranslator {
         if (path.size() == 1) {
             TranslateSpec spec = this.mappingSpec.findMatchingSpec(currentPath);
             String binName = (String)applyTranslateSpecToPathItem(spec, path.get(0));
-            List<Object> newList = translateList(values, currentPath);
+            List<Object> newList = translateList(values, 0, currentPath);
             if (debug) {
                 System.out.printf(" - Put '%s' into bin %s\n", newList, binName);
             }
@@ -272,12 +342,71 @@ public class RecordTranslator {
         ops.addAll(createNestedOperations(binName, path, currentPath, ctxs, ctxStrings));
         
         Object lastOp = path.get(path.size() - 1);
-        List<Object> newList = translateList(values, currentPath);
+        List<Object> newList = translateList(values, 0, currentPath);
         ops.add(createFinalOperation(binName, lastOp, newList, ctxs, ctxStrings));
 
         return ops;
     }
 
+    /**
+     * Create the operations to append a later chunk of a large list to the list written by
+     * {@link #getOperationsFor(List)}.
+     * @param startIndex - the index in the Redis list of the first value in this chunk
+     */
+    public List<Operation> getAppendOperationsFor(List<String> values, int startIndex) {
+        return getListAddOperations(values, startIndex, new ListPolicy(ListOrder.UNORDERED, ListWriteFlags.DEFAULT), false);
+    }
+
+    /**
+     * Create the operations to insert values at the head of a list, as done by {@code LPUSH}. Each value
+     * is pushed in turn, so they end up in the list in the reverse order to which they are passed.
+     */
+    public List<Operation> getPrependOperationsFor(List<String> values) {
+        List<String> reversed = new ArrayList<>(values);
+        Collections.reverse(reversed);
+        return getListAddOperations(reversed, 0, new ListPolicy(ListOrder.UNORDERED, ListWriteFlags.DEFAULT), true);
+    }
+
+    /**
+     * Create the operations to add members to a set, as done by {@code SADD}. Sets are stored as lists,
+     * so members which are already in the list are skipped.
+     */
+    public List<Operation> getAddUniqueOperationsFor(List<String> values) {
+        ListPolicy listPolicy = new ListPolicy(ListOrder.UNORDERED, ListWriteFlags.ADD_UNIQUE | ListWriteFlags.NO_FAIL | ListWriteFlags.PARTIAL);
+        return getListAddOperations(values, 0, listPolicy, false);
+    }
+
+    private List<Operation> getListAddOperations(List<String> values, int startIndex, ListPolicy listPolicy, boolean prepend) {
+        if (debug) {
+            System.out.printf("Getting %s operations for list: %s from index %d on key '%s'\n",
+                    prepend ? "prepend" : "append", values, startIndex, this.redisKey);
+        }
+        List<Operation> ops = new ArrayList<>();
+        PathTarget target = resolveListPath();
+        String binName = target.binName;
+        List<Object> newList = translateList(values, startIndex, target.currentPath);
+
+        if (target.isWholeBin()) {
+            if (debug) {
+                System.out.printf(" - ListOperation.%s(%s, %s)\n", prepend ? "insertItems" : "appendItems", binName, newList);
+            }
+            ops.add(prepend ? ListOperation.insertItems(listPolicy, binName, 0, toValues(newList))
+                    : ListOperation.appendItems(listPolicy, binName, toValues(newList)));
+            return ops;
+        }
+
+        ops.addAll(target.nestedOps);
+        CTX[] appendCtxs = createAppendContext(target.lastItem(), target.ctxs, target.ctxStrings);
+        if (debug) {
+            System.out.printf(" - ListOperation.%s(%s, %s, %s)\n", prepend ? "insertItems" : "appendItems", binName, newList, target.ctxStrings);
+        }
+        // The list may not exist yet if it is being added to by a replayed command rather than a later chunk
+        ops.add(ListOperation.create(binName, ListOrder.UNORDERED, true, appendCtxs));
+        ops.add(prepend ? ListOperation.insertItems(listPolicy, binName, 0, toValues(newList), appendCtxs)
+                : ListOperation.appendItems(listPolicy, binName, toValues(newList), appendCtxs));
+        return ops;
+    }
+
     public List<Operation> getOperationsFor(Map<String, String> namesAndValues) {
         if (debug) {
             System.out.printf("Getting operations for map: %s on key '%s'\n"
@@ -318,34 +447,292 @@ public class RecordTranslator {
             TranslateSpec mapSpec = this.mappingSpec.findMatchingSpec(currentPath);
             Object valueToUse = (mapValue instanceof String) ? applyTranslateSpecToValueAsObject(mapSpec, (String)mapValue) : mapValue;
             newMap.put((String)applyTranslateSpecToPathItem(mapSpec, mapKey), valueToUse);
+            currentPath.pop();
         }
         ops.add(createFinalOperation(binName, lastOp, newMap, ctxs, ctxStrings));
 
         return ops;
     }
 
-    public List<Operation> getOperationsFor(String fieldName, String value) {
+    /**
+     * Create the operations to add a later chunk of the fields of a large hash to the map written by
+     * {@link #getOperationsFor(Map)}. Without a path each field is its own bin, so this is the same
+     * as the original operations.
+     */
+    public List<Operation> getAppendOperationsFor(Map<String, String> namesAndValues) {
+        String pathToUse = this.mappingSpec.getPath();
+        if (pathToUse == null) {
+            return getOperationsFor(namesAndValues);
+        }
         if (debug) {
-            System.out.printf("Getting operations for mapping field %s, value '%s' on key '%s'\n"
-                    + " - Mapping spec: %s\n",
-                    fieldName, value, this.redisKey, this.mappingSpec);
+            System.out.printf("Getting append operations for map: %s on key '%s'\n",
+                    namesAndValues, this.redisKey);
+        }
+        PathTarget target = resolvePath(pathToUse);
+        String binName = target.binName;
+        List<Operation> ops = new ArrayList<>(target.nestedOps);
+
+        Map<Value, Value> newMap = new HashMap<>();
+        for (String mapKey : namesAndValues.keySet()) {
+            String mapValue = namesAndValues.get(mapKey);
+            target.currentPath.push(mapKey);
+            TranslateSpec mapSpec = this.mappingSpec.findMatchingSpec(target.currentPath);
+            newMap.put(Value.get(applyTranslateSpecToPathItem(mapSpec, mapKey)), applyTranslateSpecToValue(mapSpec, mapValue));
+            target.currentPath.pop();
+        }
+        CTX[] appendCtxs = createAppendContext(target.lastItem(), target.ctxs, target.ctxStrings);
+        if (debug) {
+            System.out.printf(" - MapOperation.putItems(%s, %s, %s)\n", binName, newMap, target.ctxStrings);
+        }
+        MapPolicy mapPolicy = new MapPolicy(MapOrder.KEY_ORDERED, MapWriteFlags.DEFAULT);
+        ops.add(MapOperation.create(binName, MapOrder.KEY_ORDERED, appendCtxs));
+        ops.add(MapOperation.putItems(mapPolicy, binName, newMap, appendCtxs));
+        return ops;
+    }
+
+    /**
+     * Create the operations to remove fields from a hash, as done by {@code HDEL}. Without a path each
+     * field is its own bin, which is removed.
+     */
+    public List<Operation> getRemoveOperationsFor(List<String> fieldNames) {
+        if (debug) {
+            System.out.printf("Getting remove operations for fields: %s on key '%s'\n", fieldNames, this.redisKey);
         }
         Deque<Object> currentPath = new ArrayDeque<>();
-        if (value == null) {
-            throw new InvalidConfigurationException("Key %s: Value cannot be null", redisKey);
+        List<Operation> ops = new ArrayList<>();
+
+        String pathToUse = this.mappingSpec.getPath();
+        if (pathToUse == null) {
+            for (String fieldName : fieldNames) {
+                currentPath.push(fieldName);
+                TranslateSpec spec = this.mappingSpec.findMatchingSpec(currentPath);
+                String binName = (String)applyTranslateSpecToPathItem(spec, fieldName);
+                if (debug) {
+                    System.out.printf(" - Remove bin %s\n", binName);
+                }
+                ops.add(Operation.put(Bin.asNull(binName)));
+                currentPath.pop();
+            }
+            return ops;
+        }
+
+        // The operations creating the enclosing maps are not used, there is nothing to remove from if they do not exist
+        PathTarget target = resolvePath(pathToUse);
+        String binName = target.binName;
+        // The fields were put in the map at the last item of the path, as for later chunks
+        CTX[] mapCtxs = createAppendContext(target.lastItem(), target.ctxs, target.ctxStrings);
+        List<Value> keys = new ArrayList<>();
+        for (String fieldName : fieldNames) {
+            target.currentPath.push(fieldName);
+            TranslateSpec mapSpec = this.mappingSpec.findMatchingSpec(target.currentPath);
+            keys.add(Value.get(applyTranslateSpecToPathItem(mapSpec, fieldName)));
+            target.currentPath.pop();
+        }
+        if (debug) {
+            System.out.printf(" - MapOperation.removeByKeyList(%s, %s, %s)\n", binName, keys, target.ctxStrings);
+        }
+        ops.add(MapOperation.removeByKeyList(binName, keys, MapReturnType.NONE, mapCtxs));
+        return ops;
+    }
+
+    /**
+     * Create the operations to remove this key, as done by {@code DEL}. Without a path the key is the whole
+     * record, which is deleted. Otherwise just the element of the record the key was written to is removed.
+     */
+    public List<Operation> getDeleteOperations() {
+        if (debug) {
+            System.out.printf("Getting delete operations on key '%s'\n - Mapping spec: %s\n", this.redisKey, this.mappingSpec);
         }
         List<Operation> ops = new ArrayList<>();
-        
+        String pathToUse = this.mappingSpec.getPath();
+        if (pathToUse == null) {
+            ops.add(Operation.delete());
+            return ops;
+        }
+        PathTarget target = resolvePath(pathToUse);
+        String binName = target.binName;
+        if (target.isWholeBin()) {
+            if (debug) {
+                System.out.printf(" - Remove bin %s\n", binName);
+            }
+            ops.add(Operation.put(Bin.asNull(binName)));
+            return ops;
+        }
+
+        List<String> ctxStrings = target.ctxStrings;
+        Object lastOp = target.lastItem();
+        CTX[] parentCtxs = target.ctxs.size() > 0 ? target.ctxs.toArray(CTX_TYPE) : null;
+        if (lastOp instanceof String) {
+            if (debug) {
+                System.out.printf(" - MapOperation.removeByKey(%s, %s, %s)\n", binName, lastOp, ctxStrings);
+            }
+            ops.add(MapOperation.removeByKey(binName, Value.get(lastOp), MapReturnType.NONE, parentCtxs));
+        }
+        else {
+            // Removing the element would move the ones after it, so it is set to null instead
+            if (debug) {
+                System.out.printf(" - ListOperation.set(%s, %s, null, %s)\n", binName, lastOp, ctxStrings);
+            }
+            ListPolicy listPolicy = new ListPolicy(ListOrder.UNORDERED, ListWriteFlags.DEFAULT);
+            ops.add(ListOperation.set(listPolicy, binName, (int)(long)lastOp, Value.getAsNull(), parentCtxs));
+        }
+        return ops;
+    }
+
+    /**
+     * The path a single value is written to: the field of a hash under the mapping path, or its own bin
+     * without a path. A {@code null} field is a string value, which needs a mapping path.
+     */
+    private String getPathFor(String fieldName) {
         String pathToUse = this.mappingSpec.getPath();
         if (pathToUse == null) {
             if (fieldName == null) {
                 throw new InvalidConfigurationException("cannot map operations without either a mapping path or a field name");
             }
-            pathToUse = fieldName.startsWith("$.") ? fieldName : "$." + fieldName;
+            return fieldName.startsWith("$.") ? fieldName : "$." + fieldName;
         }
         else if (fieldName != null) {
             pathToUse += "." + fieldName;
         }
+        return pathToUse;
+    }
+
+    /**
+     * Create the operations to add to a number, as done by {@code INCRBY} on a string or {@code HINCRBY} on a
+     * field of a hash. A number which does not exist yet is created.
+     * @param fieldName - the field of the hash, or {@code null} for a string
+     * @param delta - the integer or double to add
+     */
+    public List<Operation> getIncrementOperationsFor(String fieldName, Value delta) {
+        if (debug) {
+            System.out.printf("Getting increment operations for field %s by %s on key '%s'\n", fieldName, delta, this.redisKey);
+        }
+        List<Operation> ops = new ArrayList<>();
+        PathTarget target = resolvePath(getPathFor(fieldName));
+        String binName = target.binName;
+        if (target.isWholeBin()) {
+            if (debug) {
+                System.out.printf(" - Operation.add(%s, %s)\n", binName, delta);
+            }
+            ops.add(Operation.add(new Bin(binName, delta)));
+            return ops;
+        }
+
+        ops.addAll(target.nestedOps);
+        Object lastOp = target.lastItem();
+        CTX[] parentCtxs = target.ctxs.size() > 0 ? target.ctxs.toArray(CTX_TYPE) : null;
+        if (lastOp instanceof String) {
+            if (debug) {
+                System.out.printf(" - MapOperation.increment(%s, %s, %s, %s)\n", binName, lastOp, delta, target.ctxStrings);
+            }
+            MapPolicy mapPolicy = new MapPolicy(MapOrder.KEY_ORDERED, MapWriteFlags.DEFAULT);
+            ops.add(MapOperation.increment(mapPolicy, binName, Value.get(lastOp), delta, parentCtxs));
+        }
+        else {
+            if (debug) {
+                System.out.printf(" - ListOperation.increment(%s, %s, %s, %s)\n", binName, lastOp, delta, target.ctxStrings);
+            }
+            ListPolicy listPolicy = new ListPolicy(ListOrder.UNORDERED, ListWriteFlags.DEFAULT);
+            ops.add(ListOperation.increment(listPolicy, binName, (int)(long)lastOp, delta, parentCtxs));
+        }
+        return ops;
+    }
+
+    /**
+     * Create the operations to append to a string, as done by {@code APPEND}. Only a string in a bin of its own
+     * can be appended to, so this returns {@code null} if the mapping path puts the string in a map or list.
+     */
+    public List<Operation> getStringAppendOperationsFor(String value) {
+        if (debug) {
+            System.out.printf("Getting string append operations for '%s' on key '%s'\n", value, this.redisKey);
+        }
+        PathTarget target = resolvePath(getPathFor(null));
+        if (!target.isWholeBin()) {
+            return null;
+        }
+        if (debug) {
+            System.out.printf(" - Operation.append(%s, %s)\n", target.binName, value);
+        }
+        return List.of(Operation.append(new Bin(target.binName, value)));
+    }
+
+    /**
+     * Find the list a list or set was written to, as for later chunks. Lists and sets need a mapping path.
+     */
+    private PathTarget resolveListPath() {
+        String pathToUse = this.mappingSpec.getPath();
+        if (pathToUse == null) {
+            throw new InvalidConfigurationException("List operation on key %s did not contain a path, so I have no idea where to put the data", this.redisKey);
+        }
+        return resolvePath(pathToUse);
+    }
+
+    private CTX[] getListContext(PathTarget target) {
+        return target.isWholeBin() ? null : createAppendContext(target.lastItem(), target.ctxs, target.ctxStrings);
+    }
+
+    /**
+     * Create the operations to remove elements from either end of a list, as done by {@code LPOP} and {@code RPOP}.
+     */
+    public List<Operation> getPopOperationsFor(int count, boolean fromHead) {
+        if (debug) {
+            System.out.printf("Getting pop operations for %d elements from the %s on key '%s'\n", count, fromHead ? "head" : "tail", this.redisKey);
+        }
+        PathTarget target = resolveListPath();
+        CTX[] listCtxs = getListContext(target);
+        if (debug) {
+            System.out.printf(" - ListOperation.removeByIndexRange(%s, %d, %d, %s)\n", target.binName, fromHead ? 0 : -count, count, target.ctxStrings);
+        }
+        return List.of(ListOperation.removeByIndexRange(target.binName, fromHead ? 0 : -count, count, ListReturnType.NONE, listCtxs));
+    }
+
+    /**
+     * Create the operations to replace an element of a list, as done by {@code LSET}.
+     */
+    public List<Operation> getListSetOperationsFor(int index, String value) {
+        if (debug) {
+            System.out.printf("Getting list set operations for '%s' at index %d on key '%s'\n", value, index, this.redisKey);
+        }
+        PathTarget target = resolveListPath();
+        CTX[] listCtxs = getListContext(target);
+        Object newValue = translateList(List.of(value), index, target.currentPath).get(0);
+        if (debug) {
+            System.out.printf(" - ListOperation.set(%s, %d, %s, %s)\n", target.binName, index, newValue, target.ctxStrings);
+        }
+        ListPolicy listPolicy = new ListPolicy(ListOrder.UNORDERED, ListWriteFlags.DEFAULT);
+        return List.of(ListOperation.set(listPolicy, target.binName, index, Value.get(newValue), listCtxs));
+    }
+
+    /**
+     * Create the operations to remove every element equal to one of the values from a list or set, as done
+     * by {@code SREM}, or by {@code LREM} with a count of 0.
+     */
+    public List<Operation> getRemoveValuesOperationsFor(List<String> values) {
+        if (debug) {
+            System.out.printf("Getting remove operations for values: %s on key '%s'\n", values, this.redisKey);
+        }
+        PathTarget target = resolveListPath();
+        CTX[] listCtxs = getListContext(target);
+        List<Object> toRemove = translateList(values, 0, target.currentPath);
+        if (debug) {
+            System.out.printf(" - ListOperation.removeByValueList(%s, %s, %s)\n", target.binName, toRemove, target.ctxStrings);
+        }
+        return List.of(ListOperation.removeByValueList(target.binName, toValues(toRemove), ListReturnType.NONE, listCtxs));
+    }
+
+    public List<Operation> getOperationsFor(String fieldName, String value) {
+        if (debug) {
+            System.out.printf("Getting operations for mapping field %s, value '%s' on key '%s'\n"
+                    + " - Mapping spec: %s\n",
+                    fieldName, value, this.redisKey, this.mappingSpec);
+        }
+        Deque<Object> currentPath = new ArrayDeque<>();
+        if (value == null) {
+            throw new InvalidConfigurationException("Key %s: Value cannot be null", redisKey);
+        }
+        List<Operation> ops = new ArrayList<>();
+        
+        String pathToUse = getPathFor(fieldName);
 
         PathParser parser = new PathParser(getTranslatedPath(pathToUse), false);
         List<Object> path = parser.parsePath();
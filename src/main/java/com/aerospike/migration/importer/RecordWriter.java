@@ -0,0 +1,18 @@
+package com.aerospike.migration.importer;
+
+/**
+ * Writes the parts of each {@link WriteRequest} to Aerospike. The parts of one request are applied in
+ * the order they are written; the parts of different requests may be applied in any order.
+ */
+interface RecordWriter extends AutoCloseable {
+    /**
+     * Write a part of a request. This may block until there is capacity to write it.
+     */
+    void write(WriteRequest request, WriteRequest.Part part) throws Exception;
+
+    /**
+     * Wait for every write to complete and release any resources.
+     */
+    @Override
+    void close() throws InterruptedException;
+}
@@ -0,0 +1,294 @@
+package com.aerospike.migration.importer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import com.aerospike.migration.importer.rdb.ByteSlice;
+import com.aerospike.migration.importer.rdb.DumpPayloads;
+import com.aerospike.migration.importer.rdb.Entry;
+import com.aerospike.migration.importer.rdb.EntryFilter;
+import com.aerospike.migration.importer.rdb.KeyValuePair;
+import com.aerospike.migration.importer.rdb.SelectDb;
+import com.aerospike.migration.importer.rdb.ValueType;
+
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.KeyScanCursor;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScoredValue;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.cluster.ClusterClientOptions;
+import io.lettuce.core.cluster.RedisClusterClient;
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import io.lettuce.core.cluster.models.partitions.RedisClusterNode;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.protocol.ProtocolVersion;
+
+/**
+ * Reads keys and values directly from a live Redis server, as an alternative to reading an RDB file.
+ * Each server, or each master of a Redis cluster, is scanned on its own thread with {@code SCAN}. The
+ * values of the keys returned are fetched with Lettuce's asynchronous API, so the commands for many keys
+ * are pipelined on the connection. A window limits how many keys per node are in flight at once.
+ * <p>
+ * Values are fetched either with {@code DUMP}, which returns the value in RDB format in a single command
+ * so it is decoded like a value read from a file, or with {@code TYPE} followed by the read command for
+ * that type, for servers where {@code DUMP} is disabled.
+ */
+public class RedisSource implements AutoCloseable {
+    public enum FetchMode {
+        DUMP,
+        TYPE
+    }
+
+    private final List<RedisURI> uris;
+    private final boolean cluster;
+    private final int scanCount;
+    private final int window;
+    private final FetchMode fetchMode;
+    private final BlockingQueue<Entry> queue;
+    private final Consumer<String> errorHandler;
+    private final AtomicLong keysScanned = new AtomicLong();
+    private final DumpPayloads payloads = new DumpPayloads();
+    private final List<RedisClient> clients = new ArrayList<>();
+    private RedisClusterClient clusterClient;
+    private EntryFilter filter;
+
+    /**
+     * @param uris - the Redis servers to read, or the seed nodes of a cluster
+     * @param cluster - whether the servers are nodes of a Redis cluster, in which case every master is scanned
+     * @param scanCount - the COUNT hint passed to each SCAN
+     * @param window - the maximum number of keys per node whose values are being fetched at once
+     * @param queue - the queue to put the entries read onto
+     * @param errorHandler - called with a message for each key which could not be read
+     */
+    public RedisSource(List<RedisURI> uris, boolean cluster, int scanCount, int window, FetchMode fetchMode,
+            BlockingQueue<Entry> queue, Consumer<String> errorHandler) {
+        this.uris = uris;
+        this.cluster = cluster;
+        this.scanCount = scanCount;
+        this.window = window;
+        this.fetchMode = fetchMode;
+        this.queue = queue;
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Parse a comma separated list of Redis URIs. Plain {@code host:port} entries are accepted too.
+     */
+    public static List<RedisURI> parseUris(String uris) {
+        List<RedisURI> result = new ArrayList<>();
+        for (String uri : uris.split(",")) {
+            uri = uri.trim();
+            if (!uri.isEmpty()) {
+                result.add(RedisURI.create(uri.contains("://") ? uri : "redis://" + uri));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Skip the keys the filter rejects. Keys are checked before their values are fetched, and the
+     * type and expiry time once they have been.
+     */
+    public void setFilter(EntryFilter filter) {
+        this.filter = filter;
+    }
+
+    public long getKeysScanned() {
+        return keysScanned.get();
+    }
+
+    /**
+     * Scan every node, returning once all the keys have been put onto the queue.
+     */
+    public void run() throws Exception {
+        List<Scan> scans = new ArrayList<>();
+        if (cluster) {
+            clusterClient = RedisClusterClient.create(uris);
+            clusterClient.setOptions(ClusterClientOptions.builder().protocolVersion(ProtocolVersion.RESP2).build());
+            StatefulRedisClusterConnection<byte[], byte[]> connection = clusterClient.connect(ByteArrayCodec.INSTANCE);
+            for (RedisClusterNode node : clusterClient.getPartitions()) {
+                if (node.is(RedisClusterNode.NodeFlag.UPSTREAM)) {
+                    scans.add(new Scan(node.getUri().toString(), connection.getConnection(node.getNodeId()), 0));
+                }
+            }
+        }
+        else {
+            for (RedisURI uri : uris) {
+                RedisClient client = RedisClient.create(uri);
+                client.setOptions(ClientOptions.builder().protocolVersion(ProtocolVersion.RESP2).build());
+                clients.add(client);
+                scans.add(new Scan(uri.toString(), client.connect(ByteArrayCodec.INSTANCE), uri.getDatabase()));
+            }
+        }
+        ExecutorService scanners = Executors.newFixedThreadPool(scans.size());
+        for (Scan scan : scans) {
+            scanners.execute(() -> {
+                try {
+                    scan.run();
+                }
+                catch (InterruptedException ignored) {
+                }
+                catch (Exception e) {
+                    errorHandler.accept(String.format("Error scanning %s: %s", scan.name, e.getMessage()));
+                }
+            });
+        }
+        scanners.shutdown();
+        scanners.awaitTermination(7, TimeUnit.DAYS);
+    }
+
+    private class Scan {
+        private final String name;
+        private final RedisAsyncCommands<byte[], byte[]> commands;
+        private final long db;
+
+        Scan(String name, StatefulRedisConnection<byte[], byte[]> connection, long db) {
+            this.name = name;
+            this.commands = connection.async();
+            this.db = db;
+        }
+
+        void run() throws Exception {
+            queue.put(new SelectDb(db));
+            ScanArgs args = ScanArgs.Builder.limit(scanCount);
+            ArrayDeque<CompletableFuture<Entry>> pending = new ArrayDeque<>();
+            // The next page is requested before the keys of this page are fetched, so the scan overlaps the reads
+            RedisFuture<KeyScanCursor<byte[]>> nextPage = commands.scan(args);
+            while (nextPage != null) {
+                KeyScanCursor<byte[]> page = nextPage.get();
+                nextPage = page.isFinished() ? null : commands.scan(page, args);
+                for (byte[] key : page.getKeys()) {
+                    keysScanned.incrementAndGet();
+                    if (filter != null && filter.needsKey() && !filter.acceptsKey(new String(key, StandardCharsets.US_ASCII))) {
+                        continue;
+                    }
+                    if (pending.size() >= window) {
+                        deliver(pending.poll(), name, db);
+                    }
+                    pending.add(fetch(key));
+                }
+            }
+            while (!pending.isEmpty()) {
+                deliver(pending.poll(), name, db);
+            }
+        }
+
+        private CompletableFuture<Entry> fetch(byte[] key) {
+            ByteSlice keySlice = ByteSlice.wrap(key);
+            CompletableFuture<Long> ttl = commands.pttl(key).toCompletableFuture();
+            if (fetchMode == FetchMode.DUMP) {
+                return commands.dump(key).toCompletableFuture().thenCombine(ttl, (payload, pttl) ->
+                        payload == null || pttl == -2 ? null : KeyValuePair.fromDump(keySlice, payload, toExpireTime(pttl), payloads));
+            }
+            return commands.type(key).toCompletableFuture()
+                    .thenCompose(type -> fetchValues(key, type))
+                    .thenCombine(ttl, (values, pttl) -> values == null || pttl == -2 ? null
+                            : KeyValuePair.of(keySlice, values.type, values.values, toExpireTime(pttl)));
+        }
+
+        private CompletableFuture<Values> fetchValues(byte[] key, String type) {
+            switch (type) {
+            case "string":
+                return commands.get(key).toCompletableFuture().thenApply(value -> value == null ? null : new Values(ValueType.VALUE, List.of(ByteSlice.wrap(value))));
+            case "list":
+                return commands.lrange(key, 0, -1).toCompletableFuture().thenApply(list -> new Values(ValueType.LIST, wrap(list)));
+            case "set":
+                return commands.smembers(key).toCompletableFuture().thenApply(set -> new Values(ValueType.SET, wrap(set)));
+            case "hash":
+                return commands.hgetall(key).toCompletableFuture().thenApply(map -> {
+                    List<ByteSlice> values = new ArrayList<>(map.size() * 2);
+                    for (Map.Entry<byte[], byte[]> entry : map.entrySet()) {
+                        values.add(ByteSlice.wrap(entry.getKey()));
+                        values.add(ByteSlice.wrap(entry.getValue()));
+                    }
+                    return new Values(ValueType.HASH, values);
+                });
+            case "zset":
+                return commands.zrangeWithScores(key, 0, -1).toCompletableFuture().thenApply(members -> {
+                    List<ByteSlice> values = new ArrayList<>(members.size() * 2);
+                    for (ScoredValue<byte[]> member : members) {
+                        values.add(ByteSlice.wrap(member.getValue()));
+                        values.add(ByteSlice.wrap(Double.toString(member.getScore()).getBytes(StandardCharsets.US_ASCII)));
+                    }
+                    return new Values(ValueType.SORTED_SET2, values);
+                });
+            case "none":
+                // Deleted since it was scanned
+                return CompletableFuture.completedFuture(null);
+            default:
+                // Streams and module types cannot be imported; pass them on so they are reported like those in a file
+                return CompletableFuture.completedFuture(new Values(ValueType.STREAM_LISTPACKS_3, List.of()));
+            }
+        }
+    }
+
+    private static class Values {
+        private final ValueType type;
+        private final List<ByteSlice> values;
+
+        Values(ValueType type, List<ByteSlice> values) {
+            this.type = type;
+            this.values = values;
+        }
+    }
+
+    private static List<ByteSlice> wrap(Iterable<byte[]> items) {
+        List<ByteSlice> result = new ArrayList<>();
+        for (byte[] item : items) {
+            result.add(ByteSlice.wrap(item));
+        }
+        return result;
+    }
+
+    /**
+     * Convert the result of PTTL to an expiry time in milliseconds since the epoch, or null if the key does not expire.
+     */
+    private static Long toExpireTime(long pttl) {
+        return pttl < 0 ? null : System.currentTimeMillis() + pttl;
+    }
+
+    private void deliver(CompletableFuture<Entry> future, String name, long db) throws InterruptedException {
+        try {
+            Entry entry = future.get();
+            if (entry instanceof KeyValuePair && filter != null) {
+                KeyValuePair kvp = (KeyValuePair)entry;
+                if (!filter.accepts(db, kvp.getValueType(), kvp.getExpireTime())) {
+                    // Release the slab holding its DUMP payload, as it will never be written
+                    kvp.completed();
+                    return;
+                }
+            }
+            if (entry != null) {
+                queue.put(entry);
+            }
+        }
+        catch (ExecutionException e) {
+            errorHandler.accept(String.format("Error reading key from %s: %s", name, e.getCause().getMessage()));
+        }
+    }
+
+    @Override
+    public void close() {
+        for (RedisClient client : clients) {
+            client.shutdown();
+        }
+        if (clusterClient != null) {
+            clusterClient.shutdown();
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.aerospike.migration.importer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Operation;
+import com.aerospike.client.ResultCode;
+
+/**
+ * Retries writes which failed for a reason which is likely to pass, such as a timeout, a hot key, an
+ * overloaded device or partitions moving while the cluster changes. A failed part is put on a delay queue
+ * with an exponential backoff, jittered so parts which failed together are not retried together, and a
+ * small pool of retry threads writes it again when it is due, so the thread which hit the error goes on to
+ * other entries. A slow retry, or a burst of them after a node goes down, does not hold up the others.
+ * Other failures, and parts which have used all their attempts, fail their request as before.
+ * <p>
+ * A write which timed out may have been applied anyway. Such a write is only retried if applying it again
+ * does the same thing, which is not so for appending a chunk to a list.
+ */
+class RetryingWriter implements RecordWriter {
+    /**
+     * The number of threads writing retries, and the next parts of requests completed on another thread.
+     */
+    static final int DEFAULT_THREADS = 4;
+
+    /**
+     * One attempt to write a part of a request.
+     */
+    private static class Attempt implements Delayed {
+        private final WriteRequest request;
+        private final WriteRequest.Part part;
+        private final int number;
+        private final long dueNanos;
+        // Set once the thread sending this attempt is done, until then the next part is left for it to send
+        private boolean sent = false;
+        private Attempt next;
+
+        Attempt(WriteRequest request, WriteRequest.Part part, int number, long delayNanos) {
+            this.request = request;
+            this.part = part;
+            this.number = number;
+            this.dueNanos = System.nanoTime() + delayNanos;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(dueNanos, ((Attempt)o).dueNanos);
+        }
+    }
+
+    private final RecordWriter writer;
+    private final int maxRetries;
+    private final long backoffNanos;
+    private final long maxBackoffNanos;
+    private final DelayQueue<Attempt> queue = new DelayQueue<>();
+    private final List<Thread> retriers = new ArrayList<>();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder recovered = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+    private int pending = 0;
+
+    /**
+     * @param writer - the writer to write the parts with
+     * @param maxRetries - the most times to retry a part before failing its request
+     * @param backoffMillis - the longest wait before the first retry, doubling for each retry after it
+     * @param maxBackoffMillis - the longest wait before any retry
+     * @param threads - the number of threads writing the parts which are due
+     */
+    RetryingWriter(RecordWriter writer, int maxRetries, long backoffMillis, long maxBackoffMillis, int threads) {
+        this.writer = writer;
+        this.maxRetries = maxRetries;
+        this.backoffNanos = TimeUnit.MILLISECONDS.toNanos(backoffMillis);
+        this.maxBackoffNanos = TimeUnit.MILLISECONDS.toNanos(maxBackoffMillis);
+        for (int i = 0; i < threads; i++) {
+            Thread retrier = new Thread(this::retry, "write-retry-" + i);
+            retrier.setDaemon(true);
+            retrier.start();
+            retriers.add(retrier);
+        }
+    }
+
+    RecordWriter getWriter() {
+        return writer;
+    }
+
+    /**
+     * The number of times a part has been retried.
+     */
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     * The number of parts which were written after being retried.
+     */
+    public long getRecovered() {
+        return recovered.sum();
+    }
+
+    /**
+     * The number of parts which still failed after every retry.
+     */
+    public long getExhausted() {
+        return exhausted.sum();
+    }
+
+    /**
+     * The number of parts waiting for their retry to be due.
+     */
+    public int getWaiting() {
+        return queue.size();
+    }
+
+    /**
+     * Whether a failure is likely to pass if the part is written again.
+     */
+    static boolean isRetryable(Throwable failure, WriteRequest.Part part) {
+        if (!(failure instanceof AerospikeException)) {
+            return false;
+        }
+        AerospikeException ae = (AerospikeException)failure;
+        if (ae.getInDoubt() && !isIdempotent(part)) {
+            return false;
+        }
+        if (AdaptiveLimiter.isOverload(ae)) {
+            return true;
+        }
+        switch (ae.getResultCode()) {
+        case ResultCode.PARTITION_UNAVAILABLE:
+        case ResultCode.CLUSTER_KEY_MISMATCH:
+        case ResultCode.SERVER_NOT_AVAILABLE:
+        case ResultCode.INVALID_NODE_ERROR:
+        case ResultCode.NO_RESPONSE:
+        case ResultCode.XDR_KEY_BUSY:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Whether writing the part twice leaves the record as writing it once does. Puts, touches and deletes do,
+     * but collection operations such as appending to a list may not.
+     */
+    private static boolean isIdempotent(WriteRequest.Part part) {
+        for (Operation op : part.getOps()) {
+            if (op.type != Operation.Type.WRITE && op.type != Operation.Type.TOUCH && op.type != Operation.Type.DELETE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The time to wait before a retry: a random time up to the backoff for the attempt, so retries spread out.
+     */
+    private long backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffNanos, backoffNanos << Math.min(attempt - 1, 30));
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling);
+    }
+
+    @Override
+    public void write(WriteRequest request, WriteRequest.Part part) throws InterruptedException {
+        if (request.start(part) == WriteRequest.Start.NOW) {
+            send(newAttempt(request, part, 1, 0));
+        }
+    }
+
+    private synchronized Attempt newAttempt(WriteRequest request, WriteRequest.Part part, int number, long delayNanos) {
+        pending++;
+        return new Attempt(request, part, number, delayNanos);
+    }
+
+    /**
+     * Write an attempt, then the next part of its request if that is ready by the time the write returns,
+     * as it is when the writer wrapped completes writes on the calling thread.
+     */
+    private void send(Attempt attempt) throws InterruptedException {
+        while (attempt != null) {
+            Attempt current = attempt;
+            WriteRequest single = new WriteRequest(null, done -> completed(current, done));
+            try {
+                writer.write(single, current.part);
+            }
+            catch (InterruptedException e) {
+                single.fail(e);
+                throw e;
+            }
+            catch (Exception e) {
+                single.fail(e);
+            }
+            finally {
+                single.finish();
+            }
+            synchronized (current) {
+                current.sent = true;
+                attempt = current.next;
+            }
+        }
+    }
+
+    /**
+     * Handle the result of an attempt. This may be on a thread of the wrapped writer, so parts are queued
+     * for the retry threads to write rather than written here, unless the thread sending the attempt has
+     * not yet returned from it.
+     */
+    private void completed(Attempt attempt, WriteRequest single) {
+        Throwable failure = single.getFailure();
+        if (failure == null) {
+            if (attempt.number > 1) {
+                recovered.increment();
+            }
+            WriteRequest.Part next = attempt.request.partCompleted();
+            if (next != null) {
+                Attempt nextAttempt = newAttempt(attempt.request, next, 1, 0);
+                synchronized (attempt) {
+                    if (!attempt.sent) {
+                        attempt.next = nextAttempt;
+                        nextAttempt = null;
+                    }
+                }
+                if (nextAttempt != null) {
+                    queue.add(nextAttempt);
+                }
+            }
+        }
+        else if (attempt.number <= maxRetries && isRetryable(failure, attempt.part)) {
+            retries.increment();
+            queue.add(newAttempt(attempt.request, attempt.part, attempt.number + 1, backoff(attempt.number)));
+        }
+        else {
+            if (attempt.number > 1) {
+                exhausted.increment();
+            }
+            attempt.request.fail(failure);
+        }
+        synchronized (this) {
+            pending--;
+            notifyAll();
+        }
+    }
+
+    private void retry() {
+        try {
+            while (true) {
+                send(queue.take());
+            }
+        }
+        catch (InterruptedException ignored) {
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        synchronized (this) {
+            while (pending > 0) {
+                wait(100);
+            }
+        }
+        for (Thread retrier : retriers) {
+            retrier.interrupt();
+        }
+        for (Thread retrier : retriers) {
+            retrier.join();
+        }
+        writer.close();
+    }
+}
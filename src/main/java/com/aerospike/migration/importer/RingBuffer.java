@@ -0,0 +1,237 @@
+package com.aerospike.migration.importer;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded queue for many producers and many consumers which takes no locks. Each slot has a sequence
+ * number which says whether it is free for the producer at a position or full for the consumer at it, so
+ * producers and consumers only contend on a compare and set of their own position. This is the queue
+ * described by Dmitry Vyukov.
+ * <p>
+ * Threads waiting for space or for entries do not block on a condition; they wait with the
+ * {@link WaitStrategy}, trading CPU for latency. Once the producers have finished they close the buffer,
+ * which lets the consumers know to stop when it is empty rather than having to poll with a timeout.
+ * <p>
+ * It implements {@link BlockingQueue} so it can be passed to the sources which fill a queue, but it cannot
+ * be iterated.
+ */
+class RingBuffer<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+    public enum WaitStrategy {
+        /** Spin on the CPU. Lowest latency, but each waiting thread uses a core */
+        SPIN,
+        /** Spin briefly, then yield to other threads */
+        YIELD,
+        /** Spin and yield briefly, then park for increasing times up to a millisecond */
+        PARK;
+
+        /**
+         * Wait before the next attempt.
+         * @param attempt - the number of attempts which have failed so far
+         */
+        void idle(int attempt) throws InterruptedException {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (this == SPIN || attempt < 100) {
+                Thread.onSpinWait();
+            }
+            else if (this == YIELD || attempt < 200) {
+                Thread.yield();
+            }
+            else {
+                LockSupport.parkNanos(Math.min(TimeUnit.MILLISECONDS.toNanos(1), 1000L << Math.min(10, attempt - 200)));
+            }
+        }
+    }
+
+    private final Object[] items;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private volatile boolean closed = false;
+
+    /**
+     * @param capacity - the minimum number of entries the buffer holds, which is rounded up to a power of 2
+     */
+    RingBuffer(int capacity, WaitStrategy waitStrategy) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.items = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.waitStrategy = waitStrategy;
+    }
+
+    @Override
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        long position = tail.get();
+        while (true) {
+            int index = (int)(position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    items[index] = e;
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            }
+            else if (difference < 0) {
+                // Full: the consumer has not yet taken the entry from the last time round
+                return false;
+            }
+            else {
+                position = tail.get();
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long position = head.get();
+        while (true) {
+            int index = (int)(position & mask);
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    E e = (E)items[index];
+                    items[index] = null;
+                    sequences.set(index, position + mask + 1);
+                    return e;
+                }
+                position = head.get();
+            }
+            else if (difference < 0) {
+                // Empty: the producer at this position has not yet put its entry
+                return null;
+            }
+            else {
+                position = head.get();
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        long position = head.get();
+        int index = (int)(position & mask);
+        return sequences.get(index) == position + 1 ? (E)items[index] : null;
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        for (int attempt = 0; !offer(e); attempt++) {
+            waitStrategy.idle(attempt);
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (int attempt = 0; !offer(e); attempt++) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            waitStrategy.idle(attempt);
+        }
+        return true;
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        E e;
+        for (int attempt = 0; (e = poll()) == null; attempt++) {
+            waitStrategy.idle(attempt);
+        }
+        return e;
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        E e;
+        for (int attempt = 0; (e = poll()) == null; attempt++) {
+            if (System.nanoTime() - deadline >= 0) {
+                return null;
+            }
+            waitStrategy.idle(attempt);
+        }
+        return e;
+    }
+
+    /**
+     * No more entries will be put, so consumers stop once the buffer is empty.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Take up to the maximum number of entries, waiting for at least one.
+     * @return the number of entries taken, or -1 once the buffer has been closed and is empty
+     */
+    public int takeBatch(Collection<? super E> into, int max) throws InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            int count = drainTo(into, max);
+            if (count > 0) {
+                return count;
+            }
+            if (closed) {
+                // Entries put before the buffer was closed are visible now
+                count = drainTo(into, max);
+                return count > 0 ? count : -1;
+            }
+            waitStrategy.idle(attempt);
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        int count = 0;
+        E e;
+        while (count < maxElements && (e = poll()) != null) {
+            c.add(e);
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public int size() {
+        // Read head first, so a concurrent take cannot make the size negative
+        long first = head.get();
+        long size = tail.get() - first;
+        return (int)Math.max(0, Math.min(size, items.length));
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return items.length - size();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        throw new UnsupportedOperationException("A ring buffer cannot be iterated");
+    }
+}
@@ -0,0 +1,33 @@
+package com.aerospike.migration.importer;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.IAerospikeClient;
+import com.aerospike.client.ResultCode;
+
+/**
+ * Writes each part with a synchronous operate call on the calling thread, so the thread waits a full
+ * round trip to the server for each one.
+ */
+class SyncRecordWriter implements RecordWriter {
+    private final IAerospikeClient client;
+
+    SyncRecordWriter(IAerospikeClient client) {
+        this.client = client;
+    }
+
+    @Override
+    public void write(WriteRequest request, WriteRequest.Part part) {
+        try {
+            client.operate(part.getPolicy(), part.getKey(), part.getOps());
+        }
+        catch (AerospikeException ae) {
+            if (!part.isIgnoreNotFound() || ae.getResultCode() != ResultCode.KEY_NOT_FOUND_ERROR) {
+                throw ae;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,45 @@
+package com.aerospike.migration.importer;
+
+/**
+ * A token bucket which hands out permits at a steady rate, letting a burst of up to a tenth of a second
+ * of permits through after a quiet spell. A caller reserves its permits and is told how long to sleep
+ * until they are due, so waiting threads sleep rather than spin. A request for more permits than the
+ * bucket holds is let through once the permits before it are due, and the ones after it wait for it to
+ * be paid off.
+ */
+class TokenBucket {
+    private static final double BURST_SECONDS = 0.1;
+
+    private final long permitsPerSecond;
+    private final double permitsPerNano;
+    private final double maxStored;
+    private double stored;
+    private long nextFreeNanos;
+
+    TokenBucket(long permitsPerSecond) {
+        this.permitsPerSecond = permitsPerSecond;
+        this.permitsPerNano = permitsPerSecond / 1e9;
+        this.maxStored = Math.max(1, permitsPerSecond * BURST_SECONDS);
+        this.stored = maxStored;
+        this.nextFreeNanos = System.nanoTime();
+    }
+
+    public long getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    /**
+     * Take the permits, returning how many nanoseconds to wait before using them.
+     */
+    synchronized long reserve(long permits, long now) {
+        if (now > nextFreeNanos) {
+            stored = Math.min(maxStored, stored + (now - nextFreeNanos) * permitsPerNano);
+            nextFreeNanos = now;
+        }
+        long waitNanos = nextFreeNanos - now;
+        double fromStored = Math.min(permits, stored);
+        stored -= fromStored;
+        nextFreeNanos += (long)((permits - fromStored) / permitsPerNano);
+        return waitNanos;
+    }
+}
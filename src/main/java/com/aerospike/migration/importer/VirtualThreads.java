@@ -0,0 +1,24 @@
+package com.aerospike.migration.importer;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Creates executors which run each task on its own virtual thread. Virtual threads need Java 21, so this
+ * version, used on earlier versions, does not support them; the jar is a multi-release jar with a version
+ * for Java 21 and later in {@code src/main/java21}.
+ */
+final class VirtualThreads {
+    private VirtualThreads() {
+    }
+
+    static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * An executor which starts a new virtual thread for each task, with names starting with the prefix.
+     */
+    static ExecutorService newExecutor(String prefix) {
+        throw new UnsupportedOperationException("Virtual threads need Java 21 or later");
+    }
+}
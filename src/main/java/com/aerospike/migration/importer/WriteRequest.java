@@ -0,0 +1,168 @@
+package com.aerospike.migration.importer;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.aerospike.client.Key;
+import com.aerospike.client.Operation;
+import com.aerospike.client.policy.WritePolicy;
+import com.aerospike.migration.importer.rdb.Entry;
+
+/**
+ * The writes to Aerospike for one entry. A large value is written in several parts, such as the chunks of
+ * a big hash, which must be applied in order, so a writer only starts a part once the one before it has
+ * completed. Once all the parts have been written, or one has failed, the listener is called once.
+ */
+class WriteRequest {
+    /**
+     * One operate call on a record.
+     */
+    static class Part {
+        private final WritePolicy policy;
+        private final Key key;
+        private final Operation[] ops;
+        private final boolean ignoreNotFound;
+
+        Part(WritePolicy policy, Key key, List<Operation> ops, boolean ignoreNotFound) {
+            this.policy = policy;
+            this.key = key;
+            this.ops = ops.toArray(new Operation[0]);
+            this.ignoreNotFound = ignoreNotFound;
+        }
+
+        WritePolicy getPolicy() {
+            return policy;
+        }
+
+        Key getKey() {
+            return key;
+        }
+
+        Operation[] getOps() {
+            return ops;
+        }
+
+        /**
+         * Whether the record not existing counts as success, as for deleting a key which is not there.
+         */
+        boolean isIgnoreNotFound() {
+            return ignoreNotFound;
+        }
+    }
+
+    private final Entry entry;
+    private final long startNanos = System.nanoTime();
+    private final Consumer<WriteRequest> listener;
+    private final ArrayDeque<Part> pending = new ArrayDeque<>();
+    private boolean running = false;
+    private boolean finished = false;
+    private boolean completed = false;
+    private boolean written = false;
+    private Throwable failure;
+
+    WriteRequest(Entry entry, Consumer<WriteRequest> listener) {
+        this.entry = entry;
+        this.listener = listener;
+    }
+
+    Entry getEntry() {
+        return entry;
+    }
+
+    long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * Whether the entry was a record which was written, rather than an entry such as a database selector.
+     */
+    boolean isWritten() {
+        return written && failure == null;
+    }
+
+    void setWritten(boolean written) {
+        this.written = written;
+    }
+
+    synchronized Throwable getFailure() {
+        return failure;
+    }
+
+    enum Start {
+        /** The part is to be written now */
+        NOW,
+        /** The part is queued behind the part being written */
+        QUEUED,
+        /** The request has failed, so the part is not to be written */
+        DROPPED
+    }
+
+    /**
+     * Add a part to be written.
+     */
+    synchronized Start start(Part part) {
+        if (failure != null) {
+            return Start.DROPPED;
+        }
+        if (running) {
+            pending.add(part);
+            return Start.QUEUED;
+        }
+        running = true;
+        return Start.NOW;
+    }
+
+    /**
+     * Record that the running part has completed, returning the next part to start, if any.
+     */
+    Part partCompleted() {
+        Part next;
+        synchronized (this) {
+            next = pending.poll();
+            running = next != null;
+        }
+        if (next == null) {
+            completeIfDone();
+        }
+        return next;
+    }
+
+    /**
+     * Fail the request. Parts which have not started are dropped and returned, so the writer can release
+     * anything they hold.
+     */
+    List<Part> fail(Throwable t) {
+        List<Part> dropped;
+        synchronized (this) {
+            if (failure == null) {
+                failure = t;
+            }
+            running = false;
+            dropped = List.copyOf(pending);
+            pending.clear();
+        }
+        completeIfDone();
+        return dropped;
+    }
+
+    /**
+     * No more parts will be added. The listener is called now if nothing is still being written.
+     */
+    void finish() {
+        synchronized (this) {
+            finished = true;
+        }
+        completeIfDone();
+    }
+
+    private void completeIfDone() {
+        synchronized (this) {
+            if (completed || !finished || running) {
+                return;
+            }
+            completed = true;
+        }
+        listener.accept(this);
+    }
+}
@@ -0,0 +1,139 @@
+package com.aerospike.migration.importer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.aerospike.client.IAerospikeClient;
+
+/**
+ * A stage of threads which only write to Aerospike, fed by a bounded queue of parts. The threads which
+ * translate entries put the parts on the queue and go on to the next entry, so translating does not stall
+ * while writes are slow, and the number of threads for each can be sized on its own. When the queue is
+ * full, the translating threads wait for it.
+ * <p>
+ * The time the writing threads are busy and the time the translating threads wait for space on the queue
+ * are counted, to show which stage limits the throughput.
+ */
+class WriteStage implements RecordWriter {
+    private static class Pending {
+        private final WriteRequest request;
+        private final WriteRequest.Part part;
+
+        Pending(WriteRequest request, WriteRequest.Part part) {
+            this.request = request;
+            this.part = part;
+        }
+    }
+
+    private final BlockingQueue<Pending> queue;
+    private final SyncRecordWriter syncWriter;
+    private final BatchRecordWriter batchWriter;
+    private final List<Thread> threads = new ArrayList<>();
+    private final LongAdder busyNanos = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private volatile boolean closed = false;
+
+    /**
+     * @param name - the prefix of the names of the threads
+     * @param threads - the number of threads writing
+     * @param queueDepth - the maximum number of parts waiting to be written
+     * @param batchSize - the maximum number of records in a batch, or 1 to write each record on its own
+     * @param lingerMicros - how long a part can wait for its batch to fill before the batch is sent
+     */
+    WriteStage(String name, IAerospikeClient client, int threads, int queueDepth, int batchSize, long lingerMicros) {
+        this.queue = new ArrayBlockingQueue<>(queueDepth);
+        this.syncWriter = new SyncRecordWriter(client);
+        this.batchWriter = batchSize > 1 ? new BatchRecordWriter(client, batchSize, lingerMicros) : null;
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(this::run, name + "-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            this.threads.add(thread);
+        }
+    }
+
+    public int getThreads() {
+        return threads.size();
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * The total time the threads of this stage have spent writing.
+     */
+    public long getBusyNanos() {
+        return busyNanos.sum();
+    }
+
+    /**
+     * The total time the threads feeding this stage have waited for space on its queue.
+     */
+    public long getWaitNanos() {
+        return waitNanos.sum();
+    }
+
+    @Override
+    public void write(WriteRequest request, WriteRequest.Part part) throws InterruptedException {
+        if (request.start(part) == WriteRequest.Start.NOW) {
+            Pending pending = new Pending(request, part);
+            if (!queue.offer(pending)) {
+                long start = System.nanoTime();
+                queue.put(pending);
+                waitNanos.add(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private void run() {
+        try {
+            while (!closed || !queue.isEmpty()) {
+                Pending pending = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (pending != null) {
+                    long start = System.nanoTime();
+                    if (batchWriter != null) {
+                        batchWriter.writeStarted(pending.request, pending.part);
+                    }
+                    else {
+                        writeInOrder(pending.request, pending.part);
+                    }
+                    busyNanos.add(System.nanoTime() - start);
+                }
+            }
+        }
+        catch (InterruptedException ignored) {
+        }
+    }
+
+    /**
+     * Write a part, then any parts of the same request queued behind it.
+     */
+    private void writeInOrder(WriteRequest request, WriteRequest.Part part) {
+        while (part != null) {
+            try {
+                syncWriter.write(request, part);
+            }
+            catch (RuntimeException e) {
+                request.fail(e);
+                return;
+            }
+            part = request.partCompleted();
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        closed = true;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (batchWriter != null) {
+            batchWriter.close();
+        }
+    }
+}
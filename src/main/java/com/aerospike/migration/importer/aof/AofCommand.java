@@ -0,0 +1,97 @@
+package com.aerospike.migration.importer.aof;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A command read from an AOF file: the command name followed by its arguments.
+ */
+public class AofCommand {
+    private final String name;
+    private final List<byte[]> args;
+
+    public AofCommand(List<byte[]> args) {
+        this(new String(args.get(0), StandardCharsets.US_ASCII).toUpperCase(Locale.ROOT), args.subList(1, args.size()));
+    }
+
+    public AofCommand(String name, List<byte[]> args) {
+        this.name = name;
+        this.args = args;
+    }
+
+    /**
+     * The name of the command in upper case.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The number of arguments, not counting the command name.
+     */
+    public int getArgCount() {
+        return args.size();
+    }
+
+    public byte[] getArg(int index) {
+        return args.get(index);
+    }
+
+    public String getString(int index) {
+        return new String(args.get(index), StandardCharsets.US_ASCII);
+    }
+
+    public long getLong(int index) {
+        try {
+            return Long.parseLong(getString(index));
+        }
+        catch (NumberFormatException e) {
+            throw new AofFormatException("Argument %d of %s is not an integer: %s", index + 1, name, getString(index));
+        }
+    }
+
+    public double getDouble(int index) {
+        try {
+            return Double.parseDouble(getString(index));
+        }
+        catch (NumberFormatException e) {
+            throw new AofFormatException("Argument %d of %s is not a number: %s", index + 1, name, getString(index));
+        }
+    }
+
+    /**
+     * The arguments from the passed index onwards, as strings.
+     */
+    public List<String> getStrings(int from) {
+        List<String> result = new ArrayList<>(args.size() - from);
+        for (int i = from; i < args.size(); i++) {
+            result.add(getString(i));
+        }
+        return result;
+    }
+
+    /**
+     * A command with the same name and the passed arguments appended to this command's.
+     */
+    public AofCommand append(List<byte[]> moreArgs) {
+        List<byte[]> combined = new ArrayList<>(args.size() + moreArgs.size());
+        combined.addAll(args);
+        combined.addAll(moreArgs);
+        return new AofCommand(name, combined);
+    }
+
+    public List<byte[]> getArgs() {
+        return args;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder(name);
+        for (int i = 0; i < args.size(); i++) {
+            result.append(' ').append(getString(i));
+        }
+        return result.toString();
+    }
+}
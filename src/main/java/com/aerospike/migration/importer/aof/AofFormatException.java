@@ -0,0 +1,9 @@
+package com.aerospike.migration.importer.aof;
+
+public class AofFormatException extends RuntimeException {
+    private static final long serialVersionUID = -2466413094326510247L;
+
+    public AofFormatException(String message, Object ... args) {
+        super(String.format(message, args));
+    }
+}
@@ -0,0 +1,93 @@
+package com.aerospike.migration.importer.aof;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The manifest of a multi-part AOF, as written by Redis 7 and later into its {@code appenddirname} directory.
+ * Each line describes one file: the base file, written by the last rewrite as either an RDB or an AOF file,
+ * the incremental AOF files appended to since then, in sequence order, and history files which are waiting
+ * to be deleted and are ignored here.
+ * <pre>
+ * file appendonly.aof.1.base.rdb seq 1 type b
+ * file appendonly.aof.1.incr.aof seq 1 type i
+ * </pre>
+ */
+public class AofManifest {
+    private final File base;
+    private final List<File> increments;
+
+    private AofManifest(File base, List<File> increments) {
+        this.base = base;
+        this.increments = increments;
+    }
+
+    /**
+     * Find the manifest file in the directory.
+     */
+    public static File find(File directory) {
+        File[] manifests = directory.listFiles((dir, name) -> name.endsWith(".manifest"));
+        if (manifests == null || manifests.length == 0) {
+            throw new AofFormatException("No AOF manifest found in %s", directory);
+        }
+        if (manifests.length > 1) {
+            throw new AofFormatException("More than one AOF manifest found in %s", directory);
+        }
+        return manifests[0];
+    }
+
+    public static AofManifest read(File directory) throws IOException {
+        File manifest = find(directory);
+        File base = null;
+        List<Map<String, String>> incrementLines = new ArrayList<>();
+        for (String line : Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split("\\s+");
+            Map<String, String> fields = new HashMap<>();
+            for (int i = 0; i + 1 < parts.length; i += 2) {
+                fields.put(parts[i], parts[i + 1]);
+            }
+            String name = fields.get("file");
+            String type = fields.get("type");
+            if (name == null || type == null) {
+                throw new AofFormatException("Invalid line in %s: %s", manifest, line);
+            }
+            if ("b".equals(type)) {
+                base = new File(directory, name);
+            }
+            else if ("i".equals(type)) {
+                incrementLines.add(fields);
+            }
+        }
+        incrementLines.sort(Comparator.comparingLong(fields -> Long.parseLong(fields.getOrDefault("seq", "0"))));
+        List<File> increments = new ArrayList<>();
+        for (Map<String, String> fields : incrementLines) {
+            increments.add(new File(directory, fields.get("file")));
+        }
+        return new AofManifest(base, increments);
+    }
+
+    /**
+     * The base file, or null if there has been no rewrite.
+     */
+    public File getBase() {
+        return base;
+    }
+
+    /**
+     * The incremental AOF files in the order they are to be replayed.
+     */
+    public List<File> getIncrements() {
+        return increments;
+    }
+}
@@ -0,0 +1,170 @@
+package com.aerospike.migration.importer.aof;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads the commands in an AOF file, which are written as RESP arrays of bulk strings. The file is
+ * read with positional reads, so a file which is still being appended to can be followed: when the end
+ * of the file is reached part way through a command, {@link #next()} returns null and the partial
+ * command is completed by a later call once more data has been written.
+ */
+public class AofReader implements Closeable {
+    private static final int INITIAL_BUFFER_SIZE = 1 << 16;
+    private static final byte[] RDB_MAGIC = "REDIS".getBytes(StandardCharsets.US_ASCII);
+
+    private final File file;
+    private final FileChannel channel;
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    private int start = 0;
+    private int end = 0;
+    // The offset in the file of buffer[0]
+    private long bufferOffset;
+
+    public AofReader(File file, long offset) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.bufferOffset = offset;
+    }
+
+    /**
+     * Whether the file starts with an RDB preamble, as written by Redis when {@code aof-use-rdb-preamble} is on,
+     * or is the RDB base file of a multi-part AOF.
+     */
+    public static boolean startsWithRdb(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(RDB_MAGIC.length);
+            while (magic.hasRemaining() && channel.read(magic) > 0) {
+            }
+            return Arrays.equals(magic.array(), RDB_MAGIC);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * The offset in the file just after the last command returned.
+     */
+    public long getPosition() {
+        return bufferOffset + start;
+    }
+
+    /**
+     * Return the next command, or null if the file does not (yet) hold another complete command.
+     */
+    public AofCommand next() throws IOException {
+        while (true) {
+            List<byte[]> args = new ArrayList<>();
+            int next = parse(start, args);
+            if (next >= 0) {
+                start = next;
+                if (args.isEmpty()) {
+                    continue;
+                }
+                return new AofCommand(args);
+            }
+            if (!fill()) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Read more of the file into the buffer, returning false if there is nothing more to read.
+     */
+    private boolean fill() throws IOException {
+        if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end -= start;
+            bufferOffset += start;
+            start = 0;
+        }
+        if (end == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        int read = channel.read(ByteBuffer.wrap(buffer, end, buffer.length - end), bufferOffset + end);
+        if (read <= 0) {
+            return false;
+        }
+        end += read;
+        return true;
+    }
+
+    /**
+     * The index of the CR of the next CRLF at or after the passed index, or -1 if the buffer does not hold one.
+     */
+    private int findLineEnd(int index) {
+        for (int i = index; i < end - 1; i++) {
+            if (buffer[i] == '\r' && buffer[i + 1] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int parseLength(int from, int to) {
+        int result = 0;
+        for (int i = from; i < to; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new AofFormatException("Invalid length at offset %,d in %s", bufferOffset + from, file);
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    /**
+     * Parse the command starting at the passed index into the arguments list, returning the index after it
+     * or -1 if the buffer does not hold the whole command.
+     */
+    private int parse(int index, List<byte[]> args) {
+        if (index >= end) {
+            return -1;
+        }
+        if (buffer[index] != '*') {
+            throw new AofFormatException("Expected a command at offset %,d in %s but found 0x%02x", bufferOffset + index, file, buffer[index]);
+        }
+        int lineEnd = findLineEnd(index + 1);
+        if (lineEnd < 0) {
+            return -1;
+        }
+        int count = parseLength(index + 1, lineEnd);
+        index = lineEnd + 2;
+        for (int i = 0; i < count; i++) {
+            if (index >= end) {
+                return -1;
+            }
+            if (buffer[index] != '$') {
+                throw new AofFormatException("Expected a bulk string at offset %,d in %s but found 0x%02x", bufferOffset + index, file, buffer[index]);
+            }
+            lineEnd = findLineEnd(index + 1);
+            if (lineEnd < 0) {
+                return -1;
+            }
+            int length = parseLength(index + 1, lineEnd);
+            index = lineEnd + 2;
+            if ((long)index + length + 2 > end) {
+                return -1;
+            }
+            args.add(Arrays.copyOfRange(buffer, index, index + length));
+            index += length + 2;
+        }
+        return index;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,62 @@
+package com.aerospike.migration.importer.aof;
+
+import java.util.List;
+
+import com.aerospike.migration.importer.rdb.ByteSlice;
+import com.aerospike.migration.importer.rdb.Entry;
+import com.aerospike.migration.importer.rdb.EntryType;
+
+/**
+ * The commands replayed from an AOF file for one key, in the order they are to be applied.
+ */
+public class KeyCommands extends Entry {
+    private final long db;
+    private final ByteSlice key;
+    private final List<AofCommand> commands;
+    private final Runnable onCompleted;
+
+    /**
+     * @param db - the database the key is in, as selected by the last {@code SELECT} before the commands
+     */
+    public KeyCommands(long db, ByteSlice key, List<AofCommand> commands, Runnable onCompleted) {
+        this.db = db;
+        this.key = key;
+        this.commands = commands;
+        this.onCompleted = onCompleted;
+    }
+
+    @Override
+    public EntryType getType() {
+        return EntryType.COMMANDS;
+    }
+
+    public long getDb() {
+        return db;
+    }
+
+    public ByteSlice getKey() {
+        return key;
+    }
+
+    public List<AofCommand> getCommands() {
+        return commands;
+    }
+
+    @Override
+    public long estimateSize() {
+        long size = OVERHEAD + key.length();
+        for (AofCommand command : commands) {
+            for (byte[] arg : command.getArgs()) {
+                size += 16 + arg.length;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void completed() {
+        if (onCompleted != null) {
+            onCompleted.run();
+        }
+    }
+}
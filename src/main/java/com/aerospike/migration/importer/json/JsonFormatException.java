@@ -0,0 +1,9 @@
+package com.aerospike.migration.importer.json;
+
+public class JsonFormatException extends RuntimeException {
+    private static final long serialVersionUID = -6160458815826733162L;
+
+    public JsonFormatException(String message, Object ... args) {
+        super(String.format(message, args));
+    }
+}
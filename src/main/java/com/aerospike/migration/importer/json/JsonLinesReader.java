@@ -0,0 +1,329 @@
+package com.aerospike.migration.importer.json;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import com.aerospike.migration.importer.rdb.ByteSlice;
+import com.aerospike.migration.importer.rdb.Entry;
+import com.aerospike.migration.importer.rdb.EntryFilter;
+import com.aerospike.migration.importer.rdb.KeyValuePair;
+import com.aerospike.migration.importer.rdb.SelectDb;
+import com.aerospike.migration.importer.rdb.ValueType;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Reads a file of newline delimited JSON with one object per key, as written by redis-dump and similar tools:
+ * <pre>
+ * {"db":0,"key":"account:1","ttl":-1,"type":"hash","value":{"name":"Savings","balance":"300"}}
+ * </pre>
+ * The value is a string, an array of strings for a list or set, an array of [member, score] pairs for a
+ * sorted set, or an object for a hash. The expiry is given by {@code ttl} in seconds or {@code pttl} in
+ * milliseconds from now, or {@code expireat} in seconds since the epoch; -1 or no field means the key does
+ * not expire. If the type is missing it is worked out from the value.
+ * <p>
+ * Objects are read with Jackson's streaming parser straight into the list of values of each entry, so no
+ * intermediate tree is built. A file can be read in byte ranges in parallel: each range starts at the first
+ * line starting within it and ends with the line which spans its end.
+ */
+public class JsonLinesReader implements AutoCloseable {
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private final String name;
+    private final InputStream in;
+    private final JsonParser parser;
+    // The offset in the file of the first byte the parser read
+    private final long base;
+    private final long end;
+    private long position;
+    private Long currentDb = null;
+    private KeyValuePair pending;
+    private EntryFilter filter;
+
+    /**
+     * Read the whole of a stream, such as a decompressed file.
+     */
+    public JsonLinesReader(InputStream in, String name) throws IOException {
+        this(in, name, 0, Long.MAX_VALUE);
+    }
+
+    private JsonLinesReader(InputStream in, String name, long base, long end) throws IOException {
+        this.name = name;
+        this.in = in;
+        this.parser = FACTORY.createParser(in);
+        this.base = base;
+        this.end = end;
+        this.position = base;
+    }
+
+    /**
+     * Read the lines of a file which start in the range from {@code start} to {@code end}.
+     */
+    public static JsonLinesReader open(File file, long start, long end) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        long base = Math.max(0, start - 1);
+        InputStream in = new BufferedInputStream(Channels.newInputStream(channel.position(base)), 1 << 16);
+        if (start > 0) {
+            // Skip to the start of the first line which starts in the range
+            int c;
+            while ((c = in.read()) >= 0) {
+                base++;
+                if (c == '\n') {
+                    break;
+                }
+            }
+        }
+        return new JsonLinesReader(in, file.getPath(), base, end);
+    }
+
+    /**
+     * Whether the file is named as newline delimited JSON, ignoring any compression suffix.
+     */
+    public static boolean isJsonFile(File file) {
+        String fileName = file.getName().toLowerCase(Locale.ROOT).replaceAll("\\.(gz|zst|lz4)$", "");
+        return fileName.endsWith(".json") || fileName.endsWith(".jsonl") || fileName.endsWith(".ndjson");
+    }
+
+    /**
+     * Split a file into ranges of about the passed size, each of which can be read by its own reader.
+     */
+    public static List<long[]> split(File file, long rangeSize) {
+        List<long[]> ranges = new ArrayList<>();
+        long size = file.length();
+        for (long start = 0; start < size; start += rangeSize) {
+            ranges.add(new long[] {start, Math.min(size, start + rangeSize)});
+        }
+        return ranges;
+    }
+
+    /**
+     * Skip the entries the filter rejects. The values of rejected entries are skipped by the parser without
+     * being converted.
+     */
+    public void setFilter(EntryFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * The offset in the file just after the last entry read. Once the end of the range has been reached,
+     * this is where the next range starts.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Read the next entry. A {@link SelectDb} is returned before the first key of each database.
+     * @return the next entry, or null at the end of the file or range.
+     */
+    public Entry readNext() throws IOException {
+        if (pending != null) {
+            Entry result = pending;
+            pending = null;
+            return result;
+        }
+        while (true) {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                position = base + parser.getCurrentLocation().getByteOffset();
+                return null;
+            }
+            long offset = base + parser.getTokenLocation().getByteOffset();
+            if (offset >= end) {
+                // The start of the next range
+                position = offset;
+                return null;
+            }
+            if (token != JsonToken.START_OBJECT) {
+                throw new JsonFormatException("Expected an object at offset %,d in %s but found %s", offset, name, token);
+            }
+            Record record = readRecord(offset);
+            position = base + parser.getCurrentLocation().getByteOffset();
+            if (record == null) {
+                continue;
+            }
+            KeyValuePair kvp = KeyValuePair.of(ByteSlice.wrap(record.key.getBytes(StandardCharsets.UTF_8)), record.type, record.values, record.expireTime);
+            if (currentDb == null || currentDb != record.db) {
+                currentDb = record.db;
+                pending = kvp;
+                return new SelectDb(record.db);
+            }
+            return kvp;
+        }
+    }
+
+    private static class Record {
+        private String key;
+        private long db = 0;
+        private String typeName;
+        private ValueType type;
+        private Long expireTime;
+        private List<ByteSlice> values;
+        private boolean rejected;
+    }
+
+    /**
+     * Read the fields of the object, returning null if the filter rejects it.
+     */
+    private Record readRecord(long offset) throws IOException {
+        Record record = new Record();
+        long now = System.currentTimeMillis();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+            case "key":
+                record.key = parser.getText();
+                break;
+            case "db":
+                record.db = parser.getLongValue();
+                break;
+            case "type":
+                record.typeName = parser.getText().toLowerCase(Locale.ROOT);
+                break;
+            case "ttl":
+                record.expireTime = parser.getLongValue() < 0 ? null : now + parser.getLongValue() * 1000;
+                break;
+            case "pttl":
+                record.expireTime = parser.getLongValue() < 0 ? null : now + parser.getLongValue();
+                break;
+            case "expireat":
+                record.expireTime = parser.getLongValue() < 0 ? null : parser.getLongValue() * 1000;
+                break;
+            case "value":
+                if (record.rejected || !accept(record)) {
+                    record.rejected = true;
+                    parser.skipChildren();
+                }
+                else {
+                    record.values = new ArrayList<>();
+                    readValue(token, record);
+                }
+                break;
+            default:
+                parser.skipChildren();
+            }
+        }
+        if (record.key == null || (record.values == null && !record.rejected)) {
+            throw new JsonFormatException("Object at offset %,d in %s must have a key and a value", offset, name);
+        }
+        if (record.rejected || !accept(record)) {
+            return null;
+        }
+        return record;
+    }
+
+    /**
+     * Apply the filter, once as much as possible is known about the record. The type may not be known
+     * until the value has been read, in which case the checks needing it are made then.
+     */
+    private boolean accept(Record record) {
+        if (filter == null || record.key == null) {
+            return true;
+        }
+        if (record.type == null) {
+            if (record.typeName == null) {
+                // Checked again once the value shows what type it is
+                return true;
+            }
+            record.type = toValueType(record.typeName, record);
+        }
+        if (!filter.accepts(record.db, record.type, record.expireTime)) {
+            record.rejected = true;
+            return false;
+        }
+        if (filter.needsKey() && !filter.acceptsKey(record.key)) {
+            record.rejected = true;
+            return false;
+        }
+        return true;
+    }
+
+    private ValueType toValueType(String typeName, Record record) {
+        switch (typeName) {
+        case "string":
+            return ValueType.VALUE;
+        case "list":
+            return ValueType.LIST;
+        case "set":
+            return ValueType.SET;
+        case "zset":
+            return ValueType.SORTED_SET2;
+        case "hash":
+            return ValueType.HASH;
+        case "stream":
+            return ValueType.STREAM_LISTPACKS_3;
+        default:
+            throw new JsonFormatException("Unknown type '%s' for key %s in %s", typeName, record.key, name);
+        }
+    }
+
+    private void readValue(JsonToken token, Record record) throws IOException {
+        List<ByteSlice> values = record.values;
+        switch (token) {
+        case START_OBJECT:
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                values.add(toSlice(parser.getCurrentName()));
+                parser.nextToken();
+                values.add(toSlice(scalar()));
+            }
+            setType(record, "hash");
+            break;
+        case START_ARRAY:
+            boolean pairs = false;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == JsonToken.START_ARRAY) {
+                    // A [member, score] pair of a sorted set
+                    pairs = true;
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        values.add(toSlice(scalar()));
+                    }
+                }
+                else {
+                    values.add(toSlice(scalar()));
+                }
+            }
+            setType(record, pairs ? "zset" : "list");
+            break;
+        default:
+            values.add(toSlice(scalar()));
+            setType(record, "string");
+        }
+    }
+
+    private void setType(Record record, String typeName) {
+        if (record.typeName == null) {
+            record.typeName = typeName;
+        }
+        if (record.type == null) {
+            record.type = toValueType(record.typeName, record);
+        }
+    }
+
+    private String scalar() throws IOException {
+        if (parser.currentToken().isStructStart()) {
+            throw new JsonFormatException("Nested value at offset %,d in %s cannot be imported", base + parser.getTokenLocation().getByteOffset(), name);
+        }
+        return parser.getText();
+    }
+
+    private static ByteSlice toSlice(String value) {
+        return ByteSlice.wrap(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+        in.close();
+    }
+}
@@ -0,0 +1,100 @@
+package com.aerospike.migration.importer.rdb;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A read-only view onto a range of bytes. When the RDB file is memory mapped, slices point
+ * directly into the mapped region so keys and values are not copied until someone asks for
+ * them as a {@code byte[]} or a {@code String}.
+ * <p>
+ * Only absolute reads are used on the underlying buffer, so a slice can be handed to another
+ * thread and read concurrently with other slices on the same buffer.
+ */
+public final class ByteSlice {
+    private static final byte[] EMPTY_BYTES = new byte[0];
+    public static final ByteSlice EMPTY = wrap(EMPTY_BYTES);
+
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int length;
+
+    public ByteSlice(ByteBuffer buffer, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > buffer.limit()) {
+            throw new IndexOutOfBoundsException(String.format("Slice of %d bytes at offset %d does not fit in buffer of %d bytes",
+                    length, offset, buffer.limit()));
+        }
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public static ByteSlice wrap(byte[] bytes) {
+        return new ByteSlice(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    public static ByteSlice wrap(byte[] bytes, int offset, int length) {
+        return new ByteSlice(ByteBuffer.wrap(bytes), offset, length);
+    }
+
+    /**
+     * Create a slice holding the decimal representation of the passed number. Integer encoded
+     * strings in the RDB file are presented to consumers this way, which matches what Redis
+     * returns for them.
+     */
+    public static ByteSlice ofLong(long value) {
+        return wrap(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public byte get(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException(String.format("Index %d out of range for slice of length %d", index, length));
+        }
+        return buffer.get(offset + index);
+    }
+
+    public ByteSlice slice(int sliceOffset, int sliceLength) {
+        if (sliceOffset < 0 || sliceLength < 0 || sliceOffset + sliceLength > length) {
+            throw new IndexOutOfBoundsException(String.format("Slice of %d bytes at offset %d does not fit in slice of %d bytes",
+                    sliceLength, sliceOffset, length));
+        }
+        return new ByteSlice(buffer, offset + sliceOffset, sliceLength);
+    }
+
+    /**
+     * Return a read-only {@code ByteBuffer} whose position is the start of this slice and whose
+     * limit is the end of this slice. The returned buffer is independent of any other view.
+     */
+    public ByteBuffer asByteBuffer() {
+        ByteBuffer result = buffer.asReadOnlyBuffer();
+        result.limit(offset + length);
+        result.position(offset);
+        return result;
+    }
+
+    public byte[] toByteArray() {
+        if (length == 0) {
+            return EMPTY_BYTES;
+        }
+        byte[] result = new byte[length];
+        asByteBuffer().get(result);
+        return result;
+    }
+
+    public String toString(Charset charset) {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + offset, length, charset);
+        }
+        return new String(toByteArray(), charset);
+    }
+
+    @Override
+    public String toString() {
+        return toString(StandardCharsets.US_ASCII);
+    }
+}
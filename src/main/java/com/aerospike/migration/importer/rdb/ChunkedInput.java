@@ -0,0 +1,108 @@
+package com.aerospike.migration.importer.rdb;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * An input held as a sequence of contiguous chunks in memory, each chunk being one segment. This is
+ * used to hold the bytes of an entry read from a stream after the stream has moved on, and as the
+ * sliding window over the stream itself.
+ */
+class ChunkedInput implements RdbInput {
+    private final String name;
+    protected final List<Long> starts;
+    protected final List<ByteBuffer> chunks;
+
+    ChunkedInput(String name, List<Long> starts, List<ByteBuffer> chunks) {
+        this.name = name;
+        this.starts = starts;
+        this.chunks = chunks;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The offset of the first byte held.
+     */
+    protected long start() {
+        return chunks.isEmpty() ? 0 : starts.get(0);
+    }
+
+    /**
+     * The offset after the last byte held.
+     */
+    protected long end() {
+        int last = chunks.size() - 1;
+        return last < 0 ? 0 : starts.get(last) + chunks.get(last).limit();
+    }
+
+    /**
+     * Load the next chunk, if there is one. The bytes held here are fixed, so there never is.
+     */
+    protected boolean fetch() throws IOException {
+        return false;
+    }
+
+    @Override
+    public long size() {
+        return end();
+    }
+
+    protected int indexOf(long position) throws IOException {
+        while (position >= end() && fetch()) {
+        }
+        if (position < start() || position >= end()) {
+            throw new RdbFormatException("Unexpected offset %,d in %s, only offsets %,d to %,d are available", position, name, start(), end());
+        }
+        // Reads are almost always in the most recent chunks
+        int index = chunks.size() - 1;
+        while (starts.get(index) > position) {
+            index--;
+        }
+        return index;
+    }
+
+    @Override
+    public long segmentStart(long position) throws IOException {
+        return starts.get(indexOf(position));
+    }
+
+    @Override
+    public ByteBuffer segmentFor(long position) throws IOException {
+        return chunks.get(indexOf(position));
+    }
+
+    @Override
+    public ByteSlice slice(long position, int length) throws IOException {
+        if (length == 0) {
+            return ByteSlice.EMPTY;
+        }
+        indexOf(position + length - 1);
+        int index = indexOf(position);
+        ByteBuffer chunk = chunks.get(index);
+        int offset = (int)(position - starts.get(index));
+        if (offset + length <= chunk.limit()) {
+            return new ByteSlice(chunk, offset, length);
+        }
+        byte[] bytes = new byte[length];
+        int copied = 0;
+        while (copied < length) {
+            ByteBuffer source = chunks.get(index).duplicate();
+            source.position(offset);
+            int toCopy = Math.min(length - copied, source.remaining());
+            source.get(bytes, copied, toCopy);
+            copied += toCopy;
+            index++;
+            offset = 0;
+        }
+        return ByteSlice.wrap(bytes);
+    }
+
+    @Override
+    public void close() throws IOException {
+    }
+}
@@ -0,0 +1,219 @@
+package com.aerospike.migration.importer.rdb;
+
+import java.util.Collection;
+
+/**
+ * Decoders for the compact blob encodings Redis uses for small collections: ziplists, listpacks,
+ * intsets and zipmaps. String elements are returned as slices of the blob, integer elements as
+ * their decimal representation.
+ */
+public class CompactEncodings {
+    private CompactEncodings() {}
+
+    private static int uint8(ByteSlice data, int offset) {
+        return data.get(offset) & 0xff;
+    }
+
+    private static int uint16LE(ByteSlice data, int offset) {
+        return uint8(data, offset) | (uint8(data, offset + 1) << 8);
+    }
+
+    private static int int32LE(ByteSlice data, int offset) {
+        return uint16LE(data, offset) | (uint16LE(data, offset + 2) << 16);
+    }
+
+    private static int int32BE(ByteSlice data, int offset) {
+        return (uint8(data, offset) << 24) | (uint8(data, offset + 1) << 16) | (uint8(data, offset + 2) << 8) | uint8(data, offset + 3);
+    }
+
+    /**
+     * Read a little endian signed integer of {@code bytes} bytes.
+     */
+    static long intLE(ByteSlice data, int offset, int bytes) {
+        long result = 0;
+        for (int i = bytes - 1; i >= 0; i--) {
+            result = (result << 8) | uint8(data, offset + i);
+        }
+        // Sign extend
+        int shift = 64 - 8 * bytes;
+        return (result << shift) >> shift;
+    }
+
+    public static void decodeZiplist(ByteSlice ziplist, Collection<ByteSlice> out) {
+        // zlbytes (4), zltail (4), zllen (2), then the entries
+        int pos = 10;
+        while (true) {
+            int prevLen = uint8(ziplist, pos);
+            if (prevLen == 0xff) {
+                return;
+            }
+            pos += prevLen < 254 ? 1 : 5;
+            int encoding = uint8(ziplist, pos);
+            switch (encoding >> 6) {
+            case 0:
+                int length = encoding & 0x3f;
+                out.add(ziplist.slice(pos + 1, length));
+                pos += 1 + length;
+                break;
+            case 1:
+                length = ((encoding & 0x3f) << 8) | uint8(ziplist, pos + 1);
+                out.add(ziplist.slice(pos + 2, length));
+                pos += 2 + length;
+                break;
+            case 2:
+                length = int32BE(ziplist, pos + 1);
+                out.add(ziplist.slice(pos + 5, length));
+                pos += 5 + length;
+                break;
+            default:
+                int intBytes;
+                switch (encoding) {
+                case 0xc0: intBytes = 2; break;
+                case 0xd0: intBytes = 4; break;
+                case 0xe0: intBytes = 8; break;
+                case 0xf0: intBytes = 3; break;
+                case 0xfe: intBytes = 1; break;
+                default:
+                    if (encoding >= 0xf1 && encoding <= 0xfd) {
+                        out.add(ByteSlice.ofLong((encoding & 0x0f) - 1));
+                        pos += 1;
+                        continue;
+                    }
+                    throw new RdbFormatException("Unknown ziplist entry encoding 0x%02x at offset %d", encoding, pos);
+                }
+                out.add(ByteSlice.ofLong(intLE(ziplist, pos + 1, intBytes)));
+                pos += 1 + intBytes;
+            }
+        }
+    }
+
+    /**
+     * The number of bytes used to store the back length of a listpack entry whose encoding and data
+     * occupy {@code length} bytes.
+     */
+    private static int listpackBacklenSize(int length) {
+        if (length <= 127) {
+            return 1;
+        }
+        else if (length < 16383) {
+            return 2;
+        }
+        else if (length < 2097151) {
+            return 3;
+        }
+        else if (length < 268435455) {
+            return 4;
+        }
+        return 5;
+    }
+
+    public static void decodeListpack(ByteSlice listpack, Collection<ByteSlice> out) {
+        // total bytes (4), number of elements (2), then the entries
+        int pos = 6;
+        while (true) {
+            int encoding = uint8(listpack, pos);
+            int entryLength;
+            if (encoding == 0xff) {
+                return;
+            }
+            else if ((encoding & 0x80) == 0) {
+                // 7 bit unsigned integer
+                out.add(ByteSlice.ofLong(encoding & 0x7f));
+                entryLength = 1;
+            }
+            else if ((encoding & 0xc0) == 0x80) {
+                // 6 bit string length
+                int length = encoding & 0x3f;
+                out.add(listpack.slice(pos + 1, length));
+                entryLength = 1 + length;
+            }
+            else if ((encoding & 0xe0) == 0xc0) {
+                // 13 bit signed integer
+                int value = ((encoding & 0x1f) << 8) | uint8(listpack, pos + 1);
+                if (value >= 1 << 12) {
+                    value -= 1 << 13;
+                }
+                out.add(ByteSlice.ofLong(value));
+                entryLength = 2;
+            }
+            else if ((encoding & 0xf0) == 0xe0) {
+                // 12 bit string length
+                int length = ((encoding & 0x0f) << 8) | uint8(listpack, pos + 1);
+                out.add(listpack.slice(pos + 2, length));
+                entryLength = 2 + length;
+            }
+            else {
+                switch (encoding) {
+                case 0xf0:
+                    int length = int32LE(listpack, pos + 1);
+                    out.add(listpack.slice(pos + 5, length));
+                    entryLength = 5 + length;
+                    break;
+                case 0xf1:
+                    out.add(ByteSlice.ofLong(intLE(listpack, pos + 1, 2)));
+                    entryLength = 3;
+                    break;
+                case 0xf2:
+                    out.add(ByteSlice.ofLong(intLE(listpack, pos + 1, 3)));
+                    entryLength = 4;
+                    break;
+                case 0xf3:
+                    out.add(ByteSlice.ofLong(intLE(listpack, pos + 1, 4)));
+                    entryLength = 5;
+                    break;
+                case 0xf4:
+                    out.add(ByteSlice.ofLong(intLE(listpack, pos + 1, 8)));
+                    entryLength = 9;
+                    break;
+                default:
+                    throw new RdbFormatException("Unknown listpack entry encoding 0x%02x at offset %d", encoding, pos);
+                }
+            }
+            pos += entryLength + listpackBacklenSize(entryLength);
+        }
+    }
+
+    public static void decodeIntset(ByteSlice intset, Collection<ByteSlice> out) {
+        int encoding = int32LE(intset, 0);
+        int length = int32LE(intset, 4);
+        if (encoding != 2 && encoding != 4 && encoding != 8) {
+            throw new RdbFormatException("Unknown intset encoding %d", encoding);
+        }
+        for (int i = 0; i < length; i++) {
+            out.add(ByteSlice.ofLong(intLE(intset, 8 + i * encoding, encoding)));
+        }
+    }
+
+    public static void decodeZipmap(ByteSlice zipmap, Collection<ByteSlice> out) {
+        // zmlen (1), then alternating keys and values
+        int pos = 1;
+        while (true) {
+            int length = uint8(zipmap, pos);
+            if (length == 0xff) {
+                return;
+            }
+            if (length == 254) {
+                length = int32LE(zipmap, pos + 1);
+                pos += 5;
+            }
+            else {
+                pos += 1;
+            }
+            out.add(zipmap.slice(pos, length));
+            pos += length;
+
+            length = uint8(zipmap, pos);
+            if (length == 254) {
+                length = int32LE(zipmap, pos + 1);
+                pos += 5;
+            }
+            else {
+                pos += 1;
+            }
+            int free = uint8(zipmap, pos);
+            pos += 1;
+            out.add(zipmap.slice(pos, length));
+            pos += length + free;
+        }
+    }
+}
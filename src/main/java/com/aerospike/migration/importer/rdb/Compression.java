@@ -0,0 +1,80 @@
+package com.aerospike.migration.importer.rdb;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import com.github.luben.zstd.ZstdInputStream;
+
+import net.jpountz.lz4.LZ4FrameInputStream;
+
+/**
+ * The compression formats an RDB file can be read from, detected by the magic bytes at the start of the file.
+ */
+public enum Compression {
+    NONE(new byte[0]),
+    GZIP(new byte[] {0x1f, (byte)0x8b}),
+    ZSTD(new byte[] {0x28, (byte)0xb5, 0x2f, (byte)0xfd}),
+    LZ4(new byte[] {0x04, 0x22, 0x4d, 0x18});
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final byte[] magic;
+
+    private Compression(byte[] magic) {
+        this.magic = magic;
+    }
+
+    public static Compression detect(File file) throws IOException {
+        byte[] header = new byte[4];
+        int length;
+        try (InputStream in = new FileInputStream(file)) {
+            length = in.readNBytes(header, 0, header.length);
+        }
+        for (Compression compression : values()) {
+            if (compression != NONE && compression.magic.length <= length && startsWith(header, compression.magic)) {
+                return compression;
+            }
+        }
+        if (length == header.length && isZstdSkippableFrame(header)) {
+            return ZSTD;
+        }
+        return NONE;
+    }
+
+    /**
+     * Whether the header is the magic of a zstd skippable frame, 0x184D2A50 to 0x184D2A5F in little-endian.
+     * pzstd writes one before every frame, so its files start with one rather than a frame.
+     */
+    private static boolean isZstdSkippableFrame(byte[] header) {
+        return (header[0] & 0xf0) == 0x50 && header[1] == 0x2a && header[2] == 0x4d && header[3] == 0x18;
+    }
+
+    private static boolean startsWith(byte[] data, byte[] prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Wrap the passed stream of compressed data in a stream which decompresses it. Concatenated gzip members,
+     * zstd frames and lz4 frames are all decompressed as one stream.
+     */
+    public InputStream decompress(InputStream in) throws IOException {
+        switch (this) {
+        case GZIP:
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        case ZSTD:
+            return new ZstdInputStream(in);
+        case LZ4:
+            return new LZ4FrameInputStream(in);
+        default:
+            return in;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.aerospike.migration.importer.rdb;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the payloads returned by the Redis {@code DUMP} command outside the heap until their entries have
+ * been imported, as {@link StreamInput} does for the chunks of a compressed file. The payloads are packed
+ * one after another into direct buffers from a {@link SlabPool}, a large payload spanning several, and
+ * each buffer is reused once it is full and every entry in it has been freed.
+ * <p>
+ * The arrays the payloads arrive in are dropped as soon as they are copied, so they die young rather
+ * than staying on the heap for as long as the entries wait in the queue.
+ */
+public class DumpPayloads {
+    private static final int DEFAULT_SLAB_SIZE = 256 << 10;
+    private static final int MAX_IDLE_SLABS = 64;
+
+    private final SlabPool pool;
+    private SlabPool.Slab current;
+
+    public DumpPayloads() {
+        this(DEFAULT_SLAB_SIZE);
+    }
+
+    DumpPayloads(int slabSize) {
+        this.pool = new SlabPool(slabSize, MAX_IDLE_SLABS);
+    }
+
+    /**
+     * Copy the first length bytes of the payload into the slabs, returning them as an input which holds
+     * on to its slabs until it is freed.
+     */
+    synchronized RdbInput copy(String name, byte[] payload, int length) {
+        List<Long> starts = new ArrayList<>();
+        List<ByteBuffer> chunks = new ArrayList<>();
+        List<SlabPool.Slab> slabs = new ArrayList<>();
+        int copied = 0;
+        while (copied < length) {
+            if (current == null || !current.buffer().hasRemaining()) {
+                if (current != null) {
+                    current.release();
+                }
+                current = pool.take();
+            }
+            ByteBuffer buffer = current.buffer();
+            int toCopy = Math.min(length - copied, buffer.remaining());
+            ByteBuffer chunk = buffer.duplicate();
+            chunk.limit(chunk.position() + toCopy);
+            buffer.put(payload, copied, toCopy);
+            starts.add((long)copied);
+            chunks.add(chunk.slice());
+            slabs.add(current);
+            copied += toCopy;
+        }
+        return new SlabInput(name, starts, chunks, slabs);
+    }
+
+    public long getSlabsAllocated() {
+        return pool.getAllocated();
+    }
+
+    public long getSlabsReused() {
+        return pool.getReused();
+    }
+}
@@ -0,0 +1,25 @@
+package com.aerospike.migration.importer.rdb;
+
+/**
+ * An entry read from an RDB file.
+ */
+public abstract class Entry {
+    /** A rough size of an entry object and its bookkeeping, apart from its key and value */
+    protected static final int OVERHEAD = 64;
+
+    public abstract EntryType getType();
+
+    /**
+     * An estimate of the memory in bytes the entry holds from being read until it has been processed. It
+     * must return the same each time it is called.
+     */
+    public long estimateSize() {
+        return OVERHEAD;
+    }
+
+    /**
+     * Called once the entry has been processed, whether or not this succeeded.
+     */
+    public void completed() {
+    }
+}
@@ -0,0 +1,111 @@
+package com.aerospike.migration.importer.rdb;
+
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Decides which entries to import from what is known about them before their values are read: the
+ * database, the value type, the expiry time and the key. The reader checks the filter as soon as the
+ * key has been read, and skips over the values of entries which are rejected without decoding them.
+ * <p>
+ * The checks which do not need the key are made first, so the key of an entry rejected by them is not
+ * read either. The filter can be shared by several readers.
+ */
+public class EntryFilter {
+    private Pattern include;
+    private Pattern exclude;
+    private Set<Long> databases;
+    private Set<String> typeNames;
+    private long expiringWithinMillis = 0;
+    private Predicate<String> keyPredicate;
+    private final LongAdder filtered = new LongAdder();
+
+    /**
+     * Only accept keys which match this regular expression in full.
+     */
+    public EntryFilter include(String regex) {
+        this.include = regex == null ? null : Pattern.compile(regex);
+        return this;
+    }
+
+    /**
+     * Reject keys which match this regular expression in full.
+     */
+    public EntryFilter exclude(String regex) {
+        this.exclude = regex == null ? null : Pattern.compile(regex);
+        return this;
+    }
+
+    /**
+     * Only accept entries in these databases, or in any database if null.
+     */
+    public EntryFilter databases(Set<Long> databases) {
+        this.databases = databases;
+        return this;
+    }
+
+    /**
+     * Only accept values of these types, named as by {@link ValueType#getTypeName()}, or of any type if null.
+     */
+    public EntryFilter typeNames(Set<String> typeNames) {
+        this.typeNames = typeNames;
+        return this;
+    }
+
+    /**
+     * Reject entries which expire within this many seconds. Entries which have already expired are always rejected.
+     */
+    public EntryFilter expiringWithin(long seconds) {
+        this.expiringWithinMillis = seconds * 1000;
+        return this;
+    }
+
+    /**
+     * Only accept keys for which this predicate holds, such as keys which can be mapped to Aerospike.
+     */
+    public EntryFilter keyPredicate(Predicate<String> keyPredicate) {
+        this.keyPredicate = keyPredicate;
+        return this;
+    }
+
+    /**
+     * Whether the key needs to be read to apply {@link #acceptsKey(String)}.
+     */
+    public boolean needsKey() {
+        return include != null || exclude != null || keyPredicate != null;
+    }
+
+    /**
+     * Apply the checks which do not need the key.
+     * @param type - the type of the value, or null if it is not known, in which case the type is not checked
+     * @param expireTime - the expiry time in milliseconds since the epoch, or null if the entry does not expire
+     */
+    public boolean accepts(long db, ValueType type, Long expireTime) {
+        if ((databases != null && !databases.contains(db))
+                || (typeNames != null && type != null && !typeNames.contains(type.getTypeName()))
+                || (expireTime != null && expireTime <= System.currentTimeMillis() + expiringWithinMillis)) {
+            filtered.increment();
+            return false;
+        }
+        return true;
+    }
+
+    public boolean acceptsKey(String key) {
+        if ((include != null && !include.matcher(key).matches())
+                || (exclude != null && exclude.matcher(key).matches())
+                || (keyPredicate != null && !keyPredicate.test(key))) {
+            filtered.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * The number of entries rejected so far.
+     */
+    public long getFiltered() {
+        return filtered.sum();
+    }
+}
@@ -0,0 +1,8 @@
+package com.aerospike.migration.importer.rdb;
+
+public enum EntryType {
+    SELECT_DB,
+    KEY_VALUE_PAIR,
+    EOF,
+    COMMANDS
+}
@@ -0,0 +1,21 @@
+package com.aerospike.migration.importer.rdb;
+
+public class Eof extends Entry {
+    private final byte[] checksum;
+
+    public Eof(byte[] checksum) {
+        this.checksum = checksum;
+    }
+
+    @Override
+    public EntryType getType() {
+        return EntryType.EOF;
+    }
+
+    /**
+     * The CRC64 checksum of the file. This is empty for files written before RDB version 5.
+     */
+    public byte[] getChecksum() {
+        return checksum;
+    }
+}
@@ -0,0 +1,235 @@
+package com.aerospike.migration.importer.rdb;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Iterator;
+import java.util.List;
+
+import net.jpountz.xxhash.XXHash64;
+import net.jpountz.xxhash.XXHashFactory;
+
+/**
+ * A key and its value read from an RDB file. The key and values are slices which, for memory mapped
+ * files, refer directly into the mapped file and are only copied when converted.
+ * <p>
+ * The values are presented as a flat list, the same way Redis would return them: one element for a
+ * string, the elements of a list or set, alternating field and value for a hash, and alternating member
+ * and score for a sorted set.
+ * <p>
+ * The reader only records where the key and value are in the file. They are decompressed and decoded
+ * the first time they are requested, on the calling thread.
+ */
+public class KeyValuePair extends Entry {
+    private static final XXHash64 XXHASH = XXHashFactory.fastestInstance().hash64();
+    private static final long KEY_SEED = 0x5EED5EEDL;
+    private static final int FINGERPRINT_CHUNK = 1 << 20;
+    private final RdbInput input;
+    private final ValueType valueType;
+    private final long keyOffset;
+    private final long valueOffset;
+    private final long valueEnd;
+    private final Long expireTime;
+    private final Long idle;
+    private final Integer freq;
+    private ByteSlice key;
+    private List<ByteSlice> values;
+
+    KeyValuePair(RdbInput input, ValueType valueType, long keyOffset, long valueOffset, long valueEnd, Long expireTime, Long idle, Integer freq) {
+        this.input = input;
+        this.valueType = valueType;
+        this.keyOffset = keyOffset;
+        this.valueOffset = valueOffset;
+        this.valueEnd = valueEnd;
+        this.expireTime = expireTime;
+        this.idle = idle;
+        this.freq = freq;
+    }
+
+    private KeyValuePair(ByteSlice key, ValueType valueType, RdbInput input, List<ByteSlice> values, Long expireTime) {
+        this(input, valueType, -1, input == null ? -1 : 1, input == null ? -1 : input.size(), expireTime, null, null);
+        this.key = key;
+        this.values = values;
+    }
+
+    /**
+     * Create a pair whose values have already been read, for example from a live Redis server.
+     * @param values - the values, in the same flat layout as {@link #getValues()}
+     */
+    public static KeyValuePair of(ByteSlice key, ValueType valueType, List<ByteSlice> values, Long expireTime) {
+        return new KeyValuePair(key, valueType, null, values, expireTime);
+    }
+
+    /**
+     * Create a pair from the payload returned by the Redis {@code DUMP} command. The payload is the type
+     * and value encoded as in an RDB file, followed by a 2 byte RDB version and an 8 byte checksum, so it
+     * is decoded on demand like a value read from a file. The type and value are copied into the passed
+     * slabs, off the heap, until the pair is completed.
+     */
+    public static KeyValuePair fromDump(ByteSlice key, byte[] payload, Long expireTime, DumpPayloads payloads) {
+        ValueType valueType = payload.length > 10 ? ValueType.fromCode(payload[0] & 0xff) : null;
+        if (valueType == null) {
+            throw new RdbFormatException("Invalid DUMP payload of %d bytes for key %s", payload.length, key);
+        }
+        RdbInput input = payloads.copy("DUMP of " + key, payload, payload.length - 10);
+        return new KeyValuePair(key, valueType, input, null, expireTime);
+    }
+
+    @Override
+    public EntryType getType() {
+        return EntryType.KEY_VALUE_PAIR;
+    }
+
+    public ValueType getValueType() {
+        return valueType;
+    }
+
+    public ByteSlice getKey() {
+        if (key == null) {
+            try {
+                key = new RdbDecoder(input, keyOffset).readString();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return key;
+    }
+
+    /**
+     * The expiry time of this key in milliseconds since the epoch, or null if the key does not expire.
+     */
+    public Long getExpireTime() {
+        return expireTime;
+    }
+
+    /**
+     * The LRU idle time of this key in seconds, or null if the file was not written with an LRU eviction policy.
+     */
+    public Long getIdle() {
+        return idle;
+    }
+
+    /**
+     * The LFU frequency of this key, or null if the file was not written with an LFU eviction policy.
+     */
+    public Integer getFreq() {
+        return freq;
+    }
+
+    /**
+     * The size of the key and value as encoded in the file they were read from, or of the values for a
+     * pair which was not read from a file. Decoding a value read from a file does not change it.
+     */
+    @Override
+    public long estimateSize() {
+        if (valueEnd >= 0) {
+            return OVERHEAD + (keyOffset >= 0 ? valueEnd - keyOffset : key.length() + valueEnd - valueOffset);
+        }
+        long size = OVERHEAD + key.length();
+        for (ByteSlice value : values) {
+            // Each element is a slice object as well as its bytes
+            size += 32 + value.length();
+        }
+        return size;
+    }
+
+    /**
+     * Let the memory holding the key and value be reused. Nothing must read them after this.
+     */
+    @Override
+    public void completed() {
+        if (input != null) {
+            input.free();
+        }
+    }
+
+    public List<ByteSlice> getValues() {
+        if (values == null) {
+            try {
+                values = new RdbDecoder(input, valueOffset).readValue(valueType);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * A 64 bit hash of the key in the passed database, used to find the key in a table of fingerprints. The
+     * same key in two databases is two keys, so hashes differently.
+     */
+    public long keyHash(long db) {
+        return hash(getKey(), KEY_SEED + db);
+    }
+
+    /**
+     * A 64 bit hash of the type, value and expiry time of this pair, used to tell whether it has changed
+     * between two snapshots. A value read from a file is hashed in its encoded form without decoding it, so
+     * the same value encoded differently, such as a hash converted from a listpack to a hash table, counts as
+     * a change.
+     */
+    public long fingerprint() {
+        long hash = XXHASH.hash(new byte[] {(byte)valueType.getCode()}, 0, 1, expireTime == null ? 0 : expireTime);
+        try {
+            if (values == null && valueEnd >= 0) {
+                for (long offset = valueOffset; offset < valueEnd; ) {
+                    int length = (int)Math.min(FINGERPRINT_CHUNK, valueEnd - offset);
+                    hash = hash(input.slice(offset, length), hash);
+                    offset += length;
+                }
+            }
+            else {
+                for (ByteSlice value : values) {
+                    // Mix in the length so values split differently hash differently
+                    hash = hash(value, hash + value.length());
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return hash;
+    }
+
+    /**
+     * Write the key and value exactly as they are encoded in the file they were read from.
+     */
+    void writeEncoded(WritableByteChannel out) throws IOException {
+        if (keyOffset < 0) {
+            throw new RdbFormatException("Key %s was not read from an RDB file, so has no encoded form", getKey());
+        }
+        for (long offset = keyOffset; offset < valueEnd; ) {
+            int length = (int)Math.min(FINGERPRINT_CHUNK, valueEnd - offset);
+            ByteBuffer buffer = input.slice(offset, length).asByteBuffer();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            offset += length;
+        }
+    }
+
+    private static long hash(ByteSlice slice, long seed) {
+        ByteBuffer buffer = slice.asByteBuffer();
+        return XXHASH.hash(buffer, buffer.position(), slice.length(), seed);
+    }
+
+    /**
+     * Iterate over the values without holding them all in memory. Elements are decoded as the iterator
+     * advances, so a very large list, set or hash can be processed a piece at a time. Unlike
+     * {@link #getValues()} nothing is cached, and each call decodes the value again from the start.
+     */
+    public Iterator<ByteSlice> valueIterator() {
+        if (values != null) {
+            return values.iterator();
+        }
+        try {
+            return new RdbDecoder(input, valueOffset).valueIterator(valueType);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.aerospike.migration.importer.rdb;
+
+/**
+ * Decompressor for the LZF format Redis uses for compressed strings in RDB files.
+ */
+public class Lzf {
+    private Lzf() {}
+
+    public static byte[] decompress(ByteSlice input, int expectedLength) {
+        byte[] output = new byte[expectedLength];
+        int inputLength = input.length();
+        int ip = 0;
+        int op = 0;
+        try {
+            while (ip < inputLength) {
+                int ctrl = input.get(ip++) & 0xff;
+                if (ctrl < 32) {
+                    // Literal run of ctrl + 1 bytes
+                    for (int i = 0; i <= ctrl; i++) {
+                        output[op++] = input.get(ip++);
+                    }
+                }
+                else {
+                    // Back reference
+                    int length = ctrl >> 5;
+                    int ref = op - ((ctrl & 0x1f) << 8) - 1;
+                    if (length == 7) {
+                        length += input.get(ip++) & 0xff;
+                    }
+                    ref -= input.get(ip++) & 0xff;
+                    length += 2;
+                    if (ref < 0) {
+                        throw new RdbFormatException("Invalid LZF back reference at input offset %d", ip);
+                    }
+                    for (int i = 0; i < length; i++) {
+                        output[op++] = output[ref++];
+                    }
+                }
+            }
+        }
+        catch (IndexOutOfBoundsException e) {
+            throw new RdbFormatException("Corrupt LZF data: input of %d bytes does not decompress to %d bytes", inputLength, expectedLength);
+        }
+        if (op != expectedLength) {
+            throw new RdbFormatException("LZF data decompressed to %d bytes, expected %d", op, expectedLength);
+        }
+        return output;
+    }
+}
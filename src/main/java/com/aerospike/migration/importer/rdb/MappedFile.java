@@ -0,0 +1,134 @@
+package com.aerospike.migration.importer.rdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A read-only file which is memory mapped in segments. A single {@code MappedByteBuffer} is limited
+ * to 2GB, so larger files are mapped as a sequence of segments. Each segment is mapped with an
+ * overlap into the following segment so that any read which starts in a segment and is no longer
+ * than the overlap can be served from that one segment without copying. Longer reads which span a
+ * segment boundary are copied onto the heap.
+ * <p>
+ * Segments are mapped lazily and are safe to share between threads.
+ */
+public class MappedFile implements RdbInput {
+    public static final long DEFAULT_SEGMENT_SIZE = 1L << 30;
+    public static final int DEFAULT_OVERLAP = 64 << 20;
+
+    private final File file;
+    private final FileChannel channel;
+    private final long size;
+    private final long segmentSize;
+    private final int overlap;
+    private final AtomicReferenceArray<MappedByteBuffer> segments;
+
+    public MappedFile(File file) throws IOException {
+        this(file, DEFAULT_SEGMENT_SIZE, DEFAULT_OVERLAP);
+    }
+
+    MappedFile(File file, long segmentSize, int overlap) throws IOException {
+        if (segmentSize <= 0 || overlap < 0 || segmentSize + overlap > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("Invalid segment size (%d) or overlap (%d)", segmentSize, overlap));
+        }
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.size = channel.size();
+        this.segmentSize = segmentSize;
+        this.overlap = overlap;
+        this.segments = new AtomicReferenceArray<>((int)((size + segmentSize - 1) / segmentSize));
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public String getName() {
+        return file.getPath();
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    long getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Get the start offset in the file of the segment which holds the passed position.
+     */
+    @Override
+    public long segmentStart(long position) {
+        return (position / segmentSize) * segmentSize;
+    }
+
+    /**
+     * Get the mapped buffer for the segment holding the passed position. Index 0 of the returned
+     * buffer corresponds to {@link #segmentStart(long)} in the file.
+     */
+    @Override
+    public ByteBuffer segmentFor(long position) throws IOException {
+        if (position < 0 || position >= size) {
+            throw new RdbFormatException("Unexpected end of file %s at offset %,d", file, position);
+        }
+        int index = (int)(position / segmentSize);
+        MappedByteBuffer segment = segments.get(index);
+        if (segment == null) {
+            synchronized (this) {
+                segment = segments.get(index);
+                if (segment == null) {
+                    long start = index * segmentSize;
+                    long length = Math.min(size - start, segmentSize + overlap);
+                    segment = channel.map(MapMode.READ_ONLY, start, length);
+                    segments.set(index, segment);
+                }
+            }
+        }
+        return segment;
+    }
+
+    /**
+     * Return a view of {@code length} bytes starting at {@code position}. This is zero-copy unless
+     * the range crosses a segment boundary by more than the overlap.
+     */
+    @Override
+    public ByteSlice slice(long position, int length) throws IOException {
+        if (length == 0) {
+            return ByteSlice.EMPTY;
+        }
+        if (position + length > size) {
+            throw new RdbFormatException("Unexpected end of file %s: %,d bytes requested at offset %,d but file is only %,d bytes",
+                    file, length, position, size);
+        }
+        ByteBuffer segment = segmentFor(position);
+        long start = segmentStart(position);
+        if (position + length <= start + segment.limit()) {
+            return new ByteSlice(segment, (int)(position - start), length);
+        }
+        byte[] bytes = new byte[length];
+        int copied = 0;
+        while (copied < length) {
+            long current = position + copied;
+            ByteBuffer source = segmentFor(current).duplicate();
+            source.position((int)(current - segmentStart(current)));
+            int toCopy = (int)Math.min(length - copied, segmentSize - source.position());
+            source.get(bytes, copied, toCopy);
+            copied += toCopy;
+        }
+        return ByteSlice.wrap(bytes);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
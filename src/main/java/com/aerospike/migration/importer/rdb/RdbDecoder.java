@@ -0,0 +1,597 @@
+package com.aerospike.migration.importer.rdb;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Decodes the strings and values of an RDB file starting at a position in the file. The reader uses
+ * this to walk the file, and entries use it to decode their key and value on the thread which
+ * processes them rather than on the thread which reads the file.
+ */
+class RdbDecoder {
+    private static final int ENCODING_INT8 = 0;
+    private static final int ENCODING_INT16 = 1;
+    private static final int ENCODING_INT32 = 2;
+    private static final int ENCODING_LZF = 3;
+
+    private static final int MODULE_OPCODE_EOF = 0;
+    private static final int MODULE_OPCODE_SINT = 1;
+    private static final int MODULE_OPCODE_UINT = 2;
+    private static final int MODULE_OPCODE_FLOAT = 3;
+    private static final int MODULE_OPCODE_DOUBLE = 4;
+    private static final int MODULE_OPCODE_STRING = 5;
+
+    private static final int QUICKLIST_NODE_PLAIN = 1;
+
+    protected final RdbInput input;
+    protected long position;
+
+    // The segment currently being read and its extent in the file
+    private ByteBuffer buffer;
+    private long bufferStart;
+    private long bufferEnd;
+
+    RdbDecoder(RdbInput input, long position) {
+        this.input = input;
+        this.position = position;
+    }
+
+    // -----------------------------------
+    // Primitive reads
+    // -----------------------------------
+    int readByte() throws IOException {
+        if (position < bufferStart || position >= bufferEnd) {
+            buffer = input.segmentFor(position);
+            bufferStart = input.segmentStart(position);
+            bufferEnd = bufferStart + buffer.limit();
+        }
+        return buffer.get((int)(position++ - bufferStart)) & 0xff;
+    }
+
+    ByteSlice readBytes(long length) throws IOException {
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new RdbFormatException("Invalid length %,d at offset %,d in %s", length, position, input.getName());
+        }
+        ByteSlice result = input.slice(position, (int)length);
+        position += length;
+        return result;
+    }
+
+    void skipBytes(long length) {
+        if (length < 0 || position + length > input.size()) {
+            throw new RdbFormatException("Cannot skip %,d bytes at offset %,d in %s of size %,d", length, position, input.getName(), input.size());
+        }
+        position += length;
+    }
+
+    long readLE(int bytes) throws IOException {
+        long result = 0;
+        for (int i = 0; i < bytes; i++) {
+            result |= ((long)readByte()) << (8 * i);
+        }
+        return result;
+    }
+
+    private long readBE(int bytes) throws IOException {
+        long result = 0;
+        for (int i = 0; i < bytes; i++) {
+            result = (result << 8) | readByte();
+        }
+        return result;
+    }
+
+    long readMillisecondTime() throws IOException {
+        return readLE(8);
+    }
+
+    /**
+     * Read a length whose first byte has already been read. Returns -1 - encoding if the length
+     * is instead a special string encoding.
+     */
+    long readLength(int first) throws IOException {
+        switch (first >> 6) {
+        case 0:
+            return first & 0x3f;
+        case 1:
+            return ((first & 0x3f) << 8) | readByte();
+        case 2:
+            if (first == 0x80) {
+                return readBE(4);
+            }
+            else if (first == 0x81) {
+                return readBE(8);
+            }
+            throw new RdbFormatException("Invalid length encoding 0x%02x at offset %,d", first, position - 1);
+        default:
+            return -1 - (first & 0x3f);
+        }
+    }
+
+    long readLength() throws IOException {
+        long length = readLength(readByte());
+        if (length < 0) {
+            throw new RdbFormatException("Expected a length but found a string encoding at offset %,d", position - 1);
+        }
+        return length;
+    }
+
+    ByteSlice readString() throws IOException {
+        long length = readLength(readByte());
+        if (length >= 0) {
+            return readBytes(length);
+        }
+        int encoding = (int)(-1 - length);
+        switch (encoding) {
+        case ENCODING_INT8:
+            return ByteSlice.ofLong((byte)readByte());
+        case ENCODING_INT16:
+            return ByteSlice.ofLong((short)readLE(2));
+        case ENCODING_INT32:
+            return ByteSlice.ofLong((int)readLE(4));
+        case ENCODING_LZF:
+            long compressedLength = readLength();
+            long uncompressedLength = readLength();
+            if (uncompressedLength > Integer.MAX_VALUE) {
+                throw new RdbFormatException("LZF string of %,d bytes at offset %,d is too large", uncompressedLength, position);
+            }
+            return ByteSlice.wrap(Lzf.decompress(readBytes(compressedLength), (int)uncompressedLength));
+        default:
+            throw new RdbFormatException("Unknown string encoding %d at offset %,d", encoding, position - 1);
+        }
+    }
+
+    void skipString() throws IOException {
+        long length = readLength(readByte());
+        if (length >= 0) {
+            skipBytes(length);
+            return;
+        }
+        int encoding = (int)(-1 - length);
+        switch (encoding) {
+        case ENCODING_INT8:
+            skipBytes(1);
+            break;
+        case ENCODING_INT16:
+            skipBytes(2);
+            break;
+        case ENCODING_INT32:
+            skipBytes(4);
+            break;
+        case ENCODING_LZF:
+            long compressedLength = readLength();
+            readLength();
+            skipBytes(compressedLength);
+            break;
+        default:
+            throw new RdbFormatException("Unknown string encoding %d at offset %,d", encoding, position - 1);
+        }
+    }
+
+    /**
+     * Read a sorted set score stored as a string, as used by the original sorted set encoding.
+     */
+    private ByteSlice readDoubleString() throws IOException {
+        int length = readByte();
+        switch (length) {
+        case 253:
+            return ByteSlice.wrap("nan".getBytes(StandardCharsets.US_ASCII));
+        case 254:
+            return ByteSlice.wrap("inf".getBytes(StandardCharsets.US_ASCII));
+        case 255:
+            return ByteSlice.wrap("-inf".getBytes(StandardCharsets.US_ASCII));
+        default:
+            return readBytes(length);
+        }
+    }
+
+    private void skipDoubleString() throws IOException {
+        int length = readByte();
+        if (length < 253) {
+            skipBytes(length);
+        }
+    }
+
+    private ByteSlice readBinaryDouble() throws IOException {
+        double value = Double.longBitsToDouble(readLE(8));
+        return ByteSlice.wrap(Double.toString(value).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // -----------------------------------
+    // Values
+    // -----------------------------------
+    /**
+     * Remove field / value / ttl triplets of a hash with field expiry whose ttl has passed, leaving
+     * alternating fields and values.
+     */
+    private void addUnexpiredHashFields(List<ByteSlice> triplets, Collection<ByteSlice> out, long now) {
+        for (int i = 0; i + 2 < triplets.size(); i += 3) {
+            long ttl = Long.parseLong(triplets.get(i + 2).toString());
+            if (ttl == 0 || ttl > now) {
+                out.add(triplets.get(i));
+                out.add(triplets.get(i + 1));
+            }
+        }
+    }
+
+    /**
+     * Iterates over the elements of a value, decoding only as much of the value as is needed to return
+     * the next element. For the collection encodings which hold many elements (plain lists, sets and
+     * hashes and quicklists) this is one element or one quicklist node at a time, so very large collections
+     * can be processed without holding all of their elements in memory. Hash fields and values are always
+     * decoded together, so a hash is never split between a field and its value.
+     */
+    private class ValueIterator implements Iterator<ByteSlice> {
+        private final ValueType type;
+        private final ArrayDeque<ByteSlice> pending = new ArrayDeque<>();
+        private final long now = System.currentTimeMillis();
+        private long remaining;
+        private long minExpire;
+
+        ValueIterator(ValueType type) throws IOException {
+            this.type = type;
+            switch (type) {
+            case VALUE:
+            case ZIPMAP:
+            case ZIPLIST:
+            case SORTED_SET_AS_ZIPLIST:
+            case HASHMAP_AS_ZIPLIST:
+            case INTSET:
+            case HASHMAP_AS_LISTPACK:
+            case SORTED_SET_AS_LISTPACK:
+            case SET_AS_LISTPACK:
+            case HASHMAP_AS_LISTPACK_EX_PRE_GA:
+                remaining = 1;
+                break;
+
+            case HASHMAP_AS_LISTPACK_EX:
+                // Minimum expire time of all fields, not needed as each field holds its own ttl
+                readMillisecondTime();
+                remaining = 1;
+                break;
+
+            case LIST:
+            case SET:
+            case HASH:
+            case SORTED_SET:
+            case SORTED_SET2:
+            case QUICKLIST:
+            case QUICKLIST2:
+            case HASHMAP_WITH_METADATA_PRE_GA:
+                remaining = readLength();
+                break;
+
+            case HASHMAP_WITH_METADATA:
+                minExpire = readMillisecondTime();
+                remaining = readLength();
+                break;
+
+            case MODULE_2:
+                skipModuleValue();
+                remaining = 0;
+                break;
+
+            case STREAM_LISTPACKS:
+            case STREAM_LISTPACKS_2:
+            case STREAM_LISTPACKS_3:
+                skipStream(type);
+                remaining = 0;
+                break;
+
+            default:
+                throw new RdbFormatException("Cannot read value of type %s at offset %,d in %s", type, position, input.getName());
+            }
+        }
+
+        private void decodeNext() throws IOException {
+            switch (type) {
+            case VALUE:
+            case LIST:
+            case SET:
+                pending.add(readString());
+                break;
+
+            case HASH:
+                pending.add(readString());
+                pending.add(readString());
+                break;
+
+            case SORTED_SET:
+                pending.add(readString());
+                pending.add(readDoubleString());
+                break;
+
+            case SORTED_SET2:
+                pending.add(readString());
+                pending.add(readBinaryDouble());
+                break;
+
+            case HASHMAP_WITH_METADATA:
+            case HASHMAP_WITH_METADATA_PRE_GA:
+                long expire;
+                if (type == ValueType.HASHMAP_WITH_METADATA) {
+                    // Zero means no ttl, otherwise it is stored as one more than the offset from the minimum
+                    expire = readLength();
+                    if (expire != 0) {
+                        expire += minExpire - 1;
+                    }
+                }
+                else {
+                    expire = readMillisecondTime();
+                }
+                ByteSlice field = readString();
+                ByteSlice value = readString();
+                if (expire == 0 || expire > now) {
+                    pending.add(field);
+                    pending.add(value);
+                }
+                break;
+
+            case ZIPMAP:
+                CompactEncodings.decodeZipmap(readString(), pending);
+                break;
+
+            case ZIPLIST:
+            case SORTED_SET_AS_ZIPLIST:
+            case HASHMAP_AS_ZIPLIST:
+            case QUICKLIST:
+                CompactEncodings.decodeZiplist(readString(), pending);
+                break;
+
+            case INTSET:
+                CompactEncodings.decodeIntset(readString(), pending);
+                break;
+
+            case HASHMAP_AS_LISTPACK:
+            case SORTED_SET_AS_LISTPACK:
+            case SET_AS_LISTPACK:
+                CompactEncodings.decodeListpack(readString(), pending);
+                break;
+
+            case QUICKLIST2:
+                long container = readLength();
+                ByteSlice node = readString();
+                if (container == QUICKLIST_NODE_PLAIN) {
+                    pending.add(node);
+                }
+                else {
+                    CompactEncodings.decodeListpack(node, pending);
+                }
+                break;
+
+            case HASHMAP_AS_LISTPACK_EX:
+            case HASHMAP_AS_LISTPACK_EX_PRE_GA:
+                List<ByteSlice> triplets = new ArrayList<>();
+                CompactEncodings.decodeListpack(readString(), triplets);
+                addUnexpiredHashFields(triplets, pending, now);
+                break;
+
+            default:
+                throw new RdbFormatException("Cannot read value of type %s at offset %,d in %s", type, position, input.getName());
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (pending.isEmpty() && remaining > 0) {
+                    remaining--;
+                    decodeNext();
+                }
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return !pending.isEmpty();
+        }
+
+        @Override
+        public ByteSlice next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return pending.poll();
+        }
+    }
+
+    /**
+     * Return an iterator over the elements of the value of the passed type which starts at the current
+     * position. Elements are decoded as the iterator advances.
+     */
+    Iterator<ByteSlice> valueIterator(ValueType type) throws IOException {
+        return new ValueIterator(type);
+    }
+
+    List<ByteSlice> readValue(ValueType type) throws IOException {
+        List<ByteSlice> values = new ArrayList<>();
+        for (Iterator<ByteSlice> iterator = valueIterator(type); iterator.hasNext(); ) {
+            values.add(iterator.next());
+        }
+        return values;
+    }
+
+    private void skipStrings(long count) throws IOException {
+        for (long i = 0; i < count; i++) {
+            skipString();
+        }
+    }
+
+    /**
+     * Move past a value without decoding it. This is much cheaper than reading the value as compact
+     * encodings and compressed strings are skipped using their stored lengths.
+     */
+    void skipValue(ValueType type) throws IOException {
+        long count;
+        switch (type) {
+        case VALUE:
+        case ZIPMAP:
+        case ZIPLIST:
+        case SORTED_SET_AS_ZIPLIST:
+        case HASHMAP_AS_ZIPLIST:
+        case INTSET:
+        case HASHMAP_AS_LISTPACK:
+        case SORTED_SET_AS_LISTPACK:
+        case SET_AS_LISTPACK:
+        case HASHMAP_AS_LISTPACK_EX_PRE_GA:
+            skipString();
+            break;
+
+        case LIST:
+        case SET:
+        case QUICKLIST:
+            skipStrings(readLength());
+            break;
+
+        case HASH:
+            skipStrings(2 * readLength());
+            break;
+
+        case SORTED_SET:
+            count = readLength();
+            for (long i = 0; i < count; i++) {
+                skipString();
+                skipDoubleString();
+            }
+            break;
+
+        case SORTED_SET2:
+            count = readLength();
+            for (long i = 0; i < count; i++) {
+                skipString();
+                skipBytes(8);
+            }
+            break;
+
+        case HASHMAP_WITH_METADATA:
+        case HASHMAP_WITH_METADATA_PRE_GA:
+            if (type == ValueType.HASHMAP_WITH_METADATA) {
+                skipBytes(8);
+            }
+            count = readLength();
+            for (long i = 0; i < count; i++) {
+                if (type == ValueType.HASHMAP_WITH_METADATA) {
+                    readLength();
+                }
+                else {
+                    skipBytes(8);
+                }
+                skipString();
+                skipString();
+            }
+            break;
+
+        case QUICKLIST2:
+            count = readLength();
+            for (long i = 0; i < count; i++) {
+                readLength();
+                skipString();
+            }
+            break;
+
+        case HASHMAP_AS_LISTPACK_EX:
+            skipBytes(8);
+            skipString();
+            break;
+
+        case MODULE_2:
+            skipModuleValue();
+            break;
+
+        case STREAM_LISTPACKS:
+        case STREAM_LISTPACKS_2:
+        case STREAM_LISTPACKS_3:
+            skipStream(type);
+            break;
+
+        default:
+            throw new RdbFormatException("Cannot skip value of type %s at offset %,d in %s", type, position, input.getName());
+        }
+    }
+
+    /**
+     * Skip over module data serialized with the self describing module opcodes.
+     */
+    void skipModuleData() throws IOException {
+        while (true) {
+            long opcode = readLength();
+            switch ((int)opcode) {
+            case MODULE_OPCODE_EOF:
+                return;
+            case MODULE_OPCODE_SINT:
+            case MODULE_OPCODE_UINT:
+                readLength();
+                break;
+            case MODULE_OPCODE_FLOAT:
+                skipBytes(4);
+                break;
+            case MODULE_OPCODE_DOUBLE:
+                skipBytes(8);
+                break;
+            case MODULE_OPCODE_STRING:
+                skipString();
+                break;
+            default:
+                throw new RdbFormatException("Unknown module opcode %d at offset %,d", opcode, position);
+            }
+        }
+    }
+
+    private void skipModuleValue() throws IOException {
+        // Module id
+        readLength();
+        skipModuleData();
+    }
+
+    private void skipStreamId() throws IOException {
+        readLength();
+        readLength();
+    }
+
+    private void skipStream(ValueType type) throws IOException {
+        long listpacks = readLength();
+        for (long i = 0; i < listpacks; i++) {
+            skipString();
+            skipString();
+        }
+        // Number of items and last id
+        readLength();
+        skipStreamId();
+        if (type != ValueType.STREAM_LISTPACKS) {
+            // First id, max deleted id and entries added
+            skipStreamId();
+            skipStreamId();
+            readLength();
+        }
+        long groups = readLength();
+        for (long i = 0; i < groups; i++) {
+            skipString();
+            skipStreamId();
+            if (type != ValueType.STREAM_LISTPACKS) {
+                // Entries read
+                readLength();
+            }
+            // Pending entries: 16 byte raw id, delivery time and delivery count
+            long pending = readLength();
+            for (long j = 0; j < pending; j++) {
+                skipBytes(16 + 8);
+                readLength();
+            }
+            long consumers = readLength();
+            for (long j = 0; j < consumers; j++) {
+                skipString();
+                // Seen time, then active time in newer versions
+                skipBytes(type == ValueType.STREAM_LISTPACKS_3 ? 16 : 8);
+                long consumerPending = readLength();
+                skipBytes(16 * consumerPending);
+            }
+        }
+    }
+
+}
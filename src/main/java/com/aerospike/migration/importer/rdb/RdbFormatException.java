@@ -0,0 +1,9 @@
+package com.aerospike.migration.importer.rdb;
+
+public class RdbFormatException extends RuntimeException {
+    private static final long serialVersionUID = 3166620187934466045L;
+
+    public RdbFormatException(String message, Object ... args) {
+        super(String.format(message, args));
+    }
+}
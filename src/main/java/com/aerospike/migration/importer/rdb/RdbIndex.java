@@ -0,0 +1,181 @@
+package com.aerospike.migration.importer.rdb;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An index of entry boundaries in an RDB file, allowing the file to be split into byte ranges which
+ * can be parsed independently and in parallel. RDB entries cannot be found by scanning for a marker,
+ * so the index is built with a pre-scan which skips over every value using the stored lengths.
+ * <p>
+ * The index is saved to a sidecar file next to the RDB file ({@code <file>.idx}) and reused on later
+ * runs provided the size and modification time of the RDB file have not changed.
+ */
+public class RdbIndex {
+    public static final long DEFAULT_INTERVAL = 32L << 20;
+    private static final int MAGIC = 0x52494458; // "RIDX"
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * A range of the RDB file which starts on an entry boundary, along with the database selected at that point.
+     */
+    public static class Range {
+        private final long start;
+        private final long end;
+        private final long db;
+
+        public Range(long start, long end, long db) {
+            this.start = start;
+            this.end = end;
+            this.db = db;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        /**
+         * The offset of the first entry after this range, or {@code Long.MAX_VALUE} for the final range
+         * which extends to the end of the file.
+         */
+        public long getEnd() {
+            return end;
+        }
+
+        public long getDb() {
+            return db;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("[%,d-%,d) db %d", start, end, db);
+        }
+    }
+
+    private final int version;
+    private final long[] offsets;
+    private final long[] dbs;
+
+    private RdbIndex(int version, long[] offsets, long[] dbs) {
+        this.version = version;
+        this.offsets = offsets;
+        this.dbs = dbs;
+    }
+
+    /**
+     * The RDB version of the indexed file.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    public List<Range> getRanges() {
+        List<Range> ranges = new ArrayList<>(offsets.length);
+        for (int i = 0; i < offsets.length; i++) {
+            long end = i + 1 < offsets.length ? offsets[i + 1] : Long.MAX_VALUE;
+            ranges.add(new Range(offsets[i], end, dbs[i]));
+        }
+        return Collections.unmodifiableList(ranges);
+    }
+
+    public static File sidecarFileFor(File rdbFile) {
+        return new File(rdbFile.getPath() + ".idx");
+    }
+
+    /**
+     * Load the index for the passed file from its sidecar file if it is present and current, otherwise
+     * scan the file to build the index and try to save it to the sidecar file.
+     * @param interval - the approximate number of bytes between entry boundaries in a new index
+     */
+    public static RdbIndex loadOrBuild(MappedFile file, long interval) throws IOException {
+        File sidecar = sidecarFileFor(file.getFile());
+        RdbIndex index = load(sidecar, file.getFile());
+        if (index == null) {
+            index = build(file, interval);
+            try {
+                index.save(sidecar, file.getFile());
+            }
+            catch (IOException ignored) {
+                // The index is only an optimization for later runs; a read-only directory is not an error
+                sidecar.delete();
+            }
+        }
+        return index;
+    }
+
+    public static RdbIndex build(MappedFile file, long interval) throws IOException {
+        List<Long> offsets = new ArrayList<>();
+        List<Long> dbs = new ArrayList<>();
+        try (RdbReader reader = new RdbReader(file, false)) {
+            long nextBoundary = 0;
+            while (true) {
+                long position = reader.getPosition();
+                if (position >= nextBoundary) {
+                    offsets.add(position);
+                    dbs.add(reader.getCurrentDb());
+                    nextBoundary = position + interval;
+                }
+                EntryType type = reader.skipNext();
+                if (type == null || type == EntryType.EOF) {
+                    break;
+                }
+            }
+            long[] offsetArray = new long[offsets.size()];
+            long[] dbArray = new long[dbs.size()];
+            for (int i = 0; i < offsetArray.length; i++) {
+                offsetArray[i] = offsets.get(i);
+                dbArray[i] = dbs.get(i);
+            }
+            return new RdbIndex(reader.getVersion(), offsetArray, dbArray);
+        }
+    }
+
+    private static RdbIndex load(File sidecar, File rdbFile) {
+        if (!sidecar.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(sidecar)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION
+                    || in.readLong() != rdbFile.length() || in.readLong() != rdbFile.lastModified()) {
+                return null;
+            }
+            int version = in.readInt();
+            int count = in.readInt();
+            long[] offsets = new long[count];
+            long[] dbs = new long[count];
+            for (int i = 0; i < count; i++) {
+                offsets[i] = in.readLong();
+                dbs[i] = in.readLong();
+            }
+            return new RdbIndex(version, offsets, dbs);
+        }
+        catch (IOException e) {
+            // A corrupt or truncated index is rebuilt
+            return null;
+        }
+    }
+
+    private void save(File sidecar, File rdbFile) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(sidecar)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(rdbFile.length());
+            out.writeLong(rdbFile.lastModified());
+            out.writeInt(version);
+            out.writeInt(offsets.length);
+            for (int i = 0; i < offsets.length; i++) {
+                out.writeLong(offsets[i]);
+                out.writeLong(dbs[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.aerospike.migration.importer.rdb;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The bytes of an RDB file, addressed by their offset in the file. The bytes are held in one or more
+ * segments, each a {@code ByteBuffer} covering a contiguous range of the file.
+ * <p>
+ * A memory mapped file can be read anywhere at any time. A decompressed stream only holds the part of
+ * the file around the entry being read, so the reader calls {@link #retain(long, long)} for each entry
+ * it hands out and {@link #release(long)} once it has moved past it.
+ */
+public interface RdbInput extends Closeable {
+    /**
+     * A name for the input to use in messages, normally the path of the file.
+     */
+    String getName();
+
+    /**
+     * The size of the input in bytes, or {@code Long.MAX_VALUE} if it is not yet known.
+     */
+    long size();
+
+    /**
+     * Get the start offset in the file of the segment which holds the passed position.
+     */
+    long segmentStart(long position) throws IOException;
+
+    /**
+     * Get the buffer for the segment holding the passed position. Index 0 of the returned buffer
+     * corresponds to {@link #segmentStart(long)} in the file.
+     */
+    ByteBuffer segmentFor(long position) throws IOException;
+
+    /**
+     * Return a view of {@code length} bytes starting at {@code position}.
+     */
+    ByteSlice slice(long position, int length) throws IOException;
+
+    /**
+     * Return an input from which the bytes from {@code start} up to {@code end} can still be read after
+     * the reader has released them.
+     */
+    default RdbInput retain(long start, long end) {
+        return this;
+    }
+
+    /**
+     * Called by the reader once it will not read anything before {@code position} again.
+     */
+    default void release(long position) {
+    }
+
+    /**
+     * Called on an input returned by {@link #retain(long, long)} once nothing will read it again, so the
+     * memory holding its bytes can be reused.
+     */
+    default void free() {
+    }
+
+    /**
+     * Open an RDB file which may be compressed. Uncompressed files are memory mapped, compressed files
+     * are decompressed as a stream on background threads.
+     * @param decompressionThreads - the number of threads to use to decompress formats which support it
+     */
+    static RdbInput open(File file, int decompressionThreads) throws IOException {
+        Compression compression = Compression.detect(file);
+        if (compression == Compression.NONE) {
+            return new MappedFile(file);
+        }
+        return StreamInput.open(file, compression, decompressionThreads);
+    }
+}
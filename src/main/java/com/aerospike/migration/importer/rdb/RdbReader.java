@@ -0,0 +1,247 @@
+package com.aerospike.migration.importer.rdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reader for Redis RDB files. The file is memory mapped and keys and values are returned as slices
+ * into the mapped region, so the reader does not allocate a {@code byte[]} per key or value. Only
+ * LZF compressed strings and integer encoded values need to be materialized on the heap. Compressed
+ * files are instead decompressed into memory a chunk at a time by a {@link StreamInput}.
+ * <p>
+ * The reader only frames each entry: it finds where the key and value are and skips over them using
+ * their stored lengths. Decompressing and decoding them is deferred until {@link KeyValuePair#getKey()}
+ * and {@link KeyValuePair#getValues()} are called, which is normally on the worker thread processing
+ * the entry, so this expensive work is spread over all the workers.
+ */
+public class RdbReader extends RdbDecoder implements AutoCloseable {
+    private static final int OPCODE_SLOT_INFO = 0xF4;
+    private static final int OPCODE_FUNCTION2 = 0xF5;
+    private static final int OPCODE_FUNCTION_PRE_GA = 0xF6;
+    private static final int OPCODE_MODULE_AUX = 0xF7;
+    private static final int OPCODE_IDLE = 0xF8;
+    private static final int OPCODE_FREQ = 0xF9;
+    private static final int OPCODE_AUX = 0xFA;
+    private static final int OPCODE_RESIZEDB = 0xFB;
+    private static final int OPCODE_EXPIRETIME_MS = 0xFC;
+    private static final int OPCODE_EXPIRETIME = 0xFD;
+    private static final int OPCODE_SELECTDB = 0xFE;
+    private static final int OPCODE_EOF = 0xFF;
+
+    private final boolean ownsInput;
+    private final long end;
+    private int version;
+    private long currentDb = 0;
+    private boolean finished = false;
+    private EntryFilter filter;
+
+    /**
+     * Open an RDB file, which may be compressed with gzip, zstd or lz4.
+     */
+    public RdbReader(File file) throws IOException {
+        this(RdbInput.open(file, 1), true);
+    }
+
+    /**
+     * Read an RDB file from the start of the passed input.
+     * @param ownsInput - whether to close the input when this reader is closed
+     */
+    public RdbReader(RdbInput input, boolean ownsInput) throws IOException {
+        super(input, 0);
+        this.ownsInput = ownsInput;
+        this.end = Long.MAX_VALUE;
+        readHeader();
+    }
+
+    /**
+     * Create a reader which reads only the entries of one range of a file. The range must start on
+     * an entry boundary, as recorded in an {@link RdbIndex}. The reader stops at the first entry
+     * which starts at or after the end of the range.
+     */
+    public RdbReader(MappedFile file, RdbIndex.Range range, int version) {
+        super(file, range.getStart());
+        this.ownsInput = false;
+        this.end = range.getEnd();
+        this.currentDb = range.getDb();
+        this.version = version;
+    }
+
+    /**
+     * Skip the entries the filter rejects. Their values are skipped over without being decoded.
+     */
+    public void setFilter(EntryFilter filter) {
+        this.filter = filter;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * The database the entries currently being read belong to.
+     */
+    public long getCurrentDb() {
+        return currentDb;
+    }
+
+    /**
+     * The offset in the file of the next byte to be read.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    private void readHeader() throws IOException {
+        ByteSlice magic = readBytes(9);
+        String header = magic.toString(StandardCharsets.US_ASCII);
+        if (!header.startsWith("REDIS")) {
+            throw new RdbFormatException("File %s is not an RDB file, header was '%s'", input.getName(), header);
+        }
+        try {
+            this.version = Integer.parseInt(header.substring(5));
+        }
+        catch (NumberFormatException nfe) {
+            throw new RdbFormatException("File %s has an invalid RDB version in header '%s'", input.getName(), header);
+        }
+    }
+
+    // -----------------------------------
+    // Entries
+    // -----------------------------------
+    /**
+     * Read the next entry from the file. Auxiliary fields, resize hints, functions and module auxiliary
+     * data are skipped. The key and value of a returned {@link KeyValuePair} are decoded on demand.
+     * @return the next entry, or null once the end of file entry has been returned or the end of the
+     * range being read has been reached.
+     */
+    public Entry readNext() throws IOException {
+        return next(true);
+    }
+
+    /**
+     * Move past the next entry without creating it.
+     * @return the type of entry skipped, or null at the end of the file or range.
+     */
+    public EntryType skipNext() throws IOException {
+        Entry entry = next(false);
+        return entry == null ? null : entry.getType();
+    }
+
+    private static final Entry SKIPPED_KEY_VALUE_PAIR = new Entry() {
+        @Override
+        public EntryType getType() {
+            return EntryType.KEY_VALUE_PAIR;
+        }
+    };
+
+    private Entry next(boolean createEntry) throws IOException {
+        if (finished || position >= end) {
+            return null;
+        }
+        input.release(position);
+        Long expireTime = null;
+        Long idle = null;
+        Integer freq = null;
+        while (true) {
+            if (position >= input.size()) {
+                throw new RdbFormatException("Unexpected end of file %s at offset %,d, no EOF marker found", input.getName(), position);
+            }
+            int opcode = readByte();
+            switch (opcode) {
+            case OPCODE_EOF:
+                finished = true;
+                byte[] checksum = version >= 5 ? readBytes(8).toByteArray() : new byte[0];
+                return new Eof(checksum);
+
+            case OPCODE_SELECTDB:
+                currentDb = readLength();
+                return new SelectDb(currentDb);
+
+            case OPCODE_RESIZEDB:
+                readLength();
+                readLength();
+                break;
+
+            case OPCODE_AUX:
+                skipString();
+                skipString();
+                break;
+
+            case OPCODE_SLOT_INFO:
+                readLength();
+                readLength();
+                readLength();
+                break;
+
+            case OPCODE_FUNCTION2:
+                skipString();
+                break;
+
+            case OPCODE_FUNCTION_PRE_GA:
+                throw new RdbFormatException("Pre-release function format at offset %,d in %s is not supported", position - 1, input.getName());
+
+            case OPCODE_MODULE_AUX:
+                // Module id, when opcode and when, then the module data
+                readLength();
+                readLength();
+                readLength();
+                skipModuleData();
+                break;
+
+            case OPCODE_EXPIRETIME_MS:
+                expireTime = readMillisecondTime();
+                break;
+
+            case OPCODE_EXPIRETIME:
+                expireTime = readLE(4) * 1000;
+                break;
+
+            case OPCODE_IDLE:
+                idle = readLength();
+                break;
+
+            case OPCODE_FREQ:
+                freq = readByte();
+                break;
+
+            default:
+                ValueType valueType = ValueType.fromCode(opcode);
+                if (valueType == null || valueType == ValueType.MODULE) {
+                    throw new RdbFormatException("Unsupported value type %d at offset %,d in %s", opcode, position - 1, input.getName());
+                }
+                long keyOffset = position;
+                boolean accepted = !createEntry || filter == null || filter.accepts(currentDb, valueType, expireTime);
+                if (accepted && createEntry && filter != null && filter.needsKey()) {
+                    accepted = filter.acceptsKey(readString().toString(StandardCharsets.US_ASCII));
+                }
+                else {
+                    skipString();
+                }
+                long valueOffset = position;
+                skipValue(valueType);
+                if (!createEntry) {
+                    return SKIPPED_KEY_VALUE_PAIR;
+                }
+                if (!accepted) {
+                    if (position >= end) {
+                        return null;
+                    }
+                    input.release(position);
+                    expireTime = null;
+                    idle = null;
+                    freq = null;
+                    break;
+                }
+                return new KeyValuePair(input.retain(keyOffset, position), valueType, keyOffset, valueOffset, position, expireTime, idle, freq);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (ownsInput) {
+            input.close();
+        }
+    }
+}
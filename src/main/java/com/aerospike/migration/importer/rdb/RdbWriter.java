@@ -0,0 +1,113 @@
+package com.aerospike.migration.importer.rdb;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes key value pairs read from an RDB file to a new RDB file, copying each one in its encoded form
+ * without decoding it. The file is written with the same RDB version as the file the pairs came from,
+ * so the encodings of the values are still valid. No checksum is written, which Redis marks with zeros.
+ */
+public class RdbWriter implements AutoCloseable {
+    private static final int OPCODE_IDLE = 0xF8;
+    private static final int OPCODE_FREQ = 0xF9;
+    private static final int OPCODE_EXPIRETIME_MS = 0xFC;
+    private static final int OPCODE_SELECTDB = 0xFE;
+    private static final int OPCODE_EOF = 0xFF;
+
+    private final File file;
+    private final int version;
+    private final OutputStream out;
+    private final WritableByteChannel channel;
+    private long currentDb = -1;
+    private long pairs = 0;
+
+    public RdbWriter(File file, int version) throws IOException {
+        this.file = file;
+        this.version = version;
+        this.out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+        this.channel = Channels.newChannel(out);
+        out.write(String.format("REDIS%04d", version).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getPairs() {
+        return pairs;
+    }
+
+    private void writeLength(long length) throws IOException {
+        if (length < 64) {
+            out.write((int)length);
+        }
+        else if (length < 16384) {
+            out.write(0x40 | (int)(length >> 8));
+            out.write((int)length);
+        }
+        else if (length <= 0xFFFFFFFFL) {
+            out.write(0x80);
+            writeBigEndian(length, 4);
+        }
+        else {
+            out.write(0x81);
+            writeBigEndian(length, 8);
+        }
+    }
+
+    private void writeBigEndian(long value, int bytes) throws IOException {
+        for (int i = bytes - 1; i >= 0; i--) {
+            out.write((int)(value >> (8 * i)));
+        }
+    }
+
+    /**
+     * Write a pair, with its expiry time and LRU or LFU information, preceded by a select of its
+     * database if this is not the database of the previous pair.
+     */
+    public void write(long db, KeyValuePair kvp) throws IOException {
+        if (db != currentDb) {
+            out.write(OPCODE_SELECTDB);
+            writeLength(db);
+            currentDb = db;
+        }
+        if (kvp.getExpireTime() != null) {
+            out.write(OPCODE_EXPIRETIME_MS);
+            long expireTime = kvp.getExpireTime();
+            for (int i = 0; i < 8; i++) {
+                out.write((int)(expireTime >> (8 * i)));
+            }
+        }
+        if (kvp.getIdle() != null) {
+            out.write(OPCODE_IDLE);
+            writeLength(kvp.getIdle());
+        }
+        if (kvp.getFreq() != null) {
+            out.write(OPCODE_FREQ);
+            out.write(kvp.getFreq());
+        }
+        out.write(kvp.getValueType().getCode());
+        kvp.writeEncoded(channel);
+        pairs++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            out.write(OPCODE_EOF);
+            if (version >= 5) {
+                out.write(new byte[8]);
+            }
+        }
+        finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.aerospike.migration.importer.rdb;
+
+public class SelectDb extends Entry {
+    private final long id;
+
+    public SelectDb(long id) {
+        this.id = id;
+    }
+
+    @Override
+    public EntryType getType() {
+        return EntryType.SELECT_DB;
+    }
+
+    public long getId() {
+        return id;
+    }
+}
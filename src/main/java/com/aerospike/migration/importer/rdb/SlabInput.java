@@ -0,0 +1,34 @@
+package com.aerospike.migration.importer.rdb;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The bytes of an entry held in slabs from a {@link SlabPool}, holding on to the slabs until freed.
+ */
+class SlabInput extends ChunkedInput {
+    private final List<SlabPool.Slab> slabs;
+    private final AtomicBoolean freed = new AtomicBoolean();
+
+    /**
+     * @param chunks - the parts of the slabs holding the bytes, in order
+     * @param slabs - the slabs the chunks are in, each of which is retained until this is freed
+     */
+    SlabInput(String name, List<Long> starts, List<ByteBuffer> chunks, List<SlabPool.Slab> slabs) {
+        super(name, starts, chunks);
+        this.slabs = slabs;
+        for (SlabPool.Slab slab : slabs) {
+            slab.retain();
+        }
+    }
+
+    @Override
+    public void free() {
+        if (freed.compareAndSet(false, true)) {
+            for (SlabPool.Slab slab : slabs) {
+                slab.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.aerospike.migration.importer.rdb;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of direct buffers of one size, which hold the chunks of a decompressed stream, or the payloads
+ * fetched with DUMP, outside the heap. Entries hold on to the chunks their bytes are in until they have
+ * been imported, so with a deep queue of entries many chunks are live at once; on the heap each would be a
+ * large array which lives long enough to be promoted, making the collector do more and longer pauses.
+ * Direct buffers are not scanned or copied by the collector, and each is reused once the last entry
+ * holding it is done, so the memory used settles at the number of chunks live at once.
+ */
+class SlabPool {
+    /**
+     * A buffer from the pool, counting what holds it. It goes back to the pool when the count drops to 0.
+     */
+    static class Slab {
+        private final SlabPool pool;
+        private final ByteBuffer buffer;
+        private final AtomicInteger refs = new AtomicInteger(1);
+
+        private Slab(SlabPool pool, ByteBuffer buffer) {
+            this.pool = pool;
+            this.buffer = buffer;
+        }
+
+        /**
+         * The bytes of the slab, from 0 up to the limit.
+         */
+        ByteBuffer buffer() {
+            return buffer;
+        }
+
+        void retain() {
+            refs.incrementAndGet();
+        }
+
+        void release() {
+            if (refs.decrementAndGet() == 0 && pool != null) {
+                pool.recycle(buffer);
+            }
+        }
+    }
+
+    private final int slabSize;
+    private final int maxIdle;
+    private final ArrayDeque<ByteBuffer> idle = new ArrayDeque<>();
+    private long allocated = 0;
+    private long reused = 0;
+
+    /**
+     * @param slabSize - the size of each buffer
+     * @param maxIdle - the most free buffers to keep for reuse; more than this are left to the collector
+     */
+    SlabPool(int slabSize, int maxIdle) {
+        this.slabSize = slabSize;
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * A slab which holds no direct memory, such as a marker in a queue of slabs.
+     */
+    static Slab unpooled(ByteBuffer buffer) {
+        return new Slab(null, buffer);
+    }
+
+    /**
+     * Take a slab filled with the passed bytes, which must be no more than the slab size.
+     */
+    Slab take(byte[] bytes, int length) {
+        Slab slab = take();
+        slab.buffer.put(bytes, 0, length).flip();
+        return slab;
+    }
+
+    /**
+     * Take an empty slab, to be filled from position 0.
+     */
+    Slab take() {
+        ByteBuffer buffer;
+        synchronized (this) {
+            buffer = idle.poll();
+            if (buffer == null) {
+                allocated++;
+            }
+            else {
+                reused++;
+            }
+        }
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(slabSize);
+        }
+        buffer.clear();
+        return new Slab(this, buffer);
+    }
+
+    private synchronized void recycle(ByteBuffer buffer) {
+        if (idle.size() < maxIdle) {
+            idle.push(buffer);
+        }
+    }
+
+    synchronized long getAllocated() {
+        return allocated;
+    }
+
+    synchronized long getReused() {
+        return reused;
+    }
+}
@@ -0,0 +1,326 @@
+package com.aerospike.migration.importer.rdb;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.github.luben.zstd.ZstdInputStream;
+
+/**
+ * An input read from a stream, normally a compressed RDB file being decompressed. The stream is read
+ * on its own thread into fixed size chunks which are handed to the reader through a bounded queue, so
+ * decompression overlaps with parsing and the file is never decompressed to disk.
+ * <p>
+ * Only a window of chunks around the entry being read is kept. Each entry holds on to the chunks its
+ * own bytes are in, so they stay in memory until the entry has been processed. The chunks are direct
+ * buffers from a {@link SlabPool}, outside the heap, and are reused once the window and every entry
+ * holding them have let them go.
+ * <p>
+ * A zstd file made of several independent frames, as written by {@code pzstd}, can be decompressed frame by frame on several threads, with the output still delivered in order.
+ * Other files, including gzip and lz4 files, are decompressed on a single thread.
+ */
+public class StreamInput extends ChunkedInput {
+    public static final int DEFAULT_CHUNK_SIZE = 4 << 20;
+    private static final int QUEUE_CHUNKS = 16;
+    // The most chunks of frames decompressed ahead of the one being delivered, across all the frames
+    private static final int READ_AHEAD_CHUNKS = 64;
+    private static final SlabPool.Slab END = SlabPool.unpooled(ByteBuffer.allocate(0));
+
+    private final int chunkSize;
+    private final SlabPool pool;
+    private final BlockingQueue<SlabPool.Slab> queue = new ArrayBlockingQueue<>(QUEUE_CHUNKS);
+    // The slabs of the chunks in the window, in the same order
+    private final List<SlabPool.Slab> slabs = new ArrayList<>();
+    // The array each decompressing thread reads into before copying to a slab
+    private final ThreadLocal<byte[]> scratch;
+    private Thread decompressor;
+    private volatile Throwable failure;
+    private volatile boolean closed = false;
+    private boolean eof = false;
+    // The number of bytes taken from the queue, which may all have been released
+    private long fetched = 0;
+
+    private interface Producer {
+        void produce() throws Exception;
+    }
+
+    /**
+     * A zstd frame being decompressed, with the chunks decompressed so far waiting to be delivered.
+     */
+    private static class Frame {
+        private final BlockingQueue<SlabPool.Slab> chunks;
+        private Future<?> task;
+
+        Frame(int maxChunks) {
+            this.chunks = new ArrayBlockingQueue<>(maxChunks);
+        }
+    }
+
+    private StreamInput(String name, int chunkSize) {
+        super(name, new ArrayList<>(), new ArrayList<>());
+        this.chunkSize = chunkSize;
+        // Enough to refill the queue and the window without allocating
+        this.pool = new SlabPool(chunkSize, 2 * QUEUE_CHUNKS);
+        this.scratch = ThreadLocal.withInitial(() -> new byte[chunkSize]);
+    }
+
+    public static StreamInput open(File file, Compression compression, int threads) throws IOException {
+        return open(file, compression, threads, DEFAULT_CHUNK_SIZE);
+    }
+
+    static StreamInput open(File file, Compression compression, int threads, int chunkSize) throws IOException {
+        StreamInput input = new StreamInput(file.getPath(), chunkSize);
+        if (compression == Compression.ZSTD && threads > 1) {
+            MappedFile mappedFile = new MappedFile(file);
+            List<long[]> frames = ZstdFrames.find(mappedFile);
+            if (frames != null && frames.size() > 1) {
+                input.start(() -> {
+                    try (MappedFile source = mappedFile) {
+                        input.decompressFrames(source, frames, threads);
+                    }
+                });
+                return input;
+            }
+            mappedFile.close();
+        }
+        InputStream in = compression.decompress(new FileInputStream(file));
+        input.start(() -> {
+            try (InputStream stream = in) {
+                input.readChunks(stream);
+            }
+        });
+        return input;
+    }
+
+    private void start(Producer producer) {
+        this.decompressor = new Thread(() -> {
+            try {
+                producer.produce();
+            }
+            catch (InterruptedException | InterruptedIOException e) {
+                // Closed before the end of the stream
+            }
+            catch (Throwable t) {
+                failure = t;
+            }
+            finally {
+                try {
+                    if (!closed) {
+                        queue.put(END);
+                    }
+                }
+                catch (InterruptedException ignored) {
+                }
+            }
+        }, "decompress-" + new File(getName()).getName());
+        this.decompressor.setDaemon(true);
+        this.decompressor.start();
+    }
+
+    private void readChunks(InputStream in) throws IOException, InterruptedException {
+        while (true) {
+            SlabPool.Slab slab = readSlab(in);
+            if (slab == null) {
+                return;
+            }
+            queue.put(slab);
+        }
+    }
+
+    /**
+     * Read the next chunk of the stream into a slab, or return null at the end of the stream.
+     */
+    private SlabPool.Slab readSlab(InputStream in) throws IOException {
+        byte[] bytes = scratch.get();
+        int length = in.readNBytes(bytes, 0, chunkSize);
+        return length == 0 ? null : pool.take(bytes, length);
+    }
+
+    /**
+     * Decompress independent zstd frames on a pool of threads. Frames are submitted a few ahead of the
+     * one being delivered so the pool stays busy without decompressing the whole file into memory. Each
+     * frame may only get a share of {@link #READ_AHEAD_CHUNKS} ahead of delivery, after which its thread
+     * waits, so a large frame is streamed through rather than held whole.
+     * <p>
+     * The pool starts frames in the order they are submitted, so the frame being delivered always has a
+     * thread even when the threads of later frames are waiting.
+     */
+    private void decompressFrames(MappedFile file, List<long[]> frames, int threads) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        int maxPending = 2 * threads;
+        int frameChunks = Math.max(1, READ_AHEAD_CHUNKS / maxPending);
+        ArrayDeque<Frame> pending = new ArrayDeque<>();
+        try {
+            for (long[] range : frames) {
+                if (pending.size() >= maxPending) {
+                    deliver(pending.poll());
+                }
+                Frame frame = new Frame(frameChunks);
+                frame.task = pool.submit(() -> {
+                    decompressFrame(file, range[0], range[1], frame.chunks);
+                    return null;
+                });
+                pending.add(frame);
+            }
+            while (!pending.isEmpty()) {
+                deliver(pending.poll());
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void decompressFrame(MappedFile file, long start, long end, BlockingQueue<SlabPool.Slab> out) throws IOException, InterruptedException {
+        ByteBuffer compressed = file.slice(start, (int)(end - start)).asByteBuffer();
+        try (InputStream in = new ZstdInputStream(new ByteBufferInputStream(compressed))) {
+            while (true) {
+                SlabPool.Slab slab = readSlab(in);
+                if (slab == null) {
+                    return;
+                }
+                out.put(slab);
+            }
+        }
+        finally {
+            // Even on failure, so the delivering thread stops waiting for chunks and finds the failure
+            out.put(END);
+        }
+    }
+
+    /**
+     * Pass the chunks of a frame on to the reader as they are decompressed, then fail if decompressing it did.
+     */
+    private void deliver(Frame frame) throws Exception {
+        while (true) {
+            SlabPool.Slab slab = frame.chunks.take();
+            if (slab == END) {
+                break;
+            }
+            queue.put(slab);
+        }
+        frame.task.get();
+    }
+
+    @Override
+    protected boolean fetch() throws IOException {
+        if (eof) {
+            return false;
+        }
+        SlabPool.Slab slab;
+        try {
+            slab = queue.take();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted reading " + getName());
+        }
+        if (slab == END) {
+            eof = true;
+            if (failure != null) {
+                throw new IOException(String.format("Error decompressing %s: %s", getName(), failure.getMessage()), failure);
+            }
+            return false;
+        }
+        starts.add(fetched);
+        chunks.add(slab.buffer());
+        slabs.add(slab);
+        fetched += slab.buffer().limit();
+        return true;
+    }
+
+    @Override
+    protected long end() {
+        return fetched;
+    }
+
+    @Override
+    public long size() {
+        return eof ? fetched : Long.MAX_VALUE;
+    }
+
+    @Override
+    public RdbInput retain(long start, long end) {
+        try {
+            int first = indexOf(start);
+            int last = end > start ? indexOf(end - 1) : first;
+            return new SlabInput(getName(), new ArrayList<>(starts.subList(first, last + 1)), new ArrayList<>(chunks.subList(first, last + 1)),
+                    new ArrayList<>(slabs.subList(first, last + 1)));
+        }
+        catch (IOException e) {
+            throw new RdbFormatException("Range %,d to %,d of %s is no longer available", start, end, getName());
+        }
+    }
+
+    @Override
+    public void release(long position) {
+        int count = 0;
+        while (count < chunks.size() && starts.get(count) + chunks.get(count).limit() <= position) {
+            count++;
+        }
+        starts.subList(0, count).clear();
+        chunks.subList(0, count).clear();
+        for (SlabPool.Slab slab : slabs.subList(0, count)) {
+            slab.release();
+        }
+        slabs.subList(0, count).clear();
+    }
+
+    /**
+     * The number of direct buffers allocated for chunks, which stops growing once they are being reused.
+     */
+    public long getSlabsAllocated() {
+        return pool.getAllocated();
+    }
+
+    public long getSlabsReused() {
+        return pool.getReused();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        if (decompressor != null) {
+            decompressor.interrupt();
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
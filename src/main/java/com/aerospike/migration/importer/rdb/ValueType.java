@@ -0,0 +1,65 @@
+package com.aerospike.migration.importer.rdb;
+
+/**
+ * The type of a value stored in an RDB file, along with the object type code Redis writes for it.
+ */
+public enum ValueType {
+    VALUE(0, "string"),
+    LIST(1, "list"),
+    SET(2, "set"),
+    SORTED_SET(3, "zset"),
+    HASH(4, "hash"),
+    SORTED_SET2(5, "zset"),
+    MODULE(6, "module"),
+    MODULE_2(7, "module"),
+    ZIPMAP(9, "hash"),
+    ZIPLIST(10, "list"),
+    INTSET(11, "set"),
+    SORTED_SET_AS_ZIPLIST(12, "zset"),
+    HASHMAP_AS_ZIPLIST(13, "hash"),
+    QUICKLIST(14, "list"),
+    STREAM_LISTPACKS(15, "stream"),
+    HASHMAP_AS_LISTPACK(16, "hash"),
+    SORTED_SET_AS_LISTPACK(17, "zset"),
+    QUICKLIST2(18, "list"),
+    STREAM_LISTPACKS_2(19, "stream"),
+    SET_AS_LISTPACK(20, "set"),
+    STREAM_LISTPACKS_3(21, "stream"),
+    HASHMAP_WITH_METADATA_PRE_GA(22, "hash"),
+    HASHMAP_AS_LISTPACK_EX_PRE_GA(23, "hash"),
+    HASHMAP_WITH_METADATA(24, "hash"),
+    HASHMAP_AS_LISTPACK_EX(25, "hash");
+
+    private static final ValueType[] BY_CODE = new ValueType[256];
+    static {
+        for (ValueType type : values()) {
+            BY_CODE[type.code] = type;
+        }
+    }
+
+    private final int code;
+    private final String typeName;
+
+    private ValueType(int code, String typeName) {
+        this.code = code;
+        this.typeName = typeName;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * The name Redis gives this type, as returned by the {@code TYPE} command, whatever its encoding.
+     */
+    public String getTypeName() {
+        return typeName;
+    }
+
+    /**
+     * Get the value type for an object type code, or null if the code is not a known value type.
+     */
+    public static ValueType fromCode(int code) {
+        return code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+}
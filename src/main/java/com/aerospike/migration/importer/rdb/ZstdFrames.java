@@ -0,0 +1,80 @@
+package com.aerospike.migration.importer.rdb;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds the boundaries of the frames in a zstd file. Every block of a zstd frame starts with a header
+ * holding its compressed size, so the frames can be found by walking the block headers without
+ * decompressing anything.
+ */
+class ZstdFrames {
+    private static final long FRAME_MAGIC = 0xFD2FB528L;
+    private static final long SKIPPABLE_MAGIC_MASK = 0xFFFFFFF0L;
+    private static final long SKIPPABLE_MAGIC = 0x184D2A50L;
+    private static final int[] DICTIONARY_ID_SIZES = {0, 1, 2, 4};
+    private static final int BLOCK_TYPE_RLE = 1;
+    private static final int BLOCK_TYPE_RESERVED = 3;
+
+    private ZstdFrames() {}
+
+    private static long readLE(MappedFile file, long position, int bytes) throws IOException {
+        ByteSlice data = file.slice(position, bytes);
+        long result = 0;
+        for (int i = bytes - 1; i >= 0; i--) {
+            result = (result << 8) | (data.get(i) & 0xff);
+        }
+        return result;
+    }
+
+    /**
+     * Return the start and end offset of each frame in the file, skipping skippable frames, or null if
+     * a frame is too large to be decompressed on its own.
+     */
+    static List<long[]> find(MappedFile file) throws IOException {
+        List<long[]> frames = new ArrayList<>();
+        long position = 0;
+        while (position < file.size()) {
+            long magic = readLE(file, position, 4);
+            if ((magic & SKIPPABLE_MAGIC_MASK) == SKIPPABLE_MAGIC) {
+                position += 8 + readLE(file, position + 4, 4);
+                continue;
+            }
+            if (magic != FRAME_MAGIC) {
+                throw new RdbFormatException("Invalid zstd frame at offset %,d in %s", position, file.getFile());
+            }
+            long start = position;
+            int descriptor = (int)readLE(file, position + 4, 1);
+            position += 5;
+            int contentSizeFlag = descriptor >> 6;
+            boolean singleSegment = (descriptor & 0x20) != 0;
+            boolean checksum = (descriptor & 0x04) != 0;
+            if (!singleSegment) {
+                // Window descriptor
+                position++;
+            }
+            position += DICTIONARY_ID_SIZES[descriptor & 0x03];
+            position += contentSizeFlag == 0 ? (singleSegment ? 1 : 0) : 1 << contentSizeFlag;
+            boolean lastBlock = false;
+            while (!lastBlock) {
+                int header = (int)readLE(file, position, 3);
+                position += 3;
+                lastBlock = (header & 1) != 0;
+                int blockType = (header >> 1) & 0x03;
+                if (blockType == BLOCK_TYPE_RESERVED) {
+                    throw new RdbFormatException("Invalid zstd block at offset %,d in %s", position - 3, file.getFile());
+                }
+                position += blockType == BLOCK_TYPE_RLE ? 1 : header >>> 3;
+            }
+            if (checksum) {
+                position += 4;
+            }
+            if (position - start > Integer.MAX_VALUE) {
+                return null;
+            }
+            frames.add(new long[] {start, position});
+        }
+        return frames;
+    }
+}
@@ -0,0 +1,24 @@
+package com.aerospike.migration.importer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates executors which run each task on its own virtual thread. This is the version for Java 21 and
+ * later, in the multi-release jar.
+ */
+final class VirtualThreads {
+    private VirtualThreads() {
+    }
+
+    static boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * An executor which starts a new virtual thread for each task, with names starting with the prefix.
+     */
+    static ExecutorService newExecutor(String prefix) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 0).factory());
+    }
+}
@@ -0,0 +1,36 @@
+package com.aerospike.migration.importer;
+
+/**
+ * Measures the rate entries pass through a {@link RingBuffer} with each wait strategy, with several
+ * producer and consumer threads contending for it. Spinning strategies need a core per waiting thread,
+ * so use fewer threads than cores for a fair comparison:
+ * <pre>
+ * java -cp target/redis-data-migrator-0.9-full.jar:target/test-classes \
+ *     com.aerospike.migration.importer.RingBufferBenchmark [threads] [itemsPerProducer] [capacity]
+ * </pre>
+ */
+public class RingBufferBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        long perProducer = args.length > 1 ? Long.parseLong(args[1]) : 1_000_000;
+        int capacity = args.length > 2 ? Integer.parseInt(args[2]) : 1024;
+        System.out.printf("%d producers and %d consumers, %,d items each, capacity %,d on %d cores.\n", threads, threads, perProducer,
+                capacity, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%10s %15s\n", "strategy", "items/s");
+        for (RingBuffer.WaitStrategy strategy : RingBuffer.WaitStrategy.values()) {
+            // Once to warm up, then measured
+            for (int pass = 0; pass < 2; pass++) {
+                long start = System.nanoTime();
+                long[] result = TestRingBuffer.exchange(new RingBuffer<>(capacity, strategy), threads, threads, perProducer);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                if (result[0] != threads * perProducer) {
+                    throw new IllegalStateException("Lost items with " + strategy + ": " + result[0]);
+                }
+                if (pass == 1) {
+                    System.out.printf("%10s %,15.0f\n", strategy, result[0] / seconds);
+                }
+            }
+        }
+    }
+}
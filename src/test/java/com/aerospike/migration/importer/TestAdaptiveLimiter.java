@@ -0,0 +1,84 @@
+package com.aerospike.migration.importer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.ResultCode;
+
+class TestAdaptiveLimiter {
+
+    /**
+     * Import a window of entries, each taking the passed latency.
+     */
+    private static void window(AdaptiveLimiter limiter, long latencyNanos, int overloads) throws InterruptedException {
+        int count = Math.max(10, limiter.getLimit());
+        for (int i = 0; i < count; i++) {
+            limiter.acquire();
+            limiter.release(latencyNanos, i < overloads);
+        }
+    }
+
+    @Test
+    void testIncreasesWhileLatencyHolds() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(10, 15, 2.0);
+        for (int i = 0; i < 10; i++) {
+            window(limiter, 1_000_000, 0);
+        }
+        assertEquals(15, limiter.getLimit());
+        assertEquals(5, limiter.getIncreases());
+        assertEquals(1_000_000, limiter.getBaselineNanos());
+    }
+
+    @Test
+    void testDecreasesOnLatencyAndOverload() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(100, 1000, 2.0);
+        window(limiter, 1_000_000, 0);
+        assertEquals(101, limiter.getLimit());
+        // Latency has tripled, so writes are queueing
+        window(limiter, 3_000_000, 0);
+        assertEquals(80, limiter.getLimit());
+        assertEquals(3_000_000, limiter.getP90Nanos());
+        window(limiter, 1_000_000, 1);
+        assertEquals(40, limiter.getLimit());
+        assertEquals(2, limiter.getDecreases());
+        for (int i = 0; i < 20; i++) {
+            window(limiter, 1_000_000, 10);
+        }
+        assertEquals(1, limiter.getLimit());
+    }
+
+    @Test
+    void testAcquireWaitsForLimit() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(2, 2, 2.0);
+        limiter.acquire();
+        limiter.acquire();
+        Thread waiter = new Thread(() -> {
+            try {
+                limiter.acquire();
+            }
+            catch (InterruptedException ignored) {
+            }
+        });
+        waiter.start();
+        waiter.join(200);
+        assertTrue(waiter.isAlive());
+        limiter.release();
+        waiter.join(5000);
+        assertFalse(waiter.isAlive());
+        assertEquals(2, limiter.getInFlight());
+    }
+
+    @Test
+    void testOverloadCodes() {
+        assertTrue(AdaptiveLimiter.isOverload(new AerospikeException(ResultCode.DEVICE_OVERLOAD)));
+        assertTrue(AdaptiveLimiter.isOverload(new AerospikeException(ResultCode.KEY_BUSY)));
+        assertTrue(AdaptiveLimiter.isOverload(new AerospikeException(ResultCode.TIMEOUT)));
+        assertFalse(AdaptiveLimiter.isOverload(new AerospikeException(ResultCode.BIN_TYPE_ERROR)));
+        assertFalse(AdaptiveLimiter.isOverload(new RuntimeException()));
+        assertFalse(AdaptiveLimiter.isOverload(null));
+    }
+}
@@ -0,0 +1,303 @@
+package com.aerospike.migration.importer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import com.aerospike.migration.importer.aof.AofCommand;
+import com.aerospike.migration.importer.aof.KeyCommands;
+import com.aerospike.migration.importer.rdb.Entry;
+import com.aerospike.migration.importer.rdb.EntryFilter;
+import com.aerospike.migration.importer.rdb.EntryType;
+import com.aerospike.migration.importer.rdb.KeyValuePair;
+
+class TestAofSource {
+
+    private static byte[] resp(String... args) {
+        StringBuilder command = new StringBuilder("*").append(args.length).append("\r\n");
+        for (String arg : args) {
+            command.append('$').append(arg.length()).append("\r\n").append(arg).append("\r\n");
+        }
+        return command.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static AofCommand command(String... args) {
+        List<byte[]> list = new ArrayList<>();
+        for (String arg : args) {
+            list.add(arg.getBytes(StandardCharsets.US_ASCII));
+        }
+        return new AofCommand(list);
+    }
+
+    /**
+     * The smallest RDB file holding one string key, as written as the preamble of an AOF file.
+     */
+    private static byte[] rdbPreamble(String key, String value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes("REDIS0011".getBytes(StandardCharsets.US_ASCII));
+        out.write(0xFE);
+        out.write(0);
+        out.write(0);
+        out.write(key.length());
+        out.writeBytes(key.getBytes(StandardCharsets.US_ASCII));
+        out.write(value.length());
+        out.writeBytes(value.getBytes(StandardCharsets.US_ASCII));
+        out.write(0xFF);
+        out.writeBytes(new byte[8]);
+        return out.toByteArray();
+    }
+
+    private static File write(File file, byte[]... parts) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            for (byte[] part : parts) {
+                out.write(part);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Stands in for the importer's workers, completing each entry as it is taken from the queue.
+     */
+    private static class Worker extends Thread {
+        private final LinkedBlockingQueue<Entry> queue;
+        private final List<Entry> entries = new ArrayList<>();
+        private final AtomicLong completed = new AtomicLong();
+
+        Worker(LinkedBlockingQueue<Entry> queue) {
+            this.queue = queue;
+            setDaemon(true);
+            start();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Entry entry = queue.take();
+                    synchronized (entries) {
+                        entries.add(entry);
+                    }
+                    entry.completed();
+                    completed.incrementAndGet();
+                }
+            }
+            catch (InterruptedException done) {
+            }
+        }
+
+        Map<String, String> commandsByKey() {
+            Map<String, String> result = new LinkedHashMap<>();
+            synchronized (entries) {
+                for (Entry entry : entries) {
+                    if (entry.getType() == EntryType.COMMANDS) {
+                        KeyCommands commands = (KeyCommands)entry;
+                        result.merge(commands.getDb() + ":" + commands.getKey(), commands.getCommands().toString(), (a, b) -> a + b);
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    @Test
+    void testCoalesce() {
+        List<AofCommand> commands = new ArrayList<>();
+        AofSource.coalesce(commands, command("HSET", "h", "a", "1"));
+        AofSource.coalesce(commands, command("HMSET", "h", "b", "2"));
+        AofSource.coalesce(commands, command("PEXPIREAT", "h", "100"));
+        AofSource.coalesce(commands, command("HDEL", "h", "a"));
+        AofSource.coalesce(commands, command("PEXPIREAT", "h", "200"));
+        assertEquals("[HSET h a 1 b 2, HDEL h a, PEXPIREAT h 200]", commands.toString());
+
+        AofSource.coalesce(commands, command("SET", "h", "x", "KEEPTTL"));
+        assertEquals(4, commands.size());
+        AofSource.coalesce(commands, command("DEL", "h"));
+        assertEquals("[DEL h]", commands.toString());
+        AofSource.coalesce(commands, command("RPUSH", "h", "x"));
+        AofSource.coalesce(commands, command("RPUSH", "h", "y", "z"));
+        assertEquals("[DEL h, RPUSH h x y z]", commands.toString());
+        AofSource.coalesce(commands, command("LPOP", "h"));
+        AofSource.coalesce(commands, command("LSET", "h", "0", "w"));
+        assertEquals("[DEL h, RPUSH h x y z, LPOP h, LSET h 0 w]", commands.toString());
+        AofSource.coalesce(commands, command("GETSET", "h", "v"));
+        AofSource.coalesce(commands, command("INCRBY", "h", "2"));
+        assertEquals("[GETSET h v, INCRBY h 2]", commands.toString());
+    }
+
+    @Test
+    void testReplayAfterPreamble() throws Exception {
+        File file = write(File.createTempFile("test", ".aof"),
+                rdbPreamble("k:1", "v"),
+                resp("SELECT", "0"),
+                resp("SET", "a", "1"),
+                resp("MULTI"),
+                resp("HSET", "h", "f", "1"),
+                resp("HSET", "h", "g", "2"),
+                resp("EXEC"),
+                resp("DEL", "a", "b"),
+                resp("MSET", "b", "1", "c", "2"));
+        file.deleteOnExit();
+        LinkedBlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+        Worker worker = new Worker(queue);
+        List<String> errors = new ArrayList<>();
+        AofSource source = new AofSource(file, 0, false, 60000, queue, worker.completed::get, errors::add);
+        source.run();
+        while (!queue.isEmpty()) {
+            Thread.sleep(1);
+        }
+        worker.interrupt();
+        worker.join();
+
+        assertTrue(errors.isEmpty(), errors.toString());
+        assertEquals(file.length(), source.getPosition());
+        assertEquals(7, source.getCommandsRead());
+        assertEquals(EntryType.SELECT_DB, worker.entries.get(0).getType());
+        assertEquals("k:1", ((KeyValuePair)worker.entries.get(1)).getKey().toString());
+        assertEquals(EntryType.EOF, worker.entries.get(2).getType());
+        Map<String, String> expected = new LinkedHashMap<>();
+        expected.put("0:a", "[DEL a]");
+        expected.put("0:h", "[HSET h f 1 g 2]");
+        expected.put("0:b", "[SET b 1]");
+        expected.put("0:c", "[SET c 2]");
+        assertEquals(expected, worker.commandsByKey());
+    }
+
+    @Test
+    void testMultiPartFromOffset() throws Exception {
+        File dir = Files.createTempDirectory("aof").toFile();
+        write(new File(dir, "appendonly.aof.2.base.aof"), resp("SET", "base", "1"));
+        File first = write(new File(dir, "appendonly.aof.2.incr.aof"), resp("SET", "x", "1"));
+        File second = write(new File(dir, "appendonly.aof.3.incr.aof"), resp("SET", "y", "2"), resp("SET", "z", "3"));
+        write(new File(dir, "appendonly.aof.manifest"), (
+                "file appendonly.aof.3.incr.aof seq 3 type i\n"
+                + "file appendonly.aof.2.base.aof seq 2 type b\n"
+                + "file appendonly.aof.1.incr.aof seq 1 type h\n"
+                + "file appendonly.aof.2.incr.aof seq 2 type i\n").getBytes(StandardCharsets.US_ASCII));
+
+        LinkedBlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+        Worker worker = new Worker(queue);
+        long offset = first.length() + resp("SET", "y", "2").length;
+        AofSource source = new AofSource(dir, offset, false, 0, queue, worker.completed::get, message -> {});
+        source.run();
+        while (!queue.isEmpty()) {
+            Thread.sleep(1);
+        }
+        worker.interrupt();
+        worker.join();
+        assertEquals(Map.of("0:z", "[SET z 3]"), worker.commandsByKey());
+        assertEquals(first.length() + second.length(), source.getPosition());
+    }
+
+    /**
+     * Replay the file with a long coalescing window and a worker completing the entries, returning the worker.
+     */
+    private static Worker replay(File file, EntryFilter filter) throws Exception {
+        LinkedBlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+        Worker worker = new Worker(queue);
+        AofSource source = new AofSource(file, 0, false, 60000, queue, worker.completed::get, message -> {});
+        source.setFilter(filter);
+        source.run();
+        while (!queue.isEmpty()) {
+            Thread.sleep(1);
+        }
+        worker.interrupt();
+        worker.join();
+        return worker;
+    }
+
+    @Test
+    void testSameKeyInTwoDatabases() throws Exception {
+        File file = write(File.createTempFile("test", ".aof"),
+                resp("SELECT", "0"),
+                resp("SET", "foo", "1"),
+                resp("SELECT", "1"),
+                resp("DEL", "foo"),
+                resp("SELECT", "0"),
+                resp("HSET", "h", "f", "1"));
+        file.deleteOnExit();
+        Map<String, String> expected = new LinkedHashMap<>();
+        // The DEL in db 1 does not replace the SET in db 0
+        expected.put("0:foo", "[SET foo 1]");
+        expected.put("1:foo", "[DEL foo]");
+        expected.put("0:h", "[HSET h f 1]");
+        assertEquals(expected, replay(file, null).commandsByKey());
+    }
+
+    @Test
+    void testFilterByDatabaseAndType() throws Exception {
+        File file = write(File.createTempFile("test", ".aof"),
+                resp("SELECT", "0"),
+                resp("SET", "a", "1"),
+                resp("SELECT", "1"),
+                resp("SET", "b", "1"),
+                resp("RPUSH", "l", "x"),
+                resp("DEL", "c"),
+                resp("SELECT", "0"),
+                resp("SET", "d", "1"));
+        file.deleteOnExit();
+        Map<String, String> expected = new LinkedHashMap<>();
+        expected.put("1:b", "[SET b 1]");
+        // The type of a key being deleted is not known, so it is not filtered on
+        expected.put("1:c", "[DEL c]");
+        EntryFilter filter = new EntryFilter().databases(Set.of(1L)).typeNames(Set.of("string"));
+        assertEquals(expected, replay(file, filter).commandsByKey());
+        assertEquals(3, filter.getFiltered());
+    }
+
+    @Test
+    void testFollowAndOrdering() throws Exception {
+        File file = write(File.createTempFile("test", ".aof"), resp("SET", "a", "1"));
+        file.deleteOnExit();
+        LinkedBlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+        AofSource source = new AofSource(file, 0, true, 0, queue, () -> 0, message -> {});
+        Thread follower = new Thread(() -> {
+            try {
+                source.run();
+            }
+            catch (Exception interrupted) {
+            }
+        });
+        follower.setDaemon(true);
+        follower.start();
+
+        KeyCommands first = (KeyCommands)queue.poll(5, TimeUnit.SECONDS);
+        assertEquals("[SET a 1]", first.getCommands().toString());
+
+        // Write a command in two parts, so it is incomplete when first seen
+        byte[] next = resp("SET", "a", "2");
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(next, 0, 7);
+            out.flush();
+            Thread.sleep(300);
+            out.write(next, 7, next.length - 7);
+        }
+        // The first commands for the key have not been applied, so the next are held back
+        assertNull(queue.poll(300, TimeUnit.MILLISECONDS));
+        first.completed();
+        KeyCommands second = (KeyCommands)queue.poll(5, TimeUnit.SECONDS);
+        assertNotNull(second);
+        assertEquals("[SET a 2]", second.getCommands().toString());
+        assertEquals(file.length(), source.getPosition());
+        follower.interrupt();
+        follower.join();
+    }
+}
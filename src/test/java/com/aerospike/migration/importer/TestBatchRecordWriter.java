@@ -0,0 +1,205 @@
+package com.aerospike.migration.importer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.BatchRecord;
+import com.aerospike.client.BatchWrite;
+import com.aerospike.client.Bin;
+import com.aerospike.client.IAerospikeClient;
+import com.aerospike.client.Key;
+import com.aerospike.client.Operation;
+import com.aerospike.client.ResultCode;
+import com.aerospike.client.policy.BatchPolicy;
+import com.aerospike.client.policy.WritePolicy;
+import com.aerospike.migration.importer.rdb.SelectDb;
+
+class TestBatchRecordWriter {
+
+    private static IAerospikeClient batchClient(List<List<String>> batches) {
+        return batchClient(batches, () -> {});
+    }
+
+    /**
+     * A client which records the keys and bins of each batch. Writes of the bin "bad" fail, "missing" finds
+     * no record, "timeout" gets no response and fails the whole call, "boom" throws a non-Aerospike exception,
+     * and "slow" runs the passed action before the batch completes.
+     */
+    private static IAerospikeClient batchClient(List<List<String>> batches, Runnable slow) {
+        return (IAerospikeClient)Proxy.newProxyInstance(IAerospikeClient.class.getClassLoader(), new Class<?>[] { IAerospikeClient.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "copyBatchParentPolicyWriteDefault":
+                        return new BatchPolicy();
+                    case "getWritePolicyDefault":
+                        return new WritePolicy();
+                    case "operate":
+                        break;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    @SuppressWarnings("unchecked")
+                    List<BatchRecord> records = (List<BatchRecord>)args[1];
+                    List<String> written = new ArrayList<>();
+                    boolean timedOut = false;
+                    boolean boom = false;
+                    for (BatchRecord record : records) {
+                        String bin = ((BatchWrite)record).ops[0].binName;
+                        written.add(record.key.userKey + ":" + bin);
+                        switch (bin) {
+                        case "bad":
+                            record.resultCode = ResultCode.BIN_TYPE_ERROR;
+                            break;
+                        case "missing":
+                            record.resultCode = ResultCode.KEY_NOT_FOUND_ERROR;
+                            break;
+                        case "timeout":
+                            timedOut = true;
+                            break;
+                        case "boom":
+                            boom = true;
+                            break;
+                        case "slow":
+                            slow.run();
+                            record.resultCode = ResultCode.OK;
+                            break;
+                        default:
+                            record.resultCode = ResultCode.OK;
+                        }
+                    }
+                    batches.add(written);
+                    if (boom) {
+                        throw new IllegalStateException("boom");
+                    }
+                    if (timedOut) {
+                        throw new AerospikeException(ResultCode.TIMEOUT);
+                    }
+                    return true;
+                });
+    }
+
+    private static WriteRequest.Part part(int id, String bin, boolean ignoreNotFound) {
+        return new WriteRequest.Part(null, new Key("test", "set", id), List.of(Operation.put(new Bin(bin, 1))), ignoreNotFound);
+    }
+
+    private static WriteRequest write(RecordWriter writer, List<WriteRequest> completed, WriteRequest.Part... parts) throws Exception {
+        WriteRequest request = new WriteRequest(new SelectDb(0), completed::add);
+        for (WriteRequest.Part part : parts) {
+            writer.write(request, part);
+        }
+        request.setWritten(true);
+        request.finish();
+        return request;
+    }
+
+    private static int resultCode(WriteRequest request) {
+        return ((AerospikeException)request.getFailure()).getResultCode();
+    }
+
+    private static void awaitCompleted(List<WriteRequest> completed, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (completed.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(count, completed.size());
+    }
+
+    @Test
+    void testResultCodesOfRecords() throws Exception {
+        List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+        List<WriteRequest> completed = Collections.synchronizedList(new ArrayList<>());
+        BatchRecordWriter writer = new BatchRecordWriter(batchClient(batches), 4, TimeUnit.SECONDS.toMicros(10));
+        WriteRequest good = write(writer, completed, part(1, "a", false));
+        WriteRequest bad = write(writer, completed, part(2, "bad", false));
+        WriteRequest ignored = write(writer, completed, part(3, "missing", true));
+        WriteRequest missing = write(writer, completed, part(4, "missing", false));
+        // A full batch is sent by the writing thread
+        assertEquals(4, completed.size());
+        assertNull(good.getFailure());
+        assertEquals(ResultCode.BIN_TYPE_ERROR, resultCode(bad));
+        assertNull(ignored.getFailure());
+        assertEquals(ResultCode.KEY_NOT_FOUND_ERROR, resultCode(missing));
+
+        // Records the server did not answer take the failure of the call, the others keep their own
+        WriteRequest answered = write(writer, completed, part(5, "a", false));
+        WriteRequest badInFailedBatch = write(writer, completed, part(6, "bad", false));
+        WriteRequest unanswered = write(writer, completed, part(7, "timeout", false));
+        writer.close();
+        assertEquals(7, completed.size());
+        assertNull(answered.getFailure());
+        assertEquals(ResultCode.BIN_TYPE_ERROR, resultCode(badInFailedBatch));
+        assertEquals(ResultCode.TIMEOUT, resultCode(unanswered));
+        assertEquals(2, writer.getBatches());
+        assertEquals(7, writer.getRecords());
+    }
+
+    @Test
+    void testLaterPartsGoInLaterBatches() throws Exception {
+        List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+        List<WriteRequest> completed = Collections.synchronizedList(new ArrayList<>());
+        BatchRecordWriter writer = new BatchRecordWriter(batchClient(batches), 2, TimeUnit.SECONDS.toMicros(10));
+        write(writer, completed, part(1, "a", false), part(1, "b", false));
+        write(writer, completed, part(2, "a", false));
+        writer.close();
+        assertEquals(List.of(List.of("1:a", "2:a"), List.of("1:b")), batches);
+        assertEquals(2, completed.size());
+        for (WriteRequest request : completed) {
+            assertNull(request.getFailure());
+        }
+    }
+
+    @Test
+    void testOverfilledBatchIsSplit() throws Exception {
+        List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+        List<WriteRequest> completed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        BatchRecordWriter writer = new BatchRecordWriter(batchClient(batches, () -> {
+            sending.countDown();
+            try {
+                proceed.await();
+            }
+            catch (InterruptedException ignored) {
+            }
+        }), 3, 1000);
+        write(writer, completed, part(1, "slow", false), part(1, "b", false));
+        write(writer, completed, part(3, "slow", false), part(3, "b", false));
+        // While the linger thread sends those, the next batch starts filling
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+        write(writer, completed, part(2, "a", false));
+        write(writer, completed, part(4, "a", false));
+        // The completions add the second parts to it, which takes it over the batch size
+        proceed.countDown();
+        awaitCompleted(completed, 4);
+        writer.close();
+        assertEquals(List.of(List.of("1:slow", "3:slow"), List.of("2:a", "4:a", "1:b"), List.of("3:b")), batches);
+    }
+
+    @Test
+    void testLingerSendsPartialBatch() throws Exception {
+        List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+        List<WriteRequest> completed = Collections.synchronizedList(new ArrayList<>());
+        BatchRecordWriter writer = new BatchRecordWriter(batchClient(batches), 100, 1000);
+        // A batch which fails unexpectedly on the linger thread fails its requests, and the thread goes on
+        WriteRequest failed = write(writer, completed, part(1, "boom", false), part(1, "a", false));
+        awaitCompleted(completed, 1);
+        assertTrue(failed.getFailure() instanceof IllegalStateException);
+
+        WriteRequest request = write(writer, completed, part(2, "a", false));
+        awaitCompleted(completed, 2);
+        assertNull(request.getFailure());
+        assertEquals(List.of(List.of("1:boom"), List.of("2:a")), batches);
+        writer.close();
+    }
+}
@@ -0,0 +1,144 @@
+package com.aerospike.migration.importer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.Operation;
+import com.aerospike.migration.importer.rdb.SelectDb;
+
+class TestCoalescingWriter {
+
+    // Long enough that nothing is flushed by age while a test runs; closing does not wait for it
+    private static final int WINDOW_MILLIS = 1000;
+
+    /**
+     * Records the parts written, failing any which write the bin "bad", as a synchronous writer does.
+     */
+    private static class RecordingWriter implements RecordWriter {
+        private final List<WriteRequest.Part> parts = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void write(WriteRequest request, WriteRequest.Part part) {
+            parts.add(part);
+            for (Operation op : part.getOps()) {
+                if ("bad".equals(op.binName)) {
+                    throw new IllegalStateException("bad bin");
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static WriteRequest.Part part(Object id, String bin, boolean ignoreNotFound) {
+        return new WriteRequest.Part(null, new Key("test", "customer", id.toString()), List.of(Operation.put(new Bin(bin, 1))), ignoreNotFound);
+    }
+
+    private static WriteRequest write(CoalescingWriter writer, List<WriteRequest> completed, WriteRequest.Part... parts) throws Exception {
+        WriteRequest request = new WriteRequest(new SelectDb(0), completed::add);
+        for (WriteRequest.Part part : parts) {
+            writer.write(request, part);
+        }
+        request.setWritten(true);
+        request.finish();
+        return request;
+    }
+
+    @Test
+    void testMergesBinsOfSameRecord() throws Exception {
+        RecordingWriter recorder = new RecordingWriter();
+        CoalescingWriter writer = new CoalescingWriter(recorder, WINDOW_MILLIS, 100, 1 << 20);
+        List<WriteRequest> completed = Collections.synchronizedList(new ArrayList<>());
+        write(writer, completed, part(1, "name", false));
+        write(writer, completed, part(1, "email", false));
+        write(writer, completed, part(2, "name", false));
+        assertTrue(completed.isEmpty());
+        // The same bin again has the record's earlier bins written first
+        write(writer, completed, part(1, "name", false));
+        assertEquals(2, completed.size());
+        writer.close();
+
+        assertEquals(4, completed.size());
+        assertEquals(4, writer.getPartsWritten());
+        assertEquals(3, writer.getWrites());
+        assertEquals(2, recorder.parts.get(0).getOps().length);
+        assertEquals("1", recorder.parts.get(0).getKey().userKey.toString());
+        for (WriteRequest request : completed) {
+            assertNull(request.getFailure());
+        }
+    }
+
+    @Test
+    void testMaxOpsAndUnmergedParts() throws Exception {
+        RecordingWriter recorder = new RecordingWriter();
+        CoalescingWriter writer = new CoalescingWriter(recorder, WINDOW_MILLIS, 2, 1 << 20);
+        List<WriteRequest> completed = Collections.synchronizedList(new ArrayList<>());
+        write(writer, completed, part(1, "a", false));
+        write(writer, completed, part(1, "b", false));
+        assertEquals(1, recorder.parts.size());
+        assertEquals(2, completed.size());
+
+        // Deleting a record which is not there is not merged with anything
+        write(writer, completed, part(3, "c", false));
+        write(writer, completed, part(3, "d", true));
+        assertEquals(3, recorder.parts.size());
+        assertTrue(recorder.parts.get(2).isIgnoreNotFound());
+        writer.close();
+        assertEquals(4, completed.size());
+    }
+
+    @Test
+    void testPartsOfOneRequestInOrder() throws Exception {
+        RecordingWriter recorder = new RecordingWriter();
+        CoalescingWriter writer = new CoalescingWriter(recorder, WINDOW_MILLIS, 100, 1 << 20);
+        List<WriteRequest> completed = Collections.synchronizedList(new ArrayList<>());
+        WriteRequest.Part first = part(1, "a", false);
+        WriteRequest.Part second = part(1, "b", false);
+        write(writer, completed, first, second);
+        writer.close();
+        // The second part waits for the first, so they are not merged
+        assertEquals(2, recorder.parts.size());
+        assertSame(first.getOps()[0], recorder.parts.get(0).getOps()[0]);
+        assertSame(second.getOps()[0], recorder.parts.get(1).getOps()[0]);
+        assertEquals(1, completed.size());
+    }
+
+    @Test
+    void testCloseDoesNotWaitOutWindow() throws Exception {
+        RecordingWriter recorder = new RecordingWriter();
+        CoalescingWriter writer = new CoalescingWriter(recorder, 60000, 100, 1 << 20);
+        List<WriteRequest> completed = Collections.synchronizedList(new ArrayList<>());
+        write(writer, completed, part(1, "a", false));
+        long start = System.nanoTime();
+        writer.close();
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(1, completed.size());
+    }
+
+    @Test
+    void testFailureFailsEveryKey() throws Exception {
+        RecordingWriter recorder = new RecordingWriter();
+        CoalescingWriter writer = new CoalescingWriter(recorder, WINDOW_MILLIS, 100, 1 << 20);
+        List<WriteRequest> completed = Collections.synchronizedList(new ArrayList<>());
+        write(writer, completed, part(1, "good", false));
+        write(writer, completed, part(1, "bad", false));
+        writer.close();
+        assertEquals(2, completed.size());
+        for (WriteRequest request : completed) {
+            assertTrue(request.getFailure() instanceof IllegalStateException);
+        }
+    }
+}
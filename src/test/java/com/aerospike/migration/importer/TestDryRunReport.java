@@ -0,0 +1,67 @@
+package com.aerospike.migration.importer;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+import com.aerospike.migration.importer.rdb.ByteSlice;
+import com.aerospike.migration.importer.rdb.KeyValuePair;
+import com.aerospike.migration.importer.rdb.ValueType;
+
+class TestDryRunReport {
+
+    private static MappingSpec spec(String key, String set, String path) {
+        MappingSpec spec = new MappingSpec();
+        spec.setNamespace("test");
+        spec.setSet(set);
+        spec.setKey(key);
+        spec.setId("$1");
+        spec.setPath(path);
+        return spec;
+    }
+
+    private static void translate(DryRunReport report, MappingSpecs specs, String key, Map<String, String> hash) {
+        if (!specs.hasMappingFor(key)) {
+            report.unmatched(key);
+        }
+        else {
+            RecordTranslator translator = specs.getTranslatorFromString(key, false);
+            KeyValuePair kvp = KeyValuePair.of(ByteSlice.wrap(key.getBytes(StandardCharsets.US_ASCII)), ValueType.HASH, List.of(), null);
+            report.record(key, kvp, translator);
+            report.operations(translator.getKey(), translator.getOperationsFor(hash));
+        }
+        report.recordDone(1_000_000);
+    }
+
+    @Test
+    void testReport() {
+        MappingSpecs specs = new MappingSpecs();
+        specs.setMappings(List.of(spec("account:(\\d+)", "accounts", null), spec("customer:(\\d+)", "customers", null)));
+        DryRunReport report = new DryRunReport(0.5);
+        translate(report, specs, "account:1", Map.of("name", "Savings", "balance", "300"));
+        translate(report, specs, "account:2", Map.of("name", "A much longer account name than the other one"));
+        translate(report, specs, "customer:1", Map.of("name", "Tim"));
+        translate(report, specs, "session:abc", null);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        report.print(new PrintStream(out, true), 1000);
+        String text = out.toString();
+        assertTrue(text.contains("Multiply the counts and sizes by 2.0"), text);
+        assertTrue(Pattern.compile("account:\\(\\\\d\\+\\)\\s+2").matcher(text).find(), text);
+        assertTrue(Pattern.compile("\\(no mapping\\)\\s+1").matcher(text).find(), text);
+        assertTrue(text.contains("e.g. session:abc"), text);
+        assertTrue(Pattern.compile("hash\\s+3").matcher(text).find(), text);
+        assertTrue(Pattern.compile("test\\.accounts\\s+2 ").matcher(text).find(), text);
+        assertTrue(Pattern.compile("test\\.customers\\s+1 ").matcher(text).find(), text);
+        // The largest record is listed first
+        assertTrue(text.indexOf("account:2 ") < text.indexOf("account:1 "), text);
+        assertTrue(text.contains("Translated 4 keys in 1,000ms: 1,000 keys/s per thread"), text);
+    }
+}
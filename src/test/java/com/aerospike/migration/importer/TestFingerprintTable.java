@@ -0,0 +1,56 @@
+package com.aerospike.migration.importer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class TestFingerprintTable {
+
+    @Test
+    void testChanges() throws Exception {
+        try (FingerprintTable table = new FingerprintTable(10, null)) {
+            table.put(7, 100);
+            table.put(2, 200);
+            table.put(0, 300);
+            table.put(3, 400);
+            assertEquals(4, table.size());
+
+            assertEquals(FingerprintTable.Change.UNCHANGED, table.markSeen(7, 100));
+            assertEquals(FingerprintTable.Change.CHANGED, table.markSeen(2, 201));
+            assertEquals(FingerprintTable.Change.NEW, table.markSeen(5, 500));
+            // 0 marks an empty slot, but can still be used as a key hash
+            assertEquals(FingerprintTable.Change.UNCHANGED, table.markSeen(0, 300));
+
+            assertFalse(table.removedFromNew(7));
+            assertFalse(table.removedFromNew(2));
+            assertTrue(table.removedFromNew(3));
+            // Only reported once
+            assertFalse(table.removedFromNew(3));
+            assertFalse(table.removedFromNew(5));
+        }
+    }
+
+    @Test
+    void testGrow() throws Exception {
+        int keys = 200_000;
+        try (FingerprintTable table = new FingerprintTable(1, null)) {
+            for (long i = 1; i <= keys; i++) {
+                // Spread out, with the top bit of the fingerprint set to check it is not taken as seen
+                table.put(i * 0x9E3779B97F4A7C15L, i | (1L << 63));
+            }
+            assertEquals(keys, table.size());
+            for (long i = 1; i <= keys; i += 2) {
+                assertEquals(FingerprintTable.Change.UNCHANGED, table.markSeen(i * 0x9E3779B97F4A7C15L, i));
+            }
+            int removed = 0;
+            for (long i = 1; i <= keys; i++) {
+                if (table.removedFromNew(i * 0x9E3779B97F4A7C15L)) {
+                    removed++;
+                }
+            }
+            assertEquals(keys / 2, removed);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.aerospike.migration.importer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.aerospike.migration.importer.rdb.Entry;
+import com.aerospike.migration.importer.rdb.EntryType;
+import com.aerospike.migration.importer.rdb.KeyValuePair;
+import com.aerospike.migration.importer.rdb.RdbReader;
+
+class TestHotFirstSorter {
+
+    /**
+     * A string key and value, preceded by the LFU counter if there is one and the expiry time if there is one.
+     */
+    private static void pair(ByteArrayOutputStream out, String key, Integer freq, Long expireTime) {
+        if (expireTime != null) {
+            out.write(0xFC);
+            for (int i = 0; i < 8; i++) {
+                out.write((int)(expireTime >> (8 * i)));
+            }
+        }
+        if (freq != null) {
+            out.write(0xF9);
+            out.write(freq);
+        }
+        out.write(0);
+        out.write(key.length());
+        out.writeBytes(key.getBytes(StandardCharsets.US_ASCII));
+        out.write(1);
+        out.write('v');
+    }
+
+    private static List<String> readKeys(File file) throws Exception {
+        List<String> keys = new ArrayList<>();
+        try (RdbReader reader = new RdbReader(file)) {
+            Entry entry;
+            while ((entry = reader.readNext()) != null) {
+                if (entry.getType() == EntryType.KEY_VALUE_PAIR) {
+                    keys.add(((KeyValuePair)entry).getKey().toString());
+                }
+            }
+        }
+        return keys;
+    }
+
+    @Test
+    void testBuckets() throws Exception {
+        long now = System.currentTimeMillis();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes("REDIS0011".getBytes(StandardCharsets.US_ASCII));
+        out.write(0xFE);
+        out.write(0);
+        pair(out, "cold", 100, null);
+        pair(out, "unknown", null, null);
+        pair(out, "hot", 250, null);
+        pair(out, "expiring", null, now + 60_000);
+        pair(out, "expiring-later", 0, now + 7200_000);
+        pair(out, "warm", 200, null);
+        pair(out, "hot2", 255, now + 10_000);
+        out.write(0xFF);
+        out.writeBytes(new byte[8]);
+        File file = File.createTempFile("test", ".rdb");
+        file.deleteOnExit();
+        Files.write(file.toPath(), out.toByteArray());
+
+        List<String> order = new ArrayList<>();
+        long weight = 0;
+        try (HotFirstSorter sorter = new HotFirstSorter(file, 11, 3600)) {
+            try (RdbReader reader = new RdbReader(file)) {
+                Entry entry;
+                while ((entry = reader.readNext()) != null) {
+                    if (entry.getType() == EntryType.KEY_VALUE_PAIR) {
+                        sorter.add(reader.getCurrentDb(), (KeyValuePair)entry);
+                    }
+                }
+            }
+            sorter.finish();
+            for (int bucket = 0; bucket < HotFirstSorter.BUCKETS; bucket++) {
+                if (sorter.getBucketFile(bucket) != null) {
+                    order.addAll(readKeys(sorter.getBucketFile(bucket)));
+                    weight += sorter.getWeight(bucket);
+                }
+                else {
+                    assertEquals(0, sorter.getKeys(bucket));
+                }
+            }
+            assertNull(sorter.getBucketFile(HotFirstSorter.BUCKETS - 2));
+            assertEquals(2, sorter.getKeys(HotFirstSorter.BUCKETS - 1));
+        }
+        // Keys in the same bucket stay in file order, and keys without LFU information are with the coldest
+        assertEquals(List.of("hot", "hot2", "warm", "expiring", "cold", "unknown", "expiring-later"), order);
+        // Hottest is 2^15, then each level of 16 LFU counts halves it
+        assertEquals((1 << 15) + (1 << 15) + (1 << 12) + 1 + (1 << 6) + 1 + 1, weight);
+    }
+}
@@ -0,0 +1,81 @@
+package com.aerospike.migration.importer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class TestMemoryBudget {
+
+    private static Thread acquireOnThread(MemoryBudget budget, long bytes, List<Long> acquired) throws InterruptedException {
+        Thread thread = new Thread(() -> {
+            try {
+                budget.acquire(bytes);
+                acquired.add(bytes);
+            }
+            catch (InterruptedException ignored) {
+            }
+        });
+        thread.start();
+        // Give the thread time to start waiting, so threads wait in the order they were started
+        Thread.sleep(100);
+        return thread;
+    }
+
+    @Test
+    void testWaitsForRelease() throws Exception {
+        MemoryBudget budget = new MemoryBudget(100);
+        budget.acquire(60);
+        budget.acquire(40);
+        assertEquals(100, budget.getUsed());
+        List<Long> acquired = Collections.synchronizedList(new ArrayList<>());
+        Thread waiter = acquireOnThread(budget, 30, acquired);
+        assertTrue(acquired.isEmpty());
+        budget.release(40);
+        waiter.join();
+        assertEquals(List.of(30L), acquired);
+        assertEquals(90, budget.getUsed());
+        assertTrue(budget.getWaitNanos() > 0);
+    }
+
+    @Test
+    void testOversizedEntryGoesAlone() throws Exception {
+        MemoryBudget budget = new MemoryBudget(100);
+        // Nothing is held, so an entry bigger than the budget is let through
+        budget.acquire(500);
+        assertEquals(500, budget.getUsed());
+        budget.release(500);
+
+        budget.acquire(10);
+        List<Long> acquired = Collections.synchronizedList(new ArrayList<>());
+        Thread big = acquireOnThread(budget, 500, acquired);
+        // Readers behind the big entry wait for it, even though they would fit
+        Thread small = acquireOnThread(budget, 10, acquired);
+        assertTrue(acquired.isEmpty());
+        budget.release(10);
+        big.join();
+        assertEquals(List.of(500L), acquired);
+        budget.release(500);
+        small.join();
+        assertEquals(List.of(500L, 10L), acquired);
+    }
+
+    @Test
+    void testInterruptedReaderDoesNotBlockOthers() throws Exception {
+        MemoryBudget budget = new MemoryBudget(100);
+        budget.acquire(100);
+        List<Long> acquired = Collections.synchronizedList(new ArrayList<>());
+        Thread first = acquireOnThread(budget, 50, acquired);
+        Thread second = acquireOnThread(budget, 50, acquired);
+        first.interrupt();
+        first.join();
+        budget.release(100);
+        second.join();
+        assertEquals(List.of(50L), acquired);
+        assertEquals(50, budget.getUsed());
+    }
+}
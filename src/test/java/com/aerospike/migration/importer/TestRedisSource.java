@@ -0,0 +1,256 @@
+package com.aerospike.migration.importer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.aerospike.migration.importer.rdb.ByteSlice;
+import com.aerospike.migration.importer.rdb.Entry;
+import com.aerospike.migration.importer.rdb.EntryType;
+import com.aerospike.migration.importer.rdb.KeyValuePair;
+import com.aerospike.migration.importer.rdb.SelectDb;
+import com.aerospike.migration.importer.rdb.ValueType;
+
+class TestRedisSource {
+
+    /**
+     * A stand-in for a Redis server which speaks just enough RESP2 to answer the commands the source sends.
+     */
+    private static class FakeRedis implements AutoCloseable {
+        private final ServerSocket server;
+        private final Map<String, List<String>> data = new TreeMap<>();
+        private final Map<String, String> types = new TreeMap<>();
+        private final Map<String, Long> ttls = new TreeMap<>();
+
+        FakeRedis() throws IOException {
+            server = new ServerSocket(0);
+            Thread acceptor = new Thread(() -> {
+                try {
+                    while (true) {
+                        Socket socket = server.accept();
+                        Thread handler = new Thread(() -> handle(socket));
+                        handler.setDaemon(true);
+                        handler.start();
+                    }
+                }
+                catch (IOException closed) {
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        FakeRedis put(String type, String key, Long ttl, String... values) {
+            types.put(key, type);
+            data.put(key, List.of(values));
+            if (ttl != null) {
+                ttls.put(key, ttl);
+            }
+            return this;
+        }
+
+        int getPort() {
+            return server.getLocalPort();
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = in.read()) != '\r') {
+                if (c < 0) {
+                    throw new IOException("closed");
+                }
+                line.append((char)c);
+            }
+            in.read();
+            return line.toString();
+        }
+
+        private static List<String> readCommand(InputStream in) throws IOException {
+            int count = Integer.parseInt(readLine(in).substring(1));
+            List<String> command = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                int length = Integer.parseInt(readLine(in).substring(1));
+                command.add(new String(in.readNBytes(length), StandardCharsets.ISO_8859_1));
+                in.readNBytes(2);
+            }
+            return command;
+        }
+
+        private static void bulk(ByteArrayOutputStream out, String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.ISO_8859_1);
+            out.writeBytes(("$" + bytes.length + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.writeBytes(bytes);
+            out.writeBytes("\r\n".getBytes(StandardCharsets.US_ASCII));
+        }
+
+        private static void array(ByteArrayOutputStream out, List<String> values) {
+            out.writeBytes(("*" + values.size() + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            for (String value : values) {
+                bulk(out, value);
+            }
+        }
+
+        private void handle(Socket socket) {
+            try (socket) {
+                InputStream in = new BufferedInputStream(socket.getInputStream());
+                OutputStream out = socket.getOutputStream();
+                while (true) {
+                    List<String> command = readCommand(in);
+                    ByteArrayOutputStream reply = new ByteArrayOutputStream();
+                    String key = command.size() > 1 ? command.get(1) : null;
+                    switch (command.get(0).toUpperCase()) {
+                    case "SCAN":
+                        // Pages of COUNT keys, with the cursor being the index of the next key
+                        List<String> keys = new ArrayList<>(data.keySet());
+                        int start = Integer.parseInt(command.get(1));
+                        int count = Integer.parseInt(command.get(command.indexOf("COUNT") + 1));
+                        int end = Math.min(keys.size(), start + count);
+                        reply.writeBytes("*2\r\n".getBytes(StandardCharsets.US_ASCII));
+                        bulk(reply, end == keys.size() ? "0" : Integer.toString(end));
+                        array(reply, keys.subList(start, end));
+                        break;
+                    case "TYPE":
+                        reply.writeBytes(("+" + types.getOrDefault(key, "none") + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                        break;
+                    case "PTTL":
+                        long ttl = !data.containsKey(key) ? -2 : ttls.getOrDefault(key, -1L);
+                        reply.writeBytes((":" + ttl + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                        break;
+                    case "GET":
+                    case "DUMP":
+                        bulk(reply, data.get(key).get(0));
+                        break;
+                    case "LRANGE":
+                    case "SMEMBERS":
+                    case "HGETALL":
+                    case "ZRANGE":
+                        array(reply, data.get(key));
+                        break;
+                    default:
+                        reply.writeBytes("+OK\r\n".getBytes(StandardCharsets.US_ASCII));
+                    }
+                    out.write(reply.toByteArray());
+                    out.flush();
+                }
+            }
+            catch (IOException closed) {
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            server.close();
+        }
+    }
+
+    private FakeRedis redis;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        redis = new FakeRedis();
+    }
+
+    @AfterEach
+    void stopServer() throws IOException {
+        redis.close();
+    }
+
+    private Map<String, KeyValuePair> readAll(RedisSource.FetchMode mode, List<String> errors) throws Exception {
+        LinkedBlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+        try (RedisSource source = new RedisSource(RedisSource.parseUris("localhost:" + redis.getPort()), false, 2, 3, mode, queue, errors::add)) {
+            source.run();
+        }
+        assertEquals(0, ((SelectDb)queue.take()).getId());
+        Map<String, KeyValuePair> result = new LinkedHashMap<>();
+        for (Entry entry : queue) {
+            assertEquals(EntryType.KEY_VALUE_PAIR, entry.getType());
+            KeyValuePair kvp = (KeyValuePair)entry;
+            result.put(kvp.getKey().toString(), kvp);
+        }
+        return result;
+    }
+
+    private static List<String> asStrings(List<ByteSlice> values) {
+        List<String> result = new ArrayList<>();
+        for (ByteSlice value : values) {
+            result.add(value.toString());
+        }
+        return result;
+    }
+
+    @Test
+    void testTypeFetch() throws Exception {
+        redis.put("string", "customer:1", 60000L, "Tim")
+                .put("list", "list:1", null, "a", "b", "c")
+                .put("set", "set:1", null, "x")
+                .put("hash", "hash:1", null, "name", "Savings", "balance", "300")
+                .put("zset", "zset:1", null, "m", "1.5")
+                .put("stream", "stream:1", null);
+        long now = System.currentTimeMillis();
+        List<String> errors = new ArrayList<>();
+        Map<String, KeyValuePair> pairs = readAll(RedisSource.FetchMode.TYPE, errors);
+        assertTrue(errors.isEmpty(), errors.toString());
+        assertEquals(6, pairs.size());
+
+        KeyValuePair string = pairs.get("customer:1");
+        assertEquals(ValueType.VALUE, string.getValueType());
+        assertEquals(List.of("Tim"), asStrings(string.getValues()));
+        assertTrue(string.getExpireTime() >= now + 60000);
+
+        assertEquals(ValueType.LIST, pairs.get("list:1").getValueType());
+        assertEquals(List.of("a", "b", "c"), asStrings(pairs.get("list:1").getValues()));
+        assertNull(pairs.get("list:1").getExpireTime());
+        assertEquals(List.of("x"), asStrings(pairs.get("set:1").getValues()));
+        assertEquals(List.of("name", "Savings", "balance", "300"), asStrings(pairs.get("hash:1").getValues()));
+        assertEquals(List.of("m", "1.5"), asStrings(pairs.get("zset:1").getValues()));
+        assertEquals(ValueType.STREAM_LISTPACKS_3, pairs.get("stream:1").getValueType());
+    }
+
+    /**
+     * The payload DUMP returns for a plain hash: the type, the value as in an RDB file, the RDB version and a checksum.
+     */
+    private static String dumpOfHash(String... fieldsAndValues) {
+        StringBuilder payload = new StringBuilder();
+        payload.append((char)ValueType.HASH.getCode()).append((char)(fieldsAndValues.length / 2));
+        for (String item : fieldsAndValues) {
+            payload.append((char)item.length()).append(item);
+        }
+        payload.append((char)11).append((char)0);
+        payload.append("\0\0\0\0\0\0\0\0");
+        return payload.toString();
+    }
+
+    @Test
+    void testDumpFetch() throws Exception {
+        redis.put("hash", "hash:1", 5000L, dumpOfHash("name", "Savings", "balance", "300"))
+                .put("hash", "hash:2", null, dumpOfHash("name", "Checking"));
+        List<String> errors = new ArrayList<>();
+        Map<String, KeyValuePair> pairs = readAll(RedisSource.FetchMode.DUMP, errors);
+        assertTrue(errors.isEmpty(), errors.toString());
+        assertEquals(ValueType.HASH, pairs.get("hash:1").getValueType());
+        assertEquals(List.of("name", "Savings", "balance", "300"), asStrings(pairs.get("hash:1").getValues()));
+        assertTrue(pairs.get("hash:1").getExpireTime() != null);
+        assertEquals(List.of("name", "Checking"), asStrings(pairs.get("hash:2").getValues()));
+        assertNull(pairs.get("hash:2").getExpireTime());
+    }
+}
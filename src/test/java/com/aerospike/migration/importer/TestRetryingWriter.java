@@ -0,0 +1,167 @@
+package com.aerospike.migration.importer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.Operation;
+import com.aerospike.client.ResultCode;
+import com.aerospike.client.Value;
+import com.aerospike.client.cdt.ListOperation;
+import com.aerospike.migration.importer.rdb.SelectDb;
+
+class TestRetryingWriter {
+
+    /**
+     * Fails the first writes of each bin with the result code given for it, as a synchronous writer does.
+     */
+    private static class FlakyWriter implements RecordWriter {
+        private final Map<String, Integer> failuresLeft = new HashMap<>();
+        private final Map<String, Integer> resultCodes = new HashMap<>();
+        private final List<String> written = Collections.synchronizedList(new ArrayList<>());
+
+        void fail(String bin, int times, int resultCode) {
+            failuresLeft.put(bin, times);
+            resultCodes.put(bin, resultCode);
+        }
+
+        @Override
+        public synchronized void write(WriteRequest request, WriteRequest.Part part) {
+            String bin = part.getOps()[0].binName;
+            int left = failuresLeft.getOrDefault(bin, 0);
+            if (left > 0) {
+                failuresLeft.put(bin, left - 1);
+                throw new AerospikeException(resultCodes.get(bin));
+            }
+            written.add(bin);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static WriteRequest.Part part(String bin) {
+        return new WriteRequest.Part(null, new Key("test", "set", bin), List.of(Operation.put(new Bin(bin, 1))), false);
+    }
+
+    private static WriteRequest write(RetryingWriter writer, List<WriteRequest> completed, WriteRequest.Part... parts) throws Exception {
+        WriteRequest request = new WriteRequest(new SelectDb(0), completed::add);
+        for (WriteRequest.Part part : parts) {
+            writer.write(request, part);
+        }
+        request.setWritten(true);
+        request.finish();
+        return request;
+    }
+
+    @Test
+    void testRetriesTransientFailuresInOrder() throws Exception {
+        FlakyWriter flaky = new FlakyWriter();
+        flaky.fail("a", 2, ResultCode.KEY_BUSY);
+        RetryingWriter writer = new RetryingWriter(flaky, 3, 1, 5, 2);
+        List<WriteRequest> completed = Collections.synchronizedList(new ArrayList<>());
+        write(writer, completed, part("a"), part("b"));
+        writer.close();
+
+        assertEquals(1, completed.size());
+        assertNull(completed.get(0).getFailure());
+        assertEquals(List.of("a", "b"), flaky.written);
+        assertEquals(2, writer.getRetries());
+        assertEquals(1, writer.getRecovered());
+        assertEquals(0, writer.getExhausted());
+    }
+
+    @Test
+    void testGivesUpAfterMaxRetries() throws Exception {
+        FlakyWriter flaky = new FlakyWriter();
+        flaky.fail("a", 10, ResultCode.DEVICE_OVERLOAD);
+        RetryingWriter writer = new RetryingWriter(flaky, 3, 1, 5, 2);
+        List<WriteRequest> completed = Collections.synchronizedList(new ArrayList<>());
+        write(writer, completed, part("a"), part("b"));
+        writer.close();
+
+        assertEquals(1, completed.size());
+        assertEquals(ResultCode.DEVICE_OVERLOAD, ((AerospikeException)completed.get(0).getFailure()).getResultCode());
+        assertTrue(flaky.written.isEmpty());
+        assertEquals(3, writer.getRetries());
+        assertEquals(1, writer.getExhausted());
+    }
+
+    @Test
+    void testPermanentFailuresAreNotRetried() throws Exception {
+        FlakyWriter flaky = new FlakyWriter();
+        flaky.fail("a", 1, ResultCode.BIN_TYPE_ERROR);
+        RetryingWriter writer = new RetryingWriter(flaky, 3, 1, 5, 2);
+        List<WriteRequest> completed = Collections.synchronizedList(new ArrayList<>());
+        write(writer, completed, part("a"));
+        write(writer, completed, part("b"));
+        writer.close();
+
+        assertEquals(2, completed.size());
+        assertEquals(ResultCode.BIN_TYPE_ERROR, ((AerospikeException)completed.get(0).getFailure()).getResultCode());
+        assertNull(completed.get(1).getFailure());
+        assertEquals(0, writer.getRetries());
+    }
+
+    @Test
+    void testRetriesAreWrittenInParallel() throws Exception {
+        // Each retry waits for the other, which only finishes if they are written on different threads
+        CountDownLatch retrying = new CountDownLatch(2);
+        List<Boolean> together = Collections.synchronizedList(new ArrayList<>());
+        RecordWriter slow = new RecordWriter() {
+            private final Map<String, Boolean> failed = new HashMap<>();
+
+            @Override
+            public void write(WriteRequest request, WriteRequest.Part part) throws InterruptedException {
+                String bin = part.getOps()[0].binName;
+                synchronized (failed) {
+                    if (failed.put(bin, true) == null) {
+                        throw new AerospikeException(ResultCode.KEY_BUSY);
+                    }
+                }
+                retrying.countDown();
+                together.add(retrying.await(5, TimeUnit.SECONDS));
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        RetryingWriter writer = new RetryingWriter(slow, 3, 1, 5, 2);
+        List<WriteRequest> completed = Collections.synchronizedList(new ArrayList<>());
+        write(writer, completed, part("a"));
+        write(writer, completed, part("b"));
+        writer.close();
+
+        assertEquals(2, completed.size());
+        assertEquals(List.of(true, true), together);
+        assertEquals(2, writer.getRecovered());
+    }
+
+    @Test
+    void testInDoubtAppendIsNotRetried() {
+        WriteRequest.Part append = new WriteRequest.Part(null, new Key("test", "set", 1), List.of(ListOperation.append("list", Value.get(1))),
+                false);
+        AerospikeException timeout = new AerospikeException(ResultCode.TIMEOUT);
+        assertTrue(RetryingWriter.isRetryable(timeout, append));
+        timeout.setInDoubt(true);
+        assertFalse(RetryingWriter.isRetryable(timeout, append));
+        assertTrue(RetryingWriter.isRetryable(timeout, part("a")));
+        assertFalse(RetryingWriter.isRetryable(new IllegalStateException(), part("a")));
+    }
+}
@@ -0,0 +1,118 @@
+package com.aerospike.migration.importer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class TestRingBuffer {
+
+    @Test
+    void testBoundedInOrder() throws Exception {
+        RingBuffer<Integer> buffer = new RingBuffer<>(3, RingBuffer.WaitStrategy.PARK);
+        // Rounded up to 4
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+        assertFalse(buffer.offer(4, 1, TimeUnit.MILLISECONDS));
+        assertEquals(4, buffer.size());
+        assertEquals(0, buffer.remainingCapacity());
+        assertEquals(0, buffer.peek());
+
+        List<Integer> taken = new ArrayList<>();
+        assertEquals(3, buffer.drainTo(taken, 3));
+        assertEquals(List.of(0, 1, 2), taken);
+        // Wraps around
+        assertTrue(buffer.offer(4));
+        assertEquals(3, buffer.take());
+        assertEquals(4, buffer.poll());
+        assertNull(buffer.poll());
+        assertNull(buffer.poll(1, TimeUnit.MILLISECONDS));
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    void testTakeBatchUntilClosed() throws Exception {
+        RingBuffer<Integer> buffer = new RingBuffer<>(16, RingBuffer.WaitStrategy.YIELD);
+        for (int i = 0; i < 5; i++) {
+            buffer.put(i);
+        }
+        buffer.close();
+        List<Integer> batch = new ArrayList<>();
+        assertEquals(3, buffer.takeBatch(batch, 3));
+        assertEquals(2, buffer.takeBatch(batch, 3));
+        assertEquals(5, batch.size());
+        assertEquals(-1, buffer.takeBatch(batch, 3));
+    }
+
+    /**
+     * Pass the numbers 1 to producers * perProducer through the buffer from the producer threads to the
+     * consumer threads, returning how many were taken and their sum.
+     */
+    static long[] exchange(RingBuffer<Long> buffer, int producers, int consumers, long perProducer) throws InterruptedException {
+        AtomicLong sum = new AtomicLong();
+        AtomicLong count = new AtomicLong();
+        List<Thread> producerThreads = new ArrayList<>();
+        List<Thread> consumerThreads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            long base = p * perProducer;
+            producerThreads.add(new Thread(() -> {
+                try {
+                    for (long i = 1; i <= perProducer; i++) {
+                        buffer.put(base + i);
+                    }
+                }
+                catch (InterruptedException ignored) {
+                }
+            }));
+        }
+        for (int c = 0; c < consumers; c++) {
+            consumerThreads.add(new Thread(() -> {
+                List<Long> batch = new ArrayList<>();
+                try {
+                    while (buffer.takeBatch(batch, 8) >= 0) {
+                        for (long value : batch) {
+                            sum.addAndGet(value);
+                        }
+                        count.addAndGet(batch.size());
+                        batch.clear();
+                    }
+                }
+                catch (InterruptedException ignored) {
+                }
+            }));
+        }
+        producerThreads.forEach(Thread::start);
+        consumerThreads.forEach(Thread::start);
+        for (Thread thread : producerThreads) {
+            thread.join();
+        }
+        buffer.close();
+        for (Thread thread : consumerThreads) {
+            thread.join();
+        }
+        return new long[] {count.get(), sum.get()};
+    }
+
+    @Test
+    void testManyProducersAndConsumers() throws Exception {
+        // Spinning threads beyond the cores only slow each other down, so size the run to the machine.
+        // RingBufferBenchmark runs the heavy version.
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        for (RingBuffer.WaitStrategy strategy : RingBuffer.WaitStrategy.values()) {
+            long perProducer = strategy == RingBuffer.WaitStrategy.PARK ? 20_000 : 2_000;
+            long[] result = exchange(new RingBuffer<>(64, strategy), threads, threads, perProducer);
+            long total = threads * perProducer;
+            assertEquals(total, result[0], strategy.name());
+            assertEquals(total * (total + 1) / 2, result[1], strategy.name());
+        }
+    }
+}
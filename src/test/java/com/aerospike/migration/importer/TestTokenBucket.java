@@ -0,0 +1,54 @@
+package com.aerospike.migration.importer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class TestTokenBucket {
+
+    @Test
+    void testBurstThenSteadyRate() {
+        TokenBucket bucket = new TokenBucket(1000);
+        long now = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        // A tenth of a second of permits is let through at once
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, bucket.reserve(1, now));
+        }
+        // Then each permit is a millisecond after the one before
+        assertEquals(0, bucket.reserve(1, now));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1), bucket.reserve(1, now), 1000);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(2), bucket.reserve(1, now), 1000);
+    }
+
+    @Test
+    void testLargeRequestIsPaidOffByTheNext() {
+        TokenBucket bucket = new TokenBucket(1000);
+        long now = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        // More than the bucket holds goes through now, and the next request waits for the rest
+        assertEquals(0, bucket.reserve(600, now));
+        long wait = bucket.reserve(1, now);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), wait, TimeUnit.MILLISECONDS.toNanos(1));
+        // Once that time has passed there is no wait
+        assertEquals(0, bucket.reserve(1, now + wait + TimeUnit.MILLISECONDS.toNanos(1)));
+    }
+
+    @Test
+    void testRefillsWhileIdle() {
+        TokenBucket bucket = new TokenBucket(100);
+        long now = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        // The stored permits, then one which is due now
+        for (int i = 0; i < 11; i++) {
+            assertEquals(0, bucket.reserve(1, now));
+        }
+        assertTrue(bucket.reserve(1, now) > 0);
+        // A long quiet spell only refills a tenth of a second's worth
+        now += TimeUnit.SECONDS.toNanos(10);
+        for (int i = 0; i < 11; i++) {
+            assertEquals(0, bucket.reserve(1, now));
+        }
+        assertTrue(bucket.reserve(1, now) > 0);
+    }
+}
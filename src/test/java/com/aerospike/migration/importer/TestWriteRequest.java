@@ -0,0 +1,67 @@
+package com.aerospike.migration.importer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.Operation;
+import com.aerospike.migration.importer.rdb.SelectDb;
+
+class TestWriteRequest {
+
+    private static WriteRequest.Part part(int i) {
+        return new WriteRequest.Part(null, new Key("test", "set", i), List.of(Operation.put(new Bin("bin", i))), false);
+    }
+
+    @Test
+    void testPartsInOrder() {
+        List<WriteRequest> completed = new ArrayList<>();
+        WriteRequest request = new WriteRequest(new SelectDb(0), completed::add);
+        WriteRequest.Part first = part(1);
+        WriteRequest.Part second = part(2);
+        WriteRequest.Part third = part(3);
+        assertEquals(WriteRequest.Start.NOW, request.start(first));
+        assertEquals(WriteRequest.Start.QUEUED, request.start(second));
+        assertEquals(WriteRequest.Start.QUEUED, request.start(third));
+        request.setWritten(true);
+        request.finish();
+        assertTrue(completed.isEmpty());
+
+        assertSame(second, request.partCompleted());
+        assertSame(third, request.partCompleted());
+        assertTrue(completed.isEmpty());
+        assertNull(request.partCompleted());
+        assertEquals(List.of(request), completed);
+        assertTrue(request.isWritten());
+        assertNull(request.getFailure());
+    }
+
+    @Test
+    void testFailureDropsQueuedParts() {
+        List<WriteRequest> completed = new ArrayList<>();
+        WriteRequest request = new WriteRequest(new SelectDb(0), completed::add);
+        assertEquals(WriteRequest.Start.NOW, request.start(part(1)));
+        assertEquals(WriteRequest.Start.QUEUED, request.start(part(2)));
+        RuntimeException failure = new RuntimeException("failed");
+        assertEquals(1, request.fail(failure).size());
+        // Not complete until no more parts are to be added
+        assertTrue(completed.isEmpty());
+        assertEquals(WriteRequest.Start.DROPPED, request.start(part(3)));
+        request.setWritten(true);
+        request.finish();
+        assertEquals(List.of(request), completed);
+        assertSame(failure, request.getFailure());
+        assertFalse(request.isWritten());
+        request.finish();
+        assertEquals(1, completed.size());
+    }
+}
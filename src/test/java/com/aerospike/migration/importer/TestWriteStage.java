@@ -0,0 +1,88 @@
+package com.aerospike.migration.importer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Bin;
+import com.aerospike.client.IAerospikeClient;
+import com.aerospike.client.Key;
+import com.aerospike.client.Operation;
+import com.aerospike.client.ResultCode;
+import com.aerospike.migration.importer.rdb.SelectDb;
+
+class TestWriteStage {
+
+    /**
+     * A client which records the keys and bins operated on, failing writes of the bin "bad".
+     */
+    private static IAerospikeClient recordingClient(List<String> writes) {
+        return (IAerospikeClient)Proxy.newProxyInstance(IAerospikeClient.class.getClassLoader(), new Class<?>[] { IAerospikeClient.class },
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("operate")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    Key key = (Key)args[1];
+                    Operation op = ((Operation[])args[2])[0];
+                    writes.add(key.userKey + ":" + op.binName);
+                    if (op.binName.equals("bad")) {
+                        throw new AerospikeException(ResultCode.BIN_TYPE_ERROR);
+                    }
+                    return null;
+                });
+    }
+
+    private static WriteRequest.Part part(int id, String bin) {
+        return new WriteRequest.Part(null, new Key("test", "set", id), List.of(Operation.put(new Bin(bin, 1))), false);
+    }
+
+    @Test
+    void testWritesInOrderOnStageThreads() throws Exception {
+        List<String> writes = Collections.synchronizedList(new ArrayList<>());
+        List<WriteRequest> completed = Collections.synchronizedList(new ArrayList<>());
+        WriteStage stage = new WriteStage("test", recordingClient(writes), 4, 2, 1, 0);
+        assertEquals(4, stage.getThreads());
+        for (int i = 0; i < 20; i++) {
+            WriteRequest request = new WriteRequest(new SelectDb(0), completed::add);
+            stage.write(request, part(i, "a"));
+            stage.write(request, part(i, "b"));
+            stage.write(request, part(i, i == 7 ? "bad" : "c"));
+            request.setWritten(true);
+            request.finish();
+        }
+        stage.close();
+
+        assertEquals(20, completed.size());
+        assertEquals(60, writes.size());
+        for (int i = 0; i < 20; i++) {
+            int a = writes.indexOf(i + ":a");
+            int b = writes.indexOf(i + ":b");
+            assertTrue(a >= 0 && a < b);
+        }
+        int failures = 0;
+        for (WriteRequest request : completed) {
+            if (request.getFailure() != null) {
+                assertEquals(ResultCode.BIN_TYPE_ERROR, ((AerospikeException)request.getFailure()).getResultCode());
+                failures++;
+            }
+        }
+        assertEquals(1, failures);
+        assertTrue(stage.getBusyNanos() > 0);
+        assertEquals(0, stage.getQueueDepth());
+    }
+
+    @Test
+    void testClosesWhenIdle() throws Exception {
+        WriteStage stage = new WriteStage("test", recordingClient(new ArrayList<>()), 2, 10, 1, 0);
+        stage.close();
+        assertEquals(0, stage.getBusyNanos());
+        assertEquals(0, stage.getWaitNanos());
+    }
+}
@@ -0,0 +1,106 @@
+package com.aerospike.migration.importer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Compares a pool of platform threads with a virtual thread per record, at the same number of records in
+ * flight, for records whose writes block for a simulated round trip to the server. The virtual threads
+ * are only available from the multi-release jar on Java 21, so run it with the jar ahead of the test classes:
+ * <pre>
+ * java -cp target/redis-data-migrator-0.9-full.jar:target/test-classes \
+ *     com.aerospike.migration.importer.WorkerThreadsBenchmark [roundTripMicros] [inFlight...]
+ * </pre>
+ */
+public class WorkerThreadsBenchmark {
+    private static final int RECORDS_PER_THREAD = 200;
+
+    /**
+     * Stands in for translating a record and writing it: a little work, then a wait for the server.
+     */
+    private static void importRecord(long roundTripNanos, LongAdder done) {
+        long hash = 0;
+        for (int i = 0; i < 500; i++) {
+            hash = hash * 31 + i;
+        }
+        LockSupport.parkNanos(roundTripNanos);
+        done.add(hash == 42 ? 2 : 1);
+    }
+
+    private static double run(ExecutorService executor, Semaphore permits, int records, long roundTripNanos) throws InterruptedException {
+        LongAdder done = new LongAdder();
+        long start = System.nanoTime();
+        for (int i = 0; i < records; i++) {
+            if (permits != null) {
+                permits.acquire();
+            }
+            executor.execute(() -> {
+                try {
+                    importRecord(roundTripNanos, done);
+                }
+                finally {
+                    if (permits != null) {
+                        permits.release();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.HOURS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return done.sum() / seconds;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) throws Exception {
+        long roundTripMicros = args.length > 0 ? Long.parseLong(args[0]) : 500;
+        int[] inFlights = new int[Math.max(1, args.length - 1)];
+        if (args.length > 1) {
+            for (int i = 1; i < args.length; i++) {
+                inFlights[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+        else {
+            inFlights = new int[] { 64, 500, 2000 };
+        }
+        long roundTripNanos = TimeUnit.MICROSECONDS.toNanos(roundTripMicros);
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        System.out.printf("Simulated round trip of %,dus. Virtual threads %s.\n", roundTripMicros,
+                VirtualThreads.isSupported() ? "supported" : "not supported on this Java version or not run from the multi-release jar");
+        System.out.printf("%10s %10s %15s %15s %15s\n", "in flight", "threads", "records/s", "peak threads", "heap delta MB");
+        for (int inFlight : inFlights) {
+            int records = inFlight * RECORDS_PER_THREAD;
+            // Once to warm up, then measured
+            for (int pass = 0; pass < 2; pass++) {
+                System.gc();
+                threads.resetPeakThreadCount();
+                long memoryBefore = usedMemory();
+                double rate = run(Executors.newFixedThreadPool(inFlight), null, records, roundTripNanos);
+                if (pass == 1) {
+                    System.out.printf("%,10d %10s %,15.0f %,15d %,15d\n", inFlight, "platform", rate, threads.getPeakThreadCount(),
+                            (usedMemory() - memoryBefore) >> 20);
+                }
+                if (VirtualThreads.isSupported()) {
+                    System.gc();
+                    threads.resetPeakThreadCount();
+                    memoryBefore = usedMemory();
+                    rate = run(VirtualThreads.newExecutor("bench-"), new Semaphore(inFlight), records, roundTripNanos);
+                    if (pass == 1) {
+                        System.out.printf("%,10d %10s %,15.0f %,15d %,15d\n", inFlight, "virtual", rate, threads.getPeakThreadCount(),
+                                (usedMemory() - memoryBefore) >> 20);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.aerospike.migration.importer.json;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.aerospike.migration.importer.rdb.ByteSlice;
+import com.aerospike.migration.importer.rdb.Entry;
+import com.aerospike.migration.importer.rdb.EntryFilter;
+import com.aerospike.migration.importer.rdb.EntryType;
+import com.aerospike.migration.importer.rdb.KeyValuePair;
+import com.aerospike.migration.importer.rdb.SelectDb;
+import com.aerospike.migration.importer.rdb.ValueType;
+
+class TestJsonLinesReader {
+
+    private static File write(String... lines) throws IOException {
+        File file = File.createTempFile("test", ".jsonl");
+        file.deleteOnExit();
+        Files.write(file.toPath(), String.join("\n", lines).concat("\n").getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static List<String> asStrings(List<ByteSlice> values) {
+        List<String> result = new ArrayList<>();
+        for (ByteSlice value : values) {
+            result.add(value.toString());
+        }
+        return result;
+    }
+
+    private static List<KeyValuePair> readAll(JsonLinesReader reader) throws IOException {
+        List<KeyValuePair> result = new ArrayList<>();
+        Entry entry;
+        while ((entry = reader.readNext()) != null) {
+            if (entry.getType() == EntryType.KEY_VALUE_PAIR) {
+                result.add((KeyValuePair)entry);
+            }
+        }
+        return result;
+    }
+
+    @Test
+    void testReadTypes() throws Exception {
+        long now = System.currentTimeMillis();
+        File file = write(
+                "{\"db\":0,\"key\":\"customer:1:name\",\"ttl\":60,\"type\":\"string\",\"value\":\"Tim\",\"size\":3}",
+                "{\"db\":0,\"key\":\"customer:1:accounts\",\"ttl\":-1,\"type\":\"list\",\"value\":[\"1\",2,\"3\"]}",
+                "{\"value\":{\"name\":\"Savings\",\"balance\":300},\"key\":\"account:1\"}",
+                "{\"db\":2,\"key\":\"scores\",\"type\":\"zset\",\"value\":[[\"a\",\"1.5\"],[\"b\",2]]}",
+                "{\"db\":2,\"key\":\"tags\",\"type\":\"set\",\"value\":[\"x\"],\"pttl\":5000}");
+        try (JsonLinesReader reader = new JsonLinesReader(new FileInputStream(file), file.getPath())) {
+            assertEquals(0, ((SelectDb)reader.readNext()).getId());
+            KeyValuePair kvp = (KeyValuePair)reader.readNext();
+            assertEquals("customer:1:name", kvp.getKey().toString());
+            assertEquals(ValueType.VALUE, kvp.getValueType());
+            assertEquals(List.of("Tim"), asStrings(kvp.getValues()));
+            assertTrue(kvp.getExpireTime() >= now + 60000);
+
+            kvp = (KeyValuePair)reader.readNext();
+            assertEquals(ValueType.LIST, kvp.getValueType());
+            assertEquals(List.of("1", "2", "3"), asStrings(kvp.getValues()));
+            assertNull(kvp.getExpireTime());
+
+            kvp = (KeyValuePair)reader.readNext();
+            assertEquals("account:1", kvp.getKey().toString());
+            assertEquals(ValueType.HASH, kvp.getValueType());
+            assertEquals(List.of("name", "Savings", "balance", "300"), asStrings(kvp.getValues()));
+
+            assertEquals(2, ((SelectDb)reader.readNext()).getId());
+            kvp = (KeyValuePair)reader.readNext();
+            assertEquals(ValueType.SORTED_SET2, kvp.getValueType());
+            assertEquals(List.of("a", "1.5", "b", "2"), asStrings(kvp.getValues()));
+            kvp = (KeyValuePair)reader.readNext();
+            assertEquals(ValueType.SET, kvp.getValueType());
+            assertTrue(kvp.getExpireTime() >= now + 5000);
+            assertNull(reader.readNext());
+            assertEquals(file.length(), reader.getPosition());
+        }
+    }
+
+    @Test
+    void testRangesSplitOnLines() throws Exception {
+        List<String> lines = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            lines.add(String.format("{\"key\":\"key:%d\",\"value\":\"%s\"}", i, "v".repeat(i % 17)));
+            expected.add("key:" + i);
+        }
+        File file = write(lines.toArray(new String[0]));
+        for (long rangeSize : new long[] {1, 37, 100, 4096}) {
+            List<String> keys = new ArrayList<>();
+            for (long[] range : JsonLinesReader.split(file, rangeSize)) {
+                try (JsonLinesReader reader = JsonLinesReader.open(file, range[0], range[1])) {
+                    for (KeyValuePair kvp : readAll(reader)) {
+                        keys.add(kvp.getKey().toString());
+                    }
+                }
+            }
+            assertEquals(expected, keys, "range size " + rangeSize);
+        }
+    }
+
+    @Test
+    void testFilter() throws Exception {
+        File file = write(
+                "{\"key\":\"session:1\",\"type\":\"hash\",\"value\":{\"a\":\"1\"}}",
+                "{\"key\":\"account:1\",\"type\":\"hash\",\"value\":{\"a\":\"1\"}}",
+                "{\"key\":\"account:2\",\"value\":[\"x\"]}",
+                "{\"value\":\"expired\",\"key\":\"account:3\",\"expireat\":1}");
+        EntryFilter filter = new EntryFilter().exclude("session:.*").typeNames(Set.of("hash", "string"));
+        try (JsonLinesReader reader = JsonLinesReader.open(file, 0, file.length())) {
+            reader.setFilter(filter);
+            List<KeyValuePair> pairs = readAll(reader);
+            assertEquals(1, pairs.size());
+            assertEquals("account:1", pairs.get(0).getKey().toString());
+        }
+        assertEquals(3, filter.getFiltered());
+    }
+}
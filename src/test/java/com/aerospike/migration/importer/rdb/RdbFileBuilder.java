@@ -0,0 +1,195 @@
+package com.aerospike.migration.importer.rdb;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Builds small RDB files byte by byte for tests.
+ */
+class RdbFileBuilder {
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    RdbFileBuilder() {
+        this(11);
+    }
+
+    RdbFileBuilder(int version) {
+        out.writeBytes(String.format("REDIS%04d", version).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    RdbFileBuilder raw(int... bytes) {
+        for (int b : bytes) {
+            out.write(b);
+        }
+        return this;
+    }
+
+    RdbFileBuilder raw(byte[] bytes) {
+        out.writeBytes(bytes);
+        return this;
+    }
+
+    RdbFileBuilder length(long length) {
+        if (length < 64) {
+            raw((int)length);
+        }
+        else if (length < 16384) {
+            raw(0x40 | (int)(length >> 8), (int)(length & 0xff));
+        }
+        else {
+            raw(0x80, (int)(length >> 24) & 0xff, (int)(length >> 16) & 0xff, (int)(length >> 8) & 0xff, (int)length & 0xff);
+        }
+        return this;
+    }
+
+    RdbFileBuilder string(String value) {
+        return string(value.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    RdbFileBuilder string(byte[] value) {
+        length(value.length);
+        return raw(value);
+    }
+
+    /** A string stored as an LZF compressed block which contains only literal runs */
+    RdbFileBuilder lzfString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        for (int i = 0; i < bytes.length; i += 32) {
+            int run = Math.min(32, bytes.length - i);
+            compressed.write(run - 1);
+            compressed.write(bytes, i, run);
+        }
+        raw(0xC3);
+        length(compressed.size());
+        length(bytes.length);
+        return raw(compressed.toByteArray());
+    }
+
+    RdbFileBuilder int8String(int value) {
+        return raw(0xC0, value & 0xff);
+    }
+
+    RdbFileBuilder selectDb(int db) {
+        raw(0xFE);
+        return length(db);
+    }
+
+    RdbFileBuilder aux(String key, String value) {
+        raw(0xFA);
+        string(key);
+        return string(value);
+    }
+
+    RdbFileBuilder expireMs(long time) {
+        raw(0xFC);
+        for (int i = 0; i < 8; i++) {
+            raw((int)(time >> (8 * i)) & 0xff);
+        }
+        return this;
+    }
+
+    RdbFileBuilder freq(int freq) {
+        return raw(0xF9, freq);
+    }
+
+    RdbFileBuilder stringValue(String key, String value) {
+        raw(ValueType.VALUE.getCode());
+        string(key);
+        return string(value);
+    }
+
+    RdbFileBuilder list(String key, String... values) {
+        raw(ValueType.LIST.getCode());
+        string(key);
+        length(values.length);
+        for (String value : values) {
+            string(value);
+        }
+        return this;
+    }
+
+    RdbFileBuilder hash(String key, String... fieldsAndValues) {
+        raw(ValueType.HASH.getCode());
+        string(key);
+        length(fieldsAndValues.length / 2);
+        for (String value : fieldsAndValues) {
+            string(value);
+        }
+        return this;
+    }
+
+    /** A hash encoded as a listpack whose elements are all short strings */
+    RdbFileBuilder listpackHash(String key, String... fieldsAndValues) {
+        raw(ValueType.HASHMAP_AS_LISTPACK.getCode());
+        string(key);
+        return string(listpack(fieldsAndValues));
+    }
+
+    /** A list encoded as a quicklist with a single packed listpack node */
+    RdbFileBuilder quicklist2(String key, String... values) {
+        raw(ValueType.QUICKLIST2.getCode());
+        string(key);
+        length(1);
+        length(2);
+        return string(listpack(values));
+    }
+
+    RdbFileBuilder intset(String key, long... values) {
+        raw(ValueType.INTSET.getCode());
+        string(key);
+        byte[] intset = new byte[8 + 8 * values.length];
+        intset[0] = 8;
+        intset[4] = (byte)values.length;
+        for (int i = 0; i < values.length; i++) {
+            for (int j = 0; j < 8; j++) {
+                intset[8 + 8 * i + j] = (byte)(values[i] >> (8 * j));
+            }
+        }
+        return string(intset);
+    }
+
+    RdbFileBuilder eof() {
+        raw(0xFF);
+        return raw(new byte[8]);
+    }
+
+    static byte[] listpack(String... values) {
+        ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        for (String value : values) {
+            byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+            if (bytes.length >= 64) {
+                throw new IllegalArgumentException("Test listpacks only support strings shorter than 64 bytes");
+            }
+            entries.write(0x80 | bytes.length);
+            entries.writeBytes(bytes);
+            // Back length: size of encoding + data, which is always < 128 here
+            entries.write(bytes.length + 1);
+        }
+        int total = 6 + entries.size() + 1;
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        result.write(total & 0xff);
+        result.write((total >> 8) & 0xff);
+        result.write((total >> 16) & 0xff);
+        result.write((total >> 24) & 0xff);
+        result.write(values.length & 0xff);
+        result.write((values.length >> 8) & 0xff);
+        result.writeBytes(entries.toByteArray());
+        result.write(0xff);
+        return result.toByteArray();
+    }
+
+    byte[] toByteArray() {
+        return out.toByteArray();
+    }
+
+    File toFile() throws IOException {
+        File file = File.createTempFile("test", ".rdb");
+        file.deleteOnExit();
+        Files.write(file.toPath(), out.toByteArray());
+        return file;
+    }
+}
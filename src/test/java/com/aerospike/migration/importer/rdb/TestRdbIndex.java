@@ -0,0 +1,89 @@
+package com.aerospike.migration.importer.rdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class TestRdbIndex {
+
+    private static File buildFile() throws Exception {
+        RdbFileBuilder builder = new RdbFileBuilder().aux("redis-ver", "7.2.4").selectDb(0);
+        for (int i = 0; i < 200; i++) {
+            if (i == 100) {
+                builder.selectDb(5);
+            }
+            switch (i % 4) {
+            case 0:
+                builder.stringValue("key:" + i, "value " + i);
+                break;
+            case 1:
+                builder.expireMs(4102444800000L).list("key:" + i, "a", "b", "c");
+                break;
+            case 2:
+                builder.listpackHash("key:" + i, "f1", "v1", "f2", "v2");
+                break;
+            default:
+                builder.raw(ValueType.VALUE.getCode()).string("key:" + i).lzfString("compressed value for key " + i);
+            }
+        }
+        return builder.eof().toFile();
+    }
+
+    private static List<String> readKeys(RdbReader reader, List<Long> dbs) throws Exception {
+        List<String> keys = new ArrayList<>();
+        Entry entry;
+        while ((entry = reader.readNext()) != null) {
+            if (entry.getType() == EntryType.KEY_VALUE_PAIR) {
+                KeyValuePair kvp = (KeyValuePair)entry;
+                keys.add(kvp.getKey() + "=" + kvp.getValues());
+                dbs.add(reader.getCurrentDb());
+            }
+        }
+        return keys;
+    }
+
+    @Test
+    void testRangesCoverFile() throws Exception {
+        File file = buildFile();
+        List<Long> expectedDbs = new ArrayList<>();
+        List<String> expected;
+        try (RdbReader reader = new RdbReader(file)) {
+            expected = readKeys(reader, expectedDbs);
+        }
+        assertEquals(200, expected.size());
+
+        try (MappedFile mappedFile = new MappedFile(file)) {
+            RdbIndex index = RdbIndex.build(mappedFile, 256);
+            assertTrue(index.getRanges().size() > 4);
+
+            List<Long> dbs = new ArrayList<>();
+            List<String> keys = new ArrayList<>();
+            for (RdbIndex.Range range : index.getRanges()) {
+                try (RdbReader reader = new RdbReader(mappedFile, range, index.getVersion())) {
+                    keys.addAll(readKeys(reader, dbs));
+                }
+            }
+            assertEquals(expected, keys);
+            assertEquals(expectedDbs, dbs);
+        }
+    }
+
+    @Test
+    void testSidecarIsReused() throws Exception {
+        File file = buildFile();
+        File sidecar = RdbIndex.sidecarFileFor(file);
+        sidecar.deleteOnExit();
+        try (MappedFile mappedFile = new MappedFile(file)) {
+            RdbIndex built = RdbIndex.loadOrBuild(mappedFile, 512);
+            assertTrue(sidecar.isFile());
+            // A different interval would give different ranges if the index was rebuilt rather than loaded
+            RdbIndex loaded = RdbIndex.loadOrBuild(mappedFile, 64);
+            assertEquals(built.getRanges().toString(), loaded.getRanges().toString());
+        }
+    }
+}
@@ -0,0 +1,482 @@
+package com.aerospike.migration.importer.rdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.luben.zstd.ZstdOutputStream;
+
+import net.jpountz.lz4.LZ4FrameOutputStream;
+
+class TestRdbReader {
+
+    private static List<String> asStrings(List<ByteSlice> values) {
+        List<String> result = new ArrayList<>();
+        for (ByteSlice value : values) {
+            result.add(value.toString());
+        }
+        return result;
+    }
+
+    private static File sampleFile() throws Exception {
+        return new RdbFileBuilder()
+                .aux("redis-ver", "7.2.4")
+                .selectDb(0)
+                .stringValue("customer:1:name", "Tim")
+                .expireMs(4102444800000L).freq(12).list("customer:1:accounts", "1", "2", "3")
+                .hash("account:1", "name", "Savings 1", "balance", "300")
+                .selectDb(3)
+                .listpackHash("account:2", "name", "Checking", "balance", "12.5")
+                .quicklist2("queue", "a", "bb", "ccc")
+                .intset("ids", 5, -70000, 1L << 40)
+                .raw(ValueType.VALUE.getCode()).string("compressed").lzfString("The quick brown fox jumps over the lazy dog, twice over")
+                .raw(ValueType.VALUE.getCode()).string("number").int8String(-5)
+                .eof()
+                .toFile();
+    }
+
+    private void checkSample(RdbReader reader) throws Exception {
+        assertEquals(11, reader.getVersion());
+        assertEquals(0, ((SelectDb)reader.readNext()).getId());
+
+        KeyValuePair kvp = (KeyValuePair)reader.readNext();
+        assertEquals("customer:1:name", kvp.getKey().toString());
+        assertEquals(ValueType.VALUE, kvp.getValueType());
+        assertNull(kvp.getExpireTime());
+        assertEquals(List.of("Tim"), asStrings(kvp.getValues()));
+
+        kvp = (KeyValuePair)reader.readNext();
+        assertEquals(ValueType.LIST, kvp.getValueType());
+        assertEquals(4102444800000L, kvp.getExpireTime());
+        assertEquals(12, kvp.getFreq());
+        assertEquals(List.of("1", "2", "3"), asStrings(kvp.getValues()));
+
+        kvp = (KeyValuePair)reader.readNext();
+        assertEquals(ValueType.HASH, kvp.getValueType());
+        assertNull(kvp.getExpireTime());
+        assertEquals(List.of("name", "Savings 1", "balance", "300"), asStrings(kvp.getValues()));
+
+        assertEquals(3, ((SelectDb)reader.readNext()).getId());
+
+        kvp = (KeyValuePair)reader.readNext();
+        assertEquals(ValueType.HASHMAP_AS_LISTPACK, kvp.getValueType());
+        assertEquals(List.of("name", "Checking", "balance", "12.5"), asStrings(kvp.getValues()));
+
+        kvp = (KeyValuePair)reader.readNext();
+        assertEquals(ValueType.QUICKLIST2, kvp.getValueType());
+        assertEquals(List.of("a", "bb", "ccc"), asStrings(kvp.getValues()));
+
+        kvp = (KeyValuePair)reader.readNext();
+        assertEquals(ValueType.INTSET, kvp.getValueType());
+        assertEquals(List.of("5", "-70000", Long.toString(1L << 40)), asStrings(kvp.getValues()));
+
+        kvp = (KeyValuePair)reader.readNext();
+        assertEquals("The quick brown fox jumps over the lazy dog, twice over", kvp.getValues().get(0).toString());
+
+        kvp = (KeyValuePair)reader.readNext();
+        assertEquals("-5", kvp.getValues().get(0).toString());
+
+        assertEquals(EntryType.EOF, reader.readNext().getType());
+        assertNull(reader.readNext());
+    }
+
+    @Test
+    void testReadAllTypes() throws Exception {
+        try (RdbReader reader = new RdbReader(sampleFile())) {
+            checkSample(reader);
+        }
+    }
+
+    @Test
+    void testSmallSegmentsSpanBoundaries() throws Exception {
+        // Tiny segments force keys and values to straddle segment boundaries, both inside and beyond the overlap
+        for (int overlap : new int[] {0, 4, 16}) {
+            try (RdbReader reader = new RdbReader(new MappedFile(sampleFile(), 32, overlap), true)) {
+                checkSample(reader);
+            }
+        }
+    }
+
+    @Test
+    void testLzfBackReference() {
+        // Literal 'a' followed by a back reference copying 9 bytes from 1 byte back
+        byte[] compressed = new byte[] {0x00, 'a', (byte)0xE0, 0x00, 0x00};
+        assertEquals("aaaaaaaaaa", new String(Lzf.decompress(ByteSlice.wrap(compressed), 10)));
+    }
+
+    @Test
+    void testValuesDecodedOnDemand() throws Exception {
+        // The listpack's element count and entries are garbage, but framing only uses its stored length
+        byte[] corruptListpack = new byte[] {10, 0, 0, 0, 1, 0, (byte)0xF9, 0, 0, (byte)0xFF};
+        File file = new RdbFileBuilder().selectDb(0)
+                .raw(ValueType.SET_AS_LISTPACK.getCode()).string("broken").string(corruptListpack)
+                .stringValue("next", "ok")
+                .eof().toFile();
+        try (RdbReader reader = new RdbReader(file)) {
+            reader.readNext();
+            KeyValuePair broken = (KeyValuePair)reader.readNext();
+            assertEquals("broken", broken.getKey().toString());
+            KeyValuePair next = (KeyValuePair)reader.readNext();
+            assertEquals(List.of("ok"), asStrings(next.getValues()));
+            assertThrows(RdbFormatException.class, () -> broken.getValues());
+        }
+    }
+
+    @Test
+    void testTruncatedFile() throws Exception {
+        File file = new RdbFileBuilder().selectDb(0).stringValue("key", "value").toFile();
+        try (RdbReader reader = new RdbReader(file)) {
+            reader.readNext();
+            reader.readNext();
+            assertThrows(RdbFormatException.class, () -> reader.readNext());
+        }
+    }
+
+    @Test
+    void testValueIteratorDecodesIncrementally() throws Exception {
+        // A list whose third element is LZF data with a back reference before the start of the output
+        File file = new RdbFileBuilder().selectDb(0)
+                .raw(ValueType.LIST.getCode()).string("big").length(3).string("a").string("b")
+                .raw(0xC3).length(3).length(8).raw(0xE0, 0x05, 0x00)
+                .hash("account:1", "name", "Savings 1", "balance", "300")
+                .eof().toFile();
+        try (RdbReader reader = new RdbReader(file)) {
+            reader.readNext();
+            KeyValuePair list = (KeyValuePair)reader.readNext();
+            Iterator<ByteSlice> iterator = list.valueIterator();
+            assertEquals("a", iterator.next().toString());
+            assertEquals("b", iterator.next().toString());
+            assertThrows(RdbFormatException.class, () -> iterator.hasNext());
+
+            KeyValuePair hash = (KeyValuePair)reader.readNext();
+            List<ByteSlice> values = new ArrayList<>();
+            for (Iterator<ByteSlice> it = hash.valueIterator(); it.hasNext(); ) {
+                values.add(it.next());
+            }
+            assertEquals(asStrings(hash.getValues()), asStrings(values));
+        }
+    }
+
+    private interface Compressor {
+        OutputStream wrap(OutputStream out) throws Exception;
+    }
+
+    /**
+     * Compress the file as several independently compressed pieces, concatenated.
+     */
+    private static File compress(File file, Compression compression, Compressor compressor) throws Exception {
+        byte[] data = Files.readAllBytes(file.toPath());
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        int pieceSize = data.length / 3 + 1;
+        for (int start = 0; start < data.length; start += pieceSize) {
+            try (OutputStream out = compressor.wrap(result)) {
+                out.write(Arrays.copyOfRange(data, start, Math.min(data.length, start + pieceSize)));
+            }
+        }
+        File compressed = File.createTempFile("rdb", "." + compression.name().toLowerCase());
+        compressed.deleteOnExit();
+        Files.write(compressed.toPath(), result.toByteArray());
+        assertEquals(compression, Compression.detect(compressed));
+        return compressed;
+    }
+
+    private static File compress(File file, Compression compression) throws Exception {
+        switch (compression) {
+        case GZIP:
+            return compress(file, compression, out -> new GZIPOutputStream(new NonClosingOutputStream(out)));
+        case ZSTD:
+            return compress(file, compression, out -> new ZstdOutputStream(new NonClosingOutputStream(out)));
+        default:
+            return compress(file, compression, out -> new LZ4FrameOutputStream(new NonClosingOutputStream(out)));
+        }
+    }
+
+    /**
+     * Compress the file the way pzstd does: several frames, each after a skippable frame holding its size.
+     */
+    private static File compressAsPzstd(File file) throws Exception {
+        byte[] data = Files.readAllBytes(file.toPath());
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        int pieceSize = data.length / 3 + 1;
+        for (int start = 0; start < data.length; start += pieceSize) {
+            ByteArrayOutputStream frame = new ByteArrayOutputStream();
+            try (OutputStream out = new ZstdOutputStream(frame)) {
+                out.write(Arrays.copyOfRange(data, start, Math.min(data.length, start + pieceSize)));
+            }
+            ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(0x184D2A50).putInt(4).putInt(frame.size());
+            result.write(header.array());
+            frame.writeTo(result);
+        }
+        File compressed = File.createTempFile("rdb", ".zst");
+        compressed.deleteOnExit();
+        Files.write(compressed.toPath(), result.toByteArray());
+        return compressed;
+    }
+
+    private static class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    @Test
+    void testCompressedFiles() throws Exception {
+        File file = sampleFile();
+        assertEquals(Compression.NONE, Compression.detect(file));
+        for (Compression compression : new Compression[] {Compression.GZIP, Compression.ZSTD, Compression.LZ4}) {
+            File compressed = compress(file, compression);
+            try (RdbReader reader = new RdbReader(compressed)) {
+                checkSample(reader);
+            }
+            // Tiny chunks so entries span chunks, and several threads for the zstd frames
+            try (RdbReader reader = new RdbReader(StreamInput.open(compressed, compression, 3, 7), true)) {
+                checkSample(reader);
+            }
+        }
+        File pzstd = compressAsPzstd(file);
+        assertEquals(Compression.ZSTD, Compression.detect(pzstd));
+        try (RdbReader reader = new RdbReader(pzstd)) {
+            checkSample(reader);
+        }
+        try (RdbReader reader = new RdbReader(StreamInput.open(pzstd, Compression.ZSTD, 3, 7), true)) {
+            checkSample(reader);
+        }
+        // So many threads that each frame may only decompress one chunk ahead, and is streamed through
+        try (RdbReader reader = new RdbReader(StreamInput.open(pzstd, Compression.ZSTD, 40, 7), true)) {
+            checkSample(reader);
+        }
+    }
+
+    @Test
+    void testStreamedEntriesOutliveWindow() throws Exception {
+        File compressed = compress(sampleFile(), Compression.GZIP);
+        List<KeyValuePair> entries = new ArrayList<>();
+        try (RdbReader reader = new RdbReader(StreamInput.open(compressed, Compression.GZIP, 1, 5), true)) {
+            Entry entry;
+            while ((entry = reader.readNext()) != null) {
+                if (entry.getType() == EntryType.KEY_VALUE_PAIR) {
+                    entries.add((KeyValuePair)entry);
+                }
+            }
+        }
+        // Decoded only after the reader has released every chunk
+        assertEquals("customer:1:name", entries.get(0).getKey().toString());
+        assertEquals(List.of("name", "Savings 1", "balance", "300"), asStrings(entries.get(2).getValues()));
+        assertEquals("-5", entries.get(entries.size() - 1).getValues().get(0).toString());
+    }
+
+    @Test
+    void testStreamedChunksAreReusedOnceEntriesComplete() throws Exception {
+        File compressed = compress(sampleFile(), Compression.GZIP);
+        List<String> keys = new ArrayList<>();
+        try (StreamInput input = StreamInput.open(compressed, Compression.GZIP, 1, 5); RdbReader reader = new RdbReader(input, false)) {
+            Entry entry;
+            while ((entry = reader.readNext()) != null) {
+                if (entry.getType() == EntryType.KEY_VALUE_PAIR) {
+                    KeyValuePair pair = (KeyValuePair)entry;
+                    keys.add(pair.getKey().toString());
+                    pair.getValues();
+                    pair.completed();
+                    // Freeing twice must not hand the same chunks out twice
+                    pair.completed();
+                }
+            }
+            assertTrue(input.getSlabsReused() > 0);
+            assertTrue(input.getSlabsAllocated() < sampleFile().length() / 5);
+        }
+        assertEquals("customer:1:name", keys.get(0));
+        assertEquals(readKeys(sampleFile(), null), keys);
+    }
+
+    /**
+     * The payload DUMP returns for a string: the type, the value as in an RDB file, the RDB version and a checksum.
+     */
+    private static byte[] dumpOfString(String value) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        payload.write(ValueType.VALUE.getCode());
+        payload.write(value.length());
+        payload.writeBytes(value.getBytes());
+        payload.writeBytes(new byte[10]);
+        return payload.toByteArray();
+    }
+
+    @Test
+    void testDumpPayloadsPackedIntoReusedSlabs() throws Exception {
+        // Small slabs, so most payloads span two of them
+        DumpPayloads payloads = new DumpPayloads(16);
+        List<KeyValuePair> pairs = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            pairs.add(KeyValuePair.fromDump(ByteSlice.wrap(("key:" + i).getBytes()), dumpOfString("value number " + i), null, payloads));
+        }
+        long allocated = payloads.getSlabsAllocated();
+        assertEquals(0, payloads.getSlabsReused());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(List.of("value number " + i), asStrings(pairs.get(i).getValues()));
+            pairs.get(i).completed();
+        }
+        for (int i = 0; i < 10; i++) {
+            KeyValuePair pair = KeyValuePair.fromDump(ByteSlice.wrap(("key:" + i).getBytes()), dumpOfString("again " + i), null, payloads);
+            assertEquals(List.of("again " + i), asStrings(pair.getValues()));
+            pair.completed();
+        }
+        // The slabs freed by the first payloads hold the later ones
+        assertTrue(payloads.getSlabsReused() > 0);
+        assertEquals(allocated, payloads.getSlabsAllocated());
+    }
+
+    private static List<String> readKeys(File file, EntryFilter filter) throws Exception {
+        List<String> keys = new ArrayList<>();
+        try (RdbReader reader = new RdbReader(file)) {
+            reader.setFilter(filter);
+            Entry entry;
+            while ((entry = reader.readNext()) != null) {
+                if (entry.getType() == EntryType.KEY_VALUE_PAIR) {
+                    keys.add(((KeyValuePair)entry).getKey().toString());
+                }
+            }
+        }
+        return keys;
+    }
+
+    @Test
+    void testFilter() throws Exception {
+        File file = sampleFile();
+        EntryFilter filter = new EntryFilter()
+                .include("account:.*|customer:.*|queue|ids|number")
+                .exclude("customer:1:name")
+                .typeNames(Set.of("list", "hash", "set"));
+        assertEquals(List.of("customer:1:accounts", "account:1", "account:2", "queue", "ids"), readKeys(file, filter));
+        assertEquals(3, filter.getFiltered());
+
+        // The list in db 0 expires in 2100
+        filter = new EntryFilter().databases(Set.of(0L, 3L)).typeNames(Set.of("list")).expiringWithin(200L * 365 * 86400);
+        assertEquals(List.of("queue"), readKeys(file, filter));
+        assertEquals(List.of("compressed", "number"), readKeys(file, new EntryFilter().databases(Set.of(3L)).typeNames(Set.of("string"))));
+        assertEquals(List.of("customer:1:name"), readKeys(file, new EntryFilter().keyPredicate(key -> key.endsWith(":name"))));
+    }
+
+    @Test
+    void testFilteredValuesAreNotDecoded() throws Exception {
+        // The listpack's contents are garbage, which would fail if it was decoded
+        File file = new RdbFileBuilder()
+                .selectDb(0)
+                .raw(ValueType.HASHMAP_AS_LISTPACK.getCode()).string("skipped").string(new byte[] {1, 2, 3, 4, 5, 6, 7})
+                .stringValue("kept", "value")
+                .eof()
+                .toFile();
+        assertEquals(List.of("kept"), readKeys(file, new EntryFilter().exclude("skip.*")));
+    }
+
+    private static List<KeyValuePair> readPairs(RdbReader reader) throws Exception {
+        List<KeyValuePair> pairs = new ArrayList<>();
+        Entry entry;
+        while ((entry = reader.readNext()) != null) {
+            if (entry.getType() == EntryType.KEY_VALUE_PAIR) {
+                pairs.add((KeyValuePair)entry);
+            }
+        }
+        return pairs;
+    }
+
+    @Test
+    void testFingerprints() throws Exception {
+        File before = new RdbFileBuilder()
+                .selectDb(0)
+                .stringValue("same", "value")
+                .stringValue("changed", "old")
+                .list("ttl", "a", "b")
+                .eof()
+                .toFile();
+        File after = new RdbFileBuilder()
+                .selectDb(0)
+                .stringValue("added", "value")
+                .stringValue("same", "value")
+                .stringValue("changed", "new")
+                .expireMs(4102444800000L).list("ttl", "a", "b")
+                .eof()
+                .toFile();
+        List<KeyValuePair> oldPairs;
+        List<KeyValuePair> newPairs;
+        try (RdbReader oldReader = new RdbReader(before); RdbReader newReader = new RdbReader(after)) {
+            oldPairs = readPairs(oldReader);
+            newPairs = readPairs(newReader);
+            assertEquals(oldPairs.get(0).keyHash(0), newPairs.get(1).keyHash(0));
+            assertNotEquals(oldPairs.get(0).keyHash(0), newPairs.get(1).keyHash(1));
+            assertEquals(oldPairs.get(0).fingerprint(), newPairs.get(1).fingerprint());
+            assertNotEquals(oldPairs.get(1).fingerprint(), newPairs.get(2).fingerprint());
+            assertNotEquals(oldPairs.get(2).fingerprint(), newPairs.get(3).fingerprint());
+            assertNotEquals(newPairs.get(0).keyHash(0), newPairs.get(1).keyHash(0));
+        }
+
+        // The fingerprint of a value read from a stream is the same as when it is read from a mapped file
+        File compressed = compress(after, Compression.GZIP);
+        try (RdbReader reader = new RdbReader(StreamInput.open(compressed, Compression.GZIP, 1, 5), true)) {
+            List<KeyValuePair> streamed = readPairs(reader);
+            for (int i = 0; i < streamed.size(); i++) {
+                assertEquals(newPairs.get(i).fingerprint(), streamed.get(i).fingerprint());
+            }
+        }
+    }
+
+    @Test
+    void testWriteEncoded() throws Exception {
+        File file = new RdbFileBuilder()
+                .selectDb(0)
+                .expireMs(4102444800000L).freq(12).list("customer:1:accounts", "1", "2", "3")
+                .raw(0xF8).length(70000).hash("account:1", "name", "Savings 1", "balance", "300")
+                .selectDb(3)
+                .listpackHash("account:2", "name", "Checking", "balance", "12.5")
+                .eof()
+                .toFile();
+        File copy = File.createTempFile("test", ".rdb");
+        copy.deleteOnExit();
+        List<KeyValuePair> original;
+        try (RdbReader reader = new RdbReader(file); RdbWriter writer = new RdbWriter(copy, reader.getVersion())) {
+            original = readPairs(reader);
+            writer.write(0, original.get(0));
+            writer.write(0, original.get(1));
+            writer.write(3, original.get(2));
+        }
+        try (RdbReader reader = new RdbReader(copy)) {
+            assertEquals(11, reader.getVersion());
+            assertEquals(0, ((SelectDb)reader.readNext()).getId());
+            KeyValuePair kvp = (KeyValuePair)reader.readNext();
+            assertEquals("customer:1:accounts", kvp.getKey().toString());
+            assertEquals(4102444800000L, kvp.getExpireTime());
+            assertEquals(12, kvp.getFreq());
+            assertEquals(List.of("1", "2", "3"), asStrings(kvp.getValues()));
+            kvp = (KeyValuePair)reader.readNext();
+            assertEquals(70000L, kvp.getIdle());
+            assertEquals(List.of("name", "Savings 1", "balance", "300"), asStrings(kvp.getValues()));
+            assertEquals(3, ((SelectDb)reader.readNext()).getId());
+            kvp = (KeyValuePair)reader.readNext();
+            assertEquals(original.get(2).fingerprint(), kvp.fingerprint());
+            assertEquals(EntryType.EOF, reader.readNext().getType());
+        }
+    }
+}